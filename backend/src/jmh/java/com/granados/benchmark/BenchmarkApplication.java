@@ -0,0 +1,75 @@
+package com.granados.benchmark;
+
+import com.granados.Main;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Boots the application against a throwaway Postgres container, or against the database
+ * given by -Dbenchmark.jdbc.url (plus .username/.password). {@link #start(String...)}
+ * runs without a web server, {@link #startServer(WebApplicationType, String...)} on a
+ * random port.
+ */
+final class BenchmarkApplication {
+
+    private static PostgreSQLContainer<?> postgreSQLContainer;
+
+    private BenchmarkApplication() {
+    }
+
+    static ConfigurableApplicationContext start(String... properties) {
+        return run(WebApplicationType.NONE, properties);
+    }
+
+    static ConfigurableApplicationContext startServer(WebApplicationType type, String... properties) {
+        return run(type, properties);
+    }
+
+    private static ConfigurableApplicationContext run(WebApplicationType type, String... properties) {
+        String url = System.getProperty("benchmark.jdbc.url");
+        String username = System.getProperty("benchmark.jdbc.username", "granados");
+        String password = System.getProperty("benchmark.jdbc.password", "password");
+        if (url == null) {
+            PostgreSQLContainer<?> container = container();
+            url = container.getJdbcUrl();
+            username = container.getUsername();
+            password = container.getPassword();
+        }
+        // command line arguments, so they win over application.yml
+        List<String> args = new ArrayList<>(List.of(
+                "--spring.main.web-application-type=" + type.name().toLowerCase(),
+                "--server.port=0",
+                "--spring.datasource.url=" + url,
+                "--spring.datasource.username=" + username,
+                "--spring.datasource.password=" + password,
+                "--spring.r2dbc.url=" + url.replaceFirst("^jdbc:", "r2dbc:"),
+                "--spring.r2dbc.username=" + username,
+                "--spring.r2dbc.password=" + password,
+                "--spring.jpa.show-sql=false",
+                "--spring.jpa.properties.hibernate.format_sql=false",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=warn"));
+        for (String property : properties) {
+            args.add("--" + property);
+        }
+        return new SpringApplicationBuilder(Main.class)
+                .web(type)
+                .run(args.toArray(String[]::new));
+    }
+
+    private static synchronized PostgreSQLContainer<?> container() {
+        if (postgreSQLContainer == null) {
+            postgreSQLContainer = new PostgreSQLContainer<>("postgres:latest")
+                    .withDatabaseName("granados-benchmark")
+                    .withUsername("granados")
+                    .withPassword("password");
+            postgreSQLContainer.start();
+        }
+        return postgreSQLContainer;
+    }
+}
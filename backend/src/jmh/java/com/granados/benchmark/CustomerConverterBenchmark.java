@@ -0,0 +1,92 @@
+package com.granados.benchmark;
+
+import com.granados.customer.Customer;
+import com.granados.customer.CustomerHttpMessageConverter;
+import com.granados.customer.Gender;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.GenericHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes a customer list through the Jackson converter and through
+ * {@link CustomerHttpMessageConverter} into a stream that discards the bytes, so only
+ * the converter allocates. Run with {@code -prof gc} and divide
+ * {@code gc.alloc.rate.norm} by the number of customers for the bytes per customer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CustomerConverterBenchmark {
+
+    private static final Type CUSTOMER_LIST = new ParameterizedTypeReference<List<Customer>>() {
+    }.getType();
+
+    public enum Converter {
+        JACKSON, CUSTOMER;
+
+        GenericHttpMessageConverter<Object> create() {
+            return switch (this) {
+                case JACKSON -> new MappingJackson2HttpMessageConverter(Jackson2ObjectMapperBuilder.json().build());
+                case CUSTOMER -> new CustomerHttpMessageConverter();
+            };
+        }
+    }
+
+    @Param({"1", "100", "10000"})
+    public int customers;
+
+    @Param({"JACKSON", "CUSTOMER"})
+    public Converter converter;
+
+    private GenericHttpMessageConverter<Object> messageConverter;
+    private List<Customer> customerList;
+    private final DiscardingOutputMessage outputMessage = new DiscardingOutputMessage();
+
+    @Setup
+    public void setUp() {
+        messageConverter = converter.create();
+        customerList = new ArrayList<>(customers);
+        for (int i = 1; i <= customers; i++) {
+            Gender gender = i % 2 == 0 ? Gender.MALE : Gender.FEMALE;
+            customerList.add(new Customer(
+                    i, "Customer " + i, "customer" + i + "@benchmark.com", 16 + i % 80, gender));
+        }
+    }
+
+    @Benchmark
+    public void writeCustomers() throws IOException {
+        messageConverter.write(customerList, CUSTOMER_LIST, MediaType.APPLICATION_JSON, outputMessage);
+    }
+
+    // headers are kept between writes, the content type is only set by the first one
+    private static final class DiscardingOutputMessage implements HttpOutputMessage {
+
+        private final HttpHeaders headers = new HttpHeaders();
+        private final OutputStream body = OutputStream.nullOutputStream();
+
+        @Override
+        public OutputStream getBody() {
+            return body;
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+    }
+}
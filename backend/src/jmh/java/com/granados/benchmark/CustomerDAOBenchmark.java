@@ -0,0 +1,112 @@
+package com.granados.benchmark;
+
+import com.granados.customer.Customer;
+import com.granados.customer.CustomerDAO;
+import com.granados.customer.CustomerUpdateRequest;
+import com.granados.customer.Gender;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CustomerDAOBenchmark {
+
+    @Param({"jdbc", "jpa", "list"})
+    public String dao;
+
+    @Param({"1000", "10000", "100000"})
+    public int tableSize;
+
+    private ConfigurableApplicationContext context;
+    private CustomerDAO customerDAO;
+    private int[] ids;
+    private String[] emails;
+    private final AtomicLong inserted = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        customerDAO = context.getBean(dao, CustomerDAO.class);
+
+        context.getBean(JdbcTemplate.class).execute("TRUNCATE customer RESTART IDENTITY");
+        Random random = new Random(42);
+        List<Customer> customers = new ArrayList<>(tableSize);
+        for (int i = 0; i < tableSize; i++) {
+            customers.add(new Customer(
+                    "Customer " + i,
+                    "customer" + i + "@benchmark.com",
+                    random.nextInt(16, 99),
+                    random.nextBoolean() ? Gender.MALE : Gender.FEMALE));
+        }
+        // the list DAO keeps its own data, the jdbc and jpa DAOs share the table
+        CustomerDAO seeder = dao.equals("list") ? customerDAO : context.getBean("jdbc", CustomerDAO.class);
+        seeder.insertCustomers(customers);
+
+        List<Customer> stored = seeder.selectAllCustomers();
+        ids = stored.stream().mapToInt(Customer::getId).toArray();
+        emails = stored.stream().map(Customer::getEmail).toArray(String[]::new);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    private int randomId() {
+        return ids[ThreadLocalRandom.current().nextInt(ids.length)];
+    }
+
+    @Benchmark
+    public Optional<Customer> selectCustomerById() {
+        return customerDAO.selectCustomerById(randomId());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<Customer> selectAllCustomers() {
+        return customerDAO.selectAllCustomers();
+    }
+
+    @Benchmark
+    public void insertCustomer() {
+        long n = inserted.incrementAndGet();
+        customerDAO.insertCustomer(new Customer(
+                "Inserted " + n,
+                "inserted" + n + "-" + System.nanoTime() + "@benchmark.com",
+                30,
+                Gender.FEMALE));
+    }
+
+    @Benchmark
+    public boolean existsPersonWithEmailHit() {
+        return customerDAO.existsPersonWithEmail(
+                emails[ThreadLocalRandom.current().nextInt(emails.length)]);
+    }
+
+    @Benchmark
+    public boolean existsPersonWithEmailMiss() {
+        return customerDAO.existsPersonWithEmail(
+                "missing" + ThreadLocalRandom.current().nextInt() + "@benchmark.com");
+    }
+
+    @Benchmark
+    public Optional<Customer> updateCustomer() {
+        return customerDAO.updateCustomer(
+                randomId(),
+                new CustomerUpdateRequest(null, null, ThreadLocalRandom.current().nextInt(16, 99)));
+    }
+}
@@ -0,0 +1,61 @@
+package com.granados.benchmark;
+
+import com.granados.customer.Customer;
+import com.granados.customer.CustomerColumnarDataAccessService;
+import com.granados.customer.CustomerFilter;
+import com.granados.customer.CustomerInMemoryDataAccessService;
+import com.granados.customer.Gender;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Filtering a heap list of entities against the off-heap columnar snapshot.
+ * Add -prof gc to compare allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class CustomerFilterBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int tableSize;
+
+    private final CustomerFilter filter = new CustomerFilter(18, 30, Gender.FEMALE);
+    private List<Customer> customers;
+    private CustomerColumnarDataAccessService columnarDAO;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        customers = new ArrayList<>(tableSize);
+        for (int i = 0; i < tableSize; i++) {
+            customers.add(new Customer(
+                    "Customer " + i,
+                    "customer" + i + "@benchmark.com",
+                    random.nextInt(16, 99),
+                    random.nextBoolean() ? Gender.MALE : Gender.FEMALE));
+        }
+        CustomerInMemoryDataAccessService source = new CustomerInMemoryDataAccessService();
+        source.insertCustomers(customers);
+        customers = source.selectAllCustomers();
+        columnarDAO = new CustomerColumnarDataAccessService(source);
+        columnarDAO.rebuild();
+    }
+
+    @Benchmark
+    public List<Customer> streamFilter() {
+        return customers.stream().filter(filter::matches).toList();
+    }
+
+    @Benchmark
+    public List<Customer> columnarFilter() {
+        return columnarDAO.selectCustomers(filter);
+    }
+}
@@ -0,0 +1,81 @@
+package com.granados.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.granados.customer.Customer;
+import com.granados.customer.Gender;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serialization time of a customer page for each format the API negotiates, with and
+ * without gzip. Payload sizes are printed once per trial since JMH only reports times.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class CustomerFormatBenchmark {
+
+    public enum Format {
+        JSON, SMILE, CBOR;
+
+        ObjectMapper objectMapper() {
+            // configured the same way the message converters are
+            return switch (this) {
+                case JSON -> Jackson2ObjectMapperBuilder.json().build();
+                case SMILE -> Jackson2ObjectMapperBuilder.smile().build();
+                case CBOR -> Jackson2ObjectMapperBuilder.cbor().build();
+            };
+        }
+    }
+
+    @Param({"1000", "100000", "1000000"})
+    public int customers;
+
+    @Param({"JSON", "SMILE", "CBOR"})
+    public Format format;
+
+    private ObjectWriter listWriter;
+    private List<Customer> customerList;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper objectMapper = format.objectMapper();
+        listWriter = objectMapper.writerFor(objectMapper.getTypeFactory()
+                .constructCollectionType(List.class, Customer.class));
+
+        customerList = new ArrayList<>(customers);
+        for (int i = 1; i <= customers; i++) {
+            Gender gender = i % 2 == 0 ? Gender.MALE : Gender.FEMALE;
+            customerList.add(new Customer(
+                    i, "Customer " + i, "customer" + i + "@benchmark.com", 16 + i % 80, gender));
+        }
+
+        System.out.printf("%n%s, %d customers: %d bytes, %d bytes gzipped%n",
+                format, customers, writeCustomers().length, writeCustomersGzipped().length);
+    }
+
+    @Benchmark
+    public byte[] writeCustomers() throws IOException {
+        return listWriter.writeValueAsBytes(customerList);
+    }
+
+    @Benchmark
+    public byte[] writeCustomersGzipped() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            listWriter.writeValue(gzip, customerList);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,65 @@
+package com.granados.benchmark;
+
+import com.granados.customer.Customer;
+import com.granados.customer.CustomerDAO;
+import com.granados.customer.Gender;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.search.Search;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Concurrent single customer inserts, one transaction per insert against the group commit
+ * pipeline. Throughput is inserts per second, the sample mode reports the p99 an insert
+ * waits. The number of commits the database actually did is printed per trial.
+ * <p>
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="CustomerGroupCommitBenchmark -bm thrpt,sample"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(64)
+@Fork(1)
+public class CustomerGroupCommitBenchmark {
+
+    @Param({"false", "true"})
+    public boolean groupCommit;
+
+    private ConfigurableApplicationContext context;
+    private CustomerDAO customerDAO;
+    private final String run = Long.toString(System.nanoTime(), 36);
+    private final AtomicLong inserted = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start("customer.group-commit.enabled=" + groupCommit);
+        customerDAO = context.getBean("customerDAO", CustomerDAO.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        long commits = groupCommit
+                ? (long) Search.in(context.getBean(MeterRegistry.class))
+                        .name("customer.group-commit.batch.size").summary().count()
+                : inserted.get();
+        System.out.printf("%ngroup commit %s: %d inserts in %d commits%n",
+                groupCommit, inserted.get(), commits);
+        context.getBean(JdbcTemplate.class)
+                .update("DELETE FROM customer WHERE email LIKE ?", "group-commit-" + run + "-%");
+        context.close();
+    }
+
+    @Benchmark
+    public Optional<Integer> insertCustomer() {
+        long n = inserted.incrementAndGet();
+        return customerDAO.insertCustomerIfAbsent(new Customer(
+                "Customer " + n, "group-commit-" + run + "-" + n + "@benchmark.com", 18 + (int) (n % 80), Gender.FEMALE));
+    }
+}
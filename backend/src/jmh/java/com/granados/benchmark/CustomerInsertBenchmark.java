@@ -0,0 +1,72 @@
+package com.granados.benchmark;
+
+import com.granados.customer.Customer;
+import com.granados.customer.CustomerDAO;
+import com.granados.customer.Gender;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Insert throughput of the JDBC and JPA DAOs, one customer per call or a batch of them
+ * in one transaction. Each operation is one call, so customers per second are the score
+ * times the batch size.
+ * <p>
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="CustomerInsertBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CustomerInsertBenchmark {
+
+    @Param({"jdbc", "jpa"})
+    public String dao;
+
+    @Param({"1", "100"})
+    public int batchSize;
+
+    private ConfigurableApplicationContext context;
+    private CustomerDAO customerDAO;
+    private final String run = Long.toString(System.nanoTime(), 36);
+    private final AtomicLong inserted = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        customerDAO = context.getBean(dao, CustomerDAO.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.getBean(JdbcTemplate.class)
+                .update("DELETE FROM customer WHERE email LIKE ?", "insert-" + run + "-%");
+        context.close();
+    }
+
+    private Customer newCustomer() {
+        long n = inserted.incrementAndGet();
+        return new Customer(
+                "Customer " + n, "insert-" + run + "-" + n + "@benchmark.com", 18 + (int) (n % 80), Gender.MALE);
+    }
+
+    @Benchmark
+    public void insertCustomers() {
+        if (batchSize == 1) {
+            customerDAO.insertCustomer(newCustomer());
+            return;
+        }
+        List<Customer> customers = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            customers.add(newCustomer());
+        }
+        customerDAO.insertCustomers(customers);
+    }
+}
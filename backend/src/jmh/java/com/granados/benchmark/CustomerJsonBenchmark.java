@@ -0,0 +1,63 @@
+package com.granados.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.granados.customer.Customer;
+import com.granados.customer.CustomerRegistrationRequest;
+import com.granados.customer.Gender;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CustomerJsonBenchmark {
+
+    @Param({"1", "100", "1000"})
+    public int customers;
+
+    private ObjectWriter listWriter;
+    private ObjectReader registrationsReader;
+    private List<Customer> customerList;
+    private byte[] registrationsJson;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        // configured the same way Spring MVC configures its message converter
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        listWriter = objectMapper.writerFor(objectMapper.getTypeFactory()
+                .constructCollectionType(List.class, Customer.class));
+        registrationsReader = objectMapper.readerFor(objectMapper.getTypeFactory()
+                .constructCollectionType(List.class, CustomerRegistrationRequest.class));
+
+        customerList = new ArrayList<>(customers);
+        List<CustomerRegistrationRequest> registrations = new ArrayList<>(customers);
+        for (int i = 1; i <= customers; i++) {
+            Gender gender = i % 2 == 0 ? Gender.MALE : Gender.FEMALE;
+            customerList.add(new Customer(
+                    i, "Customer " + i, "customer" + i + "@benchmark.com", 16 + i % 80, gender));
+            registrations.add(new CustomerRegistrationRequest(
+                    "Customer " + i, "customer" + i + "@benchmark.com", 16 + i % 80, gender));
+        }
+        registrationsJson = objectMapper.writeValueAsBytes(registrations);
+    }
+
+    @Benchmark
+    public byte[] writeCustomers() throws JsonProcessingException {
+        return listWriter.writeValueAsBytes(customerList);
+    }
+
+    @Benchmark
+    public List<CustomerRegistrationRequest> readRegistrationRequests() throws Exception {
+        return registrationsReader.readValue(registrationsJson);
+    }
+}
@@ -0,0 +1,172 @@
+package com.granados.benchmark;
+
+import com.granados.customer.Customer;
+import com.granados.customer.CustomerDAO;
+import com.granados.customer.Gender;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Closed loop load test of GET /api/v1/customers/{id} on the servlet stack (Tomcat and
+ * JDBC) and on the reactive stack (Netty and R2DBC). Every client sends its next request
+ * as soon as the previous one completes, so throughput and p99 are measured at a fixed
+ * concurrency rather than a fixed rate.
+ * <p>
+ * mvn -Pjmh test-compile exec:exec@load-test [-Dload.args="-clients 1000,5000 -duration PT30S"]
+ * <p>
+ * Clients and server share the JVM, so compare the modes with each other rather than
+ * reading the numbers as absolute capacity.
+ */
+public final class CustomerLoadTest {
+
+    private static final int CUSTOMERS = 1000;
+    // 100 microsecond buckets up to 30 seconds
+    private static final int BUCKET_MICROS = 100;
+    private static final int BUCKETS = 300_000;
+
+    private CustomerLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int[] clients = {1000, 5000, 10000};
+        Duration warmup = Duration.ofSeconds(10);
+        Duration duration = Duration.ofSeconds(30);
+        List<String> modes = List.of("servlet", "reactive");
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "-clients" -> clients = Arrays.stream(args[i + 1].split(",")).mapToInt(Integer::parseInt).toArray();
+                case "-warmup" -> warmup = Duration.parse(args[i + 1]);
+                case "-duration" -> duration = Duration.parse(args[i + 1]);
+                case "-modes" -> modes = List.of(args[i + 1].split(","));
+                default -> throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+        }
+
+        List<String> results = new ArrayList<>();
+        for (String mode : modes) {
+            boolean reactive = mode.equals("reactive");
+            try (ConfigurableApplicationContext context = BenchmarkApplication.startServer(
+                    reactive ? WebApplicationType.REACTIVE : WebApplicationType.SERVLET,
+                    "spring.profiles.active=" + (reactive ? "reactive" : "default"),
+                    "server.tomcat.max-connections=20000",
+                    "server.tomcat.accept-count=10000")) {
+                int port = Integer.parseInt(context.getEnvironment().getProperty("local.server.port"));
+                int[] ids = seed(context.getBean("jdbc", CustomerDAO.class));
+                for (int concurrency : clients) {
+                    run(port, ids, concurrency, warmup);
+                    Result result = run(port, ids, concurrency, duration);
+                    results.add("%-8s %6d clients %10.0f req/s  p50 %8.2f ms  p99 %8.2f ms  errors %d"
+                            .formatted(mode, concurrency, result.throughput(),
+                                    result.p50Millis(), result.p99Millis(), result.errors()));
+                }
+            }
+        }
+        System.out.println();
+        results.forEach(System.out::println);
+        System.exit(0);
+    }
+
+    private static int[] seed(CustomerDAO customerDAO) {
+        List<Customer> customers = customerDAO.selectCustomersAfter(0, CUSTOMERS);
+        if (customers.size() < CUSTOMERS) {
+            List<Customer> missing = new ArrayList<>();
+            long run = System.nanoTime();
+            for (int i = customers.size(); i < CUSTOMERS; i++) {
+                missing.add(new Customer(
+                        "Load " + i, "load-" + run + "-" + i + "@benchmark.com", 18 + i % 80, Gender.FEMALE));
+            }
+            customerDAO.insertCustomers(missing);
+            customers = customerDAO.selectCustomersAfter(0, CUSTOMERS);
+        }
+        return customers.stream().mapToInt(Customer::getId).toArray();
+    }
+
+    private static Result run(int port, int[] ids, int concurrency, Duration duration) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(executor)
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+        AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+        LongAdder errors = new LongAdder();
+        CountDownLatch finished = new CountDownLatch(concurrency);
+        long start = System.nanoTime();
+        long deadline = start + duration.toNanos();
+        for (int i = 0; i < concurrency; i++) {
+            send(client, port, ids, deadline, histogram, errors, finished);
+        }
+        finished.await(duration.toSeconds() + 60, TimeUnit.SECONDS);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        executor.shutdownNow();
+        return Result.of(histogram, errors.sum(), seconds);
+    }
+
+    private static void send(HttpClient client,
+                             int port,
+                             int[] ids,
+                             long deadline,
+                             AtomicLongArray histogram,
+                             LongAdder errors,
+                             CountDownLatch finished) {
+        long sent = System.nanoTime();
+        if (sent >= deadline) {
+            finished.countDown();
+            return;
+        }
+        int id = ids[ThreadLocalRandom.current().nextInt(ids.length)];
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/v1/customers/" + id))
+                .timeout(Duration.ofSeconds(30))
+                .build();
+        client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .whenComplete((response, failure) -> {
+                    if (failure != null || response.statusCode() != 200) {
+                        errors.increment();
+                    } else {
+                        long micros = (System.nanoTime() - sent) / 1000;
+                        histogram.incrementAndGet((int) Math.min(micros / BUCKET_MICROS, BUCKETS - 1));
+                    }
+                    send(client, port, ids, deadline, histogram, errors, finished);
+                });
+    }
+
+    private record Result(double throughput, double p50Millis, double p99Millis, long errors) {
+
+        static Result of(AtomicLongArray histogram, long errors, double seconds) {
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                total += histogram.get(i);
+            }
+            return new Result(total / seconds, percentile(histogram, total, 0.50),
+                    percentile(histogram, total, 0.99), errors);
+        }
+
+        private static double percentile(AtomicLongArray histogram, long total, double percentile) {
+            long rank = (long) Math.ceil(total * percentile);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += histogram.get(i);
+                if (seen >= rank) {
+                    return (i + 1) * BUCKET_MICROS / 1000.0;
+                }
+            }
+            return Double.NaN;
+        }
+    }
+}
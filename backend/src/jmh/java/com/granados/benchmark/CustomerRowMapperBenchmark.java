@@ -0,0 +1,87 @@
+package com.granados.benchmark;
+
+import com.granados.customer.Customer;
+import com.granados.customer.CustomerRowMapper;
+import com.granados.customer.Gender;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.jdbc.core.RowMapperResultSetExtractor;
+
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetMetaDataImpl;
+import javax.sql.rowset.RowSetProvider;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CustomerRowMapperBenchmark {
+
+    @Param({"1000"})
+    public int rows;
+
+    private final CustomerRowMapper customerRowMapper = new CustomerRowMapper();
+    private CachedRowSet resultSet;
+
+    @Setup
+    public void setUp() throws SQLException {
+        RowSetMetaDataImpl metaData = new RowSetMetaDataImpl();
+        metaData.setColumnCount(6);
+        String[] names = {"id", "name", "email", "age", "gender", "version"};
+        int[] types = {Types.INTEGER, Types.VARCHAR, Types.VARCHAR, Types.INTEGER, Types.VARCHAR, Types.INTEGER};
+        for (int i = 0; i < names.length; i++) {
+            metaData.setColumnName(i + 1, names[i]);
+            metaData.setColumnLabel(i + 1, names[i]);
+            metaData.setColumnType(i + 1, types[i]);
+        }
+
+        resultSet = RowSetProvider.newFactory().createCachedRowSet();
+        resultSet.setMetaData(metaData);
+        for (int i = 1; i <= rows; i++) {
+            resultSet.moveToInsertRow();
+            resultSet.updateInt(1, i);
+            resultSet.updateString(2, "Customer " + i);
+            resultSet.updateString(3, "customer" + i + "@benchmark.com");
+            resultSet.updateInt(4, 16 + i % 80);
+            resultSet.updateString(5, (i % 2 == 0 ? Gender.MALE : Gender.FEMALE).name());
+            resultSet.updateInt(6, 0);
+            resultSet.insertRow();
+        }
+        resultSet.moveToCurrentRow();
+    }
+
+    // what JdbcTemplate does with a RowMapper: labels looked up on every row
+    @Benchmark
+    public List<Customer> rowMapperList() throws SQLException {
+        resultSet.beforeFirst();
+        return new RowMapperResultSetExtractor<>(customerRowMapper).extractData(resultSet);
+    }
+
+    @Benchmark
+    public List<Customer> listExtractor() throws SQLException {
+        resultSet.beforeFirst();
+        return customerRowMapper.listExtractor().extractData(resultSet);
+    }
+
+    @Benchmark
+    public void mapRows(Blackhole blackhole) throws SQLException {
+        resultSet.beforeFirst();
+        int rowNum = 0;
+        while (resultSet.next()) {
+            Customer customer = customerRowMapper.mapRow(resultSet, rowNum++);
+            blackhole.consume(customer);
+        }
+    }
+
+    @Benchmark
+    public void forEachRow(Blackhole blackhole) throws SQLException {
+        resultSet.beforeFirst();
+        customerRowMapper.forEach(resultSet, blackhole::consume);
+    }
+}
@@ -0,0 +1,75 @@
+package com.granados.benchmark;
+
+import com.github.javafaker.Faker;
+import com.granados.customer.Customer;
+import com.granados.customer.CustomerInMemoryDataAccessService;
+import com.granados.customer.CustomerSearchService;
+import com.granados.customer.Gender;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of the trigram name search. The estimated heap held by the index is printed
+ * per customer when the trial starts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class CustomerSearchBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int tableSize;
+
+    private CustomerSearchService searchService;
+    private String[] queries;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Faker faker = new Faker(Locale.ENGLISH, new Random(42));
+        List<Customer> customers = new ArrayList<>(tableSize);
+        for (int i = 0; i < tableSize; i++) {
+            String name = faker.name().fullName();
+            customers.add(new Customer(
+                    name,
+                    name.toLowerCase(Locale.ROOT).replaceAll("[^a-z]", ".") + i + "@benchmark.com",
+                    18 + i % 80,
+                    i % 2 == 0 ? Gender.MALE : Gender.FEMALE));
+        }
+        CustomerInMemoryDataAccessService customerDAO = new CustomerInMemoryDataAccessService();
+        customerDAO.insertCustomers(customers);
+        searchService = new CustomerSearchService(customerDAO);
+        searchService.rebuild();
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        searchService.bindTo(registry);
+        double bytes = registry.get("customer.search.index.size").gauge().value();
+        System.out.printf("%nsearch index: %.0f bytes, %.1f bytes per customer%n",
+                bytes, bytes / tableSize);
+
+        // a misspelled name and a partial last name for every query
+        queries = new String[64];
+        for (int i = 0; i < queries.length; i += 2) {
+            String name = customers.get(i * 997 % tableSize).getName();
+            queries[i] = name.length() > 4
+                    ? name.substring(0, 2) + name.charAt(3) + name.charAt(2) + name.substring(4)
+                    : name;
+            String lastName = faker.name().lastName();
+            queries[i + 1] = lastName.substring(0, Math.min(4, lastName.length()));
+        }
+    }
+
+    @Benchmark
+    public List<Customer> search() {
+        return searchService.search(queries[next++ & (queries.length - 1)], 20);
+    }
+}
@@ -0,0 +1,73 @@
+package com.granados.benchmark;
+
+import com.granados.customer.Customer;
+import com.granados.customer.CustomerInMemoryDataAccessService;
+import com.granados.customer.CustomerUpdateRequest;
+import com.granados.customer.Gender;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Run with increasing thread counts (-t 1, -t 4, ...) to see how the "list" DAO scales.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InMemoryCustomerDAOBenchmark {
+
+    @Param({"100000"})
+    public int tableSize;
+
+    private CustomerInMemoryDataAccessService customerDAO;
+    private int maxId;
+
+    @Setup
+    public void setUp() {
+        customerDAO = new CustomerInMemoryDataAccessService();
+        List<Customer> customers = new ArrayList<>(tableSize);
+        for (int i = 0; i < tableSize; i++) {
+            customers.add(new Customer(
+                    "Customer " + i, "customer" + i + "@benchmark.com", 30, Gender.MALE));
+        }
+        customerDAO.insertCustomers(customers);
+        maxId = (int) customerDAO.countCustomers();
+    }
+
+    private int randomId() {
+        return ThreadLocalRandom.current().nextInt(1, maxId + 1);
+    }
+
+    @Benchmark
+    public Optional<Customer> selectCustomerById() {
+        return customerDAO.selectCustomerById(randomId());
+    }
+
+    @Benchmark
+    public boolean existsPersonWithEmail() {
+        return customerDAO.existsPersonWithEmail(
+                "customer" + ThreadLocalRandom.current().nextInt(tableSize) + "@benchmark.com");
+    }
+
+    @Benchmark
+    @Group("readMostly")
+    @GroupThreads(3)
+    public Optional<Customer> readMostlyReads() {
+        return customerDAO.selectCustomerById(randomId());
+    }
+
+    @Benchmark
+    @Group("readMostly")
+    @GroupThreads(1)
+    public Optional<Customer> readMostlyWrites() {
+        return customerDAO.updateCustomer(
+                randomId(), new CustomerUpdateRequest(null, null, ThreadLocalRandom.current().nextInt(16, 99)));
+    }
+}
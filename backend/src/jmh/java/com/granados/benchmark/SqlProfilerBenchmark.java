@@ -0,0 +1,49 @@
+package com.granados.benchmark;
+
+import com.granados.jdbc.SqlProfiler;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost the profiler adds to each statement: two clock reads plus recording into the
+ * per statement counters, single threaded and with every core hitting the same statement.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SqlProfilerBenchmark {
+
+    private static final String SQL = "SELECT id, name, email, age, gender FROM customer WHERE id = ?";
+
+    private final SqlProfiler profiler = new SqlProfiler(Duration.ofSeconds(1));
+    private final Object[] args = {42};
+
+    @Setup
+    public void setUp() {
+        profiler.record(SQL, args, 0, 0, 1, false);
+    }
+
+    @Benchmark
+    public long clockOnly() {
+        long start = System.nanoTime();
+        return System.nanoTime() - start;
+    }
+
+    @Benchmark
+    public void record() {
+        long start = System.nanoTime();
+        profiler.record(SQL, args, System.nanoTime() - start, 0, 1, false);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void recordContended() {
+        long start = System.nanoTime();
+        profiler.record(SQL, args, System.nanoTime() - start, 0, 1, false);
+    }
+}
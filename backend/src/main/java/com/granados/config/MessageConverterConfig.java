@@ -0,0 +1,43 @@
+package com.granados.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.granados.customer.CustomerHttpMessageConverter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+/**
+ * Binary alternatives to JSON, picked by the Accept and Content-Type headers
+ * ({@code application/cbor} and {@code application/x-jackson-smile}). Spring MVC
+ * registers these converters on its own as well, but with a plain mapper; building
+ * them from Boot's builder applies the same {@code spring.jackson} settings as JSON.
+ * JSON stays first, so clients that accept anything still get JSON.
+ * <p>
+ * Customers are written as JSON by a dedicated converter that Boot places in front of
+ * Jackson, everything else still goes through Jackson.
+ */
+@Configuration
+public class MessageConverterConfig {
+
+    @Bean
+    public CustomerHttpMessageConverter customerHttpMessageConverter() {
+        return new CustomerHttpMessageConverter();
+    }
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(
+            Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(
+                builder.createXmlMapper(false).factory(new CBORFactory()).build());
+    }
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(
+            Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(
+                builder.createXmlMapper(false).factory(new SmileFactory()).build());
+    }
+}
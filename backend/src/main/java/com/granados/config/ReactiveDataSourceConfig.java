@@ -0,0 +1,27 @@
+package com.granados.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * Spring Boot stops configuring a DataSource as soon as an R2DBC ConnectionFactory
+ * exists, but Flyway and the JPA repositories still need one in the reactive profile.
+ */
+@Configuration
+@Profile("reactive")
+@EnableConfigurationProperties(DataSourceProperties.class)
+public class ReactiveDataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource dataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+    }
+}
@@ -1,5 +1,6 @@
 package com.granados.config;
 
+import com.granados.jdbc.ReadYourWritesFilter;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.CorsRegistration;
@@ -22,5 +23,6 @@ public class WebMvcConfig implements WebMvcConfigurer {
         CorsRegistration corsRegistration = registry.addMapping("/api/**");
         allowedOrigins.forEach(corsRegistration::allowedOrigins);
         allowedMethods.forEach(corsRegistration::allowedMethods);
+        corsRegistration.exposedHeaders("X-Next-Cursor", "ETag", ReadYourWritesFilter.HEADER_NAME);
     }
 }
@@ -0,0 +1,251 @@
+package com.granados.customer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * {@link CustomerDAO} that keeps a Bloom filter of registered emails, so email lookups
+ * that are definitely negative never reach the delegate.
+ * <p>
+ * Emails written through this DAO are added to the filter once the write succeeds.
+ * Deleted and replaced emails cannot be removed from a Bloom filter, they only turn into
+ * false positives until {@link #reseed()} rebuilds it from the delegate. Emails
+ * registered by other application instances are invisible to the filter until then as
+ * well, so it should only be enabled where this instance is the only writer or where a
+ * stale negative is acceptable (the unique constraint still rejects the insert).
+ */
+public class BloomFilterCustomerDAO implements CustomerDAO {
+
+    private static final Logger log = LoggerFactory.getLogger(BloomFilterCustomerDAO.class);
+
+    // headroom so the filter keeps its false positive rate while the table grows
+    static final double GROWTH_FACTOR = 2.0;
+    static final long MINIMUM_EXPECTED_INSERTIONS = 10_000;
+
+    private final CustomerDAO delegate;
+    private final double falsePositiveRate;
+    private final Lock reseedLock = new ReentrantLock();
+
+    private volatile EmailBloomFilter emails;
+    private volatile EmailBloomFilter seeding;
+
+    private final Counter skippedLookups;
+    private final Counter checkedLookups;
+    private final Counter falsePositives;
+
+    public BloomFilterCustomerDAO(CustomerDAO delegate,
+                                  double falsePositiveRate,
+                                  MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.falsePositiveRate = falsePositiveRate;
+        this.skippedLookups = lookupCounter(meterRegistry, "skipped",
+                "Email lookups answered by the Bloom filter alone");
+        this.checkedLookups = lookupCounter(meterRegistry, "checked",
+                "Email lookups the Bloom filter passed on to the database");
+        this.falsePositives = lookupCounter(meterRegistry, "false_positive",
+                "Checked email lookups that were not registered");
+    }
+
+    private static Counter lookupCounter(MeterRegistry registry, String result, String description) {
+        return Counter.builder("customer.email.filter.lookups")
+                .tag("result", result)
+                .description(description)
+                .register(registry);
+    }
+
+    @Scheduled(fixedDelayString = "${customer.email-filter.reseed-interval:PT1H}")
+    public void reseed() {
+        reseedLock.lock();
+        try {
+            long start = System.nanoTime();
+            long expected = Math.max(
+                    (long) (delegate.countCustomers() * GROWTH_FACTOR),
+                    MINIMUM_EXPECTED_INSERTIONS);
+            EmailBloomFilter seeded = new EmailBloomFilter(expected, falsePositiveRate);
+            // writes made while the table is streamed are added to both filters
+            seeding = seeded;
+            delegate.forEachCustomer(customer -> seeded.add(customer.getEmail()));
+            emails = seeded;
+            seeding = null;
+            log.info("Seeded email Bloom filter with {} bits and {} hashes in {} ms",
+                    seeded.bitCount(), seeded.hashCount(), (System.nanoTime() - start) / 1_000_000);
+        } finally {
+            reseedLock.unlock();
+        }
+    }
+
+    boolean isSeeded() {
+        return emails != null;
+    }
+
+    @Override
+    public boolean existsPersonWithEmail(String email) {
+        EmailBloomFilter filter = emails;
+        if (filter == null) {
+            return delegate.existsPersonWithEmail(email);
+        }
+        if (!filter.mightContain(email)) {
+            skippedLookups.increment();
+            return false;
+        }
+        checkedLookups.increment();
+        boolean exists = delegate.existsPersonWithEmail(email);
+        if (!exists) {
+            falsePositives.increment();
+        }
+        return exists;
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        EmailBloomFilter filter = this.emails;
+        if (filter == null) {
+            return delegate.selectExistingEmails(emails);
+        }
+        Set<String> candidates = new HashSet<>();
+        for (String email : emails) {
+            if (filter.mightContain(email)) {
+                candidates.add(email);
+            }
+        }
+        skippedLookups.increment(emails.size() - candidates.size());
+        if (candidates.isEmpty()) {
+            return Set.of();
+        }
+        checkedLookups.increment(candidates.size());
+        Set<String> existing = delegate.selectExistingEmails(candidates);
+        falsePositives.increment(candidates.size() - existing.size());
+        return existing;
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return delegate.selectAllCustomers();
+    }
+
+    @Override
+    public long countCustomers() {
+        return delegate.countCustomers();
+    }
+
+    @Override
+    public CustomerStats selectCustomerStats() {
+        return delegate.selectCustomerStats();
+    }
+
+    @Override
+    public List<Customer> selectCustomersAfter(Integer afterId, int limit) {
+        return delegate.selectCustomersAfter(afterId, limit);
+    }
+
+    @Override
+    public List<Customer> selectCustomers(CustomerFilter filter) {
+        return delegate.selectCustomers(filter);
+    }
+
+    @Override
+    public void forEachCustomer(Consumer<Customer> action) {
+        delegate.forEachCustomer(action);
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Integer id) {
+        return delegate.selectCustomerById(id);
+    }
+
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Integer> ids) {
+        return delegate.selectCustomersByIds(ids);
+    }
+
+    @Override
+    public void insertCustomer(Customer customer) {
+        delegate.insertCustomer(customer);
+        add(customer.getEmail());
+    }
+
+    @Override
+    public Optional<Integer> insertCustomerIfAbsent(Customer customer) {
+        Optional<Integer> id = delegate.insertCustomerIfAbsent(customer);
+        // taken or just inserted, the email is registered either way
+        add(customer.getEmail());
+        return id;
+    }
+
+    @Override
+    public void insertCustomers(List<Customer> customers) {
+        delegate.insertCustomers(customers);
+        customers.forEach(customer -> add(customer.getEmail()));
+    }
+
+    @Override
+    public List<Optional<Integer>> insertCustomersIfAbsent(List<Customer> customers) {
+        List<Optional<Integer>> ids = delegate.insertCustomersIfAbsent(customers);
+        customers.forEach(customer -> add(customer.getEmail()));
+        return ids;
+    }
+
+    @Override
+    public boolean existsPersonWithId(Integer id) {
+        return delegate.existsPersonWithId(id);
+    }
+
+    @Override
+    public Optional<Customer> deleteCustomerById(Integer id) {
+        return delegate.deleteCustomerById(id);
+    }
+
+    @Override
+    public Optional<Customer> deleteCustomerById(Integer id, int expectedVersion) {
+        return delegate.deleteCustomerById(id, expectedVersion);
+    }
+
+    @Override
+    public Optional<Customer> updateCustomer(Integer id, CustomerUpdateRequest changes) {
+        Optional<Customer> updated = delegate.updateCustomer(id, changes);
+        updated.ifPresent(customer -> add(customer.getEmail()));
+        return updated;
+    }
+
+    @Override
+    public Optional<Customer> updateCustomer(Integer id, CustomerUpdateRequest changes, int expectedVersion) {
+        Optional<Customer> updated = delegate.updateCustomer(id, changes, expectedVersion);
+        updated.ifPresent(customer -> add(customer.getEmail()));
+        return updated;
+    }
+
+    @Override
+    public long selectCustomersVersion() {
+        return delegate.selectCustomersVersion();
+    }
+
+    @Override
+    public OptionalLong selectFilteredCustomersVersion() {
+        return delegate.selectFilteredCustomersVersion();
+    }
+
+    // seeding is read before emails, a reseed publishes emails before clearing seeding
+    private void add(String email) {
+        EmailBloomFilter next = seeding;
+        if (next != null) {
+            next.add(email);
+        }
+        EmailBloomFilter filter = emails;
+        if (filter != null) {
+            filter.add(email);
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.granados.customer;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.granados.jdbc.DataSourceRouting;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Read-through cache of customers by id in front of another {@link CustomerDAO}.
+ * Misses are cached too, with their own TTL, and writes invalidate the ids they touch.
+ */
+public class CachingCustomerDAO implements CustomerDAO {
+
+    private final CustomerDAO delegate;
+    private final Cache<Integer, Optional<Customer>> customers;
+    // bumped by every invalidation, see selectCustomersByIds
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public CachingCustomerDAO(CustomerDAO delegate,
+                              long maximumSize,
+                              Duration ttl,
+                              Duration negativeTtl) {
+        this(delegate, maximumSize, ttl, negativeTtl, Ticker.systemTicker(), ForkJoinPool.commonPool());
+    }
+
+    CachingCustomerDAO(CustomerDAO delegate,
+                       long maximumSize,
+                       Duration ttl,
+                       Duration negativeTtl,
+                       Ticker ticker,
+                       Executor executor) {
+        this.delegate = delegate;
+        this.customers = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new Expiry<Integer, Optional<Customer>>() {
+                    @Override
+                    public long expireAfterCreate(Integer id, Optional<Customer> customer, long currentTime) {
+                        return customer.isPresent() ? ttl.toNanos() : negativeTtl.toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(Integer id, Optional<Customer> customer,
+                                                  long currentTime, long currentDuration) {
+                        return expireAfterCreate(id, customer, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(Integer id, Optional<Customer> customer,
+                                                long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .ticker(ticker)
+                .executor(executor)
+                .recordStats()
+                .build();
+    }
+
+    public CacheStats stats() {
+        return customers.stats();
+    }
+
+    Cache<Integer, Optional<Customer>> cache() {
+        return customers;
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return delegate.selectAllCustomers();
+    }
+
+    @Override
+    public long countCustomers() {
+        return delegate.countCustomers();
+    }
+
+    @Override
+    public CustomerStats selectCustomerStats() {
+        return delegate.selectCustomerStats();
+    }
+
+    @Override
+    public List<Customer> selectCustomersAfter(Integer afterId, int limit) {
+        return delegate.selectCustomersAfter(afterId, limit);
+    }
+
+    @Override
+    public List<Customer> selectCustomers(CustomerFilter filter) {
+        return delegate.selectCustomers(filter);
+    }
+
+    @Override
+    public void forEachCustomer(Consumer<Customer> action) {
+        delegate.forEachCustomer(action);
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Integer id) {
+        // loaded from the primary, a lagging replica could bring back a row an invalidation
+        // has just removed and keep it cached for the whole TTL
+        return customers.get(id, key -> DataSourceRouting.onPrimary(() -> delegate.selectCustomerById(key)));
+    }
+
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Integer> ids) {
+        Map<Integer, Optional<Customer>> cached = customers.getAllPresent(ids);
+        Set<Integer> missing = new LinkedHashSet<>(ids);
+        missing.removeAll(cached.keySet());
+        if (missing.isEmpty()) {
+            return presentIn(ids, cached);
+        }
+
+        // one query for the missing ids; unlike customers.get, a bulk load does not hold
+        // the keys it loads, so a row an invalidation removed while the query ran could be
+        // stored after it. Such loads take back what they stored
+        long seen = invalidations.get();
+        Map<Integer, Optional<Customer>> found = new HashMap<>(cached);
+        missing.forEach(id -> found.put(id, Optional.empty()));
+        DataSourceRouting.onPrimary(() -> delegate.selectCustomersByIds(List.copyOf(missing)))
+                .forEach(customer -> found.put(customer.getId(), Optional.of(customer)));
+        missing.forEach(id -> customers.asMap().putIfAbsent(id, found.get(id)));
+        if (invalidations.get() != seen) {
+            customers.invalidateAll(missing);
+        }
+        return presentIn(ids, found);
+    }
+
+    private static List<Customer> presentIn(Collection<Integer> ids, Map<Integer, Optional<Customer>> customers) {
+        List<Customer> present = new ArrayList<>(customers.size());
+        for (Integer id : new LinkedHashSet<>(ids)) {
+            customers.getOrDefault(id, Optional.empty()).ifPresent(present::add);
+        }
+        return present;
+    }
+
+    @Override
+    public void insertCustomer(Customer customer) {
+        delegate.insertCustomer(customer);
+        invalidateMisses();
+    }
+
+    @Override
+    public Optional<Integer> insertCustomerIfAbsent(Customer customer) {
+        Optional<Integer> id = delegate.insertCustomerIfAbsent(customer);
+        id.ifPresent(this::invalidate);
+        return id;
+    }
+
+    @Override
+    public void insertCustomers(List<Customer> newCustomers) {
+        delegate.insertCustomers(newCustomers);
+        invalidateMisses();
+    }
+
+    @Override
+    public List<Optional<Integer>> insertCustomersIfAbsent(List<Customer> newCustomers) {
+        List<Optional<Integer>> ids = delegate.insertCustomersIfAbsent(newCustomers);
+        ids.forEach(id -> id.ifPresent(this::invalidate));
+        return ids;
+    }
+
+    @Override
+    public boolean existsPersonWithEmail(String email) {
+        return delegate.existsPersonWithEmail(email);
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        return delegate.selectExistingEmails(emails);
+    }
+
+    @Override
+    public boolean existsPersonWithId(Integer id) {
+        Optional<Customer> cached = customers.getIfPresent(id);
+        if (cached != null) {
+            return cached.isPresent();
+        }
+        return delegate.existsPersonWithId(id);
+    }
+
+    @Override
+    public Optional<Customer> deleteCustomerById(Integer id) {
+        try {
+            return delegate.deleteCustomerById(id);
+        } finally {
+            invalidate(id);
+        }
+    }
+
+    @Override
+    public Optional<Customer> deleteCustomerById(Integer id, int expectedVersion) {
+        try {
+            return delegate.deleteCustomerById(id, expectedVersion);
+        } finally {
+            invalidate(id);
+        }
+    }
+
+    @Override
+    public Optional<Customer> updateCustomer(Integer id, CustomerUpdateRequest changes) {
+        try {
+            return delegate.updateCustomer(id, changes);
+        } finally {
+            invalidate(id);
+        }
+    }
+
+    @Override
+    public Optional<Customer> updateCustomer(Integer id, CustomerUpdateRequest changes, int expectedVersion) {
+        try {
+            return delegate.updateCustomer(id, changes, expectedVersion);
+        } finally {
+            invalidate(id);
+        }
+    }
+
+    @Override
+    public long selectCustomersVersion() {
+        return delegate.selectCustomersVersion();
+    }
+
+    @Override
+    public OptionalLong selectFilteredCustomersVersion() {
+        return delegate.selectFilteredCustomersVersion();
+    }
+
+    private void invalidate(Integer id) {
+        invalidations.incrementAndGet();
+        customers.invalidate(id);
+    }
+
+    // inserts without a returned id may have created ids we cached as missing
+    private void invalidateMisses() {
+        invalidations.incrementAndGet();
+        customers.asMap().values().removeIf(Optional::isEmpty);
+    }
+}
@@ -1,10 +1,13 @@
 package com.granados.customer;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.util.Objects;
 
 @Entity
+@DynamicUpdate
 @Table(
         name = "customer",
         uniqueConstraints = {
@@ -16,11 +19,13 @@ import java.util.Objects;
 )
 public class Customer {
 
+    // pooled-lo (see hibernate.id.optimizer.pooled.preferred), one nextval per block of
+    // ids, shared with CustomerIdAllocator
     @Id
     @SequenceGenerator(
             name = "customer_id_seq",
             sequenceName = "customer_id_seq",
-            allocationSize = 1
+            allocationSize = CustomerIdAllocator.BLOCK_SIZE
     )
     @GeneratedValue(
             strategy = GenerationType.SEQUENCE,
@@ -40,6 +45,17 @@ public class Customer {
     @Enumerated(EnumType.STRING)
     private Gender gender;
 
+    // exposed as the ETag rather than in the body
+    @JsonIgnore
+    @Version
+    @Column(nullable = false)
+    private Integer version;
+
+    public Customer(Integer id, String name, String email, Integer age, Gender gender, Integer version) {
+        this(id, name, email, age, gender);
+        this.version = version;
+    }
+
     public Customer(Integer id, String name, String email, Integer age, Gender gender) {
         this.id = id;
         this.name = name;
@@ -99,6 +115,14 @@ public class Customer {
         this.gender = gender;
     }
 
+    public Integer getVersion() {
+        return version;
+    }
+
+    public void setVersion(Integer version) {
+        this.version = version;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
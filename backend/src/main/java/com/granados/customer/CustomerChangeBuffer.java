@@ -0,0 +1,74 @@
+package com.granados.customer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The last {@code capacity} customer changes in a ring, so a client that reconnects can
+ * be sent what it missed. Event ids carry an id of the buffer as well as the sequence,
+ * ids handed out by another instance, or before a restart, are never mistaken for ours.
+ * <p>
+ * Not thread safe, {@link CustomerEventStream} only uses it holding its lock.
+ */
+class CustomerChangeBuffer {
+
+    private final String bufferId;
+    private final Change[] ring;
+    // the sequence of the next change, the first one is 1 so 0 means "nothing yet"
+    private long next = 1;
+
+    CustomerChangeBuffer(String bufferId, int capacity) {
+        this.bufferId = bufferId;
+        this.ring = new Change[capacity];
+    }
+
+    Change append(String type, String data) {
+        Change change = new Change(eventId(next), type, data);
+        ring[(int) (next % ring.length)] = change;
+        next++;
+        return change;
+    }
+
+    /**
+     * Returns the id of the last change, which a client that starts now has seen.
+     */
+    String lastEventId() {
+        return eventId(next - 1);
+    }
+
+    /**
+     * Returns the changes after the given event id, or nothing when they are no longer
+     * all buffered or the id is not one of ours.
+     */
+    Optional<List<Change>> changesSince(String lastEventId) {
+        long seen = sequence(lastEventId);
+        long oldest = Math.max(1, next - ring.length);
+        if (seen < oldest - 1 || seen >= next) {
+            return Optional.empty();
+        }
+        List<Change> changes = new ArrayList<>((int) (next - seen - 1));
+        for (long sequence = seen + 1; sequence < next; sequence++) {
+            changes.add(ring[(int) (sequence % ring.length)]);
+        }
+        return Optional.of(changes);
+    }
+
+    private String eventId(long sequence) {
+        return bufferId + "-" + sequence;
+    }
+
+    private long sequence(String eventId) {
+        if (eventId == null || !eventId.startsWith(bufferId + "-")) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(eventId, bufferId.length() + 1, eventId.length(), 10);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    record Change(String id, String type, String data) {
+    }
+}
@@ -0,0 +1,281 @@
+package com.granados.customer;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * {@link CustomerDAO} that answers {@link #selectCustomers(CustomerFilter)} from an
+ * off-heap {@link CustomerColumns} snapshot of another DAO and delegates everything else.
+ * <p>
+ * New rows, including the ones inserted through this DAO, are appended by
+ * {@link #refresh()}. Updates and deletes made through this DAO are applied to the
+ * snapshot straight away, and {@link #rebuild()} reloads it to pick up changes made
+ * elsewhere and to reclaim the space of replaced names and emails. Filter results can
+ * therefore lag behind the database by up to the refresh interval, and have no version
+ * to validate them with.
+ */
+public class CustomerColumnarDataAccessService implements CustomerDAO, MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(CustomerColumnarDataAccessService.class);
+
+    static final int REFRESH_BATCH_SIZE = 1000;
+
+    private final CustomerDAO delegate;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Lock refreshLock = new ReentrantLock();
+    private CustomerColumns columns;
+    // writes made while a rebuild streams the table, replayed onto the new snapshot, the
+    // stream may have read their rows before they were written
+    private List<Consumer<CustomerColumns>> pendingWrites;
+    private Timer scanTimer;
+
+    public CustomerColumnarDataAccessService(CustomerDAO delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("customer.columnar.rows", this, dao -> dao.measure(CustomerColumns::rows))
+                .description("Customers held by the columnar snapshot")
+                .register(registry);
+        Gauge.builder("customer.columnar.off.heap", this, dao -> dao.measure(CustomerColumns::offHeapBytes))
+                .description("Direct memory allocated by the columnar snapshot")
+                .baseUnit("bytes")
+                .register(registry);
+        scanTimer = Timer.builder("customer.columnar.scan")
+                .description("Time spent filtering the columnar snapshot")
+                .register(registry);
+    }
+
+    @Scheduled(fixedDelayString = "${customer.columnar.rebuild-interval:PT1H}")
+    public void rebuild() {
+        refreshLock.lock();
+        try {
+            long start = System.nanoTime();
+            lock.writeLock().lock();
+            try {
+                pendingWrites = new ArrayList<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            CustomerColumns rebuilt = new CustomerColumns(REFRESH_BATCH_SIZE);
+            boolean streamed = false;
+            try {
+                delegate.forEachCustomer(rebuilt::append);
+                streamed = true;
+            } finally {
+                lock.writeLock().lock();
+                try {
+                    if (streamed) {
+                        pendingWrites.forEach(pending -> pending.accept(rebuilt));
+                        columns = rebuilt;
+                    }
+                    pendingWrites = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+            log.info("Rebuilt columnar customer snapshot with {} rows in {} ms",
+                    rebuilt.rows(), (System.nanoTime() - start) / 1_000_000);
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    @Scheduled(
+            initialDelayString = "${customer.columnar.refresh-interval:PT10S}",
+            fixedDelayString = "${customer.columnar.refresh-interval:PT10S}")
+    public void refresh() {
+        refreshLock.lock();
+        try {
+            if (!isBuilt()) {
+                rebuild();
+                return;
+            }
+            // rows committed out of id order are missed here until the next rebuild, which
+            // includes the ids other instances hand out from blocks they reserved earlier
+            int appended;
+            do {
+                List<Customer> customers = delegate.selectCustomersAfter(lastId(), REFRESH_BATCH_SIZE);
+                write(c -> customers.forEach(c::append));
+                appended = customers.size();
+            } while (appended == REFRESH_BATCH_SIZE);
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Customer> selectCustomers(CustomerFilter filter) {
+        lock.readLock().lock();
+        try {
+            if (columns == null) {
+                return delegate.selectCustomers(filter);
+            }
+            if (scanTimer == null) {
+                return columns.select(filter);
+            }
+            return scanTimer.record(() -> columns.select(filter));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return delegate.selectAllCustomers();
+    }
+
+    @Override
+    public long countCustomers() {
+        return delegate.countCustomers();
+    }
+
+    @Override
+    public CustomerStats selectCustomerStats() {
+        return delegate.selectCustomerStats();
+    }
+
+    @Override
+    public List<Customer> selectCustomersAfter(Integer afterId, int limit) {
+        return delegate.selectCustomersAfter(afterId, limit);
+    }
+
+    @Override
+    public void forEachCustomer(Consumer<Customer> action) {
+        delegate.forEachCustomer(action);
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Integer id) {
+        return delegate.selectCustomerById(id);
+    }
+
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Integer> ids) {
+        return delegate.selectCustomersByIds(ids);
+    }
+
+    @Override
+    public void insertCustomer(Customer customer) {
+        delegate.insertCustomer(customer);
+    }
+
+    @Override
+    public Optional<Integer> insertCustomerIfAbsent(Customer customer) {
+        return delegate.insertCustomerIfAbsent(customer);
+    }
+
+    @Override
+    public void insertCustomers(List<Customer> customers) {
+        delegate.insertCustomers(customers);
+    }
+
+    @Override
+    public List<Optional<Integer>> insertCustomersIfAbsent(List<Customer> customers) {
+        return delegate.insertCustomersIfAbsent(customers);
+    }
+
+    @Override
+    public boolean existsPersonWithEmail(String email) {
+        return delegate.existsPersonWithEmail(email);
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        return delegate.selectExistingEmails(emails);
+    }
+
+    @Override
+    public boolean existsPersonWithId(Integer id) {
+        return delegate.existsPersonWithId(id);
+    }
+
+    @Override
+    public Optional<Customer> deleteCustomerById(Integer id) {
+        Optional<Customer> deleted = delegate.deleteCustomerById(id);
+        deleted.ifPresent(customer -> write(c -> c.delete(customer.getId())));
+        return deleted;
+    }
+
+    @Override
+    public Optional<Customer> deleteCustomerById(Integer id, int expectedVersion) {
+        Optional<Customer> deleted = delegate.deleteCustomerById(id, expectedVersion);
+        deleted.ifPresent(customer -> write(c -> c.delete(customer.getId())));
+        return deleted;
+    }
+
+    @Override
+    public Optional<Customer> updateCustomer(Integer id, CustomerUpdateRequest changes) {
+        Optional<Customer> updated = delegate.updateCustomer(id, changes);
+        updated.ifPresent(customer -> write(c -> c.update(customer)));
+        return updated;
+    }
+
+    @Override
+    public Optional<Customer> updateCustomer(Integer id, CustomerUpdateRequest changes, int expectedVersion) {
+        Optional<Customer> updated = delegate.updateCustomer(id, changes, expectedVersion);
+        updated.ifPresent(customer -> write(c -> c.update(customer)));
+        return updated;
+    }
+
+    @Override
+    public long selectCustomersVersion() {
+        return delegate.selectCustomersVersion();
+    }
+
+    // also before the first build, which only falls back to the delegate at startup
+    @Override
+    public OptionalLong selectFilteredCustomersVersion() {
+        return OptionalLong.empty();
+    }
+
+    boolean isBuilt() {
+        return measure(c -> 1) > 0;
+    }
+
+    private int lastId() {
+        return (int) measure(CustomerColumns::lastId);
+    }
+
+    private double measure(ToDoubleFunction<CustomerColumns> metric) {
+        lock.readLock().lock();
+        try {
+            return columns == null ? 0 : metric.applyAsDouble(columns);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void write(Consumer<CustomerColumns> writer) {
+        lock.writeLock().lock();
+        try {
+            if (pendingWrites != null) {
+                pendingWrites.add(writer);
+            }
+            if (columns != null) {
+                writer.accept(columns);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package com.granados.customer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Customers stored column by column in direct (off-heap) buffers, sorted by id.
+ * Names and emails are UTF-8 bytes in a shared buffer addressed by offset and
+ * length. Not thread safe.
+ */
+class CustomerColumns {
+
+    private static final byte DELETED = -1;
+    private static final Gender[] GENDERS = Gender.values();
+    private static final int SCAN_CHUNK = 1024;
+
+    private IntBuffer ids;
+    private IntBuffer ages;
+    private IntBuffer versions;
+    private ByteBuffer genders;
+    private IntBuffer nameOffsets;
+    private IntBuffer nameLengths;
+    private IntBuffer emailOffsets;
+    private IntBuffer emailLengths;
+    private ByteBuffer strings;
+
+    private int rows;
+    private int stringBytes;
+    private int garbageBytes;
+
+    CustomerColumns(int expectedRows) {
+        int capacity = Math.max(expectedRows, 16);
+        ids = intColumn(capacity);
+        ages = intColumn(capacity);
+        versions = intColumn(capacity);
+        genders = ByteBuffer.allocateDirect(capacity);
+        nameOffsets = intColumn(capacity);
+        nameLengths = intColumn(capacity);
+        emailOffsets = intColumn(capacity);
+        emailLengths = intColumn(capacity);
+        strings = ByteBuffer.allocateDirect(capacity * 32);
+    }
+
+    int rows() {
+        return rows;
+    }
+
+    int lastId() {
+        return rows == 0 ? 0 : ids.get(rows - 1);
+    }
+
+    long offHeapBytes() {
+        return (long) ids.capacity() * Integer.BYTES * 7
+                + genders.capacity()
+                + strings.capacity();
+    }
+
+    int garbageBytes() {
+        return garbageBytes;
+    }
+
+    /**
+     * Appends a customer, ids must be appended in ascending order.
+     */
+    void append(Customer customer) {
+        if (customer.getId() <= lastId()) {
+            throw new IllegalArgumentException(
+                    "id %s is not after %s".formatted(customer.getId(), lastId()));
+        }
+        if (rows == ids.capacity()) {
+            growRows(rows * 2);
+        }
+        int row = rows++;
+        ids.put(row, customer.getId());
+        ages.put(row, customer.getAge());
+        versions.put(row, versionOf(customer));
+        genders.put(row, (byte) customer.getGender().ordinal());
+        setName(row, customer.getName());
+        setEmail(row, customer.getEmail());
+    }
+
+    boolean update(Customer customer) {
+        int row = rowOf(customer.getId());
+        if (row < 0) {
+            return false;
+        }
+        ages.put(row, customer.getAge());
+        versions.put(row, versionOf(customer));
+        genders.put(row, (byte) customer.getGender().ordinal());
+        if (!customer.getName().equals(string(nameOffsets.get(row), nameLengths.get(row)))) {
+            garbageBytes += nameLengths.get(row);
+            setName(row, customer.getName());
+        }
+        if (!customer.getEmail().equals(string(emailOffsets.get(row), emailLengths.get(row)))) {
+            garbageBytes += emailLengths.get(row);
+            setEmail(row, customer.getEmail());
+        }
+        return true;
+    }
+
+    boolean delete(int id) {
+        int row = rowOf(id);
+        if (row < 0) {
+            return false;
+        }
+        genders.put(row, DELETED);
+        garbageBytes += nameLengths.get(row) + emailLengths.get(row);
+        return true;
+    }
+
+    /**
+     * Returns the matching customers in the order of the filter. The scan only touches
+     * the age and gender columns, names and emails of the rows it finds are compared as
+     * UTF-8 bytes, and customers are materialized for the matching rows alone.
+     */
+    List<Customer> select(CustomerFilter filter) {
+        int[] matches = scan(filter);
+        byte[] namePrefix = filter.namePrefix() == null
+                ? null
+                : filter.namePrefix().getBytes(StandardCharsets.UTF_8);
+        byte[] email = filter.email() == null
+                ? null
+                : filter.email().getBytes(StandardCharsets.UTF_8);
+        List<Customer> customers = new ArrayList<>(matches.length);
+        for (int row : matches) {
+            if ((namePrefix == null || startsWith(nameOffsets.get(row), nameLengths.get(row), namePrefix))
+                    && (email == null || equals(emailOffsets.get(row), emailLengths.get(row), email))) {
+                customers.add(customerAt(row));
+            }
+        }
+        if (!filter.sort().equals(CustomerSort.BY_ID)) {
+            customers.sort(filter.sort().comparator());
+        }
+        if (filter.limit() != null && customers.size() > filter.limit()) {
+            return new ArrayList<>(customers.subList(0, filter.limit()));
+        }
+        return customers;
+    }
+
+    int[] scan(CustomerFilter filter) {
+        int minAge = filter.minAge() == null ? Integer.MIN_VALUE : filter.minAge();
+        int maxAge = filter.maxAge() == null ? Integer.MAX_VALUE : filter.maxAge();
+        if (minAge > maxAge) {
+            return new int[0];
+        }
+        // a single unsigned comparison checks both bounds of the age range
+        int span = maxAge - minAge;
+        int[] matches = new int[Math.min(rows, SCAN_CHUNK)];
+        int count = 0;
+        for (int start = 0; start < rows; start += SCAN_CHUNK) {
+            int end = Math.min(start + SCAN_CHUNK, rows);
+            if (matches.length - count < end - start) {
+                matches = Arrays.copyOf(matches, Math.max(matches.length * 2, count + SCAN_CHUNK));
+            }
+            // the loops write every row and only advance on a match, so there is no
+            // data dependent branch for the JIT to mispredict
+            if (filter.gender() == null) {
+                for (int row = start; row < end; row++) {
+                    boolean match = Integer.compareUnsigned(ages.get(row) - minAge, span) <= 0
+                            & genders.get(row) != DELETED;
+                    matches[count] = row;
+                    count += match ? 1 : 0;
+                }
+            } else {
+                byte gender = (byte) filter.gender().ordinal();
+                for (int row = start; row < end; row++) {
+                    boolean match = Integer.compareUnsigned(ages.get(row) - minAge, span) <= 0
+                            & genders.get(row) == gender;
+                    matches[count] = row;
+                    count += match ? 1 : 0;
+                }
+            }
+        }
+        return Arrays.copyOf(matches, count);
+    }
+
+    Customer customerAt(int row) {
+        return new Customer(
+                ids.get(row),
+                string(nameOffsets.get(row), nameLengths.get(row)),
+                string(emailOffsets.get(row), emailLengths.get(row)),
+                ages.get(row),
+                GENDERS[genders.get(row)],
+                versions.get(row));
+    }
+
+    private static int versionOf(Customer customer) {
+        return customer.getVersion() == null ? 0 : customer.getVersion();
+    }
+
+    private int rowOf(int id) {
+        int low = 0;
+        int high = rows - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midId = ids.get(mid);
+            if (midId < id) {
+                low = mid + 1;
+            } else if (midId > id) {
+                high = mid - 1;
+            } else {
+                return genders.get(mid) == DELETED ? -1 : mid;
+            }
+        }
+        return -1;
+    }
+
+    private void setName(int row, String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        nameOffsets.put(row, appendString(bytes));
+        nameLengths.put(row, bytes.length);
+    }
+
+    private void setEmail(int row, String email) {
+        byte[] bytes = email.getBytes(StandardCharsets.UTF_8);
+        emailOffsets.put(row, appendString(bytes));
+        emailLengths.put(row, bytes.length);
+    }
+
+    private int appendString(byte[] bytes) {
+        if (strings.capacity() - stringBytes < bytes.length) {
+            ByteBuffer grown = ByteBuffer.allocateDirect(
+                    Math.max(strings.capacity() * 2, stringBytes + bytes.length));
+            grown.put(0, strings, 0, stringBytes);
+            strings = grown;
+        }
+        int offset = stringBytes;
+        strings.put(offset, bytes);
+        stringBytes += bytes.length;
+        return offset;
+    }
+
+    private boolean startsWith(int offset, int length, byte[] prefix) {
+        return length >= prefix.length
+                && strings.slice(offset, prefix.length).equals(ByteBuffer.wrap(prefix));
+    }
+
+    private boolean equals(int offset, int length, byte[] value) {
+        return length == value.length && startsWith(offset, length, value);
+    }
+
+    private String string(int offset, int length) {
+        byte[] bytes = new byte[length];
+        strings.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void growRows(int capacity) {
+        ids = grow(ids, capacity);
+        ages = grow(ages, capacity);
+        versions = grow(versions, capacity);
+        nameOffsets = grow(nameOffsets, capacity);
+        nameLengths = grow(nameLengths, capacity);
+        emailOffsets = grow(emailOffsets, capacity);
+        emailLengths = grow(emailLengths, capacity);
+        ByteBuffer grownGenders = ByteBuffer.allocateDirect(capacity);
+        grownGenders.put(0, genders, 0, rows);
+        genders = grownGenders;
+    }
+
+    private IntBuffer grow(IntBuffer column, int capacity) {
+        IntBuffer grown = intColumn(capacity);
+        grown.put(0, column, 0, rows);
+        return grown;
+    }
+
+    private static IntBuffer intColumn(int capacity) {
+        return ByteBuffer.allocateDirect(capacity * Integer.BYTES)
+                .order(ByteOrder.nativeOrder())
+                .asIntBuffer();
+    }
+}
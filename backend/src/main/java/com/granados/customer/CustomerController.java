@@ -1,42 +1,261 @@
 package com.granados.customer;
 
+import com.granados.exception.PreconditionFailedException;
+import com.granados.exception.RequestValidationException;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.util.InvalidMimeTypeException;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.util.Comparator;
 import java.util.List;
+import java.util.OptionalLong;
 
 @RestController
+@Profile("!reactive")
 @RequestMapping("/api/v1/customers")
 public class CustomerController {
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+    static final String JSON_REPRESENTATION = "";
+    // in the order of the converters, see MessageConverterConfig
+    private static final List<MediaType> REPRESENTATIONS = List.of(
+            MediaType.APPLICATION_JSON,
+            MediaType.APPLICATION_CBOR,
+            new MediaType("application", "x-jackson-smile"));
+    private static final List<String> REPRESENTATION_TAGS = List.of(JSON_REPRESENTATION, "-cbor", "-smile");
+
     private final CustomerService service;
+    private final CustomerSearchService searchService;
+    private final CustomerStatsService statsService;
+    private final CustomerEventStream eventStream;
 
-    public CustomerController(CustomerService service) {
+    public CustomerController(CustomerService service,
+                              CustomerSearchService searchService,
+                              CustomerStatsService statsService,
+                              CustomerEventStream eventStream) {
         this.service = service;
+        this.searchService = searchService;
+        this.statsService = statsService;
+        this.eventStream = eventStream;
     }
 
     @GetMapping
-    public List<Customer> getCustomers() {
-        return service.getAllCustomers();
+    public ResponseEntity<List<Customer>> getCustomers(
+            @RequestParam(value = "after", required = false) Integer after,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "minAge", required = false) Integer minAge,
+            @RequestParam(value = "maxAge", required = false) Integer maxAge,
+            @RequestParam(value = "gender", required = false) Gender gender,
+            @RequestParam(value = "name", required = false) String namePrefix,
+            @RequestParam(value = "email", required = false) String email,
+            @RequestParam(value = "sort", required = false) String sort,
+            WebRequest webRequest) {
+        boolean filtered = minAge != null || maxAge != null || gender != null
+                || namePrefix != null || email != null || sort != null;
+        if(filtered && after != null){
+            throw new RequestValidationException(
+                    "after cannot be combined with filters or sort");
+        }
+        CustomerSort customerSort = CustomerSort.parse(sort);
+
+        // read before the list, so a concurrent write can only make the tag older than the body
+        OptionalLong version = filtered
+                ? service.getFilteredCustomersVersion()
+                : OptionalLong.of(service.getCustomersVersion());
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .varyBy(HttpHeaders.ACCEPT)
+                .cacheControl(CacheControl.noCache());
+        if(version.isPresent()){
+            String eTag = customersETag(version.getAsLong(), representation(webRequest));
+            if(notModified(webRequest, eTag)){
+                return null;
+            }
+            response.eTag(eTag);
+        }
+
+        if(filtered){
+            return response.body(
+                    service.getCustomers(new CustomerFilter(
+                            namePrefix, email, minAge, maxAge, gender, customerSort, limit)));
+        }
+        if(after == null && limit == null){
+            return response.body(service.getAllCustomers());
+        }
+
+        CustomerPage page = service.getCustomers(after, limit);
+        if(page.nextCursor() != null){
+            response.header(NEXT_CURSOR_HEADER, page.nextCursor().toString());
+        }
+        return response.body(page.customers());
+    }
+
+    @GetMapping("search")
+    public List<Customer> searchCustomers(
+            @RequestParam("q") String query,
+            @RequestParam(value = "limit", required = false) Integer limit) {
+        return searchService.search(query, limit);
+    }
+
+    @GetMapping("stats")
+    public CustomerStats getCustomerStats() {
+        return statsService.getStats();
+    }
+
+    @GetMapping(value = "export", produces = APPLICATION_NDJSON_VALUE)
+    public StreamingResponseBody exportCustomers() {
+        return outputStream -> {
+            CustomerJsonWriter writer = new CustomerJsonWriter(outputStream);
+            service.exportCustomers(customer -> {
+                try {
+                    writer.writeCustomer(customer);
+                    writer.writeByte('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.flush();
+        };
+    }
+
+    @GetMapping(value = "events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter customerEvents(
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return eventStream.subscribe(lastEventId);
     }
 
     @GetMapping("{id}")
-    public Customer getCustomer(@PathVariable("id") Integer id) {
-        return service.getCustomer(id);
+    public ResponseEntity<Customer> getCustomer(@PathVariable("id") Integer id,
+                                                WebRequest webRequest) {
+        Customer customer = service.getCustomer(id);
+        String eTag = customerETag(customer, representation(webRequest));
+        if(notModified(webRequest, eTag)){
+            return null;
+        }
+        return ResponseEntity.ok()
+                .eTag(eTag)
+                .varyBy(HttpHeaders.ACCEPT)
+                .cacheControl(CacheControl.noCache())
+                .body(customer);
     }
 
     @PostMapping
-    public void registerCustomer(
+    public ResponseEntity<Integer> registerCustomer(
             @RequestBody CustomerRegistrationRequest customerRequest){
-        service.addCustomer(customerRequest);
+        Integer id = service.addCustomer(customerRequest);
+        URI location = ServletUriComponentsBuilder.fromCurrentRequest()
+                .path("/{id}")
+                .buildAndExpand(id)
+                .toUri();
+        return ResponseEntity.ok()
+                .location(location)
+                .body(id);
+    }
+
+    @PostMapping("batch")
+    public List<CustomerRegistrationResult> registerCustomers(
+            @RequestBody List<CustomerRegistrationRequest> customerRequests){
+        return service.addCustomers(customerRequests);
     }
 
     @PutMapping("{id}")
-    public void editCustomer(@PathVariable("id") Integer id,
+    public ResponseEntity<Void> editCustomer(@PathVariable("id") Integer id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             @RequestBody CustomerUpdateRequest customerRequest){
-        service.updateCustomer(id, customerRequest);
+        Customer updated = service.updateCustomer(id, customerRequest, expectedVersion(ifMatch));
+        return ResponseEntity.ok()
+                .eTag(customerETag(updated, JSON_REPRESENTATION))
+                .build();
     }
 
     @DeleteMapping("{id}")
-    public void deleteCustomer(@PathVariable("id") Integer id){
-        service.deleteCustomerById(id);
+    public void deleteCustomer(@PathVariable("id") Integer id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch){
+        service.deleteCustomerById(id, expectedVersion(ifMatch));
+    }
+
+    // strong, so it can be used with If-Match
+    static String customerETag(Customer customer, String representation) {
+        return "\"" + customer.getVersion() + representation + "\"";
+    }
+
+    // weak, it comes from the table version rather than from the bytes of the body
+    static String customersETag(long version, String representation) {
+        return "W/\"" + version + representation + "\"";
+    }
+
+    /**
+     * Returns the tag suffix of the format content negotiation will write the body in.
+     * The same version is sent as JSON, CBOR or Smile, and a validator must tell them
+     * apart, or a shared cache could answer a JSON client with a revalidated CBOR body.
+     * Like the converters JSON comes first, so it wins whenever the client accepts it
+     * as much as the others.
+     */
+    static String representation(WebRequest webRequest) {
+        List<MediaType> accepted;
+        try {
+            accepted = MediaType.parseMediaTypes(webRequest.getHeader(HttpHeaders.ACCEPT));
+            // the sort is stable, so the most specific type comes first among equal qualities
+            MimeTypeUtils.sortBySpecificity(accepted);
+        } catch (InvalidMediaTypeException | InvalidMimeTypeException e) {
+            // negotiation turns the request down itself
+            return JSON_REPRESENTATION;
+        }
+        accepted.sort(Comparator.comparingDouble(MediaType::getQualityValue).reversed());
+        for(MediaType mediaType : accepted){
+            for(int i = 0; i < REPRESENTATIONS.size(); i++){
+                if(mediaType.isCompatibleWith(REPRESENTATIONS.get(i))){
+                    return REPRESENTATION_TAGS.get(i);
+                }
+            }
+        }
+        return JSON_REPRESENTATION;
+    }
+
+    // the 304 needs the Vary header as much as the 200
+    private static boolean notModified(WebRequest webRequest, String eTag) {
+        if(webRequest instanceof ServletWebRequest servletWebRequest
+                && servletWebRequest.getResponse() != null){
+            servletWebRequest.getResponse().addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        }
+        return webRequest.checkNotModified(eTag);
+    }
+
+    static Integer expectedVersion(String ifMatch) {
+        if(ifMatch == null || ifMatch.isBlank() || ifMatch.strip().equals("*")){
+            return null;
+        }
+        // weak or unknown tags never match a strong comparison
+        String tag = ifMatch.strip();
+        if(tag.length() > 2 && tag.startsWith("\"") && tag.endsWith("\"")){
+            String opaque = tag.substring(1, tag.length() - 1);
+            // every representation of the customer carries its version
+            for(String representation : REPRESENTATION_TAGS){
+                if(!representation.isEmpty() && opaque.endsWith(representation)){
+                    opaque = opaque.substring(0, opaque.length() - representation.length());
+                    break;
+                }
+            }
+            try {
+                return Integer.valueOf(opaque);
+            } catch (NumberFormatException ignored) {
+                // falls through to the precondition failure
+            }
+        }
+        throw new PreconditionFailedException(
+                "If-Match %s does not match the current entity tag".formatted(ifMatch));
     }
 }
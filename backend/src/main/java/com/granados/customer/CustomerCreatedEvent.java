@@ -0,0 +1,10 @@
+package com.granados.customer;
+
+import java.util.List;
+
+/**
+ * Published by {@link CustomerService} once customers were registered, with the ids the
+ * DAO assigned. Listeners fall back to reading the rows back for customers without one.
+ */
+public record CustomerCreatedEvent(List<Customer> customers) {
+}
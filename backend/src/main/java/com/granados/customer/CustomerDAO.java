@@ -1,14 +1,45 @@
 package com.granados.customer;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public interface CustomerDAO {
     List<Customer> selectAllCustomers();
+    long countCustomers();
+    CustomerStats selectCustomerStats();
+    List<Customer> selectCustomersAfter(Integer afterId, int limit);
+    List<Customer> selectCustomers(CustomerFilter filter);
+    void forEachCustomer(Consumer<Customer> action);
     Optional<Customer> selectCustomerById(Integer id);
+    List<Customer> selectCustomersByIds(Collection<Integer> ids);
     void insertCustomer(Customer customer);
+    Optional<Integer> insertCustomerIfAbsent(Customer customer);
+    /**
+     * Inserts the customers whose email is not taken yet in a single transaction. The
+     * result has the id of every inserted customer, or empty where the email was taken
+     * (also by an earlier customer of the same list), in the order of the customers.
+     */
+    List<Optional<Integer>> insertCustomersIfAbsent(List<Customer> customers);
+    /**
+     * Inserts the customers in a single transaction and sets their generated ids.
+     */
+    void insertCustomers(List<Customer> customers);
     boolean existsPersonWithEmail(String email);
+    Set<String> selectExistingEmails(Collection<String> emails);
     boolean existsPersonWithId(Integer id);
-    void deleteCustomerById(Integer id);
-    void updateCustomer(Customer editedCustomer);
+    Optional<Customer> deleteCustomerById(Integer id);
+    Optional<Customer> deleteCustomerById(Integer id, int expectedVersion);
+    Optional<Customer> updateCustomer(Integer id, CustomerUpdateRequest changes);
+    Optional<Customer> updateCustomer(Integer id, CustomerUpdateRequest changes, int expectedVersion);
+    long selectCustomersVersion();
+    /**
+     * Returns the version {@link #selectCustomers(CustomerFilter)} answers at, or empty
+     * when it answers from a copy of the table that does not follow
+     * {@link #selectCustomersVersion()}.
+     */
+    OptionalLong selectFilteredCustomersVersion();
 }
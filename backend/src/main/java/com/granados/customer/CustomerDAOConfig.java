@@ -0,0 +1,108 @@
+package com.granados.customer;
+
+import com.granados.jdbc.SqlProfiler;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.Set;
+
+@Configuration
+public class CustomerDAOConfig {
+
+    private static final Set<String> PROFILED_DAOS = Set.of("jdbc", "jpa");
+
+    // below every decorator, so the profile shows the time spent on the database
+    @Bean
+    @ConditionalOnProperty(name = "sql.profiler.enabled", havingValue = "true", matchIfMissing = true)
+    public static BeanPostProcessor profilingCustomerDAOPostProcessor(ObjectProvider<SqlProfiler> sqlProfiler) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+                if (bean instanceof CustomerDAO customerDAO && PROFILED_DAOS.contains(beanName)) {
+                    return new ProfilingCustomerDAO(customerDAO, sqlProfiler.getObject());
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "customer.group-commit.enabled", havingValue = "true")
+    public GroupCommitCustomerDAO groupCommitCustomerDAO(
+            @Qualifier("jdbc") CustomerDAO jdbcCustomerDAO,
+            @Value("${customer.group-commit.max-batch-size:256}") int maxBatchSize,
+            @Value("${customer.group-commit.max-delay:500us}") Duration maxDelay,
+            @Value("${customer.group-commit.queue-capacity:10000}") int queueCapacity,
+            MeterRegistry meterRegistry) {
+        return new GroupCommitCustomerDAO(
+                jdbcCustomerDAO, maxBatchSize, maxDelay, queueCapacity, meterRegistry);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "customer.columnar.enabled", havingValue = "true")
+    public CustomerColumnarDataAccessService columnarCustomerDAO(
+            @Qualifier("jdbc") CustomerDAO jdbcCustomerDAO,
+            ObjectProvider<GroupCommitCustomerDAO> groupCommitCustomerDAO) {
+        return new CustomerColumnarDataAccessService(
+                firstAvailable(jdbcCustomerDAO, groupCommitCustomerDAO));
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "customer.email-filter.enabled", havingValue = "true")
+    public BloomFilterCustomerDAO bloomFilterCustomerDAO(
+            @Qualifier("jdbc") CustomerDAO jdbcCustomerDAO,
+            ObjectProvider<GroupCommitCustomerDAO> groupCommitCustomerDAO,
+            ObjectProvider<CustomerColumnarDataAccessService> columnarCustomerDAO,
+            @Value("${customer.email-filter.false-positive-rate:0.01}") double falsePositiveRate,
+            MeterRegistry meterRegistry) {
+        return new BloomFilterCustomerDAO(
+                firstAvailable(jdbcCustomerDAO, columnarCustomerDAO, groupCommitCustomerDAO),
+                falsePositiveRate,
+                meterRegistry);
+    }
+
+    @Bean
+    public CustomerDAO customerDAO(
+            @Qualifier("jdbc") CustomerDAO jdbcCustomerDAO,
+            ObjectProvider<GroupCommitCustomerDAO> groupCommitCustomerDAO,
+            ObjectProvider<CustomerColumnarDataAccessService> columnarCustomerDAO,
+            ObjectProvider<BloomFilterCustomerDAO> bloomFilterCustomerDAO,
+            @Value("${customer.cache.enabled:false}") boolean cacheEnabled,
+            @Value("${customer.cache.maximum-size:10000}") long cacheMaximumSize,
+            @Value("${customer.cache.ttl:5m}") Duration cacheTtl,
+            @Value("${customer.cache.negative-ttl:30s}") Duration cacheNegativeTtl,
+            MeterRegistry meterRegistry) {
+        CustomerDAO customerDAO = firstAvailable(
+                jdbcCustomerDAO, bloomFilterCustomerDAO, columnarCustomerDAO, groupCommitCustomerDAO);
+        if (!cacheEnabled) {
+            return customerDAO;
+        }
+
+        CachingCustomerDAO cachingCustomerDAO = new CachingCustomerDAO(
+                customerDAO, cacheMaximumSize, cacheTtl, cacheNegativeTtl);
+        CaffeineCacheMetrics.monitor(meterRegistry, cachingCustomerDAO.cache(), "customers");
+        return cachingCustomerDAO;
+    }
+
+    // the optional decorators are built on top of each other, the outermost one wins
+    @SafeVarargs
+    private static CustomerDAO firstAvailable(CustomerDAO fallback,
+                                              ObjectProvider<? extends CustomerDAO>... customerDAOs) {
+        for (ObjectProvider<? extends CustomerDAO> customerDAO : customerDAOs) {
+            CustomerDAO available = customerDAO.getIfAvailable();
+            if (available != null) {
+                return available;
+            }
+        }
+        return fallback;
+    }
+}
@@ -0,0 +1,7 @@
+package com.granados.customer;
+
+/**
+ * Published by {@link CustomerService} once a customer was deleted.
+ */
+public record CustomerDeletedEvent(Customer customer) {
+}
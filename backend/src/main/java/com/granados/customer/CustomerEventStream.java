@@ -0,0 +1,363 @@
+package com.granados.customer;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Pushes the customers {@link CustomerService} creates, updates and deletes to subscribed
+ * clients as server-sent events, so they can keep their copy of the list current instead
+ * of downloading it again after every write.
+ * <p>
+ * Each change is serialized once and kept in a {@link CustomerChangeBuffer}. A client that
+ * reconnects with {@code Last-Event-ID} is sent the changes it missed, or a {@code reset}
+ * event when they are no longer buffered, after which it should reload the list. New
+ * subscribers get a {@code ready} event first, with the id to resume from.
+ * <p>
+ * Changes are published in the order their listeners ran, which is not always the order
+ * they were committed in, so every customer is sent with its version. A client should
+ * ignore an update older than the customer it holds, and one for a customer it does not
+ * hold, which may have been deleted already.
+ * <p>
+ * Changes are queued per subscriber and written by a small pool of writer threads, so a
+ * slow client holds up neither the request that made the change nor the other clients.
+ * A subscriber whose queue fills up, or whose write has been stuck for longer than the
+ * send timeout, is dropped. Its client reconnects with the last id it got and is sent what
+ * it missed, or a reset.
+ */
+@Component
+@Profile("!reactive")
+public class CustomerEventStream implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(CustomerEventStream.class);
+
+    static final String READY = "ready";
+    static final String CREATED = "created";
+    static final String UPDATED = "updated";
+    static final String DELETED = "deleted";
+    static final String RESET = "reset";
+
+    // queued like a change, sent as a comment
+    private static final CustomerChangeBuffer.Change HEARTBEAT =
+            new CustomerChangeBuffer.Change(null, null, null);
+
+    private final ObjectMapper objectMapper;
+    private final int subscriberQueueSize;
+    private final long sendTimeoutNanos;
+    // guards the buffer and the subscribers, never held while writing to a client
+    private final Lock lock = new ReentrantLock();
+    private final CustomerChangeBuffer buffer;
+    private final List<Subscriber> subscribers = new ArrayList<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final ThreadPoolExecutor writers;
+
+    public CustomerEventStream(ObjectMapper objectMapper,
+                               MeterRegistry meterRegistry,
+                               @Value("${customer.events.buffer-size:1024}") int bufferSize,
+                               @Value("${customer.events.subscriber-queue-size:256}") int subscriberQueueSize,
+                               @Value("${customer.events.send-timeout:10s}") Duration sendTimeout,
+                               @Value("${customer.events.writer-threads:4}") int writerThreads,
+                               @Value("${customer.events.writer-queue-capacity:1024}") int writerQueueCapacity) {
+        this.objectMapper = objectMapper;
+        this.subscriberQueueSize = subscriberQueueSize;
+        this.sendTimeoutNanos = sendTimeout.toNanos();
+        this.buffer = new CustomerChangeBuffer(
+                UUID.randomUUID().toString().substring(0, 8), bufferSize);
+        AtomicInteger threadCount = new AtomicInteger();
+        // a subscriber is queued at most once, the capacity bounds the clients waiting for a writer
+        this.writers = new ThreadPoolExecutor(
+                writerThreads, writerThreads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(writerQueueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "customer-events-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.writers.allowCoreThreadTimeOut(true);
+        Gauge.builder("customer.events.subscribers", subscriberCount, AtomicInteger::get)
+                .description("Clients subscribed to customer changes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Subscribes a client, resuming after {@code lastEventId} when it is given.
+     */
+    public SseEmitter subscribe(String lastEventId) {
+        // no timeout of its own, the async request timeout ends it and the client reconnects
+        SseEmitter emitter = new SseEmitter();
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onTimeout(emitter::complete);
+        lock.lock();
+        try {
+            CustomerChangeBuffer.Change reset =
+                    new CustomerChangeBuffer.Change(buffer.lastEventId(), RESET, "{}");
+            List<CustomerChangeBuffer.Change> first = lastEventId == null || lastEventId.isBlank()
+                    ? List.of(new CustomerChangeBuffer.Change(buffer.lastEventId(), READY, "{}"))
+                    : buffer.changesSince(lastEventId).orElseGet(() -> List.of(reset));
+            if (first.size() > subscriberQueueSize) {
+                first = List.of(reset);
+            }
+            for (CustomerChangeBuffer.Change change : first) {
+                if (!subscriber.offer(change)) {
+                    subscriber.close();
+                    return emitter;
+                }
+            }
+            subscribers.add(subscriber);
+            subscriberCount.incrementAndGet();
+        } finally {
+            lock.unlock();
+        }
+        return emitter;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCreated(CustomerCreatedEvent event) {
+        // customers a DAO did not set the ids of could not be applied by clients, so they
+        // are told to reload instead
+        boolean withIds = event.customers().stream().allMatch(customer -> customer.getId() != null);
+        if (!withIds) {
+            publish(RESET, null);
+            return;
+        }
+        ArrayNode customers = objectMapper.createArrayNode();
+        event.customers().forEach(customer -> customers.add(withVersion(customer)));
+        publish(CREATED, customers);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUpdated(CustomerUpdatedEvent event) {
+        publish(UPDATED, withVersion(event.current()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDeleted(CustomerDeletedEvent event) {
+        publish(DELETED, withVersion(event.customer()));
+    }
+
+    // the version is left out of customer bodies, which carry it in the ETag
+    private ObjectNode withVersion(Customer customer) {
+        ObjectNode node = objectMapper.valueToTree(customer);
+        node.put("version", customer.getVersion());
+        return node;
+    }
+
+    // proxies close connections that stay quiet, and a comment finds the clients that left;
+    // clients whose write has not returned within the send timeout are dropped here
+    @Scheduled(fixedDelayString = "${customer.events.heartbeat-interval:PT15S}")
+    public void heartbeat() {
+        long now = System.nanoTime();
+        lock.lock();
+        try {
+            for (Subscriber subscriber : List.copyOf(subscribers)) {
+                if (subscriber.sendingLongerThan(now, sendTimeoutNanos) || !subscriber.offer(HEARTBEAT)) {
+                    drop(subscriber);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        lock.lock();
+        try {
+            subscribers.forEach(Subscriber::close);
+            subscribers.clear();
+            subscriberCount.set(0);
+        } finally {
+            lock.unlock();
+        }
+        writers.shutdown();
+    }
+
+    private void publish(String type, Object payload) {
+        String data;
+        try {
+            data = payload == null ? "{}" : objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+        lock.lock();
+        try {
+            CustomerChangeBuffer.Change change = buffer.append(type, data);
+            for (Subscriber subscriber : List.copyOf(subscribers)) {
+                if (!subscriber.offer(change)) {
+                    drop(subscriber);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // holding the lock
+    private void drop(Subscriber subscriber) {
+        log.debug("Dropping customer event subscriber that can not keep up");
+        if (subscribers.remove(subscriber)) {
+            subscriberCount.decrementAndGet();
+        }
+        subscriber.close();
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        lock.lock();
+        try {
+            if (subscribers.remove(subscriber)) {
+                subscriberCount.decrementAndGet();
+            }
+        } finally {
+            lock.unlock();
+        }
+        subscriber.completed();
+    }
+
+    private static SseEmitter.SseEventBuilder event(CustomerChangeBuffer.Change change) {
+        if (change == HEARTBEAT) {
+            return SseEmitter.event().comment("heartbeat");
+        }
+        return SseEmitter.event()
+                .id(change.id())
+                .name(change.type())
+                .data(change.data());
+    }
+
+    /**
+     * The changes waiting to be written to one client. At most one writer drains it at a
+     * time, so the client gets them in order.
+     */
+    private final class Subscriber implements Runnable {
+
+        private final SseEmitter emitter;
+        private final Queue<CustomerChangeBuffer.Change> queue = new ArrayDeque<>();
+        // the writer has the subscriber, queued or running
+        private boolean scheduled;
+        // no more changes are taken, the writer completes the emitter
+        private boolean closed;
+        // the emitter is completed, nothing is left to do
+        private boolean completed;
+        // when the write in progress started, 0 between writes
+        private volatile long sendingSince;
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        // returns false when the client can not keep up
+        synchronized boolean offer(CustomerChangeBuffer.Change change) {
+            if (closed) {
+                return true;
+            }
+            if (queue.size() >= subscriberQueueSize) {
+                return false;
+            }
+            queue.add(change);
+            return schedule();
+        }
+
+        synchronized void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            queue.clear();
+            // completing waits for a write in progress, so it is left to the writer
+            schedule();
+        }
+
+        synchronized void completed() {
+            closed = true;
+            completed = true;
+            queue.clear();
+        }
+
+        boolean sendingLongerThan(long now, long nanos) {
+            long since = sendingSince;
+            return since != 0 && now - since > nanos;
+        }
+
+        private boolean schedule() {
+            if (scheduled || completed) {
+                return true;
+            }
+            try {
+                writers.execute(this);
+                scheduled = true;
+                return true;
+            } catch (RejectedExecutionException e) {
+                // every writer is busy and the backlog is full, or shutting down; a client
+                // that is not completed here is ended by the async request timeout
+                return false;
+            }
+        }
+
+        @Override
+        public void run() {
+            CustomerChangeBuffer.Change change;
+            while ((change = next()) != null) {
+                sendingSince = System.nanoTime();
+                try {
+                    emitter.send(event(change));
+                } catch (IOException | IllegalStateException e) {
+                    // the client went away or the request timed out
+                    log.debug("Dropping customer event subscriber", e);
+                    emitter.completeWithError(e);
+                    unsubscribe(this);
+                    return;
+                } finally {
+                    sendingSince = 0;
+                }
+            }
+            if (complete()) {
+                emitter.complete();
+            }
+        }
+
+        private synchronized CustomerChangeBuffer.Change next() {
+            CustomerChangeBuffer.Change change = closed ? null : queue.poll();
+            if (change == null) {
+                scheduled = false;
+            }
+            return change;
+        }
+
+        // returns true once, when the writer should complete a closed emitter
+        private synchronized boolean complete() {
+            if (!closed || completed) {
+                return false;
+            }
+            completed = true;
+            return true;
+        }
+    }
+}
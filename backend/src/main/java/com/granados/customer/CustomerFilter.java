@@ -0,0 +1,54 @@
+package com.granados.customer;
+
+public record CustomerFilter(
+        String namePrefix,
+        String email,
+        Integer minAge,
+        Integer maxAge,
+        Gender gender,
+        CustomerSort sort,
+        // the most customers to return, in the sort order, or null for every match
+        Integer limit) {
+
+    public CustomerFilter {
+        if (sort == null) {
+            sort = CustomerSort.BY_ID;
+        }
+    }
+
+    public CustomerFilter(String namePrefix,
+                          String email,
+                          Integer minAge,
+                          Integer maxAge,
+                          Gender gender,
+                          CustomerSort sort) {
+        this(namePrefix, email, minAge, maxAge, gender, sort, null);
+    }
+
+    public CustomerFilter(Integer minAge, Integer maxAge, Gender gender) {
+        this(null, null, minAge, maxAge, gender, CustomerSort.BY_ID);
+    }
+
+    public CustomerFilter withLimit(Integer limit) {
+        return new CustomerFilter(namePrefix, email, minAge, maxAge, gender, sort, limit);
+    }
+
+    public boolean matches(Customer customer) {
+        return (namePrefix == null || customer.getName().startsWith(namePrefix))
+                && (email == null || customer.getEmail().equals(email))
+                && (minAge == null || customer.getAge() >= minAge)
+                && (maxAge == null || customer.getAge() <= maxAge)
+                && (gender == null || customer.getGender() == gender);
+    }
+
+    /**
+     * Returns the name prefix as a LIKE pattern, with the wildcards it contains
+     * escaped by a backslash.
+     */
+    String namePattern() {
+        return namePrefix
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_") + "%";
+    }
+}
@@ -0,0 +1,74 @@
+package com.granados.customer;
+
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Collection;
+
+/**
+ * Writes {@link Customer} and collections of customers as JSON with a
+ * {@link CustomerJsonWriter} instead of Jackson. It only writes, request bodies and
+ * every other type are left to the Jackson converter behind it.
+ */
+public class CustomerHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+
+    public CustomerHttpMessageConverter() {
+        super(MediaType.APPLICATION_JSON);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return Customer.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        if (type == null || supports(clazz)) {
+            return canWrite(clazz, mediaType);
+        }
+        // raw or wildcard collections may hold anything, those go to Jackson
+        Class<?> element = ResolvableType.forType(type).asCollection().resolveGeneric(0);
+        return element != null && Customer.class.isAssignableFrom(element) && canWrite(mediaType);
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected void writeInternal(Object body, Type type, HttpOutputMessage outputMessage)
+            throws IOException {
+        CustomerJsonWriter writer = new CustomerJsonWriter(outputMessage.getBody());
+        if (body instanceof Collection<?> customers) {
+            @SuppressWarnings("unchecked")
+            Collection<Customer> typed = (Collection<Customer>) customers;
+            writer.writeCustomers(typed);
+        } else {
+            writer.writeCustomer((Customer) body);
+        }
+        writer.flush();
+    }
+
+    // canRead is always false, so Spring never calls these
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Customers are only read by Jackson", inputMessage);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Customers are only read by Jackson", inputMessage);
+    }
+}
@@ -0,0 +1,77 @@
+package com.granados.customer;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hands out customer ids from blocks of {@link #BLOCK_SIZE} reserved with a single
+ * {@code nextval}, the pooled-lo scheme Hibernate uses for {@link Customer#getId()}:
+ * the sequence moves by the block size (see V6), and the value it returns is the first
+ * id of a block nobody else is given. The JPA generator, this allocator and inserts that
+ * fall back to the column default can therefore share the sequence.
+ * <p>
+ * Ids a caller took but did not insert (a taken email, a rolled back batch) are skipped,
+ * like any sequence value.
+ */
+@Component
+public class CustomerIdAllocator {
+
+    // the INCREMENT BY of customer_id_seq, and the allocationSize of the JPA generator
+    public static final int BLOCK_SIZE = 50;
+
+    private final JdbcTemplate template;
+    private final Lock lock = new ReentrantLock();
+    private long next;
+    private long end;
+
+    public CustomerIdAllocator(JdbcTemplate template) {
+        this.template = template;
+    }
+
+    public int nextId() {
+        return nextIds(1)[0];
+    }
+
+    /**
+     * Returns {@code count} unused ids, fetching every block that is missing in one round
+     * trip.
+     */
+    public int[] nextIds(int count) {
+        int[] ids = new int[count];
+        lock.lock();
+        try {
+            int taken = take(ids, 0);
+            if (taken < count) {
+                int blocks = (count - taken + BLOCK_SIZE - 1) / BLOCK_SIZE;
+                for (long start : fetchBlocks(blocks)) {
+                    next = start;
+                    end = start + BLOCK_SIZE;
+                    taken = take(ids, taken);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        return ids;
+    }
+
+    private int take(int[] ids, int from) {
+        int taken = from;
+        while (taken < ids.length && next < end) {
+            ids[taken++] = Math.toIntExact(next++);
+        }
+        return taken;
+    }
+
+    private List<Long> fetchBlocks(int blocks) {
+        var sql = """
+                SELECT nextval('customer_id_seq')
+                FROM generate_series(1, ?)
+                """;
+        return template.queryForList(sql, Long.class, blocks);
+    }
+}
@@ -0,0 +1,381 @@
+package com.granados.customer;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+
+/**
+ * In-memory {@link CustomerDAO}. Customers are spread over lock striped
+ * {@link IntObjectHashMap}s by id, reads are optimistic and only fall back to a
+ * read lock when they race with a write, and emails are indexed in a
+ * {@link ConcurrentHashMap} that also enforces their uniqueness. Names are kept in
+ * a sorted index so prefix filters only visit the customers they can match.
+ */
+@Repository("list")
+public class CustomerInMemoryDataAccessService implements CustomerDAO {
+
+    static final int STRIPES = 64;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final ConcurrentHashMap<String, Integer> idsByEmail = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<NameKey> idsByName = new ConcurrentSkipListSet<>();
+    private final AtomicInteger lastId = new AtomicInteger();
+    private final AtomicLong tableVersion = new AtomicLong();
+
+    public CustomerInMemoryDataAccessService() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+        insertCustomer(new Customer("German", "german@gmail.com", 39, Gender.MALE));
+        insertCustomer(new Customer("Mateo", "mateo@gmail.com", 12, Gender.MALE));
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        List<Customer> customers = new ArrayList<>();
+        for (Stripe stripe : stripes) {
+            stripe.copyValuesTo(customers);
+        }
+        customers.sort(Comparator.comparing(Customer::getId));
+        return customers;
+    }
+
+    @Override
+    public long countCustomers() {
+        return size();
+    }
+
+    @Override
+    public CustomerStats selectCustomerStats() {
+        CustomerStats.Builder stats = CustomerStats.builder();
+        forEachCustomer(customer -> stats.add(customer.getGender(), customer.getAge(), 1));
+        return stats.build();
+    }
+
+    @Override
+    public List<Customer> selectCustomersAfter(Integer afterId, int limit) {
+        // ids come from a counter, so walking them in order is cheaper than
+        // sorting the whole store as long as not too many rows were deleted
+        List<Customer> customers = new ArrayList<>(Math.min(limit, size()));
+        int maxId = lastId.get();
+        for (int id = Math.max(afterId, 0) + 1;
+             id > 0 && id <= maxId && customers.size() < limit;
+             id++) {
+            Customer customer = stripeFor(id).get(id);
+            if (customer != null) {
+                customers.add(copyOf(customer));
+            }
+        }
+        return customers;
+    }
+
+    @Override
+    public List<Customer> selectCustomers(CustomerFilter filter) {
+        List<Customer> customers = new ArrayList<>();
+        Consumer<Customer> collector = customer -> {
+            if (filter.matches(customer)) {
+                customers.add(customer);
+            }
+        };
+        if (filter.email() != null) {
+            Integer id = idsByEmail.get(filter.email());
+            if (id != null) {
+                selectCustomerById(id).ifPresent(collector);
+            }
+        } else if (filter.namePrefix() != null) {
+            forEachCustomerWithNamePrefix(filter.namePrefix(), collector);
+        } else {
+            forEachCustomer(collector);
+        }
+        customers.sort(filter.sort().comparator());
+        if (filter.limit() != null && customers.size() > filter.limit()) {
+            return new ArrayList<>(customers.subList(0, filter.limit()));
+        }
+        return customers;
+    }
+
+    private void forEachCustomerWithNamePrefix(String prefix, Consumer<Customer> action) {
+        for (NameKey key : idsByName.tailSet(new NameKey(prefix, Integer.MIN_VALUE))) {
+            if (!key.name().startsWith(prefix)) {
+                return;
+            }
+            Customer customer = stripeFor(key.id()).get(key.id());
+            // a renamed customer is briefly indexed under both names
+            if (customer != null && customer.getName().equals(key.name())) {
+                action.accept(copyOf(customer));
+            }
+        }
+    }
+
+    @Override
+    public void forEachCustomer(Consumer<Customer> action) {
+        int maxId = lastId.get();
+        for (int id = 1; id > 0 && id <= maxId; id++) {
+            Customer customer = stripeFor(id).get(id);
+            if (customer != null) {
+                action.accept(copyOf(customer));
+            }
+        }
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Integer id) {
+        Customer customer = stripeFor(id).get(id);
+        return customer == null ? Optional.empty() : Optional.of(copyOf(customer));
+    }
+
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Integer> ids) {
+        List<Customer> customers = new ArrayList<>(ids.size());
+        for (Integer id : ids) {
+            Customer customer = stripeFor(id).get(id);
+            if (customer != null) {
+                customers.add(copyOf(customer));
+            }
+        }
+        return customers;
+    }
+
+    @Override
+    public void insertCustomer(Customer customer) {
+        if (insertCustomerIfAbsent(customer).isEmpty()) {
+            throw new DuplicateKeyException("email already taken");
+        }
+    }
+
+    @Override
+    public Optional<Integer> insertCustomerIfAbsent(Customer customer) {
+        int id = lastId.incrementAndGet();
+        if (idsByEmail.putIfAbsent(customer.getEmail(), id) != null) {
+            return Optional.empty();
+        }
+        stripeFor(id).put(id, copyOf(customer, id));
+        idsByName.add(new NameKey(customer.getName(), id));
+        tableVersion.incrementAndGet();
+        return Optional.of(id);
+    }
+
+    @Override
+    public List<Optional<Integer>> insertCustomersIfAbsent(List<Customer> customers) {
+        List<Optional<Integer>> ids = new ArrayList<>(customers.size());
+        for (Customer customer : customers) {
+            ids.add(insertCustomerIfAbsent(customer));
+        }
+        return ids;
+    }
+
+    @Override
+    public void insertCustomers(List<Customer> customers) {
+        // reserve every email before storing anything so a duplicate leaves
+        // the store untouched, like the rolled back batch of the other DAOs
+        int[] ids = new int[customers.size()];
+        for (int i = 0; i < customers.size(); i++) {
+            int id = lastId.incrementAndGet();
+            if (idsByEmail.putIfAbsent(customers.get(i).getEmail(), id) != null) {
+                for (int j = 0; j < i; j++) {
+                    idsByEmail.remove(customers.get(j).getEmail(), ids[j]);
+                }
+                throw new DuplicateKeyException("email already taken");
+            }
+            ids[i] = id;
+        }
+        for (int i = 0; i < ids.length; i++) {
+            customers.get(i).setId(ids[i]);
+            stripeFor(ids[i]).put(ids[i], copyOf(customers.get(i), ids[i]));
+            idsByName.add(new NameKey(customers.get(i).getName(), ids[i]));
+        }
+        tableVersion.incrementAndGet();
+    }
+
+    @Override
+    public boolean existsPersonWithEmail(String email) {
+        return idsByEmail.containsKey(email);
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        Set<String> existing = new HashSet<>();
+        for (String email : emails) {
+            if (idsByEmail.containsKey(email)) {
+                existing.add(email);
+            }
+        }
+        return existing;
+    }
+
+    @Override
+    public boolean existsPersonWithId(Integer id) {
+        return stripeFor(id).get(id) != null;
+    }
+
+    @Override
+    public Optional<Customer> deleteCustomerById(Integer id) {
+        return delete(id, null);
+    }
+
+    @Override
+    public Optional<Customer> deleteCustomerById(Integer id, int expectedVersion) {
+        return delete(id, expectedVersion);
+    }
+
+    @Override
+    public Optional<Customer> updateCustomer(Integer id, CustomerUpdateRequest changes) {
+        return update(id, changes, null);
+    }
+
+    @Override
+    public Optional<Customer> updateCustomer(Integer id, CustomerUpdateRequest changes, int expectedVersion) {
+        return update(id, changes, expectedVersion);
+    }
+
+    @Override
+    public long selectCustomersVersion() {
+        return tableVersion.get();
+    }
+
+    @Override
+    public OptionalLong selectFilteredCustomersVersion() {
+        return OptionalLong.of(selectCustomersVersion());
+    }
+
+    private Optional<Customer> delete(Integer id, Integer expectedVersion) {
+        Stripe stripe = stripeFor(id);
+        long stamp = stripe.lock.writeLock();
+        try {
+            Customer customer = stripe.customers.get(id);
+            if (customer == null || !hasVersion(customer, expectedVersion)) {
+                return Optional.empty();
+            }
+            stripe.customers.remove(id);
+            idsByEmail.remove(customer.getEmail(), id);
+            idsByName.remove(new NameKey(customer.getName(), id));
+            tableVersion.incrementAndGet();
+            return Optional.of(copyOf(customer));
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+
+    private Optional<Customer> update(Integer id, CustomerUpdateRequest changes, Integer expectedVersion) {
+        Stripe stripe = stripeFor(id);
+        long stamp = stripe.lock.writeLock();
+        try {
+            Customer customer = stripe.customers.get(id);
+            if (customer == null || !hasVersion(customer, expectedVersion)) {
+                return Optional.empty();
+            }
+            String email = changes.email() != null ? changes.email() : customer.getEmail();
+            if (!email.equals(customer.getEmail())) {
+                Integer owner = idsByEmail.putIfAbsent(email, id);
+                if (owner != null && owner != id.intValue()) {
+                    throw new DuplicateKeyException("email already taken");
+                }
+                idsByEmail.remove(customer.getEmail(), id);
+            }
+            Customer updated = new Customer(
+                    id,
+                    changes.name() != null ? changes.name() : customer.getName(),
+                    email,
+                    changes.age() != null ? changes.age() : customer.getAge(),
+                    customer.getGender(),
+                    customer.getVersion() + 1);
+            idsByName.add(new NameKey(updated.getName(), id));
+            stripe.customers.put(id, updated);
+            if (!updated.getName().equals(customer.getName())) {
+                idsByName.remove(new NameKey(customer.getName(), id));
+            }
+            tableVersion.incrementAndGet();
+            return Optional.of(copyOf(updated));
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+
+    private static boolean hasVersion(Customer customer, Integer expectedVersion) {
+        return expectedVersion == null || customer.getVersion() == expectedVersion.intValue();
+    }
+
+    int size() {
+        return idsByEmail.size();
+    }
+
+    private Stripe stripeFor(int id) {
+        return stripes[id & (STRIPES - 1)];
+    }
+
+    // stored customers are never handed out, callers could mutate them
+    private static Customer copyOf(Customer customer) {
+        return copyOf(customer, customer.getId());
+    }
+
+    private static Customer copyOf(Customer customer, Integer id) {
+        return new Customer(
+                id,
+                customer.getName(),
+                customer.getEmail(),
+                customer.getAge(),
+                customer.getGender(),
+                customer.getVersion() == null ? 0 : customer.getVersion());
+    }
+
+    private record NameKey(String name, int id) implements Comparable<NameKey> {
+
+        @Override
+        public int compareTo(NameKey other) {
+            int byName = name.compareTo(other.name);
+            return byName != 0 ? byName : Integer.compare(id, other.id);
+        }
+    }
+
+    private static final class Stripe {
+
+        private final StampedLock lock = new StampedLock();
+        private final IntObjectHashMap<Customer> customers = new IntObjectHashMap<>();
+
+        Customer get(int id) {
+            long stamp = lock.tryOptimisticRead();
+            Customer customer = customers.get(id);
+            if (lock.validate(stamp)) {
+                return customer;
+            }
+            stamp = lock.readLock();
+            try {
+                return customers.get(id);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        void put(int id, Customer customer) {
+            long stamp = lock.writeLock();
+            try {
+                customers.put(id, customer);
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        void copyValuesTo(List<Customer> target) {
+            long stamp = lock.readLock();
+            try {
+                customers.forEachValue(c -> target.add(copyOf(c)));
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+    }
+}
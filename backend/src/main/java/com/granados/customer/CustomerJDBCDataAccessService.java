@@ -1,60 +1,271 @@
 package com.granados.customer;
 
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @Repository("jdbc")
 public class CustomerJDBCDataAccessService implements CustomerDAO {
 
+    static final int STREAM_FETCH_SIZE = 1000;
+    static final int INSERT_BATCH_SIZE = 500;
+
     private final JdbcTemplate template;
     private final CustomerRowMapper customerRowMapper;
+    private final CustomerIdAllocator idAllocator;
 
     public CustomerJDBCDataAccessService(JdbcTemplate template,
-                                         CustomerRowMapper customerRowMapper) {
+                                         CustomerRowMapper customerRowMapper,
+                                         CustomerIdAllocator idAllocator) {
         this.template = template;
         this.customerRowMapper = customerRowMapper;
+        this.idAllocator = idAllocator;
     }
 
     @Override
     public List<Customer> selectAllCustomers() {
         var sql = """
-                SELECT id, name, email, age, gender
+                SELECT id, name, email, age, gender, version
+                FROM customer
+                """;
+
+        return template.query(sql, customerRowMapper.listExtractor());
+    }
+
+    @Override
+    public long countCustomers() {
+        var sql = """
+                SELECT count(*)
+                FROM customer
+                """;
+
+        return template.queryForObject(sql, Long.class);
+    }
+
+    @Override
+    public CustomerStats selectCustomerStats() {
+        // grouped by age rather than by bucket, there are only so many distinct ages
+        var sql = """
+                SELECT gender, age, count(*) AS customers
+                FROM customer
+                GROUP BY gender, age
+                """;
+        CustomerStats.Builder stats = CustomerStats.builder();
+        template.query(sql, rs -> {
+            stats.add(CustomerRowMapper.gender(rs.getString("gender")), rs.getInt("age"), rs.getLong("customers"));
+        });
+        return stats.build();
+    }
+
+    @Override
+    public List<Customer> selectCustomersAfter(Integer afterId, int limit) {
+        var sql = """
+                SELECT id, name, email, age, gender, version
+                FROM customer
+                WHERE id > ?
+                ORDER BY id
+                LIMIT ?
+                """;
+
+        return template.query(sql, customerRowMapper.listExtractor(limit), afterId, limit);
+    }
+
+    @Override
+    public List<Customer> selectCustomers(CustomerFilter filter) {
+        StringBuilder sql = new StringBuilder("""
+                SELECT id, name, email, age, gender, version
+                FROM customer
+                WHERE TRUE
+                """);
+        List<Object> args = new ArrayList<>();
+        if (filter.namePrefix() != null) {
+            // served by the text_pattern_ops index, whatever the collation
+            sql.append("AND name LIKE ?\n");
+            args.add(filter.namePattern());
+        }
+        if (filter.email() != null) {
+            sql.append("AND email = ?\n");
+            args.add(filter.email());
+        }
+        if (filter.minAge() != null) {
+            sql.append("AND age >= ?\n");
+            args.add(filter.minAge());
+        }
+        if (filter.maxAge() != null) {
+            sql.append("AND age <= ?\n");
+            args.add(filter.maxAge());
+        }
+        if (filter.gender() != null) {
+            sql.append("AND gender = ?\n");
+            args.add(filter.gender().name());
+        }
+        sql.append(filter.sort().orderBy()).append('\n');
+        if (filter.limit() != null) {
+            sql.append("LIMIT ?\n");
+            args.add(filter.limit());
+        }
+
+        return template.query(sql.toString(), customerRowMapper.listExtractor(), args.toArray());
+    }
+
+    @Override
+    public void forEachCustomer(Consumer<Customer> action) {
+        var sql = """
+                SELECT id, name, email, age, gender, version
                 FROM customer
+                ORDER BY id
                 """;
 
-        return template.query(sql, customerRowMapper);
+        // the postgres driver only uses a server side cursor (and honours the
+        // fetch size) when auto-commit is off, otherwise it buffers every row
+        template.execute((ConnectionCallback<Void>) connection -> {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                statement.setFetchSize(STREAM_FETCH_SIZE);
+                try (ResultSet rs = statement.executeQuery()) {
+                    customerRowMapper.forEach(rs, action);
+                }
+            } finally {
+                if (autoCommit) {
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                }
+            }
+            return null;
+        });
     }
 
     @Override
     public Optional<Customer> selectCustomerById(Integer id) {
         var sql = """
-                SELECT id, name, email, age, gender
+                SELECT id, name, email, age, gender, version
                 FROM customer
                 WHERE id = ?
                 """;
 
-        return template.query(sql, customerRowMapper, id)
-                .stream()
-                .findFirst();
+        return template.query(sql, customerRowMapper.singleExtractor(), id);
     }
 
     @Override
     public void insertCustomer(Customer customer) {
         var sql = """
-                INSERT INTO customer(name, email, age, gender)
-                VALUES (?, ?, ?, ?)
+                INSERT INTO customer(id, name, email, age, gender)
+                VALUES (?, ?, ?, ?, ?)
                 """;
         template.update(
                 sql,
+                idAllocator.nextId(),
                 customer.getName(),
                 customer.getEmail(),
                 customer.getAge(),
                 customer.getGender().name());
     }
 
+    @Override
+    public Optional<Integer> insertCustomerIfAbsent(Customer customer) {
+        var sql = """
+                INSERT INTO customer(id, name, email, age, gender)
+                VALUES (?, ?, ?, ?, ?)
+                ON CONFLICT ON CONSTRAINT customer_email_unique DO NOTHING
+                RETURNING id
+                """;
+        return template.query(
+                sql,
+                rs -> rs.next() ? Optional.of(rs.getInt(1)) : Optional.<Integer>empty(),
+                idAllocator.nextId(),
+                customer.getName(),
+                customer.getEmail(),
+                customer.getAge(),
+                customer.getGender().name());
+    }
+
+    @Override
+    public void insertCustomers(List<Customer> customers) {
+        var sql = """
+                INSERT INTO customer(id, name, email, age, gender)
+                VALUES (?, ?, ?, ?, ?)
+                """;
+        // the ids are known before the batch runs, so the rows need not be read back
+        int[] ids = idAllocator.nextIds(customers.size());
+        for (int i = 0; i < ids.length; i++) {
+            customers.get(i).setId(ids[i]);
+        }
+        template.batchUpdate(sql, customers, INSERT_BATCH_SIZE, (ps, customer) -> {
+            ps.setInt(1, customer.getId());
+            ps.setString(2, customer.getName());
+            ps.setString(3, customer.getEmail());
+            ps.setInt(4, customer.getAge());
+            ps.setString(5, customer.getGender().name());
+        });
+    }
+
+    @Override
+    public List<Optional<Integer>> insertCustomersIfAbsent(List<Customer> customers) {
+        // a single statement, so a single transaction and table version bump, and the
+        // arrays keep the SQL the same whatever the number of rows
+        var sql = """
+                INSERT INTO customer(id, name, email, age, gender)
+                SELECT * FROM unnest(?::integer[], ?::text[], ?::text[], ?::integer[], ?::text[])
+                ON CONFLICT ON CONSTRAINT customer_email_unique DO NOTHING
+                RETURNING id, email
+                """;
+        // repeated emails are only sent once, the later ones are taken by the first
+        Map<String, Integer> firstByEmail = new HashMap<>();
+        List<Customer> unique = new ArrayList<>(customers.size());
+        for (int i = 0; i < customers.size(); i++) {
+            if (firstByEmail.putIfAbsent(customers.get(i).getEmail(), i) == null) {
+                unique.add(customers.get(i));
+            }
+        }
+        Integer[] newIds = Arrays.stream(idAllocator.nextIds(unique.size())).boxed().toArray(Integer[]::new);
+        Map<String, Integer> idsByEmail = template.query(
+                sql,
+                ps -> {
+                    Connection connection = ps.getConnection();
+                    ps.setArray(1, connection.createArrayOf("integer", newIds));
+                    ps.setArray(2, connection.createArrayOf("text",
+                            unique.stream().map(Customer::getName).toArray()));
+                    ps.setArray(3, connection.createArrayOf("text",
+                            unique.stream().map(Customer::getEmail).toArray()));
+                    ps.setArray(4, connection.createArrayOf("integer",
+                            unique.stream().map(Customer::getAge).toArray()));
+                    ps.setArray(5, connection.createArrayOf("text",
+                            unique.stream().map(customer -> customer.getGender().name()).toArray()));
+                },
+                rs -> {
+                    Map<String, Integer> ids = new HashMap<>();
+                    while (rs.next()) {
+                        ids.put(rs.getString(2), rs.getInt(1));
+                    }
+                    return ids;
+                });
+
+        List<Optional<Integer>> ids = new ArrayList<>(customers.size());
+        for (int i = 0; i < customers.size(); i++) {
+            String email = customers.get(i).getEmail();
+            ids.add(firstByEmail.get(email) == i
+                    ? Optional.ofNullable(idsByEmail.get(email))
+                    : Optional.empty());
+        }
+        return ids;
+    }
+
     @Override
     public boolean existsPersonWithEmail(String email) {
         var sql = """
@@ -66,6 +277,38 @@ public class CustomerJDBCDataAccessService implements CustomerDAO {
         return count != null && count > 0;
     }
 
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Integer> ids) {
+        var sql = """
+                SELECT id, name, email, age, gender, version
+                FROM customer
+                WHERE id = ANY (?)
+                """;
+        return template.query(
+                sql,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("integer", ids.toArray())),
+                customerRowMapper.listExtractor(ids.size()));
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        var sql = """
+                SELECT email
+                FROM customer
+                WHERE email = ANY (?)
+                """;
+        return template.query(
+                sql,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("text", emails.toArray())),
+                rs -> {
+                    Set<String> existing = new HashSet<>();
+                    while (rs.next()) {
+                        existing.add(rs.getString(1));
+                    }
+                    return existing;
+                });
+    }
+
     @Override
     public boolean existsPersonWithId(Integer id) {
         var sql = """
@@ -78,26 +321,88 @@ public class CustomerJDBCDataAccessService implements CustomerDAO {
     }
 
     @Override
-    public void deleteCustomerById(Integer id) {
+    public Optional<Customer> deleteCustomerById(Integer id) {
         var sql = """
                 DELETE FROM customer
                 WHERE id = ?
+                RETURNING id, name, email, age, gender, version
                 """;
-        template.update(sql, id);
+        return template.query(sql, customerRowMapper.singleExtractor(), id);
     }
 
     @Override
-    public void updateCustomer(Customer editedCustomer) {
+    public Optional<Customer> deleteCustomerById(Integer id, int expectedVersion) {
         var sql = """
-                UPDATE customer
-                SET name = ?, email = ?, age = ?, gender = ?
+                DELETE FROM customer
                 WHERE id = ?
+                AND version = ?
+                RETURNING id, name, email, age, gender, version
                 """;
-        template.update(sql,
-                editedCustomer.getName(),
-                editedCustomer.getEmail(),
-                editedCustomer.getAge(),
-                editedCustomer.getGender().name(),
-                editedCustomer.getId());
+        return template.query(sql, customerRowMapper.singleExtractor(), id, expectedVersion);
+    }
+
+    @Override
+    public Optional<Customer> updateCustomer(Integer id, CustomerUpdateRequest changes) {
+        return update(id, changes, null);
+    }
+
+    @Override
+    public Optional<Customer> updateCustomer(Integer id, CustomerUpdateRequest changes, int expectedVersion) {
+        return update(id, changes, expectedVersion);
+    }
+
+    @Override
+    public long selectCustomersVersion() {
+        var sql = """
+                SELECT sum(version)::bigint
+                FROM customer_table_version_slot
+                """;
+
+        return template.queryForObject(sql, Long.class);
+    }
+
+    @Override
+    public OptionalLong selectFilteredCustomersVersion() {
+        return OptionalLong.of(selectCustomersVersion());
+    }
+
+    private Optional<Customer> update(Integer id, CustomerUpdateRequest changes, Integer expectedVersion) {
+        // only the columns that changed are written, so concurrent edits of
+        // other columns are not overwritten with stale values
+        List<String> assignments = new ArrayList<>(3);
+        List<Object> args = new ArrayList<>(4);
+        if (changes.name() != null) {
+            assignments.add("name = ?");
+            args.add(changes.name());
+        }
+        if (changes.email() != null) {
+            assignments.add("email = ?");
+            args.add(changes.email());
+        }
+        if (changes.age() != null) {
+            assignments.add("age = ?");
+            args.add(changes.age());
+        }
+        if (assignments.isEmpty()) {
+            return selectCustomerById(id)
+                    .filter(customer -> expectedVersion == null
+                            || customer.getVersion() == expectedVersion.intValue());
+        }
+        assignments.add("version = version + 1");
+        args.add(id);
+        String versionCondition = "";
+        if (expectedVersion != null) {
+            versionCondition = "AND version = ?";
+            args.add(expectedVersion);
+        }
+
+        var sql = """
+                UPDATE customer
+                SET %s
+                WHERE id = ?
+                %s
+                RETURNING id, name, email, age, gender, version
+                """.formatted(String.join(", ", assignments), versionCondition);
+        return template.query(sql, customerRowMapper.singleExtractor(), args.toArray());
     }
 }
@@ -1,17 +1,32 @@
 package com.granados.customer;
 
+import jakarta.persistence.criteria.Expression;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @Repository("jpa")
 public class CustomerJPADataAccessService implements CustomerDAO {
 
+    static final int STREAM_PAGE_SIZE = 1000;
+
     private final CustomerRepository customerRepository;
+    private final CustomerIdAllocator idAllocator;
 
-    public CustomerJPADataAccessService(CustomerRepository customerRepository) {
+    public CustomerJPADataAccessService(CustomerRepository customerRepository,
+                                        CustomerIdAllocator idAllocator) {
         this.customerRepository = customerRepository;
+        this.idAllocator = idAllocator;
     }
 
     @Override
@@ -19,6 +34,90 @@ public class CustomerJPADataAccessService implements CustomerDAO {
         return customerRepository.findAll();
     }
 
+    @Override
+    public long countCustomers() {
+        return customerRepository.count();
+    }
+
+    @Override
+    public CustomerStats selectCustomerStats() {
+        CustomerStats.Builder stats = CustomerStats.builder();
+        for (Object[] row : customerRepository.countByGenderAndAge()) {
+            stats.add((Gender) row[0], (Integer) row[1], (Long) row[2]);
+        }
+        return stats.build();
+    }
+
+    @Override
+    public List<Customer> selectCustomersAfter(Integer afterId, int limit) {
+        return customerRepository.findByIdGreaterThanOrderByIdAsc(
+                afterId, PageRequest.of(0, limit));
+    }
+
+    @Override
+    public List<Customer> selectCustomers(CustomerFilter filter) {
+        Specification<Customer> spec = Specification.where(null);
+        if (filter.namePrefix() != null) {
+            spec = spec.and((root, query, cb) -> cb.like(root.get("name"), filter.namePattern(), '\\'));
+        }
+        if (filter.email() != null) {
+            spec = spec.and((root, query, cb) -> cb.equal(root.get("email"), filter.email()));
+        }
+        if (filter.minAge() != null) {
+            spec = spec.and((root, query, cb) -> cb.ge(root.get("age"), filter.minAge()));
+        }
+        if (filter.maxAge() != null) {
+            spec = spec.and((root, query, cb) -> cb.le(root.get("age"), filter.maxAge()));
+        }
+        if (filter.gender() != null) {
+            spec = spec.and((root, query, cb) -> cb.equal(root.get("gender"), filter.gender()));
+        }
+        Sort sort = sortOf(filter.sort());
+        if (sort.isUnsorted()) {
+            spec = spec.and(collatedOrderOf(filter.sort()));
+        }
+        if (filter.limit() == null) {
+            return customerRepository.findAll(spec, sort);
+        }
+        // the page is only counted when it is full
+        return customerRepository.findAll(spec, PageRequest.of(0, filter.limit(), sort)).getContent();
+    }
+
+    // free text is left to collatedOrderOf, a Sort can only name properties
+    private static Sort sortOf(CustomerSort sort) {
+        if (sort.property().freeText()) {
+            return Sort.unsorted();
+        }
+        Sort.Direction direction = sort.descending() ? Sort.Direction.DESC : Sort.Direction.ASC;
+        Sort order = Sort.by(direction, sort.property().column());
+        return sort.property() == CustomerSort.Property.ID ? order : order.and(Sort.by("id"));
+    }
+
+    // the UTF-8 bytes compare like COLLATE "C", which the criteria API can not express
+    private static Specification<Customer> collatedOrderOf(CustomerSort sort) {
+        return (root, query, cb) -> {
+            Expression<byte[]> column = cb.function("convert_to", byte[].class,
+                    root.get(sort.property().column()), cb.literal("UTF8"));
+            query.orderBy(
+                    sort.descending() ? cb.desc(column) : cb.asc(column),
+                    cb.asc(root.get("id")));
+            return null;
+        };
+    }
+
+    @Override
+    public void forEachCustomer(Consumer<Customer> action) {
+        // walk the table in keyset pages so only one page of entities is held at a time
+        List<Customer> page = selectCustomersAfter(0, STREAM_PAGE_SIZE);
+        while (!page.isEmpty()) {
+            page.forEach(action);
+            if (page.size() < STREAM_PAGE_SIZE) {
+                return;
+            }
+            page = selectCustomersAfter(page.get(page.size() - 1).getId(), STREAM_PAGE_SIZE);
+        }
+    }
+
     @Override
     public Optional<Customer> selectCustomerById(Integer id) {
         return customerRepository.findById(id);
@@ -29,23 +128,101 @@ public class CustomerJPADataAccessService implements CustomerDAO {
         customerRepository.save(customer);
     }
 
+    @Override
+    public Optional<Integer> insertCustomerIfAbsent(Customer customer) {
+        // the native insert bypasses the JPA generator, the allocator draws on the same sequence
+        return customerRepository.insertIfEmailAbsent(
+                idAllocator.nextId(),
+                customer.getName(),
+                customer.getEmail(),
+                customer.getAge(),
+                customer.getGender().name());
+    }
+
+    @Override
+    public void insertCustomers(List<Customer> customers) {
+        // flushed here so a taken email fails this call, and not the commit after the
+        // caller has stopped listening for it
+        customerRepository.saveAllAndFlush(customers);
+    }
+
+    @Override
+    @Transactional
+    public List<Optional<Integer>> insertCustomersIfAbsent(List<Customer> customers) {
+        List<Optional<Integer>> ids = new ArrayList<>(customers.size());
+        for (Customer customer : customers) {
+            ids.add(insertCustomerIfAbsent(customer));
+        }
+        return ids;
+    }
+
     @Override
     public boolean existsPersonWithEmail(String email) {
         return customerRepository.existsCustomerByEmail(email);
     }
 
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Integer> ids) {
+        return customerRepository.findAllById(ids);
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        return customerRepository.findEmailsIn(emails);
+    }
+
     @Override
     public boolean existsPersonWithId(Integer id) {
         return customerRepository.existsCustomerById(id);
     }
 
     @Override
-    public void deleteCustomerById(Integer id) {
-        customerRepository.deleteById(id);
+    public Optional<Customer> deleteCustomerById(Integer id) {
+        return customerRepository.deleteByIdReturning(id);
+    }
+
+    @Override
+    public Optional<Customer> deleteCustomerById(Integer id, int expectedVersion) {
+        return customerRepository.deleteByIdAndVersionReturning(id, expectedVersion);
+    }
+
+    @Override
+    @Transactional
+    public Optional<Customer> updateCustomer(Integer id, CustomerUpdateRequest changes) {
+        return customerRepository.findById(id)
+                .map(customer -> update(customer, changes));
+    }
+
+    @Override
+    @Transactional
+    public Optional<Customer> updateCustomer(Integer id, CustomerUpdateRequest changes, int expectedVersion) {
+        // the @Version check on flush catches changes committed after this read
+        return customerRepository.findById(id)
+                .filter(customer -> customer.getVersion() == expectedVersion)
+                .map(customer -> update(customer, changes));
+    }
+
+    @Override
+    public long selectCustomersVersion() {
+        return customerRepository.selectTableVersion();
     }
 
     @Override
-    public void updateCustomer(Customer editedCustomer) {
-        customerRepository.save(editedCustomer);
+    public OptionalLong selectFilteredCustomersVersion() {
+        return OptionalLong.of(selectCustomersVersion());
+    }
+
+    private Customer update(Customer customer, CustomerUpdateRequest changes) {
+        // Customer is @DynamicUpdate, so the flush only writes the changed columns
+        if (changes.name() != null) {
+            customer.setName(changes.name());
+        }
+        if (changes.email() != null) {
+            customer.setEmail(changes.email());
+        }
+        if (changes.age() != null) {
+            customer.setAge(changes.age());
+        }
+        return customerRepository.saveAndFlush(customer);
     }
 }
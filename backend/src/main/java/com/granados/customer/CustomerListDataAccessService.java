@@ -1,62 +0,0 @@
-package com.granados.customer;
-
-import org.springframework.stereotype.Repository;
-
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
-
-@Repository("list")
-public class CustomerListDataAccessService implements CustomerDAO {
-    private static List<Customer> customers;
-
-    static {
-        customers = new ArrayList<Customer>();
-        Customer german = new Customer(1, "German", "german@gmail.com", 39, Gender.MALE);
-        Customer mateo = new Customer(2, "Mateo", "mateo@gmail.com", 12, Gender.MALE);
-        customers.add(german);
-        customers.add(mateo);
-    }
-
-    @Override
-    public List<Customer> selectAllCustomers() {
-        return customers;
-    }
-
-    @Override
-    public Optional<Customer> selectCustomerById(Integer id) {
-        return customers.stream()
-                .filter(c -> c.getId().equals(id))
-                .findFirst();
-    }
-
-    @Override
-    public void insertCustomer(Customer customer) {
-        customers.add(customer);
-    }
-
-    @Override
-    public boolean existsPersonWithEmail(String email) {
-        return customers.stream()
-                .anyMatch(c -> c.getEmail().equals(email));
-    }
-
-    @Override
-    public boolean existsPersonWithId(Integer id) {
-        return customers.stream()
-                .anyMatch(c -> c.getId().equals(id));
-    }
-
-    @Override
-    public void deleteCustomerById(Integer id) {
-        customers.stream()
-                .filter(c -> c.getId().equals(id))
-                .findFirst()
-                .ifPresent(customers::remove);
-    }
-
-    @Override
-    public void updateCustomer(Customer editedCustomer) {
-        customers.add(editedCustomer);
-    }
-}
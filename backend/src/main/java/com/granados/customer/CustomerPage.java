@@ -0,0 +1,7 @@
+package com.granados.customer;
+
+import java.util.List;
+
+public record CustomerPage(
+        List<Customer> customers,
+        Integer nextCursor) {}
@@ -0,0 +1,199 @@
+package com.granados.customer;
+
+import io.r2dbc.spi.Readable;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link ReactiveCustomerDAO} running the same statements as
+ * {@link CustomerJDBCDataAccessService} over R2DBC. Rows are fetched from a
+ * portal in batches of {@link #FETCH_SIZE}, so a slow subscriber holds back
+ * the query instead of having the whole result buffered for it. Inserted customers
+ * get their ids from blocks reserved by a {@link ReactiveCustomerIdAllocator}.
+ */
+@Repository("r2dbc")
+@Profile("reactive")
+public class CustomerR2DBCDataAccessService implements ReactiveCustomerDAO {
+
+    static final int FETCH_SIZE = 256;
+
+    private final DatabaseClient client;
+    private final ReactiveCustomerIdAllocator ids;
+
+    public CustomerR2DBCDataAccessService(DatabaseClient client) {
+        this.client = client;
+        this.ids = new ReactiveCustomerIdAllocator(client);
+    }
+
+    @Override
+    public Flux<Customer> selectAllCustomers() {
+        var sql = """
+                SELECT id, name, email, age, gender, version
+                FROM customer
+                ORDER BY id
+                """;
+
+        return client.sql(sql)
+                .filter(statement -> statement.fetchSize(FETCH_SIZE))
+                .map(CustomerR2DBCDataAccessService::mapRow)
+                .all();
+    }
+
+    @Override
+    public Flux<Customer> selectCustomersAfter(Integer afterId, int limit) {
+        var sql = """
+                SELECT id, name, email, age, gender, version
+                FROM customer
+                WHERE id > $1
+                ORDER BY id
+                LIMIT $2
+                """;
+
+        return client.sql(sql)
+                .bind(0, afterId)
+                .bind(1, limit)
+                .map(CustomerR2DBCDataAccessService::mapRow)
+                .all();
+    }
+
+    @Override
+    public Flux<Customer> selectCustomers(CustomerFilter filter) {
+        StringBuilder sql = new StringBuilder("""
+                SELECT id, name, email, age, gender, version
+                FROM customer
+                WHERE TRUE
+                """);
+        List<Object> args = new ArrayList<>();
+        if (filter.namePrefix() != null) {
+            args.add(filter.namePattern());
+            sql.append("AND name LIKE $").append(args.size()).append('\n');
+        }
+        if (filter.email() != null) {
+            args.add(filter.email());
+            sql.append("AND email = $").append(args.size()).append('\n');
+        }
+        if (filter.minAge() != null) {
+            args.add(filter.minAge());
+            sql.append("AND age >= $").append(args.size()).append('\n');
+        }
+        if (filter.maxAge() != null) {
+            args.add(filter.maxAge());
+            sql.append("AND age <= $").append(args.size()).append('\n');
+        }
+        if (filter.gender() != null) {
+            args.add(filter.gender().name());
+            sql.append("AND gender = $").append(args.size()).append('\n');
+        }
+        sql.append(filter.sort().orderBy()).append('\n');
+        if (filter.limit() != null) {
+            args.add(filter.limit());
+            sql.append("LIMIT $").append(args.size()).append('\n');
+        }
+
+        DatabaseClient.GenericExecuteSpec spec = client.sql(sql.toString())
+                .filter(statement -> statement.fetchSize(FETCH_SIZE));
+        for (int i = 0; i < args.size(); i++) {
+            spec = spec.bind(i, args.get(i));
+        }
+        return spec.map(CustomerR2DBCDataAccessService::mapRow).all();
+    }
+
+    @Override
+    public Mono<Customer> selectCustomerById(Integer id) {
+        var sql = """
+                SELECT id, name, email, age, gender, version
+                FROM customer
+                WHERE id = $1
+                """;
+
+        return client.sql(sql)
+                .bind(0, id)
+                .map(CustomerR2DBCDataAccessService::mapRow)
+                .one();
+    }
+
+    // with the column default each insert would reserve a whole block of the sequence
+    @Override
+    public Mono<Integer> insertCustomerIfAbsent(Customer customer) {
+        var sql = """
+                INSERT INTO customer(id, name, email, age, gender)
+                VALUES ($1, $2, $3, $4, $5)
+                ON CONFLICT ON CONSTRAINT customer_email_unique DO NOTHING
+                RETURNING id
+                """;
+
+        return ids.nextId().flatMap(id -> client.sql(sql)
+                .bind(0, id)
+                .bind(1, customer.getName())
+                .bind(2, customer.getEmail())
+                .bind(3, customer.getAge())
+                .bind(4, customer.getGender().name())
+                .map(row -> row.get("id", Integer.class))
+                .one());
+    }
+
+    @Override
+    public Mono<Customer> deleteCustomerById(Integer id) {
+        var sql = """
+                DELETE FROM customer
+                WHERE id = $1
+                RETURNING id, name, email, age, gender, version
+                """;
+
+        return client.sql(sql)
+                .bind(0, id)
+                .map(CustomerR2DBCDataAccessService::mapRow)
+                .one();
+    }
+
+    @Override
+    public Mono<Customer> updateCustomer(Integer id, CustomerUpdateRequest changes) {
+        List<String> assignments = new ArrayList<>(3);
+        List<Object> args = new ArrayList<>(4);
+        if (changes.name() != null) {
+            args.add(changes.name());
+            assignments.add("name = $" + args.size());
+        }
+        if (changes.email() != null) {
+            args.add(changes.email());
+            assignments.add("email = $" + args.size());
+        }
+        if (changes.age() != null) {
+            args.add(changes.age());
+            assignments.add("age = $" + args.size());
+        }
+        if (assignments.isEmpty()) {
+            return selectCustomerById(id);
+        }
+        assignments.add("version = version + 1");
+        args.add(id);
+
+        var sql = """
+                UPDATE customer
+                SET %s
+                WHERE id = $%d
+                RETURNING id, name, email, age, gender, version
+                """.formatted(String.join(", ", assignments), args.size());
+        DatabaseClient.GenericExecuteSpec spec = client.sql(sql);
+        for (int i = 0; i < args.size(); i++) {
+            spec = spec.bind(i, args.get(i));
+        }
+        return spec.map(CustomerR2DBCDataAccessService::mapRow).one();
+    }
+
+    static Customer mapRow(Readable row) {
+        return new Customer(
+                row.get("id", Integer.class),
+                row.get("name", String.class),
+                row.get("email", String.class),
+                row.get("age", Integer.class),
+                Gender.valueOf(row.get("gender", String.class)),
+                row.get("version", Integer.class));
+    }
+}
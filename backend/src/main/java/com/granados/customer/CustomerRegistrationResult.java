@@ -0,0 +1,10 @@
+package com.granados.customer;
+
+public record CustomerRegistrationResult(
+        String email,
+        Status status) {
+
+    public enum Status {
+        CREATED, EMAIL_TAKEN
+    }
+}
@@ -1,10 +1,61 @@
 package com.granados.customer;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 
 public interface CustomerRepository
-        extends JpaRepository<Customer, Integer> {
+        extends JpaRepository<Customer, Integer>, JpaSpecificationExecutor<Customer> {
 
     boolean existsCustomerByEmail(String email);
     boolean existsCustomerById(Integer id);
+    List<Customer> findByIdGreaterThanOrderByIdAsc(Integer id, Pageable pageable);
+
+    @Query("SELECT c.gender, c.age, count(c) FROM Customer c GROUP BY c.gender, c.age")
+    List<Object[]> countByGenderAndAge();
+
+    @Query("SELECT c.email FROM Customer c WHERE c.email IN :emails")
+    Set<String> findEmailsIn(@Param("emails") Collection<String> emails);
+
+    @Transactional
+    @Query(value = """
+            INSERT INTO customer(id, name, email, age, gender)
+            VALUES (:id, :name, :email, :age, :gender)
+            ON CONFLICT ON CONSTRAINT customer_email_unique DO NOTHING
+            RETURNING id
+            """, nativeQuery = true)
+    Optional<Integer> insertIfEmailAbsent(@Param("id") Integer id,
+                                          @Param("name") String name,
+                                          @Param("email") String email,
+                                          @Param("age") Integer age,
+                                          @Param("gender") String gender);
+
+    @Transactional
+    @Query(value = """
+            DELETE FROM customer
+            WHERE id = :id
+            RETURNING id, name, email, age, gender, version
+            """, nativeQuery = true)
+    Optional<Customer> deleteByIdReturning(@Param("id") Integer id);
+
+    @Transactional
+    @Query(value = """
+            DELETE FROM customer
+            WHERE id = :id
+            AND version = :version
+            RETURNING id, name, email, age, gender, version
+            """, nativeQuery = true)
+    Optional<Customer> deleteByIdAndVersionReturning(@Param("id") Integer id,
+                                                     @Param("version") int version);
+
+    @Query(value = "SELECT sum(version)::bigint FROM customer_table_version_slot", nativeQuery = true)
+    long selectTableVersion();
 }
@@ -1,13 +1,44 @@
 package com.granados.customer;
 
+import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Component;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
 
+/**
+ * Maps customer rows. {@link #mapRow} looks every column up by label, the extractors
+ * resolve the column indexes once per result set and read the rows by index, so prefer
+ * them for anything that returns more than one row.
+ */
 @Component
 public class CustomerRowMapper implements RowMapper<Customer> {
+
+    // an upper bound on presizing, callers may pass very large limits
+    static final int MAX_PRESIZE = 10_000;
+
+    private static final Gender[] GENDERS = Gender.values();
+    private static final String[] GENDER_NAMES = new String[GENDERS.length];
+
+    static {
+        for (Gender gender : GENDERS) {
+            GENDER_NAMES[gender.ordinal()] = gender.name();
+        }
+    }
+
+    private final ResultSetExtractor<List<Customer>> listExtractor = rs -> extractList(rs, 0);
+    private final ResultSetExtractor<Optional<Customer>> singleExtractor = rs -> {
+        if (!rs.next()) {
+            return Optional.empty();
+        }
+        return Optional.of(Columns.of(rs).map(rs));
+    };
+
     @Override
     public Customer mapRow(ResultSet rs, int rowNum) throws SQLException {
         return new Customer(
@@ -15,6 +46,93 @@ public class CustomerRowMapper implements RowMapper<Customer> {
                 rs.getString("name"),
                 rs.getString("email"),
                 rs.getInt("age"),
-                Gender.valueOf(rs.getString("gender")));
+                gender(rs.getString("gender")),
+                rs.getInt("version"));
+    }
+
+    /**
+     * Extracts every row, the list is presized from the fetch size of the result set.
+     */
+    public ResultSetExtractor<List<Customer>> listExtractor() {
+        return listExtractor;
+    }
+
+    /**
+     * Extracts every row into a list presized for the expected number of rows.
+     */
+    public ResultSetExtractor<List<Customer>> listExtractor(int expectedRows) {
+        return rs -> extractList(rs, expectedRows);
+    }
+
+    /**
+     * Extracts the first row, if any, without collecting the rows into a list.
+     */
+    public ResultSetExtractor<Optional<Customer>> singleExtractor() {
+        return singleExtractor;
+    }
+
+    /**
+     * Passes every remaining row to the action, one customer at a time.
+     */
+    public void forEach(ResultSet rs, Consumer<Customer> action) throws SQLException {
+        Columns columns = null;
+        while (rs.next()) {
+            if (columns == null) {
+                columns = Columns.of(rs);
+            }
+            action.accept(columns.map(rs));
+        }
+    }
+
+    /**
+     * {@link Gender#valueOf} without hashing the name, there are only a handful of genders.
+     */
+    static Gender gender(String name) {
+        for (int i = 0; i < GENDER_NAMES.length; i++) {
+            if (GENDER_NAMES[i].equals(name)) {
+                return GENDERS[i];
+            }
+        }
+        throw new IllegalArgumentException("No gender " + name);
+    }
+
+    private static List<Customer> extractList(ResultSet rs, int expectedRows) throws SQLException {
+        int capacity = expectedRows > 0 ? expectedRows : rs.getFetchSize();
+        // without a hint (the driver reports 0 when everything is fetched at once)
+        // the list grows from the ArrayList default
+        List<Customer> customers = capacity > 0
+                ? new ArrayList<>(Math.min(capacity, MAX_PRESIZE))
+                : new ArrayList<>();
+        if (!rs.next()) {
+            return customers;
+        }
+        Columns columns = Columns.of(rs);
+        do {
+            customers.add(columns.map(rs));
+        } while (rs.next());
+        return customers;
+    }
+
+    private record Columns(int id, int name, int email, int age, int gender, int version) {
+
+        static Columns of(ResultSet rs) throws SQLException {
+            return new Columns(
+                    rs.findColumn("id"),
+                    rs.findColumn("name"),
+                    rs.findColumn("email"),
+                    rs.findColumn("age"),
+                    rs.findColumn("gender"),
+                    rs.findColumn("version"));
+        }
+
+        Customer map(ResultSet rs) throws SQLException {
+            return new Customer(
+                    rs.getInt(id),
+                    rs.getString(name),
+                    rs.getString(email),
+                    rs.getInt(age),
+                    CustomerRowMapper.gender(rs.getString(gender)),
+                    rs.getInt(version));
+        }
     }
 }
@@ -0,0 +1,209 @@
+package com.granados.customer;
+
+import com.granados.exception.RequestValidationException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Typo tolerant customer search backed by an in-process {@link CustomerTrigramIndex}.
+ * <p>
+ * The index is built from the DAO when the scheduler starts and rebuilt on an interval,
+ * and the events published by {@link CustomerService} keep it up to date in between.
+ * Writes that arrive while a rebuild streams the table are replayed on the new index
+ * before it replaces the old one. Writes made by other application instances are only
+ * picked up by the next rebuild.
+ */
+@Service
+@Profile("!reactive")
+public class CustomerSearchService implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(CustomerSearchService.class);
+
+    static final int DEFAULT_LIMIT = 20;
+    static final int MAX_LIMIT = 100;
+    static final int CATCH_UP_BATCH_SIZE = 1000;
+
+    private final CustomerDAO customerDAO;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Lock rebuildLock = new ReentrantLock();
+    private CustomerTrigramIndex index;
+    private List<Consumer<CustomerTrigramIndex>> pendingWrites;
+
+    public CustomerSearchService(@Qualifier("customerDAO") CustomerDAO customerDAO) {
+        this.customerDAO = customerDAO;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("customer.search.index.customers", this,
+                        service -> service.measure(CustomerTrigramIndex::size))
+                .description("Customers held by the search index")
+                .register(registry);
+        Gauge.builder("customer.search.index.size", this,
+                        service -> service.measure(CustomerTrigramIndex::sizeBytes))
+                .description("Estimated heap held by the search index")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    @Scheduled(fixedDelayString = "${customer.search.rebuild-interval:PT1H}")
+    public void rebuild() {
+        rebuildLock.lock();
+        try {
+            long start = System.nanoTime();
+            lock.writeLock().lock();
+            try {
+                pendingWrites = new ArrayList<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            CustomerTrigramIndex rebuilt = new CustomerTrigramIndex();
+            boolean streamed = false;
+            try {
+                customerDAO.forEachCustomer(rebuilt::add);
+                streamed = true;
+            } finally {
+                // a failed stream keeps the old index, but must not leave writes queueing
+                lock.writeLock().lock();
+                try {
+                    if (streamed) {
+                        pendingWrites.forEach(pending -> pending.accept(rebuilt));
+                        index = rebuilt;
+                    }
+                    pendingWrites = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+            // customers registered during the rebuild without their ids could not be replayed
+            catchUp();
+            log.info("Built customer search index for {} customers ({} bytes) in {} ms",
+                    rebuilt.size(), rebuilt.sizeBytes(), (System.nanoTime() - start) / 1_000_000);
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    public List<Customer> search(String query, Integer limit) {
+        if (query == null || query.isBlank()) {
+            throw new RequestValidationException("q must not be blank");
+        }
+        int maxResults = limit == null ? DEFAULT_LIMIT : limit;
+        if (maxResults < 1 || maxResults > MAX_LIMIT) {
+            throw new RequestValidationException(
+                    "limit must be between 1 and %s".formatted(MAX_LIMIT));
+        }
+
+        int[] ids;
+        lock.readLock().lock();
+        try {
+            if (index == null) {
+                // not built yet, an exact name prefix is the best we can do without it
+                return customerDAO.selectCustomers(new CustomerFilter(
+                        query.strip(), null, null, null, null,
+                        new CustomerSort(CustomerSort.Property.NAME, false), maxResults));
+            }
+            ids = index.search(query, maxResults);
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (ids.length == 0) {
+            return List.of();
+        }
+
+        List<Integer> ranked = Arrays.stream(ids).boxed().toList();
+        List<Customer> customers = new ArrayList<>(customerDAO.selectCustomersByIds(ranked));
+        customers.sort(Comparator.comparingInt(customer -> ranked.indexOf(customer.getId())));
+        return customers;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCreated(CustomerCreatedEvent event) {
+        if (event.customers().stream().allMatch(customer -> customer.getId() != null)) {
+            write(index -> event.customers().forEach(index::add));
+        } else if (isBuilt()) {
+            catchUp();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUpdated(CustomerUpdatedEvent event) {
+        write(index -> {
+            index.remove(event.previous());
+            index.add(event.current());
+        });
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDeleted(CustomerDeletedEvent event) {
+        write(index -> index.remove(event.customer()));
+    }
+
+    // customers registered without their ids are read back by walking the ids after the
+    // last one indexed; rows committed behind a newer id (another instance drawing ids
+    // from an older block, say) wait for the next rebuild
+    private void catchUp() {
+        List<Customer> customers;
+        do {
+            customers = customerDAO.selectCustomersAfter(
+                    (int) measure(CustomerTrigramIndex::lastId), CATCH_UP_BATCH_SIZE);
+            List<Customer> batch = customers;
+            write(index -> batch.forEach(index::add));
+        } while (customers.size() == CATCH_UP_BATCH_SIZE);
+    }
+
+    boolean isBuilt() {
+        return measure(index -> 1) > 0;
+    }
+
+    boolean isQueueingWrites() {
+        lock.readLock().lock();
+        try {
+            return pendingWrites != null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private double measure(ToDoubleFunction<CustomerTrigramIndex> metric) {
+        lock.readLock().lock();
+        try {
+            return index == null ? 0 : metric.applyAsDouble(index);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void write(Consumer<CustomerTrigramIndex> writer) {
+        lock.writeLock().lock();
+        try {
+            if (pendingWrites != null) {
+                pendingWrites.add(writer);
+            }
+            if (index != null) {
+                writer.accept(index);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
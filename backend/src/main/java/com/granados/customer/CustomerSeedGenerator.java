@@ -0,0 +1,99 @@
+package com.granados.customer;
+
+import com.github.javafaker.Faker;
+
+import java.util.Locale;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+/**
+ * Generates the customers {@link CustomerSeeder} inserts. A customer only depends on the
+ * seed and its index, so the same seed gives the same customers whatever the chunk size,
+ * the number of threads or the order the chunks run in.
+ * <p>
+ * Names are drawn from pools Faker fills once, first names match the gender and a few
+ * names are much more common than the rest like in real data. Ages cluster around 40,
+ * and the index in the email keeps every email unique. The domain carries the seed, so
+ * customers of different seeds never clash.
+ */
+class CustomerSeedGenerator {
+
+    private static final int NAME_POOL_SIZE = 2048;
+    private static final int MIN_AGE = 16;
+    private static final int MAX_AGE = 99;
+
+    private final long seed;
+    private final String[] maleFirstNames = new String[NAME_POOL_SIZE];
+    private final String[] femaleFirstNames = new String[NAME_POOL_SIZE];
+    private final String[] lastNames = new String[NAME_POOL_SIZE];
+    // the names as they appear in emails, worked out once per name instead of per customer
+    private final String[] maleFirstLocalParts = new String[NAME_POOL_SIZE];
+    private final String[] femaleFirstLocalParts = new String[NAME_POOL_SIZE];
+    private final String[] lastLocalParts = new String[NAME_POOL_SIZE];
+    private final String domain;
+
+    CustomerSeedGenerator(long seed) {
+        this.seed = seed;
+        this.domain = "@seed-" + seed + ".granados.com";
+        Faker faker = new Faker(Locale.ENGLISH, new Random(seed));
+        for (int i = 0; i < NAME_POOL_SIZE; i++) {
+            maleFirstNames[i] = faker.resolve("name.male_first_name");
+            femaleFirstNames[i] = faker.resolve("name.female_first_name");
+            lastNames[i] = faker.name().lastName();
+            maleFirstLocalParts[i] = localPart(maleFirstNames[i]);
+            femaleFirstLocalParts[i] = localPart(femaleFirstNames[i]);
+            lastLocalParts[i] = localPart(lastNames[i]);
+        }
+    }
+
+    Customer customer(long index) {
+        SplittableRandom random = random(index);
+        Gender gender = random.nextBoolean() ? Gender.MALE : Gender.FEMALE;
+        int firstName = pick(random);
+        int lastName = pick(random);
+        String[] firstNames = gender == Gender.MALE ? maleFirstNames : femaleFirstNames;
+        return new Customer(
+                firstNames[firstName] + " " + lastNames[lastName],
+                email(gender, firstName, lastName, index),
+                age(random),
+                gender);
+    }
+
+    /**
+     * Returns the email of the customer at {@code index}, without generating the rest.
+     */
+    String email(long index) {
+        SplittableRandom random = random(index);
+        Gender gender = random.nextBoolean() ? Gender.MALE : Gender.FEMALE;
+        int firstName = pick(random);
+        return email(gender, firstName, pick(random), index);
+    }
+
+    // the gender and names are drawn first, email(index) relies on it
+    private SplittableRandom random(long index) {
+        return new SplittableRandom(seed * 0x9E3779B97F4A7C15L + index);
+    }
+
+    private String email(Gender gender, int firstName, int lastName, long index) {
+        String[] firstLocalParts = gender == Gender.MALE ? maleFirstLocalParts : femaleFirstLocalParts;
+        return firstLocalParts[firstName] + "." + lastLocalParts[lastName] + "." + index + domain;
+    }
+
+    // squaring a uniform draw favours the start of the pool, the first tenth of the names
+    // is given to about a third of the customers and the long tail shares the rest
+    private static int pick(SplittableRandom random) {
+        double draw = random.nextDouble();
+        return (int) (draw * draw * NAME_POOL_SIZE);
+    }
+
+    private static int age(SplittableRandom random) {
+        // Box-Muller, 1 - u keeps the logarithm away from 0
+        double gaussian = Math.sqrt(-2 * Math.log(1 - random.nextDouble()))
+                * Math.cos(2 * Math.PI * random.nextDouble());
+        return (int) Math.max(MIN_AGE, Math.min(MAX_AGE, Math.round(40 + 15 * gaussian)));
+    }
+
+    private static String localPart(String name) {
+        return name.toLowerCase(Locale.ROOT).replaceAll("[^a-z]", "");
+    }
+}
@@ -0,0 +1,222 @@
+package com.granados.customer;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fills the customer table with {@code customer.seed.count} generated customers, to test
+ * against production sized data. Off unless {@code customer.seed.enabled} is set.
+ * <p>
+ * The customers are split into chunks that are generated in parallel and streamed with
+ * {@code COPY}, one transaction per chunk. A chunk is skipped when its first customer is
+ * already there, so seeding again with the same seed and chunk size only adds the chunks
+ * that are missing, after a restart half way through for example.
+ * <p>
+ * Seeding runs once the beans are created but before the scheduled rebuilds and the web
+ * server start, so the search index, stats and email filter are built from the seeded table
+ * and no request sees it half filled.
+ */
+@Component
+@ConditionalOnProperty(name = "customer.seed.enabled", havingValue = "true")
+public class CustomerSeeder implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(CustomerSeeder.class);
+
+    private static final String COPY_SQL = "COPY customer(id, name, email, age, gender) FROM STDIN";
+    // rows are sent to the server whenever this much is buffered
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private final DataSource dataSource;
+    private final JdbcTemplate template;
+    private final CustomerIdAllocator idAllocator;
+    private final CustomerSeedGenerator generator;
+    private final long count;
+    private final int chunkSize;
+    private final int parallelism;
+    private final long progressIntervalNanos;
+
+    public CustomerSeeder(DataSource dataSource,
+                          JdbcTemplate template,
+                          CustomerIdAllocator idAllocator,
+                          @Value("${customer.seed.count:10000000}") long count,
+                          @Value("${customer.seed.seed:42}") long seed,
+                          @Value("${customer.seed.chunk-size:50000}") int chunkSize,
+                          // 0 is one thread per processor
+                          @Value("${customer.seed.parallelism:0}") int parallelism,
+                          @Value("${customer.seed.progress-interval:PT5S}") Duration progressInterval) {
+        this.dataSource = dataSource;
+        this.template = template;
+        this.idAllocator = idAllocator;
+        this.generator = new CustomerSeedGenerator(seed);
+        this.count = count;
+        this.chunkSize = chunkSize;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.progressIntervalNanos = progressInterval.toNanos();
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        seed();
+    }
+
+    /**
+     * Inserts the customers that are not there yet and returns how many were inserted.
+     */
+    public long seed() {
+        long chunks = (count + chunkSize - 1) / chunkSize;
+        int threads = (int) Math.min(parallelism, Math.max(chunks, 1));
+        log.info("Seeding {} customers in {} chunks on {} threads", count, chunks, threads);
+
+        Progress progress = new Progress();
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable ->
+                new Thread(runnable, "customer-seeder-" + threadCount.incrementAndGet()));
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (long chunk = 0; chunk < chunks; chunk++) {
+                long from = chunk * chunkSize;
+                long to = Math.min(from + chunkSize, count);
+                futures.add(executor.submit(() -> {
+                    if (seedChunk(from, to)) {
+                        progress.inserted(to - from);
+                    } else {
+                        progress.skipped(to - from);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Seeding customers failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Seeding customers was interrupted", e);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        progress.report("Seeded");
+        return progress.inserted.get();
+    }
+
+    // returns false when the chunk was seeded before
+    private boolean seedChunk(long from, long to) throws SQLException {
+        Boolean seeded = template.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM customer WHERE email = ?)",
+                Boolean.class,
+                generator.email(from));
+        if (Boolean.TRUE.equals(seeded)) {
+            return false;
+        }
+
+        int[] ids = idAllocator.nextIds((int) (to - from));
+        try (Connection connection = dataSource.getConnection()) {
+            // the connection is in auto-commit, so the whole COPY is one transaction
+            CopyIn copy = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_SQL);
+            try {
+                StringBuilder rows = new StringBuilder(COPY_BUFFER_SIZE + 256);
+                for (long index = from; index < to; index++) {
+                    Customer customer = generator.customer(index);
+                    rows.append(ids[(int) (index - from)]).append('\t');
+                    appendText(rows, customer.getName()).append('\t');
+                    appendText(rows, customer.getEmail()).append('\t');
+                    rows.append(customer.getAge()).append('\t');
+                    rows.append(customer.getGender().name()).append('\n');
+                    if (rows.length() >= COPY_BUFFER_SIZE) {
+                        write(copy, rows);
+                    }
+                }
+                write(copy, rows);
+                copy.endCopy();
+            } finally {
+                if (copy.isActive()) {
+                    copy.cancelCopy();
+                }
+            }
+        }
+        return true;
+    }
+
+    private static void write(CopyIn copy, StringBuilder rows) throws SQLException {
+        byte[] bytes = rows.toString().getBytes(StandardCharsets.UTF_8);
+        copy.writeToCopy(bytes, 0, bytes.length);
+        rows.setLength(0);
+    }
+
+    // the text format of COPY, a backslash, tab or line break in a value must be escaped
+    private static StringBuilder appendText(StringBuilder rows, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\' -> rows.append("\\\\");
+                case '\t' -> rows.append("\\t");
+                case '\n' -> rows.append("\\n");
+                case '\r' -> rows.append("\\r");
+                default -> rows.append(c);
+            }
+        }
+        return rows;
+    }
+
+    private class Progress {
+
+        private final long start = System.nanoTime();
+        private final AtomicLong inserted = new AtomicLong();
+        private final AtomicLong skipped = new AtomicLong();
+        private final AtomicLong nextReport = new AtomicLong(start + progressIntervalNanos);
+
+        void inserted(long rows) {
+            inserted.addAndGet(rows);
+            reportEveryInterval();
+        }
+
+        void skipped(long rows) {
+            skipped.addAndGet(rows);
+            reportEveryInterval();
+        }
+
+        // only the thread that moves the next report time on logs
+        private void reportEveryInterval() {
+            long now = System.nanoTime();
+            long next = nextReport.get();
+            if (now >= next && nextReport.compareAndSet(next, now + progressIntervalNanos)) {
+                report("Seeding");
+            }
+        }
+
+        void report(String what) {
+            long done = inserted.get() + skipped.get();
+            double seconds = Math.max(System.nanoTime() - start, 1) / 1e9;
+            log.info("{} {} of {} customers ({}%), {} already there, {} rows/s",
+                    what,
+                    done,
+                    count,
+                    count == 0 ? 100 : done * 100 / count,
+                    skipped.get(),
+                    Math.round(inserted.get() / seconds));
+        }
+    }
+}
@@ -1,81 +1,247 @@
 package com.granados.customer;
 
 import com.granados.exception.DuplicateResourceException;
+import com.granados.exception.PreconditionFailedException;
 import com.granados.exception.RequestValidationException;
 import com.granados.exception.ResourceNotFoundException;
+import com.granados.jdbc.DataSourceRouting;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
-
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Reads that only serve the caller are marked read-only and may be answered by the read
+ * replica, the lookups that decide a write stay on the primary.
+ */
 @Service
 public class CustomerService {
 
+    static final int DEFAULT_PAGE_SIZE = 100;
+    static final int MAX_PAGE_SIZE = 1000;
+    static final int MAX_BATCH_SIZE = 10_000;
+
     private final CustomerDAO customerDAO;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public CustomerService(@Qualifier("jdbc") CustomerDAO customerDAO) {
+    public CustomerService(@Qualifier("customerDAO") CustomerDAO customerDAO,
+                           ApplicationEventPublisher eventPublisher) {
         this.customerDAO = customerDAO;
+        this.eventPublisher = eventPublisher;
     }
 
     public List<Customer> getAllCustomers(){
-        return customerDAO.selectAllCustomers();
+        return DataSourceRouting.readOnly(customerDAO::selectAllCustomers);
+    }
+
+    public CustomerPage getCustomers(Integer after, Integer limit){
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
+        if(pageSize < 1 || pageSize > MAX_PAGE_SIZE){
+            throw new RequestValidationException(
+                    "limit must be between 1 and %s".formatted(MAX_PAGE_SIZE));
+        }
+
+        // one extra row tells us whether there is a next page without a count query
+        List<Customer> customers = DataSourceRouting.readOnly(() -> customerDAO.selectCustomersAfter(
+                after == null ? 0 : after, pageSize + 1));
+        if(customers.size() <= pageSize){
+            return new CustomerPage(customers, null);
+        }
+
+        List<Customer> page = customers.subList(0, pageSize);
+        return new CustomerPage(page, page.get(pageSize - 1).getId());
+    }
+
+    public List<Customer> getCustomers(CustomerFilter filter){
+        if(filter.minAge() != null && filter.maxAge() != null
+                && filter.minAge() > filter.maxAge()){
+            throw new RequestValidationException("minAge must not be greater than maxAge");
+        }
+        // there is no next page to a filtered list, so it is cut at the largest page
+        // unless the caller asks for less
+        int limit = filter.limit() == null ? MAX_PAGE_SIZE : filter.limit();
+        if(limit < 1 || limit > MAX_PAGE_SIZE){
+            throw new RequestValidationException(
+                    "limit must be between 1 and %s".formatted(MAX_PAGE_SIZE));
+        }
+        return DataSourceRouting.readOnly(() -> customerDAO.selectCustomers(filter.withLimit(limit)));
+    }
+
+    /**
+     * Returns a counter that changes whenever any customer is written, so it can
+     * validate cached lists without reading them.
+     */
+    public long getCustomersVersion(){
+        return DataSourceRouting.readOnly(customerDAO::selectCustomersVersion);
+    }
+
+    /**
+     * Returns the counter that validates filtered lists, empty when they are answered
+     * from a snapshot that may not have the latest writes yet.
+     */
+    public OptionalLong getFilteredCustomersVersion(){
+        return DataSourceRouting.readOnly(customerDAO::selectFilteredCustomersVersion);
+    }
+
+    public void exportCustomers(Consumer<Customer> consumer){
+        DataSourceRouting.readOnly(() -> customerDAO.forEachCustomer(consumer));
     }
 
     public Customer getCustomer(Integer id){
-        return customerDAO.selectCustomerById(id)
+        return DataSourceRouting.readOnly(() -> customerDAO.selectCustomerById(id))
                 .orElseThrow(() -> new ResourceNotFoundException(
                         "customer with id [%s] not found".formatted(id)
                 ));
     }
 
-    public void addCustomer(CustomerRegistrationRequest customerRequest){
-        if(customerDAO.existsPersonWithEmail(customerRequest.email())){
-            throw new DuplicateResourceException("email already taken");
-        }
-
+    public Integer addCustomer(CustomerRegistrationRequest customerRequest){
         Customer customer = new Customer(
                 customerRequest.name(),
                 customerRequest.email(),
                 customerRequest.age(),
                 customerRequest.gender());
-        customerDAO.insertCustomer(customer);
+        Integer id = customerDAO.insertCustomerIfAbsent(customer)
+                .orElseThrow(() -> new DuplicateResourceException("email already taken"));
+        eventPublisher.publishEvent(new CustomerCreatedEvent(List.of(new Customer(
+                id,
+                customer.getName(),
+                customer.getEmail(),
+                customer.getAge(),
+                customer.getGender(),
+                0))));
+        return id;
     }
 
-    public void deleteCustomerById(Integer id) {
-        if(!customerDAO.existsPersonWithId(id)){
-            throw new ResourceNotFoundException(
-                    "customer with id [%s] not found".formatted(id));
+    @Transactional
+    public List<CustomerRegistrationResult> addCustomers(
+            List<CustomerRegistrationRequest> customerRequests){
+        if(customerRequests.size() > MAX_BATCH_SIZE){
+            throw new RequestValidationException(
+                    "batch must not contain more than %s customers".formatted(MAX_BATCH_SIZE));
         }
-        customerDAO.deleteCustomerById(id);
+
+        // one set based lookup for the whole batch; emails repeated inside the
+        // batch are rejected the same way as the ones already registered
+        Set<String> takenEmails = new HashSet<>(customerDAO.selectExistingEmails(
+                customerRequests.stream()
+                        .map(CustomerRegistrationRequest::email)
+                        .toList()));
+
+        List<CustomerRegistrationResult> results = new ArrayList<>(customerRequests.size());
+        List<Customer> customers = new ArrayList<>(customerRequests.size());
+        for (CustomerRegistrationRequest customerRequest : customerRequests) {
+            if(!takenEmails.add(customerRequest.email())){
+                results.add(new CustomerRegistrationResult(
+                        customerRequest.email(),
+                        CustomerRegistrationResult.Status.EMAIL_TAKEN));
+                continue;
+            }
+            customers.add(new Customer(
+                    customerRequest.name(),
+                    customerRequest.email(),
+                    customerRequest.age(),
+                    customerRequest.gender()));
+            results.add(new CustomerRegistrationResult(
+                    customerRequest.email(),
+                    CustomerRegistrationResult.Status.CREATED));
+        }
+
+        if(!customers.isEmpty()){
+            try {
+                customerDAO.insertCustomers(customers);
+            } catch (DataIntegrityViolationException e) {
+                throw new DuplicateResourceException("email already taken");
+            }
+            eventPublisher.publishEvent(new CustomerCreatedEvent(customers));
+        }
+        return results;
     }
 
-    public void updateCustomer(Integer id, CustomerUpdateRequest customerRequest) {
-        Customer customer = getCustomer(id);
+    public void deleteCustomerById(Integer id) {
+        Customer deleted = customerDAO.deleteCustomerById(id)
+                .orElseThrow(() -> new ResourceNotFoundException(
+                        "customer with id [%s] not found".formatted(id)));
+        eventPublisher.publishEvent(new CustomerDeletedEvent(deleted));
+    }
 
-        boolean changes = false;
+    public void deleteCustomerById(Integer id, Integer expectedVersion) {
+        if (expectedVersion == null) {
+            deleteCustomerById(id);
+            return;
+        }
+        Customer deleted = customerDAO.deleteCustomerById(id, expectedVersion)
+                .orElseThrow(() -> versionMismatch(id));
+        eventPublisher.publishEvent(new CustomerDeletedEvent(deleted));
+    }
 
-        if(customerRequest.name() != null && !customerRequest.name().equals(customer.getName())){
-            customer.setName(customerRequest.name());
-            changes = true;
+    public Customer updateCustomer(Integer id, CustomerUpdateRequest customerRequest) {
+        return updateCustomer(id, customerRequest, null);
+    }
+
+    public Customer updateCustomer(Integer id,
+                                   CustomerUpdateRequest customerRequest,
+                                   Integer expectedVersion) {
+        // read on the primary, a lagging replica would check If-Match, diff the changes
+        // and hand the listeners a previous row that is no longer the stored one
+        Customer customer = customerDAO.selectCustomerById(id)
+                .orElseThrow(() -> new ResourceNotFoundException(
+                        "customer with id [%s] not found".formatted(id)));
+        if (expectedVersion != null && !expectedVersion.equals(customer.getVersion())) {
+            throw versionMismatch(id);
         }
 
-        if(customerRequest.age() != null && !customerRequest.age().equals(customer.getAge())){
-            customer.setAge(customerRequest.age());
-            changes = true;
+        String name = changedValue(customerRequest.name(), customer.getName());
+        String email = changedValue(customerRequest.email(), customer.getEmail());
+        Integer age = changedValue(customerRequest.age(), customer.getAge());
+
+        if (name == null && email == null && age == null) {
+            throw new RequestValidationException("no data changes found");
         }
 
-        if(customerRequest.email() != null && !customerRequest.email().equals(customer.getEmail())){
-            if(customerDAO.existsPersonWithEmail(customerRequest.email())){
-                throw new DuplicateResourceException("email already taken");
+        // the unique constraint decides whether the new email is taken,
+        // which saves the existsPersonWithEmail round trip
+        CustomerUpdateRequest changes = new CustomerUpdateRequest(name, email, age);
+        Customer updated;
+        try {
+            if (expectedVersion == null) {
+                updated = customerDAO.updateCustomer(id, changes)
+                        .orElseThrow(() -> new ResourceNotFoundException(
+                                "customer with id [%s] not found".formatted(id)));
+            } else {
+                // the version is checked again by the update itself, it may
+                // have changed since the read above
+                updated = customerDAO.updateCustomer(id, changes, expectedVersion)
+                        .orElseThrow(() -> versionMismatch(id));
             }
-            customer.setEmail(customerRequest.email());
-            changes = true;
+        } catch (OptimisticLockingFailureException e) {
+            throw new PreconditionFailedException(
+                    "customer with id [%s] was modified concurrently".formatted(id));
+        } catch (DataIntegrityViolationException e) {
+            throw new DuplicateResourceException("email already taken");
         }
+        eventPublisher.publishEvent(new CustomerUpdatedEvent(customer, updated));
+        return updated;
+    }
 
-        if (!changes) {
-            throw new RequestValidationException("no data changes found");
+    private RuntimeException versionMismatch(Integer id) {
+        if (!customerDAO.existsPersonWithId(id)) {
+            return new ResourceNotFoundException(
+                    "customer with id [%s] not found".formatted(id));
         }
+        return new PreconditionFailedException(
+                "customer with id [%s] does not match the expected version".formatted(id));
+    }
 
-        customerDAO.updateCustomer(customer);
+    private static <T> T changedValue(T requested, T current) {
+        return requested != null && !requested.equals(current) ? requested : null;
     }
 }
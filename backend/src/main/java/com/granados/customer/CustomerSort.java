@@ -0,0 +1,118 @@
+package com.granados.customer;
+
+import com.granados.exception.RequestValidationException;
+
+import java.util.Comparator;
+import java.util.Locale;
+
+/**
+ * Order of a filtered customer list. Ties are always broken by ascending id, and free
+ * text is compared by code point rather than by the database collation, so every DAO
+ * returns equal rows in the same order.
+ */
+public record CustomerSort(Property property, boolean descending) {
+
+    public static final CustomerSort BY_ID = new CustomerSort(Property.ID, false);
+
+    public enum Property {
+        ID("id", false, Comparator.comparing(Customer::getId)),
+        NAME("name", true, Comparator.comparing(Customer::getName, CustomerSort::compareCodePoints)),
+        EMAIL("email", true, Comparator.comparing(Customer::getEmail, CustomerSort::compareCodePoints)),
+        AGE("age", false, Comparator.comparing(Customer::getAge)),
+        // stored as text, so it sorts by name rather than by ordinal; the names are upper
+        // case ASCII, which every collation orders the same way
+        GENDER("gender", false, Comparator.comparing(c -> c.getGender().name()));
+
+        private final String column;
+        private final boolean freeText;
+        private final Comparator<Customer> comparator;
+
+        Property(String column, boolean freeText, Comparator<Customer> comparator) {
+            this.column = column;
+            this.freeText = freeText;
+            this.comparator = comparator;
+        }
+
+        public String column() {
+            return column;
+        }
+
+        /**
+         * Returns whether the column has to be ordered by code point, {@code COLLATE "C"}
+         * on a UTF-8 database, to match {@link #comparator()}.
+         */
+        public boolean freeText() {
+            return freeText;
+        }
+    }
+
+    // the order of COLLATE "C" on UTF-8, String.compareTo compares UTF-16 units instead,
+    // which puts characters beyond U+FFFF before those from U+E000
+    static int compareCodePoints(String a, String b) {
+        int length = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < length) {
+            int left = a.codePointAt(i);
+            int right = b.codePointAt(i);
+            if (left != right) {
+                return Integer.compare(left, right);
+            }
+            i += Character.charCount(left);
+        }
+        return Integer.compare(a.length(), b.length());
+    }
+
+    /**
+     * Parses {@code property} or {@code property,asc|desc}, e.g. {@code age,desc}.
+     */
+    public static CustomerSort parse(String value) {
+        if (value == null || value.isBlank()) {
+            return BY_ID;
+        }
+        String[] parts = value.split(",", -1);
+        if (parts.length > 2) {
+            throw invalid(value);
+        }
+        Property property;
+        try {
+            property = Property.valueOf(parts[0].trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw invalid(value);
+        }
+        if (parts.length == 1) {
+            return new CustomerSort(property, false);
+        }
+        return switch (parts[1].trim().toLowerCase(Locale.ROOT)) {
+            case "asc" -> new CustomerSort(property, false);
+            case "desc" -> new CustomerSort(property, true);
+            default -> throw invalid(value);
+        };
+    }
+
+    private static RequestValidationException invalid(String value) {
+        return new RequestValidationException(
+                "invalid sort [%s], expected one of id, name, email, age, gender optionally followed by ,asc or ,desc"
+                        .formatted(value));
+    }
+
+    /**
+     * Returns the SQL ORDER BY clause. Columns come from {@link Property}, never from the request.
+     */
+    String orderBy() {
+        String direction = descending ? " DESC" : "";
+        if (property == Property.ID) {
+            return "ORDER BY id" + direction;
+        }
+        String collation = property.freeText ? " COLLATE \"C\"" : "";
+        return "ORDER BY " + property.column + collation + direction + ", id";
+    }
+
+    Comparator<Customer> comparator() {
+        Comparator<Customer> comparator = descending
+                ? property.comparator.reversed()
+                : property.comparator;
+        return property == Property.ID
+                ? comparator
+                : comparator.thenComparing(Property.ID.comparator);
+    }
+}
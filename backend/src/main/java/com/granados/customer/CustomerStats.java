@@ -0,0 +1,71 @@
+package com.granados.customer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Customer counts by gender and by age, in buckets of {@link #AGE_BUCKET_WIDTH} years
+ * with a last open ended bucket.
+ */
+public record CustomerStats(
+        long total,
+        Map<Gender, Long> genders,
+        List<AgeRange> ages) {
+
+    public static final int AGE_BUCKET_WIDTH = 10;
+    public static final int AGE_BUCKETS = 11;
+
+    public record AgeRange(int from, Integer to, long customers) {}
+
+    public static int ageBucket(int age) {
+        return Math.min(Math.max(age, 0) / AGE_BUCKET_WIDTH, AGE_BUCKETS - 1);
+    }
+
+    /**
+     * Builds the stats from counts indexed by {@link Gender#ordinal()} and by {@link #ageBucket(int)}.
+     */
+    public static CustomerStats of(long[] genderCounts, long[] ageCounts) {
+        Map<Gender, Long> genders = new EnumMap<>(Gender.class);
+        long total = 0;
+        for (Gender gender : Gender.values()) {
+            genders.put(gender, genderCounts[gender.ordinal()]);
+            total += genderCounts[gender.ordinal()];
+        }
+        List<AgeRange> ages = new ArrayList<>(AGE_BUCKETS);
+        for (int bucket = 0; bucket < AGE_BUCKETS; bucket++) {
+            int from = bucket * AGE_BUCKET_WIDTH;
+            Integer to = bucket == AGE_BUCKETS - 1 ? null : from + AGE_BUCKET_WIDTH - 1;
+            ages.add(new AgeRange(from, to, ageCounts[bucket]));
+        }
+        return new CustomerStats(
+                total,
+                Collections.unmodifiableMap(genders),
+                Collections.unmodifiableList(ages));
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static final class Builder {
+
+        private final long[] genderCounts = new long[Gender.values().length];
+        private final long[] ageCounts = new long[AGE_BUCKETS];
+
+        private Builder() {
+        }
+
+        public Builder add(Gender gender, int age, long customers) {
+            genderCounts[gender.ordinal()] += customers;
+            ageCounts[ageBucket(age)] += customers;
+            return this;
+        }
+
+        public CustomerStats build() {
+            return of(genderCounts, ageCounts);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.granados.customer;
+
+import com.granados.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Customer counts by gender and age kept in {@link LongAdder} cells, so reading them
+ * costs the same whatever the table size and writers never contend on a lock.
+ * <p>
+ * The events published by {@link CustomerService} move the counts as customers are
+ * created, updated and deleted. {@link #reconcile()} compares them with the database
+ * when the scheduler starts and on an interval, and adds the difference, which fixes
+ * drift from writes made by other application instances or outside the service. The
+ * database is read again when events arrive during the read, as there is no telling
+ * whether it saw their writes, and the correction is skipped until the next interval
+ * when it keeps happening.
+ * <p>
+ * Reads never touch the database. Until the first reconcile the counts only hold the
+ * events since startup, so they are not served.
+ */
+@Service
+@Profile("!reactive")
+public class CustomerStatsService {
+
+    private static final Logger log = LoggerFactory.getLogger(CustomerStatsService.class);
+    private static final Gender[] GENDERS = Gender.values();
+    private static final int RECONCILE_ATTEMPTS = 3;
+
+    private final CustomerDAO customerDAO;
+    private final LongAdder[] genderCounts = adders(GENDERS.length);
+    private final LongAdder[] ageCounts = adders(CustomerStats.AGE_BUCKETS);
+    // moves with every event, an update and a delete can leave the counts as they were
+    private final LongAdder events = new LongAdder();
+    private final Lock reconcileLock = new ReentrantLock();
+    private final Counter drift;
+    private volatile boolean reconciled;
+    private volatile CustomerStats snapshot;
+
+    public CustomerStatsService(@Qualifier("customerDAO") CustomerDAO customerDAO,
+                                MeterRegistry meterRegistry) {
+        this.customerDAO = customerDAO;
+        this.drift = Counter.builder("customer.stats.drift")
+                .description("Customers the in-process stats were off by when reconciled")
+                .register(meterRegistry);
+    }
+
+    private static LongAdder[] adders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    /**
+     * Returns the current counts. The last result is handed out again for as long as
+     * no count moved, so polling dashboards do not allocate.
+     *
+     * @throws ServiceUnavailableException before the first reconcile
+     */
+    public CustomerStats getStats() {
+        if (!reconciled) {
+            throw new ServiceUnavailableException("customer stats are not ready yet");
+        }
+        CustomerStats stats = snapshot;
+        if (stats == null || !isCurrent(stats)) {
+            stats = CustomerStats.of(sums(genderCounts), sums(ageCounts));
+            snapshot = stats;
+        }
+        return stats;
+    }
+
+    private boolean isCurrent(CustomerStats stats) {
+        for (Gender gender : GENDERS) {
+            if (genderCounts[gender.ordinal()].sum() != stats.genders().get(gender)) {
+                return false;
+            }
+        }
+        for (int i = 0; i < ageCounts.length; i++) {
+            if (ageCounts[i].sum() != stats.ages().get(i).customers()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long[] sums(LongAdder[] adders) {
+        long[] sums = new long[adders.length];
+        for (int i = 0; i < adders.length; i++) {
+            sums[i] = adders[i].sum();
+        }
+        return sums;
+    }
+
+    @Scheduled(fixedDelayString = "${customer.stats.reconcile-interval:PT15M}")
+    public void reconcile() {
+        reconcileLock.lock();
+        try {
+            for (int attempt = 1; attempt <= RECONCILE_ATTEMPTS; attempt++) {
+                // nothing is served before the first reconcile, so its last attempt takes
+                // the read anyway and leaves the few raced events to the next reconcile
+                boolean evenIfRaced = attempt == RECONCILE_ATTEMPTS && !reconciled;
+                if (tryReconcile(evenIfRaced)) {
+                    return;
+                }
+            }
+            log.debug("Customer stats not reconciled, events kept arriving while the database was read");
+        } finally {
+            reconcileLock.unlock();
+        }
+    }
+
+    // the database may not be reachable at startup, stats are unavailable until it is
+    @Scheduled(
+            initialDelayString = "${customer.stats.ready-retry-interval:PT10S}",
+            fixedDelayString = "${customer.stats.ready-retry-interval:PT10S}")
+    public void reconcileUntilReady() {
+        if (!reconciled) {
+            reconcile();
+        }
+    }
+
+    // an event whose write the read may or may not have seen would be counted twice or
+    // not at all, so the counts are only corrected when no event arrived during the read
+    private boolean tryReconcile(boolean evenIfRaced) {
+        long eventsBefore = events.sum();
+        long[] genders = sums(genderCounts);
+        long[] ages = sums(ageCounts);
+        CustomerStats actual = customerDAO.selectCustomerStats();
+        if (events.sum() != eventsBefore && !evenIfRaced) {
+            return false;
+        }
+        long off = 0;
+        for (Gender gender : GENDERS) {
+            long difference = actual.genders().get(gender) - genders[gender.ordinal()];
+            genderCounts[gender.ordinal()].add(difference);
+            off += Math.abs(difference);
+        }
+        for (int i = 0; i < ages.length; i++) {
+            ageCounts[i].add(actual.ages().get(i).customers() - ages[i]);
+        }
+        if (reconciled && off > 0) {
+            log.info("Customer stats were off by {} customers", off);
+            drift.increment(off);
+        }
+        reconciled = true;
+        return true;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCreated(CustomerCreatedEvent event) {
+        event.customers().forEach(customer -> count(customer, 1));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUpdated(CustomerUpdatedEvent event) {
+        count(event.previous(), -1);
+        count(event.current(), 1);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDeleted(CustomerDeletedEvent event) {
+        count(event.customer(), -1);
+    }
+
+    private void count(Customer customer, int customers) {
+        genderCounts[customer.getGender().ordinal()].add(customers);
+        ageCounts[CustomerStats.ageBucket(customer.getAge())].add(customers);
+        // after the counts, so a reconcile that sees no new event has them in its sums
+        events.increment();
+    }
+}
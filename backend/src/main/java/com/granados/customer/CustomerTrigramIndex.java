@@ -0,0 +1,264 @@
+package com.granados.customer;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.PriorityQueue;
+
+/**
+ * Inverted index from the trigrams of customer names and emails to customer ids.
+ * Text is lower cased, stripped of accents and split into words, and every word is
+ * padded like pg_trgm does, so {@code "Germán"} yields {@code "  g", " ge", "ger",
+ * "erm", "rma", "man", "an "}. Each trigram is packed into an {@code int} and maps to
+ * a sorted {@code int[]} of the ids that contain it. Not thread safe.
+ */
+class CustomerTrigramIndex {
+
+    // codes with this bit set are hashes of trigrams that do not fit in 3 x 10 bits
+    private static final int HASHED = 1 << 30;
+    private static final int DIRECT_CHAR_LIMIT = 1 << 10;
+
+    private final IntObjectHashMap<Postings> postings = new IntObjectHashMap<>();
+    // trigram count by customer id, 0 when the id is not indexed
+    private int[] trigramCounts = new int[1024];
+    private int size;
+    private int lastId;
+
+    int size() {
+        return size;
+    }
+
+    int lastId() {
+        return lastId;
+    }
+
+    /**
+     * Indexes a customer, adding an id that is already indexed only adds the trigrams it lacks.
+     */
+    void add(Customer customer) {
+        int id = customer.getId();
+        int[] trigrams = trigrams(customer);
+        for (int trigram : trigrams) {
+            Postings ids = postings.get(trigram);
+            if (ids == null) {
+                ids = new Postings();
+                postings.put(trigram, ids);
+            }
+            ids.add(id);
+        }
+        if (id >= trigramCounts.length) {
+            trigramCounts = Arrays.copyOf(trigramCounts, Math.max(trigramCounts.length * 2, id + 1));
+        }
+        if (trigramCounts[id] == 0) {
+            size++;
+        }
+        trigramCounts[id] = Math.max(trigrams.length, 1);
+        lastId = Math.max(lastId, id);
+    }
+
+    /**
+     * Removes the trigrams of the given name and email from the customer's id.
+     */
+    void remove(Customer customer) {
+        int id = customer.getId();
+        for (int trigram : trigrams(customer)) {
+            Postings ids = postings.get(trigram);
+            if (ids != null && ids.remove(id) && ids.size == 0) {
+                postings.remove(trigram);
+            }
+        }
+        if (id < trigramCounts.length && trigramCounts[id] != 0) {
+            trigramCounts[id] = 0;
+            size--;
+        }
+    }
+
+    /**
+     * Returns the ids of the customers sharing at least half of the query's trigrams,
+     * best first. Customers sharing more trigrams rank higher, ties are broken by the
+     * Dice coefficient so shorter names and emails win, and then by id.
+     */
+    int[] search(String query, int limit) {
+        int[] trigrams = trigrams(query);
+        if (trigrams.length == 0) {
+            return new int[0];
+        }
+        int minShared = Math.max(1, (trigrams.length + 1) / 2);
+        Postings[] lists = new Postings[trigrams.length];
+        int listCount = 0;
+        for (int trigram : trigrams) {
+            Postings ids = postings.get(trigram);
+            if (ids != null) {
+                lists[listCount++] = ids;
+            }
+        }
+        if (listCount < minShared) {
+            return new int[0];
+        }
+
+        // an id missing from all of the shortest listCount - minShared + 1 lists can be in
+        // at most minShared - 1 others, so only the short lists are merged and the long
+        // ones, typically the trigrams at the start of common words, are binary searched
+        Arrays.sort(lists, 0, listCount, Comparator.comparingInt(list -> list.size));
+        // once limit hits are kept a candidate must share as many trigrams as the worst
+        // of them, which moves more lists from the merge to the binary searches
+        int threshold = minShared;
+        int shortCount = listCount - threshold + 1;
+        int[] positions = new int[listCount];
+        PriorityQueue<Hit> best = new PriorityQueue<>(limit + 1, Hit.WORST_FIRST);
+        while (true) {
+            int id = Integer.MAX_VALUE;
+            for (int list = 0; list < shortCount; list++) {
+                if (positions[list] < lists[list].size) {
+                    id = Math.min(id, lists[list].ids[positions[list]]);
+                }
+            }
+            if (id == Integer.MAX_VALUE) {
+                break;
+            }
+            int shared = 0;
+            for (int list = 0; list < shortCount; list++) {
+                if (positions[list] < lists[list].size && lists[list].ids[positions[list]] == id) {
+                    positions[list]++;
+                    shared++;
+                }
+            }
+            for (int list = shortCount; list < listCount && shared + listCount - list >= threshold; list++) {
+                // candidates ascend, so each search starts where the previous one ended
+                int index = Arrays.binarySearch(lists[list].ids, positions[list], lists[list].size, id);
+                if (index >= 0) {
+                    positions[list] = index + 1;
+                    shared++;
+                } else {
+                    positions[list] = -index - 1;
+                }
+            }
+            if (shared >= threshold) {
+                float dice = 2f * shared / (trigrams.length + trigramCounts[id]);
+                best.add(new Hit(id, shared, dice));
+                if (best.size() > limit) {
+                    best.poll();
+                }
+                if (best.size() == limit && best.peek().shared() > threshold) {
+                    threshold = best.peek().shared();
+                    shortCount = listCount - threshold + 1;
+                }
+            }
+        }
+
+        int[] ids = new int[best.size()];
+        for (int i = ids.length - 1; i >= 0; i--) {
+            ids[i] = best.poll().id();
+        }
+        return ids;
+    }
+
+    /**
+     * Returns an estimate of the heap held by the index.
+     */
+    long sizeBytes() {
+        long[] bytes = {
+                // keys, values and the postings object headers and fields
+                (long) postings.capacity() * (Integer.BYTES + 4) + (long) postings.size() * 32,
+                (long) trigramCounts.length * Integer.BYTES
+        };
+        postings.forEachValue(ids -> bytes[0] += 16 + (long) ids.ids.length * Integer.BYTES);
+        return bytes[0] + bytes[1];
+    }
+
+    private static int[] trigrams(Customer customer) {
+        return trigrams(customer.getName() + " " + customer.getEmail());
+    }
+
+    static int[] trigrams(String text) {
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .toLowerCase(Locale.ROOT);
+        int[] trigrams = new int[normalized.length() * 2 + 2];
+        int count = 0;
+        int i = 0;
+        while (i < normalized.length()) {
+            if (!Character.isLetterOrDigit(normalized.charAt(i))) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < normalized.length() && Character.isLetterOrDigit(normalized.charAt(i))) {
+                i++;
+            }
+            String word = "  " + normalized.substring(start, i) + " ";
+            if (trigrams.length - count < word.length()) {
+                trigrams = Arrays.copyOf(trigrams, trigrams.length * 2 + word.length());
+            }
+            for (int j = 0; j + 3 <= word.length(); j++) {
+                trigrams[count++] = encode(word.charAt(j), word.charAt(j + 1), word.charAt(j + 2));
+            }
+        }
+        int[] sorted = Arrays.copyOf(trigrams, count);
+        Arrays.sort(sorted);
+        int distinct = 0;
+        for (int j = 0; j < sorted.length; j++) {
+            if (j == 0 || sorted[j] != sorted[j - 1]) {
+                sorted[distinct++] = sorted[j];
+            }
+        }
+        return Arrays.copyOf(sorted, distinct);
+    }
+
+    private static int encode(char a, char b, char c) {
+        if (a < DIRECT_CHAR_LIMIT && b < DIRECT_CHAR_LIMIT && c < DIRECT_CHAR_LIMIT) {
+            return a << 20 | b << 10 | c;
+        }
+        int hash = (a * 31 + b) * 31 + c;
+        return HASHED | (hash ^ hash >>> 15) & (HASHED - 1);
+    }
+
+    private record Hit(int id, int shared, float dice) {
+
+        static final Comparator<Hit> WORST_FIRST = Comparator
+                .comparingInt(Hit::shared)
+                .thenComparingDouble(Hit::dice)
+                .thenComparing(Hit::id, Comparator.reverseOrder());
+    }
+
+    /**
+     * Ids in ascending order. New customers have the highest ids, so adds are appends.
+     */
+    private static final class Postings {
+
+        private int[] ids = new int[2];
+        private int size;
+
+        void add(int id) {
+            if (size > 0 && ids[size - 1] >= id) {
+                int index = Arrays.binarySearch(ids, 0, size, id);
+                if (index >= 0) {
+                    return;
+                }
+                insert(-index - 1, id);
+                return;
+            }
+            insert(size, id);
+        }
+
+        boolean remove(int id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index < 0) {
+                return false;
+            }
+            System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+            size--;
+            return true;
+        }
+
+        private void insert(int index, int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size + (size >> 1) + 1);
+            }
+            System.arraycopy(ids, index, ids, index + 1, size - index);
+            ids[index] = id;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.granados.customer;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread safe Bloom filter of emails. {@link #mightContain(String)} never returns
+ * false for an added email, and returns true for other emails with roughly the
+ * configured probability as long as no more than the expected number were added.
+ */
+class EmailBloomFilter {
+
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+    private final long expectedInsertions;
+
+    EmailBloomFilter(long expectedInsertions, double falsePositiveRate) {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("false positive rate must be between 0 and 1");
+        }
+        this.expectedInsertions = Math.max(expectedInsertions, 1);
+        long optimalBits = (long) Math.ceil(
+                -this.expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (optimalBits + 63) >>> 6));
+        this.bits = new AtomicLongArray(words);
+        this.bitCount = (long) words << 6;
+        this.hashCount = (int) Math.max(1, Math.round((double) bitCount / this.expectedInsertions * Math.log(2)));
+    }
+
+    void add(String email) {
+        long hash = hash(email);
+        long h1 = fmix64(hash);
+        long h2 = fmix64(hash ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            if ((bits.get(word) & mask) == 0) {
+                bits.getAndAccumulate(word, mask, (current, m) -> current | m);
+            }
+        }
+    }
+
+    boolean mightContain(String email) {
+        long hash = hash(email);
+        long h1 = fmix64(hash);
+        long h2 = fmix64(hash ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    long expectedInsertions() {
+        return expectedInsertions;
+    }
+
+    long bitCount() {
+        return bitCount;
+    }
+
+    int hashCount() {
+        return hashCount;
+    }
+
+    // 64 bit FNV-1a, String.hashCode has too few bits to derive several hashes from
+    private static long hash(String email) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < email.length(); i++) {
+            hash ^= email.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
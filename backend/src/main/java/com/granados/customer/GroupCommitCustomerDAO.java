@@ -0,0 +1,293 @@
+package com.granados.customer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * {@link CustomerDAO} that coalesces concurrent single customer inserts into group commits.
+ * <p>
+ * Callers of {@link #insertCustomerIfAbsent(Customer)} and {@link #insertCustomer(Customer)}
+ * queue their customer and wait. A flusher thread takes up to {@code maxBatchSize}
+ * customers, or whatever arrived within {@code maxDelay} of the first one, and writes them
+ * with a single {@link CustomerDAO#insertCustomersIfAbsent(List)}, so one round trip and one
+ * commit. Every caller still gets its own id or duplicate email result. If the batch fails
+ * as a whole (a value the table rejects, say) its customers are retried one at a time, so
+ * only the callers at fault see the error. When the queue is full callers insert directly
+ * rather than wait for room.
+ * <p>
+ * The flusher commits on its own connection, so a queued insert is not part of any
+ * transaction the caller has open and is not rolled back with it.
+ */
+public class GroupCommitCustomerDAO implements CustomerDAO, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(GroupCommitCustomerDAO.class);
+
+    static final long IDLE_POLL_MILLIS = 100;
+
+    private final CustomerDAO delegate;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final BlockingQueue<PendingInsert> queue;
+    // offers take the read lock, close takes the write lock, so nothing is queued
+    // after the flusher has been told to drain and stop
+    private final ReadWriteLock lifecycleLock = new ReentrantReadWriteLock();
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    private final DistributionSummary batchSizes;
+    private final Counter directInserts;
+
+    public GroupCommitCustomerDAO(CustomerDAO delegate,
+                                  int maxBatchSize,
+                                  Duration maxDelay,
+                                  int queueCapacity,
+                                  MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSizes = DistributionSummary.builder("customer.group-commit.batch.size")
+                .description("Customers written per group commit")
+                .register(meterRegistry);
+        this.directInserts = Counter.builder("customer.group-commit.direct")
+                .description("Inserts that bypassed a full queue")
+                .register(meterRegistry);
+        Gauge.builder("customer.group-commit.queue", queue, BlockingQueue::size)
+                .description("Inserts waiting for the next group commit")
+                .register(meterRegistry);
+        this.flusher = new Thread(this::flushLoop, "customer-group-commit");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    @Override
+    public Optional<Integer> insertCustomerIfAbsent(Customer customer) {
+        PendingInsert pending = new PendingInsert(customer, new CompletableFuture<>());
+        boolean queued;
+        lifecycleLock.readLock().lock();
+        try {
+            queued = running && queue.offer(pending);
+        } finally {
+            lifecycleLock.readLock().unlock();
+        }
+        if (!queued) {
+            directInserts.increment();
+            return delegate.insertCustomerIfAbsent(customer);
+        }
+        try {
+            return pending.result().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void insertCustomer(Customer customer) {
+        if (insertCustomerIfAbsent(customer).isEmpty()) {
+            throw new DuplicateKeyException("email already taken");
+        }
+    }
+
+    /**
+     * Stops accepting inserts, writes the ones already queued and waits for the flusher.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        lifecycleLock.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            lifecycleLock.writeLock().unlock();
+        }
+        flusher.join();
+    }
+
+    private void flushLoop() {
+        List<PendingInsert> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingInsert first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                collect(batch, System.nanoTime() + maxDelayNanos);
+            } catch (InterruptedException e) {
+                // only close() stops the flusher, and it lets the queue drain first
+                log.warn("Customer group commit flusher interrupted", e);
+            }
+            // what was collected before an interrupt is still written, its callers wait for it
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void collect(List<PendingInsert> batch, long deadline) throws InterruptedException {
+        while (batch.size() < maxBatchSize) {
+            // whatever is queued already joins without waiting
+            if (queue.drainTo(batch, maxBatchSize - batch.size()) > 0) {
+                continue;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return;
+            }
+            PendingInsert next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void flush(List<PendingInsert> batch) {
+        List<Customer> customers = new ArrayList<>(batch.size());
+        for (PendingInsert pending : batch) {
+            customers.add(pending.customer());
+        }
+        batchSizes.record(batch.size());
+        List<Optional<Integer>> ids;
+        try {
+            ids = delegate.insertCustomersIfAbsent(customers);
+        } catch (RuntimeException e) {
+            log.warn("Group commit of {} customers failed, inserting them one by one", batch.size(), e);
+            batch.forEach(this::insertAlone);
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).result().complete(ids.get(i));
+        }
+    }
+
+    private void insertAlone(PendingInsert pending) {
+        try {
+            pending.result().complete(delegate.insertCustomerIfAbsent(pending.customer()));
+        } catch (RuntimeException e) {
+            pending.result().completeExceptionally(e);
+        }
+    }
+
+    @Override
+    public List<Optional<Integer>> insertCustomersIfAbsent(List<Customer> customers) {
+        return delegate.insertCustomersIfAbsent(customers);
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return delegate.selectAllCustomers();
+    }
+
+    @Override
+    public long countCustomers() {
+        return delegate.countCustomers();
+    }
+
+    @Override
+    public CustomerStats selectCustomerStats() {
+        return delegate.selectCustomerStats();
+    }
+
+    @Override
+    public List<Customer> selectCustomersAfter(Integer afterId, int limit) {
+        return delegate.selectCustomersAfter(afterId, limit);
+    }
+
+    @Override
+    public List<Customer> selectCustomers(CustomerFilter filter) {
+        return delegate.selectCustomers(filter);
+    }
+
+    @Override
+    public void forEachCustomer(Consumer<Customer> action) {
+        delegate.forEachCustomer(action);
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Integer id) {
+        return delegate.selectCustomerById(id);
+    }
+
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Integer> ids) {
+        return delegate.selectCustomersByIds(ids);
+    }
+
+    @Override
+    public void insertCustomers(List<Customer> customers) {
+        delegate.insertCustomers(customers);
+    }
+
+    @Override
+    public boolean existsPersonWithEmail(String email) {
+        return delegate.existsPersonWithEmail(email);
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        return delegate.selectExistingEmails(emails);
+    }
+
+    @Override
+    public boolean existsPersonWithId(Integer id) {
+        return delegate.existsPersonWithId(id);
+    }
+
+    @Override
+    public Optional<Customer> deleteCustomerById(Integer id) {
+        return delegate.deleteCustomerById(id);
+    }
+
+    @Override
+    public Optional<Customer> deleteCustomerById(Integer id, int expectedVersion) {
+        return delegate.deleteCustomerById(id, expectedVersion);
+    }
+
+    @Override
+    public Optional<Customer> updateCustomer(Integer id, CustomerUpdateRequest changes) {
+        return delegate.updateCustomer(id, changes);
+    }
+
+    @Override
+    public Optional<Customer> updateCustomer(Integer id, CustomerUpdateRequest changes, int expectedVersion) {
+        return delegate.updateCustomer(id, changes, expectedVersion);
+    }
+
+    @Override
+    public long selectCustomersVersion() {
+        return delegate.selectCustomersVersion();
+    }
+
+    @Override
+    public OptionalLong selectFilteredCustomersVersion() {
+        return delegate.selectFilteredCustomersVersion();
+    }
+
+    private record PendingInsert(Customer customer, CompletableFuture<Optional<Integer>> result) {
+    }
+}
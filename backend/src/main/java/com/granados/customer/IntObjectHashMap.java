@@ -0,0 +1,209 @@
+package com.granados.customer;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Open addressing (linear probing) map from primitive {@code int} keys to values.
+ * Not thread safe, but {@link #get(int)} never throws or loops forever while another
+ * thread writes, so it can be used inside an optimistic read that is validated afterwards.
+ */
+class IntObjectHashMap<V> {
+
+    private static final int EMPTY = 0;
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private int[] keys;
+    private Object[] values;
+    private int size;
+    private int resizeAt;
+
+    private boolean hasZeroKey;
+    private V zeroValue;
+
+    IntObjectHashMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    IntObjectHashMap(int expectedSize) {
+        int capacity = tableSizeFor(Math.max(expectedSize, 2));
+        keys = new int[capacity];
+        values = new Object[capacity];
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(int key) {
+        if (key == EMPTY) {
+            return hasZeroKey ? zeroValue : null;
+        }
+        int[] keys = this.keys;
+        Object[] values = this.values;
+        if (keys.length != values.length) {
+            // caught mid-resize by an optimistic reader
+            return null;
+        }
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        for (int probes = 0; probes <= mask; probes++) {
+            int current = keys[slot];
+            if (current == key) {
+                return (V) values[slot];
+            }
+            if (current == EMPTY) {
+                return null;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    V put(int key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("null values are not supported");
+        }
+        if (key == EMPTY) {
+            V previous = zeroValue;
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                size++;
+            }
+            zeroValue = value;
+            return previous;
+        }
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                V previous = (V) values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        values[slot] = value;
+        keys[slot] = key;
+        if (++size > resizeAt) {
+            resize(keys.length << 1);
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    V remove(int key) {
+        if (key == EMPTY) {
+            V previous = zeroValue;
+            if (hasZeroKey) {
+                hasZeroKey = false;
+                zeroValue = null;
+                size--;
+            }
+            return previous;
+        }
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (keys[slot] != key) {
+            if (keys[slot] == EMPTY) {
+                return null;
+            }
+            slot = (slot + 1) & mask;
+        }
+        V previous = (V) values[slot];
+        size--;
+        shiftBack(slot, mask);
+        return previous;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int capacity() {
+        return keys.length;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    void forEachValue(Consumer<? super V> action) {
+        if (hasZeroKey) {
+            action.accept(zeroValue);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) {
+                action.accept((V) values[i]);
+            }
+        }
+    }
+
+    void clear() {
+        Arrays.fill(keys, EMPTY);
+        Arrays.fill(values, null);
+        hasZeroKey = false;
+        zeroValue = null;
+        size = 0;
+    }
+
+    // backward shift deletion, so lookups never need tombstones
+    private void shiftBack(int gap, int mask) {
+        int slot = gap;
+        while (true) {
+            slot = (slot + 1) & mask;
+            int key = keys[slot];
+            if (key == EMPTY) {
+                break;
+            }
+            int home = mix(key) & mask;
+            boolean movable = gap <= slot
+                    ? home <= gap || home > slot
+                    : home <= gap && home > slot;
+            if (movable) {
+                keys[gap] = key;
+                values[gap] = values[slot];
+                gap = slot;
+            }
+        }
+        keys[gap] = EMPTY;
+        values[gap] = null;
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        int[] newKeys = new int[capacity];
+        Object[] newValues = new Object[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            int key = oldKeys[i];
+            if (key != EMPTY) {
+                int slot = mix(key) & mask;
+                while (newKeys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                newKeys[slot] = key;
+                newValues[slot] = oldValues[i];
+            }
+        }
+        keys = newKeys;
+        values = newValues;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        int capacity = Integer.highestOneBit((int) Math.ceil(expectedSize / LOAD_FACTOR) - 1) << 1;
+        return Math.max(capacity, DEFAULT_CAPACITY);
+    }
+}
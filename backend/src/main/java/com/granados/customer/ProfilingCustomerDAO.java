@@ -0,0 +1,180 @@
+package com.granados.customer;
+
+import com.granados.jdbc.SqlProfiler;
+import org.springframework.aop.support.AopUtils;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Reports every call to another {@link CustomerDAO} to a {@link SqlProfiler}, under the
+ * name of the implementation and the method. Unlike the statements of the
+ * {@code ProfilingJdbcTemplate} this covers JPA and the cursor of
+ * {@link #forEachCustomer(Consumer)}, whose time includes the action run for each row.
+ */
+public class ProfilingCustomerDAO implements CustomerDAO {
+
+    private final CustomerDAO delegate;
+    private final SqlProfiler profiler;
+    private final String name;
+
+    public ProfilingCustomerDAO(CustomerDAO delegate, SqlProfiler profiler) {
+        this.delegate = delegate;
+        this.profiler = profiler;
+        this.name = AopUtils.getTargetClass(delegate).getSimpleName();
+    }
+
+    private <T> T profile(String method, Supplier<T> call, ToLongFunction<T> rows) {
+        long start = System.nanoTime();
+        T result = null;
+        boolean failed = true;
+        try {
+            result = call.get();
+            failed = false;
+            return result;
+        } finally {
+            profiler.recordCall(name + "." + method, System.nanoTime() - start,
+                    failed ? 0 : rows.applyAsLong(result), failed);
+        }
+    }
+
+    private void profile(String method, Runnable call) {
+        profile(method, () -> {
+            call.run();
+            return null;
+        }, result -> 0);
+    }
+
+    private static long size(Collection<?> rows) {
+        return rows.size();
+    }
+
+    private static long present(Optional<?> row) {
+        return row.isPresent() ? 1 : 0;
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return profile("selectAllCustomers", delegate::selectAllCustomers, ProfilingCustomerDAO::size);
+    }
+
+    @Override
+    public long countCustomers() {
+        return profile("countCustomers", delegate::countCustomers, count -> 1);
+    }
+
+    @Override
+    public CustomerStats selectCustomerStats() {
+        return profile("selectCustomerStats", delegate::selectCustomerStats, stats -> 1);
+    }
+
+    @Override
+    public List<Customer> selectCustomersAfter(Integer afterId, int limit) {
+        return profile("selectCustomersAfter",
+                () -> delegate.selectCustomersAfter(afterId, limit), ProfilingCustomerDAO::size);
+    }
+
+    @Override
+    public List<Customer> selectCustomers(CustomerFilter filter) {
+        return profile("selectCustomers", () -> delegate.selectCustomers(filter), ProfilingCustomerDAO::size);
+    }
+
+    @Override
+    public void forEachCustomer(Consumer<Customer> action) {
+        long[] rows = new long[1];
+        profile("forEachCustomer", () -> {
+            delegate.forEachCustomer(customer -> {
+                rows[0]++;
+                action.accept(customer);
+            });
+            return rows;
+        }, counted -> counted[0]);
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Integer id) {
+        return profile("selectCustomerById", () -> delegate.selectCustomerById(id), ProfilingCustomerDAO::present);
+    }
+
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Integer> ids) {
+        return profile("selectCustomersByIds", () -> delegate.selectCustomersByIds(ids), ProfilingCustomerDAO::size);
+    }
+
+    @Override
+    public void insertCustomer(Customer customer) {
+        profile("insertCustomer", () -> delegate.insertCustomer(customer));
+    }
+
+    @Override
+    public Optional<Integer> insertCustomerIfAbsent(Customer customer) {
+        return profile("insertCustomerIfAbsent",
+                () -> delegate.insertCustomerIfAbsent(customer), ProfilingCustomerDAO::present);
+    }
+
+    @Override
+    public List<Optional<Integer>> insertCustomersIfAbsent(List<Customer> customers) {
+        return profile("insertCustomersIfAbsent",
+                () -> delegate.insertCustomersIfAbsent(customers),
+                ids -> ids.stream().filter(Optional::isPresent).count());
+    }
+
+    @Override
+    public void insertCustomers(List<Customer> customers) {
+        profile("insertCustomers", () -> delegate.insertCustomers(customers));
+    }
+
+    @Override
+    public boolean existsPersonWithEmail(String email) {
+        return profile("existsPersonWithEmail", () -> delegate.existsPersonWithEmail(email), exists -> exists ? 1 : 0);
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        return profile("selectExistingEmails", () -> delegate.selectExistingEmails(emails), ProfilingCustomerDAO::size);
+    }
+
+    @Override
+    public boolean existsPersonWithId(Integer id) {
+        return profile("existsPersonWithId", () -> delegate.existsPersonWithId(id), exists -> exists ? 1 : 0);
+    }
+
+    @Override
+    public Optional<Customer> deleteCustomerById(Integer id) {
+        return profile("deleteCustomerById", () -> delegate.deleteCustomerById(id), ProfilingCustomerDAO::present);
+    }
+
+    @Override
+    public Optional<Customer> deleteCustomerById(Integer id, int expectedVersion) {
+        return profile("deleteCustomerById",
+                () -> delegate.deleteCustomerById(id, expectedVersion), ProfilingCustomerDAO::present);
+    }
+
+    @Override
+    public Optional<Customer> updateCustomer(Integer id, CustomerUpdateRequest changes) {
+        return profile("updateCustomer", () -> delegate.updateCustomer(id, changes), ProfilingCustomerDAO::present);
+    }
+
+    @Override
+    public Optional<Customer> updateCustomer(Integer id, CustomerUpdateRequest changes, int expectedVersion) {
+        return profile("updateCustomer",
+                () -> delegate.updateCustomer(id, changes, expectedVersion), ProfilingCustomerDAO::present);
+    }
+
+    @Override
+    public long selectCustomersVersion() {
+        return profile("selectCustomersVersion", delegate::selectCustomersVersion, version -> 1);
+    }
+
+    @Override
+    public OptionalLong selectFilteredCustomersVersion() {
+        return profile("selectFilteredCustomersVersion",
+                delegate::selectFilteredCustomersVersion, version -> version.isPresent() ? 1 : 0);
+    }
+}
@@ -0,0 +1,92 @@
+package com.granados.customer;
+
+import com.granados.exception.RequestValidationException;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import static com.granados.customer.CustomerController.APPLICATION_NDJSON_VALUE;
+import static com.granados.customer.CustomerController.NEXT_CURSOR_HEADER;
+
+/**
+ * {@link CustomerController} for the reactive profile. Unpaged lists and the export
+ * are streamed from the database as the client reads them.
+ */
+@RestController
+@Profile("reactive")
+@RequestMapping("/api/v1/customers")
+public class ReactiveCustomerController {
+
+    private final ReactiveCustomerService service;
+
+    public ReactiveCustomerController(ReactiveCustomerService service) {
+        this.service = service;
+    }
+
+    @GetMapping
+    public Mono<ResponseEntity<Flux<Customer>>> getCustomers(
+            @RequestParam(value = "after", required = false) Integer after,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "minAge", required = false) Integer minAge,
+            @RequestParam(value = "maxAge", required = false) Integer maxAge,
+            @RequestParam(value = "gender", required = false) Gender gender,
+            @RequestParam(value = "name", required = false) String namePrefix,
+            @RequestParam(value = "email", required = false) String email,
+            @RequestParam(value = "sort", required = false) String sort) {
+        if(minAge != null || maxAge != null || gender != null
+                || namePrefix != null || email != null || sort != null){
+            if(after != null){
+                return Mono.error(new RequestValidationException(
+                        "after cannot be combined with filters or sort"));
+            }
+            return Mono.fromSupplier(() -> ResponseEntity.ok(
+                    service.getCustomers(new CustomerFilter(
+                            namePrefix, email, minAge, maxAge, gender, CustomerSort.parse(sort), limit))));
+        }
+        if(after == null && limit == null){
+            return Mono.just(ResponseEntity.ok(service.getAllCustomers()));
+        }
+
+        return service.getCustomers(after, limit).map(page -> {
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if(page.nextCursor() != null){
+                response.header(NEXT_CURSOR_HEADER, page.nextCursor().toString());
+            }
+            return response.body(Flux.fromIterable(page.customers()));
+        });
+    }
+
+    @GetMapping(value = "export", produces = APPLICATION_NDJSON_VALUE)
+    public Flux<Customer> exportCustomers() {
+        return service.getAllCustomers();
+    }
+
+    @GetMapping("{id}")
+    public Mono<Customer> getCustomer(@PathVariable("id") Integer id) {
+        return service.getCustomer(id);
+    }
+
+    @PostMapping
+    public Mono<ResponseEntity<Integer>> registerCustomer(
+            @RequestBody CustomerRegistrationRequest customerRequest,
+            UriComponentsBuilder uriBuilder){
+        return service.addCustomer(customerRequest)
+                .map(id -> ResponseEntity.ok()
+                        .location(uriBuilder.path("/api/v1/customers/{id}").buildAndExpand(id).toUri())
+                        .body(id));
+    }
+
+    @PutMapping("{id}")
+    public Mono<Void> editCustomer(@PathVariable("id") Integer id,
+            @RequestBody CustomerUpdateRequest customerRequest){
+        return service.updateCustomer(id, customerRequest);
+    }
+
+    @DeleteMapping("{id}")
+    public Mono<Void> deleteCustomer(@PathVariable("id") Integer id){
+        return service.deleteCustomerById(id);
+    }
+}
@@ -0,0 +1,14 @@
+package com.granados.customer;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface ReactiveCustomerDAO {
+    Flux<Customer> selectAllCustomers();
+    Flux<Customer> selectCustomersAfter(Integer afterId, int limit);
+    Flux<Customer> selectCustomers(CustomerFilter filter);
+    Mono<Customer> selectCustomerById(Integer id);
+    Mono<Integer> insertCustomerIfAbsent(Customer customer);
+    Mono<Customer> deleteCustomerById(Integer id);
+    Mono<Customer> updateCustomer(Integer id, CustomerUpdateRequest changes);
+}
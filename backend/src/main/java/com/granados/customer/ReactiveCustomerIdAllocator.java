@@ -0,0 +1,61 @@
+package com.granados.customer;
+
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link CustomerIdAllocator} over R2DBC: hands out customer ids from blocks of
+ * {@link CustomerIdAllocator#BLOCK_SIZE} reserved with a single {@code nextval}. The lock
+ * only guards the block in hand and is never held while a block is fetched, so callers
+ * that find it used up at the same time each fetch one. The first id of a fetched block
+ * goes to its caller, and the rest replace the block in hand when it is used up.
+ */
+class ReactiveCustomerIdAllocator {
+
+    private final DatabaseClient client;
+    private final Lock lock = new ReentrantLock();
+    private long next;
+    private long end;
+
+    ReactiveCustomerIdAllocator(DatabaseClient client) {
+        this.client = client;
+    }
+
+    Mono<Integer> nextId() {
+        return Mono.defer(() -> {
+            Integer id = take();
+            return id != null ? Mono.just(id) : fetchBlock().map(this::takeFirst);
+        });
+    }
+
+    private Integer take() {
+        lock.lock();
+        try {
+            return next < end ? Math.toIntExact(next++) : null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Integer takeFirst(long start) {
+        lock.lock();
+        try {
+            if (next >= end) {
+                next = start + 1;
+                end = start + CustomerIdAllocator.BLOCK_SIZE;
+            }
+            return Math.toIntExact(start);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Mono<Long> fetchBlock() {
+        return client.sql("SELECT nextval('customer_id_seq')")
+                .map(row -> row.get(0, Long.class))
+                .one();
+    }
+}
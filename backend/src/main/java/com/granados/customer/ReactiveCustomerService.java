@@ -0,0 +1,110 @@
+package com.granados.customer;
+
+import com.granados.exception.DuplicateResourceException;
+import com.granados.exception.RequestValidationException;
+import com.granados.exception.ResourceNotFoundException;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import static com.granados.customer.CustomerService.DEFAULT_PAGE_SIZE;
+import static com.granados.customer.CustomerService.MAX_PAGE_SIZE;
+
+/**
+ * Non-blocking counterpart of {@link CustomerService}, with the same validation
+ * rules and exceptions.
+ */
+@Service
+@Profile("reactive")
+public class ReactiveCustomerService {
+
+    private final ReactiveCustomerDAO customerDAO;
+
+    public ReactiveCustomerService(ReactiveCustomerDAO customerDAO) {
+        this.customerDAO = customerDAO;
+    }
+
+    public Flux<Customer> getAllCustomers(){
+        return customerDAO.selectAllCustomers();
+    }
+
+    public Mono<CustomerPage> getCustomers(Integer after, Integer limit){
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
+        if(pageSize < 1 || pageSize > MAX_PAGE_SIZE){
+            return Mono.error(new RequestValidationException(
+                    "limit must be between 1 and %s".formatted(MAX_PAGE_SIZE)));
+        }
+
+        return customerDAO.selectCustomersAfter(after == null ? 0 : after, pageSize + 1)
+                .collectList()
+                .map(customers -> {
+                    if(customers.size() <= pageSize){
+                        return new CustomerPage(customers, null);
+                    }
+                    var page = customers.subList(0, pageSize);
+                    return new CustomerPage(page, page.get(pageSize - 1).getId());
+                });
+    }
+
+    public Flux<Customer> getCustomers(CustomerFilter filter){
+        if(filter.minAge() != null && filter.maxAge() != null
+                && filter.minAge() > filter.maxAge()){
+            return Flux.error(new RequestValidationException("minAge must not be greater than maxAge"));
+        }
+        int limit = filter.limit() == null ? MAX_PAGE_SIZE : filter.limit();
+        if(limit < 1 || limit > MAX_PAGE_SIZE){
+            return Flux.error(new RequestValidationException(
+                    "limit must be between 1 and %s".formatted(MAX_PAGE_SIZE)));
+        }
+        return customerDAO.selectCustomers(filter.withLimit(limit));
+    }
+
+    public Mono<Customer> getCustomer(Integer id){
+        return customerDAO.selectCustomerById(id)
+                .switchIfEmpty(Mono.error(() -> notFound(id)));
+    }
+
+    public Mono<Integer> addCustomer(CustomerRegistrationRequest customerRequest){
+        Customer customer = new Customer(
+                customerRequest.name(),
+                customerRequest.email(),
+                customerRequest.age(),
+                customerRequest.gender());
+        return customerDAO.insertCustomerIfAbsent(customer)
+                .switchIfEmpty(Mono.error(() -> new DuplicateResourceException("email already taken")));
+    }
+
+    public Mono<Void> deleteCustomerById(Integer id) {
+        return customerDAO.deleteCustomerById(id)
+                .switchIfEmpty(Mono.error(() -> notFound(id)))
+                .then();
+    }
+
+    public Mono<Void> updateCustomer(Integer id, CustomerUpdateRequest customerRequest) {
+        return getCustomer(id)
+                .flatMap(customer -> {
+                    String name = changedValue(customerRequest.name(), customer.getName());
+                    String email = changedValue(customerRequest.email(), customer.getEmail());
+                    Integer age = changedValue(customerRequest.age(), customer.getAge());
+
+                    if (name == null && email == null && age == null) {
+                        return Mono.error(new RequestValidationException("no data changes found"));
+                    }
+                    return customerDAO.updateCustomer(id, new CustomerUpdateRequest(name, email, age))
+                            .switchIfEmpty(Mono.error(() -> notFound(id)));
+                })
+                .onErrorMap(DataIntegrityViolationException.class,
+                        e -> new DuplicateResourceException("email already taken"))
+                .then();
+    }
+
+    private static ResourceNotFoundException notFound(Integer id) {
+        return new ResourceNotFoundException("customer with id [%s] not found".formatted(id));
+    }
+
+    private static <T> T changedValue(T requested, T current) {
+        return requested != null && !requested.equals(current) ? requested : null;
+    }
+}
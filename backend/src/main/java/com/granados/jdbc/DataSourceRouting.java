@@ -0,0 +1,73 @@
+package com.granados.jdbc;
+
+import java.util.function.Supplier;
+
+/**
+ * Marks the work of the current thread for {@link ReadWriteRoutingDataSource}. Work marked
+ * read-only may be served by the replica, unless the thread is pinned to the primary,
+ * which wins. Only connections opened while the mark is set are routed, a transaction
+ * keeps the connection it started with.
+ */
+public final class DataSourceRouting {
+
+    private static final ThreadLocal<Boolean> READ_ONLY = new ThreadLocal<>();
+    private static final ThreadLocal<Boolean> PINNED_TO_PRIMARY = new ThreadLocal<>();
+
+    private DataSourceRouting() {
+    }
+
+    public static <T> T readOnly(Supplier<T> work) {
+        return with(READ_ONLY, work);
+    }
+
+    public static void readOnly(Runnable work) {
+        readOnly(() -> {
+            work.run();
+            return null;
+        });
+    }
+
+    /**
+     * Runs the work against the primary, even the parts of it marked read-only.
+     */
+    public static <T> T onPrimary(Supplier<T> work) {
+        return with(PINNED_TO_PRIMARY, work);
+    }
+
+    /**
+     * Pins or unpins the current thread and returns whether it was pinned, for callers
+     * that cannot wrap their work in {@link #onPrimary(Supplier)}.
+     */
+    public static boolean pinToPrimary(boolean pinned) {
+        boolean previous = isPinnedToPrimary();
+        set(PINNED_TO_PRIMARY, pinned);
+        return previous;
+    }
+
+    public static boolean isReadOnly() {
+        return READ_ONLY.get() != null;
+    }
+
+    public static boolean isPinnedToPrimary() {
+        return PINNED_TO_PRIMARY.get() != null;
+    }
+
+    private static <T> T with(ThreadLocal<Boolean> marker, Supplier<T> work) {
+        Boolean previous = marker.get();
+        marker.set(Boolean.TRUE);
+        try {
+            return work.get();
+        } finally {
+            set(marker, previous != null);
+        }
+    }
+
+    private static void set(ThreadLocal<Boolean> marker, boolean value) {
+        if (value) {
+            marker.set(Boolean.TRUE);
+        } else {
+            // removed rather than set to false, pooled threads should not keep the entry
+            marker.remove();
+        }
+    }
+}
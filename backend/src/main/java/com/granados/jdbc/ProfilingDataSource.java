@@ -0,0 +1,50 @@
+package com.granados.jdbc;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Measures how long each thread waits for connections, so the time spent queueing for
+ * the pool can be told apart from the time spent running statements.
+ */
+public class ProfilingDataSource extends DelegatingDataSource {
+
+    private static final ThreadLocal<long[]> CONNECTION_WAIT_NANOS = ThreadLocal.withInitial(() -> new long[1]);
+
+    public ProfilingDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return super.getConnection();
+        } finally {
+            CONNECTION_WAIT_NANOS.get()[0] += System.nanoTime() - start;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return super.getConnection(username, password);
+        } finally {
+            CONNECTION_WAIT_NANOS.get()[0] += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Returns the time the current thread waited for connections since the last call.
+     */
+    static long takeConnectionWaitNanos() {
+        long[] wait = CONNECTION_WAIT_NANOS.get();
+        long nanos = wait[0];
+        wait[0] = 0;
+        return nanos;
+    }
+}
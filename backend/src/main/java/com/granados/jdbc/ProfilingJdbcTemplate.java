@@ -0,0 +1,153 @@
+package com.granados.jdbc;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.ArgumentTypePreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCallback;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.SqlProvider;
+
+import javax.sql.DataSource;
+import java.util.Collection;
+
+/**
+ * {@link JdbcTemplate} that reports every query, update and batch to a {@link SqlProfiler}.
+ * Statements run through {@link #execute(org.springframework.jdbc.core.ConnectionCallback)}
+ * build their own SQL and are not profiled.
+ */
+public class ProfilingJdbcTemplate extends JdbcTemplate {
+
+    private final SqlProfiler profiler;
+
+    public ProfilingJdbcTemplate(DataSource dataSource, SqlProfiler profiler) {
+        super(dataSource);
+        this.profiler = profiler;
+    }
+
+    @Override
+    public <T> T query(PreparedStatementCreator psc,
+                       PreparedStatementSetter pss,
+                       ResultSetExtractor<T> rse) throws DataAccessException {
+        ProfilingDataSource.takeConnectionWaitNanos();
+        long start = System.nanoTime();
+        T result = null;
+        boolean failed = true;
+        try {
+            result = super.query(psc, pss, rse);
+            failed = false;
+            return result;
+        } finally {
+            record(psc, pss, start, rowsOf(result), failed);
+        }
+    }
+
+    @Override
+    protected int update(PreparedStatementCreator psc,
+                         PreparedStatementSetter pss) throws DataAccessException {
+        ProfilingDataSource.takeConnectionWaitNanos();
+        long start = System.nanoTime();
+        int rows = 0;
+        boolean failed = true;
+        try {
+            rows = super.update(psc, pss);
+            failed = false;
+            return rows;
+        } finally {
+            record(psc, pss, start, rows, failed);
+        }
+    }
+
+    @Override
+    public <T> T execute(String sql, PreparedStatementCallback<T> action) throws DataAccessException {
+        ProfilingDataSource.takeConnectionWaitNanos();
+        long start = System.nanoTime();
+        T result = null;
+        boolean failed = true;
+        try {
+            result = super.execute(sql, action);
+            failed = false;
+            return result;
+        } finally {
+            long connectionWait = ProfilingDataSource.takeConnectionWaitNanos();
+            profiler.record(sql, null, System.nanoTime() - start - connectionWait,
+                    connectionWait, rowsOf(result), failed);
+        }
+    }
+
+    @Override
+    protected PreparedStatementSetter newArgPreparedStatementSetter(Object[] args) {
+        return new ProfiledArgumentSetter(args);
+    }
+
+    @Override
+    protected PreparedStatementSetter newArgTypePreparedStatementSetter(Object[] args, int[] argTypes) {
+        return new ProfiledArgumentTypeSetter(args, argTypes);
+    }
+
+    private void record(PreparedStatementCreator psc,
+                        PreparedStatementSetter pss,
+                        long start,
+                        long rows,
+                        boolean failed) {
+        long connectionWait = ProfilingDataSource.takeConnectionWaitNanos();
+        long elapsed = System.nanoTime() - start;
+        String sql = psc instanceof SqlProvider provider ? provider.getSql() : null;
+        profiler.record(
+                sql != null ? sql : psc.getClass().getName(),
+                argsOf(pss),
+                elapsed - connectionWait,
+                connectionWait,
+                rows,
+                failed);
+    }
+
+    private static Object[] argsOf(PreparedStatementSetter pss) {
+        if (pss instanceof ProfiledArgumentSetter setter) {
+            return setter.args;
+        }
+        if (pss instanceof ProfiledArgumentTypeSetter setter) {
+            return setter.args;
+        }
+        return null;
+    }
+
+    private static long rowsOf(Object result) {
+        if (result instanceof Collection<?> collection) {
+            return collection.size();
+        }
+        if (result instanceof Number number) {
+            return number.longValue();
+        }
+        if (result instanceof int[] counts) {
+            long rows = 0;
+            for (int count : counts) {
+                rows += Math.max(count, 0);
+            }
+            return rows;
+        }
+        return -1;
+    }
+
+    private static class ProfiledArgumentSetter extends ArgumentPreparedStatementSetter {
+
+        private final Object[] args;
+
+        ProfiledArgumentSetter(Object[] args) {
+            super(args);
+            this.args = args;
+        }
+    }
+
+    private static class ProfiledArgumentTypeSetter extends ArgumentTypePreparedStatementSetter {
+
+        private final Object[] args;
+
+        ProfiledArgumentTypeSetter(Object[] args, int[] argTypes) {
+            super(args, argTypes);
+            this.args = args;
+        }
+    }
+}
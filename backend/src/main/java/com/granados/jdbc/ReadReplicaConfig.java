@@ -0,0 +1,151 @@
+package com.granados.jdbc;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Puts a {@link ReadWriteRoutingDataSource} between the primary pool and everything that
+ * wraps or uses it, with a second pool for the replica configured under
+ * {@code spring.datasource.replica}. The replica pool is not a bean, so the profiler sees
+ * a single DataSource whichever database serves a connection, and the post processor that
+ * creates it closes it with the context.
+ */
+@Configuration
+@ConditionalOnProperty(name = "spring.datasource.replica.enabled", havingValue = "true")
+public class ReadReplicaConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(ReadReplicaConfig.class);
+
+    private final DataSource dataSource;
+
+    public ReadReplicaConfig(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    // ordered first, so the routing sits directly on the primary pool and the profiler
+    // wraps it like it would wrap the pool
+    @Bean
+    public static BeanPostProcessor readWriteRoutingDataSourcePostProcessor(Environment environment) {
+        return new RoutingPostProcessor(environment);
+    }
+
+    @Bean
+    public MeterBinder readWriteRoutingDataSourceMetrics() {
+        return registry -> routingDataSource().bindTo(registry);
+    }
+
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    @ConditionalOnProperty(name = "spring.datasource.replica.read-your-writes.enabled",
+            havingValue = "true", matchIfMissing = true)
+    public ReadYourWritesFilter readYourWritesFilter(
+            @Value("${spring.datasource.replica.read-your-writes.window:5s}") Duration window) {
+        return new ReadYourWritesFilter(window);
+    }
+
+    // the lag check gets a thread of its own, on the shared scheduler it would wait behind
+    // the full table rebuilds while the replica falls further behind
+    @Bean(destroyMethod = "shutdownNow")
+    public ScheduledExecutorService replicaLagChecker(
+            @Value("${spring.datasource.replica.check-interval:PT1S}") Duration interval) {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-lag-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::checkReplica, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+        return executor;
+    }
+
+    private void checkReplica() {
+        // an exception escaping would cancel every later check
+        try {
+            routingDataSource().checkReplica();
+        } catch (RuntimeException e) {
+            log.warn("Checking the replica failed", e);
+        }
+    }
+
+    private ReadWriteRoutingDataSource routingDataSource() {
+        try {
+            return dataSource.unwrap(ReadWriteRoutingDataSource.class);
+        } catch (SQLException e) {
+            throw new IllegalStateException("DataSource does not route to the replica", e);
+        }
+    }
+
+    private static final class RoutingPostProcessor implements BeanPostProcessor, Ordered, DisposableBean {
+
+        private final Environment environment;
+        private final List<ReadWriteRoutingDataSource> routingDataSources = new CopyOnWriteArrayList<>();
+
+        private RoutingPostProcessor(Environment environment) {
+            this.environment = environment;
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+            if (bean instanceof DataSource primary && !(bean instanceof ReadWriteRoutingDataSource)) {
+                Duration maxLag = environment.getProperty(
+                        "spring.datasource.replica.max-lag", Duration.class, Duration.ofSeconds(1));
+                ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(primary, replica(), maxLag);
+                routingDataSources.add(routing);
+                return routing;
+            }
+            return bean;
+        }
+
+        // post processors are destroyed after the beans they processed, the primary pools
+        // are closed with their beans and the replica pools here
+        @Override
+        public void destroy() throws IOException {
+            for (ReadWriteRoutingDataSource routing : routingDataSources) {
+                routing.close();
+            }
+        }
+
+        private HikariDataSource replica() {
+            HikariDataSource replica = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(environment.getRequiredProperty("spring.datasource.replica.url"))
+                    .username(environment.getProperty("spring.datasource.replica.username",
+                            environment.getProperty("spring.datasource.username")))
+                    .password(environment.getProperty("spring.datasource.replica.password",
+                            environment.getProperty("spring.datasource.password")))
+                    .build();
+            replica.setPoolName("replica");
+            Binder.get(environment).bind("spring.datasource.replica.hikari", Bindable.ofInstance(replica));
+            return replica;
+        }
+
+        @Override
+        public int getOrder() {
+            return Ordered.HIGHEST_PRECEDENCE;
+        }
+    }
+}
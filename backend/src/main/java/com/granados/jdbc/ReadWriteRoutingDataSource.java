@@ -0,0 +1,162 @@
+package com.granados.jdbc;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends the connections of work marked {@link DataSourceRouting#readOnly read-only} to a
+ * replica and everything else to the primary.
+ * <p>
+ * The replica is only used while {@link #checkReplica()} finds it reachable and no further
+ * behind than {@code maxLag}, and it starts out unused until the first check. A replica
+ * connection that cannot be opened marks the replica down and the primary serves the
+ * work instead, so callers never see the replica fail.
+ * <p>
+ * {@link #close()} closes the replica, the primary belongs to whoever created it.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource implements MeterBinder, Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReadWriteRoutingDataSource.class);
+
+    static final int CHECK_TIMEOUT_SECONDS = 5;
+
+    // the replay timestamp is that of the last replayed commit, so an idle primary would
+    // look like a lagging replica, a replica that replayed everything it received is not
+    // behind however old that commit is
+    static final String LAG_SQL = """
+            SELECT CASE
+                WHEN NOT pg_is_in_recovery() THEN 0
+                WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+                ELSE EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp())
+            END
+            """;
+
+    enum Route {
+        PRIMARY, REPLICA
+    }
+
+    private final DataSource primary;
+    private final DataSource replica;
+    private final double maxLagSeconds;
+
+    private volatile boolean replicaAvailable;
+    private volatile double replicaLagSeconds = Double.NaN;
+    private final AtomicLong fallbacks = new AtomicLong();
+
+    public ReadWriteRoutingDataSource(DataSource primary, DataSource replica, Duration maxLag) {
+        this.primary = primary;
+        this.replica = replica;
+        this.maxLagSeconds = maxLag.toMillis() / 1000.0;
+        setTargetDataSources(Map.of(Route.PRIMARY, primary, Route.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return replicaAvailable
+                && DataSourceRouting.isReadOnly()
+                && !DataSourceRouting.isPinnedToPrimary()
+                ? Route.REPLICA
+                : Route.PRIMARY;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        DataSource target = determineTargetDataSource();
+        if (target != replica) {
+            return target.getConnection();
+        }
+        try {
+            return replica.getConnection();
+        } catch (SQLException e) {
+            replicaDown(e);
+            fallbacks.incrementAndGet();
+            return primary.getConnection();
+        }
+    }
+
+    /**
+     * Measures how far behind the primary the replica is and routes to it again, or stops
+     * routing to it, accordingly.
+     */
+    public void checkReplica() {
+        double lagSeconds;
+        try (Connection connection = replica.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.setQueryTimeout(CHECK_TIMEOUT_SECONDS);
+            try (ResultSet rs = statement.executeQuery(LAG_SQL)) {
+                rs.next();
+                lagSeconds = rs.getDouble(1);
+                // in recovery without a replayed commit there is nothing to measure from
+                if (rs.wasNull()) {
+                    lagSeconds = Double.POSITIVE_INFINITY;
+                }
+            }
+        } catch (SQLException e) {
+            replicaDown(e);
+            return;
+        }
+        replicaLagSeconds = lagSeconds;
+        boolean available = lagSeconds <= maxLagSeconds;
+        if (available != replicaAvailable) {
+            if (available) {
+                log.info("Routing reads to the replica, {}s behind the primary", lagSeconds);
+            } else {
+                log.warn("Replica is {}s behind the primary, routing reads to the primary", lagSeconds);
+            }
+        }
+        replicaAvailable = available;
+    }
+
+    public boolean isReplicaAvailable() {
+        return replicaAvailable;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("jdbc.replica.available", this, ds -> ds.replicaAvailable ? 1 : 0)
+                .description("Whether reads are routed to the replica")
+                .register(registry);
+        Gauge.builder("jdbc.replica.lag", this, ds -> ds.replicaLagSeconds)
+                .description("How far behind the primary the replica was at the last check")
+                .baseUnit("seconds")
+                .register(registry);
+        FunctionCounter.builder("jdbc.replica.fallbacks", fallbacks, AtomicLong::get)
+                .description("Reads served by the primary because no replica connection could be opened")
+                .register(registry);
+    }
+
+    @Override
+    public void close() throws IOException {
+        replicaAvailable = false;
+        if (replica instanceof Closeable closeable) {
+            closeable.close();
+        }
+    }
+
+    private void replicaDown(SQLException e) {
+        replicaLagSeconds = Double.NaN;
+        if (replicaAvailable) {
+            log.warn("Replica is unreachable, routing reads to the primary", e);
+        }
+        replicaAvailable = false;
+    }
+}
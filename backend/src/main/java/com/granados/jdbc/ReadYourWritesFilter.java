@@ -0,0 +1,104 @@
+package com.granados.jdbc;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Lets a client read its own writes while the replica catches up. Any request that may
+ * write gets the end of a window back, and requests that carry it are pinned to the
+ * primary until it runs out.
+ * <p>
+ * The window comes as a cookie, for same-origin clients, and as an
+ * {@value #HEADER_NAME} header, which cross-origin clients that do not send credentials
+ * (like the React app) send back as a request header.
+ * <p>
+ * The pin holds for the request thread, work the request hands to another thread (a
+ * streamed export, say) may still be served by the replica.
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    static final String COOKIE_NAME = "primary-until";
+    public static final String HEADER_NAME = "X-Primary-Until";
+
+    private static final Set<String> SAFE_METHODS = Set.of("GET", "HEAD", "OPTIONS", "TRACE");
+
+    private final Duration window;
+    private final Clock clock;
+
+    public ReadYourWritesFilter(Duration window) {
+        this(window, Clock.systemUTC());
+    }
+
+    ReadYourWritesFilter(Duration window, Clock clock) {
+        this.window = window;
+        this.clock = clock;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        long now = clock.millis();
+        boolean write = !SAFE_METHODS.contains(request.getMethod());
+        if (write) {
+            long until = now + window.toMillis();
+            response.addCookie(primaryUntil(until));
+            response.setHeader(HEADER_NAME, Long.toString(until));
+        }
+        if (!write && !recentlyWrote(request, now)) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        boolean pinned = DataSourceRouting.pinToPrimary(true);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            DataSourceRouting.pinToPrimary(pinned);
+        }
+    }
+
+    private Cookie primaryUntil(long until) {
+        Cookie cookie = new Cookie(COOKIE_NAME, Long.toString(until));
+        cookie.setPath("/");
+        cookie.setHttpOnly(true);
+        cookie.setMaxAge((int) Math.max(1, (window.toMillis() + 999) / 1000));
+        return cookie;
+    }
+
+    // the expiry is in the value too, clients that ignore Max-Age still stop being pinned
+    private static boolean recentlyWrote(HttpServletRequest request, long now) {
+        if (before(request.getHeader(HEADER_NAME), now)) {
+            return true;
+        }
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return false;
+        }
+        for (Cookie cookie : cookies) {
+            if (COOKIE_NAME.equals(cookie.getName())) {
+                return before(cookie.getValue(), now);
+            }
+        }
+        return false;
+    }
+
+    private static boolean before(String until, long now) {
+        if (until == null) {
+            return false;
+        }
+        try {
+            return Long.parseLong(until) > now;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.granados.jdbc;
+
+public record SqlProfile(
+        String sql,
+        String operation,
+        long calls,
+        long errors,
+        long rows,
+        double totalExecutionMillis,
+        double meanExecutionMicros,
+        double maxExecutionMicros,
+        double meanConnectionWaitMicros,
+        long p50ExecutionMicros,
+        long p95ExecutionMicros,
+        long p99ExecutionMicros) {
+}
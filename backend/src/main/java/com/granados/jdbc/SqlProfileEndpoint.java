@@ -0,0 +1,23 @@
+package com.granados.jdbc;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+import java.util.List;
+
+// holds SQL text, so it is not exposed over the web unless configured to be; the
+// profile can only be reset over JMX, see SqlProfileJmxEndpointExtension
+@Endpoint(id = "sqlprofile")
+public class SqlProfileEndpoint {
+
+    private final SqlProfiler profiler;
+
+    public SqlProfileEndpoint(SqlProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    @ReadOperation
+    public List<SqlProfile> profiles() {
+        return profiler.profiles();
+    }
+}
@@ -0,0 +1,19 @@
+package com.granados.jdbc;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.jmx.annotation.EndpointJmxExtension;
+
+@EndpointJmxExtension(endpoint = SqlProfileEndpoint.class)
+public class SqlProfileJmxEndpointExtension {
+
+    private final SqlProfiler profiler;
+
+    public SqlProfileJmxEndpointExtension(SqlProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    @DeleteOperation
+    public void reset() {
+        profiler.reset();
+    }
+}
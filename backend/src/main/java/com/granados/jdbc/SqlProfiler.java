@@ -0,0 +1,139 @@
+package com.granados.jdbc;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Array;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Aggregates {@link SqlStatementStats} per distinct SQL string and logs statements slower
+ * than a threshold together with the shape (types and sizes, never values) of their
+ * bind parameters.
+ */
+public class SqlProfiler {
+
+    private static final Logger log = LoggerFactory.getLogger(SqlProfiler.class);
+    private static final StackWalker STACK_WALKER = StackWalker.getInstance();
+
+    // dynamic SQL could otherwise grow the map without bound
+    static final int MAX_STATEMENTS = 1000;
+    static final String OTHER_STATEMENTS = "<other>";
+
+    private final ConcurrentHashMap<String, SqlStatementStats> statements = new ConcurrentHashMap<>();
+    private final long slowQueryThresholdNanos;
+
+    public SqlProfiler(Duration slowQueryThreshold) {
+        this.slowQueryThresholdNanos = slowQueryThreshold.toNanos();
+    }
+
+    public void record(String sql,
+                       Object[] args,
+                       long executionNanos,
+                       long connectionWaitNanos,
+                       long rows,
+                       boolean failed) {
+        statsFor(sql).record(executionNanos, connectionWaitNanos, rows, failed);
+        if (executionNanos + connectionWaitNanos >= slowQueryThresholdNanos) {
+            log.warn("Slow query took {} ms (connection wait {} ms, rows {}): {} parameters {}",
+                    executionNanos / 1_000_000,
+                    connectionWaitNanos / 1_000_000,
+                    rows,
+                    sql.strip().replaceAll("\\s+", " "),
+                    shapeOf(args));
+        }
+    }
+
+    /**
+     * Records a call to a data access method, listed under {@code method} beside the
+     * statements it ran. Covers the work that does not go through the
+     * {@link ProfilingJdbcTemplate}, such as JPA and cursors, so its time overlaps with
+     * the statements that do.
+     */
+    public void recordCall(String method, long executionNanos, long rows, boolean failed) {
+        statsFor(method, () -> method).record(executionNanos, 0, rows, failed);
+        if (executionNanos >= slowQueryThresholdNanos) {
+            log.warn("Slow data access call took {} ms (rows {}): {}",
+                    executionNanos / 1_000_000, rows, method);
+        }
+    }
+
+    public List<SqlProfile> profiles() {
+        return statements.values().stream()
+                .map(SqlStatementStats::snapshot)
+                .sorted(Comparator.comparingDouble(SqlProfile::totalExecutionMillis).reversed())
+                .toList();
+    }
+
+    public void reset() {
+        statements.clear();
+    }
+
+    private SqlStatementStats statsFor(String sql) {
+        // walking the stack is expensive, but only happens once per statement
+        return statsFor(sql, SqlProfiler::callerOf);
+    }
+
+    private SqlStatementStats statsFor(String sql, Supplier<String> operation) {
+        SqlStatementStats stats = statements.get(sql);
+        if (stats != null) {
+            return stats;
+        }
+        if (statements.size() >= MAX_STATEMENTS) {
+            return statements.computeIfAbsent(OTHER_STATEMENTS, key -> new SqlStatementStats(key, null));
+        }
+        return statements.computeIfAbsent(sql, key -> new SqlStatementStats(key, operation.get()));
+    }
+
+    private static String callerOf() {
+        return STACK_WALKER.walk(frames -> frames
+                .filter(frame -> frame.getClassName().startsWith("com.granados.")
+                        && !isProfilerFrame(frame.getClassName(), SqlProfiler.class)
+                        && !isProfilerFrame(frame.getClassName(), ProfilingJdbcTemplate.class))
+                .findFirst()
+                .map(frame -> frame.getClassName().substring(frame.getClassName().lastIndexOf('.') + 1)
+                        + "." + frame.getMethodName())
+                .orElse(null));
+    }
+
+    private static boolean isProfilerFrame(String className, Class<?> profilerClass) {
+        return className.equals(profilerClass.getName())
+                || className.startsWith(profilerClass.getName() + "$");
+    }
+
+    static String shapeOf(Object[] args) {
+        if (args == null) {
+            return "[]";
+        }
+        StringJoiner shape = new StringJoiner(", ", "[", "]");
+        for (Object arg : args) {
+            shape.add(shapeOf(arg));
+        }
+        return shape.toString();
+    }
+
+    private static String shapeOf(Object arg) {
+        if (arg == null) {
+            return "null";
+        }
+        if (arg instanceof CharSequence text) {
+            return "String(" + text.length() + ")";
+        }
+        if (arg instanceof Collection<?> collection) {
+            return "Collection(" + collection.size() + ")";
+        }
+        if (arg.getClass().isArray()) {
+            return arg.getClass().getComponentType().getSimpleName() + "[" + java.lang.reflect.Array.getLength(arg) + "]";
+        }
+        if (arg instanceof Array) {
+            return "Array";
+        }
+        return arg.getClass().getSimpleName();
+    }
+}
@@ -0,0 +1,63 @@
+package com.granados.jdbc;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.JdbcProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+@Configuration
+@ConditionalOnProperty(name = "sql.profiler.enabled", havingValue = "true", matchIfMissing = true)
+public class SqlProfilerConfig {
+
+    // wraps the pool itself, so JPA and the transaction managers bind the same
+    // DataSource that the JdbcTemplate asks for connections
+    @Bean
+    public static BeanPostProcessor profilingDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+                if (bean instanceof DataSource dataSource && !(bean instanceof ProfilingDataSource)) {
+                    return new ProfilingDataSource(dataSource);
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    public SqlProfiler sqlProfiler(
+            @Value("${sql.profiler.slow-query-threshold:200ms}") Duration slowQueryThreshold) {
+        return new SqlProfiler(slowQueryThreshold);
+    }
+
+    @Bean
+    public JdbcTemplate jdbcTemplate(DataSource dataSource,
+                                     JdbcProperties properties,
+                                     SqlProfiler sqlProfiler) {
+        JdbcTemplate jdbcTemplate = new ProfilingJdbcTemplate(dataSource, sqlProfiler);
+        JdbcProperties.Template template = properties.getTemplate();
+        jdbcTemplate.setFetchSize(template.getFetchSize());
+        jdbcTemplate.setMaxRows(template.getMaxRows());
+        if (template.getQueryTimeout() != null) {
+            jdbcTemplate.setQueryTimeout((int) template.getQueryTimeout().getSeconds());
+        }
+        return jdbcTemplate;
+    }
+
+    @Bean
+    public SqlProfileEndpoint sqlProfileEndpoint(SqlProfiler sqlProfiler) {
+        return new SqlProfileEndpoint(sqlProfiler);
+    }
+
+    @Bean
+    public SqlProfileJmxEndpointExtension sqlProfileJmxEndpointExtension(SqlProfiler sqlProfiler) {
+        return new SqlProfileJmxEndpointExtension(sqlProfiler);
+    }
+}
@@ -0,0 +1,90 @@
+package com.granados.jdbc;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters for one SQL statement. Latencies go into a histogram with power of two
+ * microsecond buckets, so recording a call is a handful of {@link LongAdder} increments.
+ */
+class SqlStatementStats {
+
+    static final int BUCKETS = 32;
+
+    private final String sql;
+    private final String operation;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder executionNanos = new LongAdder();
+    private final LongAdder connectionWaitNanos = new LongAdder();
+    private final LongAccumulator maxExecutionNanos = new LongAccumulator(Math::max, 0);
+    private final LongAdder[] histogram = new LongAdder[BUCKETS];
+
+    SqlStatementStats(String sql, String operation) {
+        this.sql = sql;
+        this.operation = operation;
+        for (int i = 0; i < BUCKETS; i++) {
+            histogram[i] = new LongAdder();
+        }
+    }
+
+    void record(long executionNanos, long connectionWaitNanos, long rows, boolean failed) {
+        calls.increment();
+        if (failed) {
+            errors.increment();
+        }
+        if (rows > 0) {
+            this.rows.add(rows);
+        }
+        this.executionNanos.add(executionNanos);
+        this.connectionWaitNanos.add(connectionWaitNanos);
+        maxExecutionNanos.accumulate(executionNanos);
+        histogram[bucket(executionNanos)].increment();
+    }
+
+    // bucket i holds latencies below 2^i microseconds
+    static int bucket(long nanos) {
+        long micros = nanos / 1000;
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+    }
+
+    SqlProfile snapshot() {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = histogram[i].sum();
+            total += counts[i];
+        }
+        long callCount = calls.sum();
+        return new SqlProfile(
+                sql,
+                operation,
+                callCount,
+                errors.sum(),
+                rows.sum(),
+                executionNanos.sum() / 1_000_000.0,
+                callCount == 0 ? 0 : executionNanos.sum() / 1000.0 / callCount,
+                maxExecutionNanos.get() / 1000.0,
+                callCount == 0 ? 0 : connectionWaitNanos.sum() / 1000.0 / callCount,
+                percentile(counts, total, 0.50),
+                percentile(counts, total, 0.95),
+                percentile(counts, total, 0.99));
+    }
+
+    // upper bound of the bucket holding the percentile, in microseconds
+    private static long percentile(long[] counts, long total, double percentile) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * percentile);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return 1L << i;
+            }
+        }
+        return 1L << (BUCKETS - 1);
+    }
+}
@@ -0,0 +1,21 @@
+ALTER TABLE customer
+ADD COLUMN version INTEGER NOT NULL DEFAULT 0;
+
+CREATE TABLE customer_table_version (
+    id      BOOLEAN PRIMARY KEY DEFAULT TRUE CHECK (id),
+    version BIGINT  NOT NULL
+);
+
+INSERT INTO customer_table_version (id, version) VALUES (TRUE, 0);
+
+-- one bump per statement, committed together with the change it counts
+CREATE FUNCTION bump_customer_table_version() RETURNS TRIGGER AS $$
+BEGIN
+    UPDATE customer_table_version SET version = version + 1;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER customer_table_version
+AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON customer
+FOR EACH STATEMENT EXECUTE FUNCTION bump_customer_table_version();
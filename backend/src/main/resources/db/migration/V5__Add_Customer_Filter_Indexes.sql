@@ -0,0 +1,4 @@
+CREATE INDEX customer_gender_age_idx ON customer (gender, age);
+
+-- text_pattern_ops lets LIKE 'prefix%' use the index under any collation
+CREATE INDEX customer_name_pattern_idx ON customer (name text_pattern_ops);
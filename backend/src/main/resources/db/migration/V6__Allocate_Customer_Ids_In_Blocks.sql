@@ -0,0 +1,4 @@
+-- every nextval reserves a block of 50 ids (pooled-lo): the value it returns and the 49
+-- after it, so inserts do not need a round trip per id. Must match the allocationSize of
+-- Customer#id and CustomerIdAllocator.BLOCK_SIZE
+ALTER SEQUENCE customer_id_seq INCREMENT BY 50;
@@ -0,0 +1,21 @@
+-- the single counter row made every writing transaction hold the same row lock until it
+-- committed, so concurrent writers queued on it. The counter is now spread over slots, a
+-- statement bumps the slot of its backend, and the table version is the sum of the slots,
+-- which still only moves when a change commits
+CREATE TABLE customer_table_version_slot (
+    slot    INTEGER PRIMARY KEY CHECK (slot >= 0 AND slot < 64),
+    version BIGINT  NOT NULL
+);
+
+INSERT INTO customer_table_version_slot (slot, version)
+SELECT slot, CASE WHEN slot = 0 THEN (SELECT version FROM customer_table_version) ELSE 0 END
+FROM generate_series(0, 63) AS slot;
+
+CREATE OR REPLACE FUNCTION bump_customer_table_version() RETURNS TRIGGER AS $$
+BEGIN
+    UPDATE customer_table_version_slot SET version = version + 1 WHERE slot = pg_backend_pid() % 64;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TABLE customer_table_version;
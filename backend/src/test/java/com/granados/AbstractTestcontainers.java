@@ -1,10 +1,13 @@
 package com.granados;
 
 import com.github.javafaker.Faker;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
 import org.flywaydb.core.Flyway;
 import org.junit.jupiter.api.BeforeAll;
 import org.springframework.boot.jdbc.DataSourceBuilder;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.r2dbc.core.DatabaseClient;
 import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
 import org.testcontainers.containers.PostgreSQLContainer;
@@ -48,18 +51,37 @@ public abstract class AbstractTestcontainers {
                 postgreSQLContainer::getPassword);
     }
 
-    private static DataSource getDataSource(){
-        DataSourceBuilder builder = DataSourceBuilder.create()
-                .driverClassName(postgreSQLContainer.getDriverClassName())
-                .url(postgreSQLContainer.getJdbcUrl())
-                .username(postgreSQLContainer.getUsername())
-                .password(postgreSQLContainer.getPassword());
-        return builder.build();
+    private static DataSource dataSource;
+    private static String dataSourceUrl;
+
+    // every test calls getJdbcTemplate(), so share one pool per container
+    // instead of opening a new one each time and exhausting max_connections
+    protected static synchronized DataSource getDataSource(){
+        if (dataSource == null || !postgreSQLContainer.getJdbcUrl().equals(dataSourceUrl)) {
+            DataSourceBuilder<?> builder = DataSourceBuilder.create()
+                    .driverClassName(postgreSQLContainer.getDriverClassName())
+                    .url(postgreSQLContainer.getJdbcUrl())
+                    .username(postgreSQLContainer.getUsername())
+                    .password(postgreSQLContainer.getPassword());
+            dataSource = builder.build();
+            dataSourceUrl = postgreSQLContainer.getJdbcUrl();
+        }
+        return dataSource;
     }
 
     protected static JdbcTemplate getJdbcTemplate(){
         return new JdbcTemplate(getDataSource());
     }
 
+    protected static DatabaseClient getDatabaseClient(){
+        ConnectionFactoryOptions options = ConnectionFactoryOptions.parse(
+                        postgreSQLContainer.getJdbcUrl().replaceFirst("^jdbc:", "r2dbc:"))
+                .mutate()
+                .option(ConnectionFactoryOptions.USER, postgreSQLContainer.getUsername())
+                .option(ConnectionFactoryOptions.PASSWORD, postgreSQLContainer.getPassword())
+                .build();
+        return DatabaseClient.create(ConnectionFactories.get(options));
+    }
+
     protected static final Faker FAKER = new Faker();
 }
@@ -0,0 +1,132 @@
+package com.granados.customer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BloomFilterCustomerDAOTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private BloomFilterCustomerDAO underTest;
+
+    @Mock
+    private CustomerDAO customerDAO;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new BloomFilterCustomerDAO(customerDAO, 0.001, meterRegistry);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void seedWith(Customer... customers) {
+        when(customerDAO.countCustomers()).thenReturn((long) customers.length);
+        doAnswer(invocation -> {
+            Consumer<Customer> action = invocation.getArgument(0);
+            for (Customer customer : customers) {
+                action.accept(customer);
+            }
+            return null;
+        }).when(customerDAO).forEachCustomer(any(Consumer.class));
+        underTest.reseed();
+    }
+
+    private double lookups(String result) {
+        return meterRegistry.get("customer.email.filter.lookups").tag("result", result).counter().count();
+    }
+
+    @Test
+    void delegatesUntilSeeded() {
+        //given
+        when(customerDAO.existsPersonWithEmail("german@gmail.com")).thenReturn(true);
+        //when
+        boolean actual = underTest.existsPersonWithEmail("german@gmail.com");
+        //then
+        assertThat(underTest.isSeeded()).isFalse();
+        assertThat(actual).isTrue();
+    }
+
+    @Test
+    void definiteNegativeSkipsDelegate() {
+        //given
+        seedWith(new Customer(1, "German", "german@gmail.com", 39, Gender.MALE));
+        //when
+        boolean actual = underTest.existsPersonWithEmail("unknown@gmail.com");
+        //then
+        assertThat(actual).isFalse();
+        verify(customerDAO, never()).existsPersonWithEmail(any());
+        assertThat(lookups("skipped")).isEqualTo(1);
+    }
+
+    @Test
+    void possiblePositiveIsCheckedWithDelegate() {
+        //given
+        seedWith(new Customer(1, "German", "german@gmail.com", 39, Gender.MALE));
+        when(customerDAO.existsPersonWithEmail("german@gmail.com")).thenReturn(true);
+        //when
+        boolean actual = underTest.existsPersonWithEmail("german@gmail.com");
+        //then
+        assertThat(actual).isTrue();
+        assertThat(lookups("checked")).isEqualTo(1);
+        assertThat(lookups("false_positive")).isZero();
+    }
+
+    @Test
+    void selectExistingEmailsOnlyChecksCandidates() {
+        //given
+        seedWith(
+                new Customer(1, "German", "german@gmail.com", 39, Gender.MALE),
+                new Customer(2, "Mateo", "mateo@gmail.com", 12, Gender.MALE));
+        when(customerDAO.selectExistingEmails(Set.of("german@gmail.com")))
+                .thenReturn(Set.of("german@gmail.com"));
+        //when
+        Set<String> actual = underTest.selectExistingEmails(
+                List.of("german@gmail.com", "ana@gmail.com", "luis@gmail.com"));
+        //then
+        assertThat(actual).containsExactly("german@gmail.com");
+        assertThat(lookups("skipped")).isEqualTo(2);
+        assertThat(lookups("checked")).isEqualTo(1);
+    }
+
+    @Test
+    void selectExistingEmailsSkipsDelegateWhenNothingMightExist() {
+        //given
+        seedWith(new Customer(1, "German", "german@gmail.com", 39, Gender.MALE));
+        //when
+        Set<String> actual = underTest.selectExistingEmails(List.of("ana@gmail.com"));
+        //then
+        assertThat(actual).isEmpty();
+        verify(customerDAO, never()).selectExistingEmails(any());
+    }
+
+    @Test
+    void writesAddEmailsToFilter() {
+        //given
+        seedWith();
+        Customer ana = new Customer("Ana", "ana@gmail.com", 30, Gender.FEMALE);
+        when(customerDAO.insertCustomerIfAbsent(ana)).thenReturn(Optional.of(3));
+        when(customerDAO.updateCustomer(2, new CustomerUpdateRequest(null, "mateo@gmail.com", null)))
+                .thenReturn(Optional.of(new Customer(2, "Mateo", "mateo@gmail.com", 12, Gender.MALE)));
+        when(customerDAO.existsPersonWithEmail(any())).thenReturn(true);
+        //when
+        underTest.insertCustomerIfAbsent(ana);
+        underTest.insertCustomers(List.of(new Customer("Luis", "luis@gmail.com", 20, Gender.MALE)));
+        underTest.updateCustomer(2, new CustomerUpdateRequest(null, "mateo@gmail.com", null));
+        //then
+        assertThat(underTest.existsPersonWithEmail("ana@gmail.com")).isTrue();
+        assertThat(underTest.existsPersonWithEmail("luis@gmail.com")).isTrue();
+        assertThat(underTest.existsPersonWithEmail("mateo@gmail.com")).isTrue();
+        assertThat(lookups("checked")).isEqualTo(3);
+    }
+}
@@ -0,0 +1,62 @@
+package com.granados.customer;
+
+import com.granados.AbstractTestcontainers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CachingCustomerDAOJDBCTest extends AbstractTestcontainers {
+
+    private CachingCustomerDAO underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CachingCustomerDAO(
+                new CustomerJDBCDataAccessService(getJdbcTemplate(), new CustomerRowMapper(),
+                        new CustomerIdAllocator(getJdbcTemplate())),
+                100,
+                Duration.ofMinutes(5),
+                Duration.ofSeconds(30));
+    }
+
+    @Test
+    void selectCustomerByIdIsServedFromCache() {
+        //given
+        Integer id = underTest.insertCustomerIfAbsent(new Customer(
+                FAKER.name().fullName(),
+                FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                20,
+                Gender.MALE)).orElseThrow();
+        //when
+        Optional<Customer> first = underTest.selectCustomerById(id);
+        Optional<Customer> second = underTest.selectCustomerById(id);
+        //then
+        assertThat(second).isEqualTo(first).isPresent();
+        assertThat(underTest.stats().hitCount()).isEqualTo(1);
+    }
+
+    @Test
+    void writesAreVisibleThroughCache() {
+        //given
+        String updatedName = FAKER.name().fullName();
+        Integer id = underTest.insertCustomerIfAbsent(new Customer(
+                FAKER.name().fullName(),
+                FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                20,
+                Gender.MALE)).orElseThrow();
+        underTest.selectCustomerById(id);
+        //when
+        underTest.updateCustomer(id, new CustomerUpdateRequest(updatedName, null, null));
+        Optional<Customer> updated = underTest.selectCustomerById(id);
+        underTest.deleteCustomerById(id);
+        Optional<Customer> deleted = underTest.selectCustomerById(id);
+        //then
+        assertThat(updated).hasValueSatisfying(c -> assertThat(c.getName()).isEqualTo(updatedName));
+        assertThat(deleted).isEmpty();
+    }
+}
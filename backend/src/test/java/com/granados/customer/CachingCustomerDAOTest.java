@@ -0,0 +1,234 @@
+package com.granados.customer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CachingCustomerDAOTest {
+
+    private static final Duration TTL = Duration.ofMinutes(5);
+    private static final Duration NEGATIVE_TTL = Duration.ofSeconds(30);
+
+    private final AtomicLong nanos = new AtomicLong();
+    private CachingCustomerDAO underTest;
+
+    @Mock
+    private CustomerDAO customerDAO;
+
+    @BeforeEach
+    void setUp() {
+        underTest = cachingDAO(customerDAO, 100);
+    }
+
+    private CachingCustomerDAO cachingDAO(CustomerDAO delegate, long maximumSize) {
+        return new CachingCustomerDAO(
+                delegate, maximumSize, TTL, NEGATIVE_TTL, nanos::get, Runnable::run);
+    }
+
+    @Test
+    void selectCustomerByIdIsServedFromCacheAfterFirstLoad() {
+        //given
+        Customer customer = new Customer(1, "German", "german@gmail.com", 39, Gender.MALE);
+        when(customerDAO.selectCustomerById(1)).thenReturn(Optional.of(customer));
+        //when
+        underTest.selectCustomerById(1);
+        Optional<Customer> actual = underTest.selectCustomerById(1);
+        //then
+        assertThat(actual).contains(customer);
+        verify(customerDAO, times(1)).selectCustomerById(1);
+        assertThat(underTest.stats().hitCount()).isEqualTo(1);
+        assertThat(underTest.stats().missCount()).isEqualTo(1);
+    }
+
+    @Test
+    void missingCustomerIsCachedUntilNegativeTtlExpires() {
+        //given
+        when(customerDAO.selectCustomerById(1)).thenReturn(Optional.empty());
+        underTest.selectCustomerById(1);
+        //when
+        Optional<Customer> cached = underTest.selectCustomerById(1);
+        boolean exists = underTest.existsPersonWithId(1);
+        nanos.addAndGet(NEGATIVE_TTL.plusSeconds(1).toNanos());
+        underTest.selectCustomerById(1);
+        //then
+        assertThat(cached).isEmpty();
+        assertThat(exists).isFalse();
+        verify(customerDAO, times(2)).selectCustomerById(1);
+        verify(customerDAO, never()).existsPersonWithId(any());
+    }
+
+    @Test
+    void customerExpiresAfterTtl() {
+        //given
+        Customer customer = new Customer(1, "German", "german@gmail.com", 39, Gender.MALE);
+        when(customerDAO.selectCustomerById(1)).thenReturn(Optional.of(customer));
+        underTest.selectCustomerById(1);
+        //when
+        nanos.addAndGet(NEGATIVE_TTL.plusSeconds(1).toNanos());
+        underTest.selectCustomerById(1);
+        nanos.addAndGet(TTL.toNanos());
+        underTest.selectCustomerById(1);
+        //then
+        verify(customerDAO, times(2)).selectCustomerById(1);
+    }
+
+    @Test
+    void cacheIsBoundedBySize() {
+        //given
+        CachingCustomerDAO bounded = cachingDAO(customerDAO, 10);
+        when(customerDAO.selectCustomerById(any())).thenReturn(Optional.empty());
+        //when
+        for (int id = 0; id < 100; id++) {
+            bounded.selectCustomerById(id);
+        }
+        bounded.cache().cleanUp();
+        //then
+        assertThat(bounded.cache().estimatedSize()).isLessThanOrEqualTo(10);
+        assertThat(bounded.stats().evictionCount()).isGreaterThan(0);
+    }
+
+    @Test
+    void updateCustomerInvalidatesCachedCustomer() {
+        //given
+        Customer customer = new Customer(1, "German", "german@gmail.com", 39, Gender.MALE);
+        Customer updated = new Customer(1, "Germani", "german@gmail.com", 39, Gender.MALE);
+        CustomerUpdateRequest changes = new CustomerUpdateRequest("Germani", null, null);
+        when(customerDAO.selectCustomerById(1))
+                .thenReturn(Optional.of(customer))
+                .thenReturn(Optional.of(updated));
+        when(customerDAO.updateCustomer(1, changes)).thenReturn(Optional.of(updated));
+        underTest.selectCustomerById(1);
+        //when
+        underTest.updateCustomer(1, changes);
+        Optional<Customer> actual = underTest.selectCustomerById(1);
+        //then
+        assertThat(actual).contains(updated);
+    }
+
+    @Test
+    void deleteCustomerByIdInvalidatesCachedCustomer() {
+        //given
+        Customer customer = new Customer(1, "German", "german@gmail.com", 39, Gender.MALE);
+        when(customerDAO.selectCustomerById(1))
+                .thenReturn(Optional.of(customer))
+                .thenReturn(Optional.empty());
+        when(customerDAO.deleteCustomerById(1)).thenReturn(Optional.of(customer));
+        underTest.selectCustomerById(1);
+        //when
+        underTest.deleteCustomerById(1);
+        Optional<Customer> actual = underTest.selectCustomerById(1);
+        //then
+        assertThat(actual).isEmpty();
+    }
+
+    @Test
+    void insertCustomerIfAbsentInvalidatesCachedMissForNewId() {
+        //given
+        Customer customer = new Customer("German", "german@gmail.com", 39, Gender.MALE);
+        when(customerDAO.selectCustomerById(1))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(customer));
+        when(customerDAO.insertCustomerIfAbsent(customer)).thenReturn(Optional.of(1));
+        underTest.selectCustomerById(1);
+        //when
+        underTest.insertCustomerIfAbsent(customer);
+        Optional<Customer> actual = underTest.selectCustomerById(1);
+        //then
+        assertThat(actual).contains(customer);
+    }
+
+    @Test
+    void insertCustomerInvalidatesCachedMisses() {
+        //given
+        Customer customer = new Customer("German", "german@gmail.com", 39, Gender.MALE);
+        when(customerDAO.selectCustomerById(1)).thenReturn(Optional.empty());
+        underTest.selectCustomerById(1);
+        //when
+        underTest.insertCustomer(customer);
+        underTest.selectCustomerById(1);
+        //then
+        verify(customerDAO, times(2)).selectCustomerById(1);
+    }
+
+    @Test
+    void cachesListDAO() {
+        //given
+        CachingCustomerDAO cachingListDAO = cachingDAO(new CustomerInMemoryDataAccessService(), 100);
+        Integer id = cachingListDAO.insertCustomerIfAbsent(
+                new Customer("Ana", "ana-cache@gmail.com", 30, Gender.FEMALE)).orElseThrow();
+        //when
+        Optional<Customer> loaded = cachingListDAO.selectCustomerById(id);
+        cachingListDAO.updateCustomer(id, new CustomerUpdateRequest(null, null, 31));
+        Optional<Customer> reloaded = cachingListDAO.selectCustomerById(id);
+        cachingListDAO.deleteCustomerById(id);
+        //then
+        assertThat(loaded).hasValueSatisfying(c -> assertThat(c.getAge()).isEqualTo(30));
+        assertThat(reloaded).hasValueSatisfying(c -> assertThat(c.getAge()).isEqualTo(31));
+        assertThat(cachingListDAO.selectCustomerById(id)).isEmpty();
+    }
+
+    @Test
+    void cachesJPADAO() {
+        //given
+        CustomerRepository customerRepository = mock(CustomerRepository.class);
+        CachingCustomerDAO cachingJPADAO = cachingDAO(
+                new CustomerJPADataAccessService(customerRepository, mock(CustomerIdAllocator.class)), 100);
+        Customer customer = new Customer(1, "German", "german@gmail.com", 39, Gender.MALE);
+        when(customerRepository.findById(1)).thenReturn(Optional.of(customer));
+        //when
+        cachingJPADAO.selectCustomerById(1);
+        cachingJPADAO.selectCustomerById(1);
+        cachingJPADAO.deleteCustomerById(1);
+        cachingJPADAO.selectCustomerById(1);
+        //then
+        verify(customerRepository, times(2)).findById(1);
+        verify(customerRepository).deleteByIdReturning(1);
+    }
+
+    @Test
+    void selectCustomersByIdsOnlyLoadsMissingIds() {
+        //given
+        Customer german = new Customer(1, "German", "german@gmail.com", 39, Gender.MALE);
+        Customer mateo = new Customer(2, "Mateo", "mateo@gmail.com", 12, Gender.MALE);
+        when(customerDAO.selectCustomerById(1)).thenReturn(Optional.of(german));
+        when(customerDAO.selectCustomersByIds(List.of(2, 3))).thenReturn(List.of(mateo));
+        underTest.selectCustomerById(1);
+        //when
+        List<Customer> actual = underTest.selectCustomersByIds(List.of(1, 2, 3));
+        //then
+        assertThat(actual).containsExactly(german, mateo);
+        assertThat(underTest.selectCustomerById(3)).isEmpty();
+        verify(customerDAO, never()).selectCustomerById(3);
+    }
+
+    @Test
+    void selectCustomersByIdsDoesNotCacheRowsInvalidatedWhileLoading() {
+        //given
+        Customer mateo = new Customer(2, "Mateo", "mateo@gmail.com", 12, Gender.MALE);
+        Customer renamed = new Customer(2, "Matias", "mateo@gmail.com", 12, Gender.MALE);
+        CustomerUpdateRequest rename = new CustomerUpdateRequest("Matias", null, null);
+        when(customerDAO.selectCustomersByIds(List.of(2))).thenAnswer(invocation -> {
+            // the update commits after the query read the row
+            underTest.updateCustomer(2, rename);
+            return List.of(mateo);
+        });
+        when(customerDAO.selectCustomerById(2)).thenReturn(Optional.of(renamed));
+        //when
+        List<Customer> loaded = underTest.selectCustomersByIds(List.of(2));
+        Optional<Customer> actual = underTest.selectCustomerById(2);
+        //then
+        assertThat(loaded).containsExactly(mateo);
+        assertThat(actual).contains(renamed);
+    }
+}
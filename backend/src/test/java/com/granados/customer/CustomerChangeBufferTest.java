@@ -0,0 +1,72 @@
+package com.granados.customer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerChangeBufferTest {
+
+    private final CustomerChangeBuffer underTest = new CustomerChangeBuffer("test", 3);
+
+    @Test
+    void changesSinceReturnsTheChangesAfterTheId() {
+        //given
+        String seen = underTest.append("created", "1").id();
+        underTest.append("updated", "2");
+        underTest.append("deleted", "3");
+
+        //when
+        Optional<List<CustomerChangeBuffer.Change>> actual = underTest.changesSince(seen);
+
+        //then
+        assertThat(actual).hasValueSatisfying(changes -> assertThat(changes)
+                .extracting(CustomerChangeBuffer.Change::data)
+                .containsExactly("2", "3"));
+    }
+
+    @Test
+    void changesSinceTheLastIdAreEmpty() {
+        //given
+        String ready = underTest.lastEventId();
+
+        //when
+        Optional<List<CustomerChangeBuffer.Change>> beforeAnyChange = underTest.changesSince(ready);
+        underTest.append("created", "1");
+        Optional<List<CustomerChangeBuffer.Change>> afterTheChange =
+                underTest.changesSince(underTest.lastEventId());
+
+        //then
+        assertThat(beforeAnyChange).hasValue(List.of());
+        assertThat(afterTheChange).hasValue(List.of());
+    }
+
+    @Test
+    void changesSinceIsEmptyOnceTheMissedChangesWereOverwritten() {
+        //given
+        String seen = underTest.append("created", "1").id();
+        for (int i = 2; i <= 5; i++) {
+            underTest.append("updated", Integer.toString(i));
+        }
+
+        //when
+        Optional<List<CustomerChangeBuffer.Change>> actual = underTest.changesSince(seen);
+
+        //then
+        assertThat(actual).isEmpty();
+        assertThat(underTest.changesSince(underTest.append("updated", "6").id())).hasValue(List.of());
+    }
+
+    @Test
+    void changesSinceIsEmptyForIdsOfAnotherBuffer() {
+        //given
+        underTest.append("created", "1");
+
+        //then
+        assertThat(underTest.changesSince("other-1")).isEmpty();
+        assertThat(underTest.changesSince("test-9")).isEmpty();
+        assertThat(underTest.changesSince("test-x")).isEmpty();
+    }
+}
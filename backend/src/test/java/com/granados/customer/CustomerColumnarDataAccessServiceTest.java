@@ -0,0 +1,124 @@
+package com.granados.customer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerColumnarDataAccessServiceTest {
+
+    private static final CustomerFilter ALL = new CustomerFilter(null, null, null);
+
+    private CustomerInMemoryDataAccessService customerDAO;
+    private CustomerColumnarDataAccessService underTest;
+
+    @BeforeEach
+    void setUp() {
+        customerDAO = new CustomerInMemoryDataAccessService();
+        underTest = new CustomerColumnarDataAccessService(customerDAO);
+    }
+
+    @Test
+    void selectCustomersDelegatesUntilSnapshotIsBuilt() {
+        //when
+        List<Customer> actual = underTest.selectCustomers(ALL);
+        //then
+        assertThat(underTest.isBuilt()).isFalse();
+        assertThat(actual).hasSize(2);
+    }
+
+    @Test
+    void refreshAppendsNewCustomers() {
+        //given
+        underTest.refresh();
+        customerDAO.insertCustomer(new Customer("Ana", "ana@gmail.com", 30, Gender.FEMALE));
+        //when
+        List<Customer> stale = underTest.selectCustomers(ALL);
+        underTest.refresh();
+        List<Customer> refreshed = underTest.selectCustomers(ALL);
+        //then
+        assertThat(stale).hasSize(2);
+        assertThat(refreshed).containsExactlyElementsOf(customerDAO.selectCustomers(ALL));
+    }
+
+    @Test
+    void writesThroughTheDAOUpdateTheSnapshot() {
+        //given
+        underTest.rebuild();
+        //when
+        underTest.updateCustomer(1, new CustomerUpdateRequest("Germani", null, 20));
+        underTest.deleteCustomerById(2);
+        //then
+        assertThat(underTest.selectCustomers(ALL))
+                .containsExactly(new Customer(1, "Germani", "german@gmail.com", 20, Gender.MALE));
+    }
+
+    @Test
+    void filteredCustomersHaveNoVersion() {
+        //given
+        underTest.rebuild();
+        //when
+        // inserts only reach the snapshot on the next refresh, the table version would
+        // already tag a list that lacks them
+        underTest.insertCustomer(new Customer("Ana", "ana@gmail.com", 30, Gender.FEMALE));
+        //then
+        assertThat(underTest.selectCustomers(ALL)).hasSize(2);
+        assertThat(underTest.selectFilteredCustomersVersion()).isEmpty();
+        assertThat(underTest.selectCustomersVersion()).isEqualTo(customerDAO.selectCustomersVersion());
+    }
+
+    @Test
+    void rebuildPicksUpChangesMadeElsewhere() {
+        //given
+        underTest.rebuild();
+        customerDAO.deleteCustomerById(1);
+        //when
+        underTest.rebuild();
+        //then
+        assertThat(underTest.selectCustomers(new CustomerFilter(30, null, Gender.MALE))).isEmpty();
+    }
+
+    @Test
+    void rebuildKeepsWritesMadeWhileItStreams() {
+        //given
+        CustomerColumnarDataAccessService[] columnar = new CustomerColumnarDataAccessService[1];
+        CustomerInMemoryDataAccessService streamingDAO = new CustomerInMemoryDataAccessService() {
+            @Override
+            public void forEachCustomer(Consumer<Customer> action) {
+                // the stream has read the rows before the writes below
+                List<Customer> streamed = new ArrayList<>();
+                super.forEachCustomer(customer -> streamed.add(new Customer(
+                        customer.getId(), customer.getName(), customer.getEmail(),
+                        customer.getAge(), customer.getGender())));
+                columnar[0].updateCustomer(1, new CustomerUpdateRequest("Germani", null, 20));
+                columnar[0].deleteCustomerById(2);
+                streamed.forEach(action);
+            }
+        };
+        columnar[0] = new CustomerColumnarDataAccessService(streamingDAO);
+        //when
+        columnar[0].rebuild();
+        //then
+        assertThat(columnar[0].selectCustomers(ALL))
+                .containsExactly(new Customer(1, "Germani", "german@gmail.com", 20, Gender.MALE));
+    }
+
+    @Test
+    void reportsSnapshotMetrics() {
+        //given
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        underTest.bindTo(registry);
+        underTest.rebuild();
+        //when
+        underTest.selectCustomers(ALL);
+        //then
+        assertThat(registry.get("customer.columnar.rows").gauge().value()).isEqualTo(2);
+        assertThat(registry.get("customer.columnar.off.heap").gauge().value()).isPositive();
+        assertThat(registry.get("customer.columnar.scan").timer().count()).isEqualTo(1);
+    }
+}
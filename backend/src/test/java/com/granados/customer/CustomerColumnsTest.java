@@ -0,0 +1,85 @@
+package com.granados.customer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerColumnsTest {
+
+    private final CustomerColumns underTest = new CustomerColumns(4);
+
+    @Test
+    void selectMatchesStreamFilter() {
+        //given
+        Random random = new Random(7);
+        List<Customer> customers = new ArrayList<>();
+        for (int id = 1; id <= 10_000; id++) {
+            Customer customer = new Customer(
+                    id,
+                    "Name ñ " + id,
+                    "user" + id + "@gmail.com",
+                    random.nextInt(100),
+                    random.nextBoolean() ? Gender.MALE : Gender.FEMALE);
+            customers.add(customer);
+            underTest.append(customer);
+        }
+        List<CustomerFilter> filters = List.of(
+                new CustomerFilter(null, null, null),
+                new CustomerFilter(18, 30, null),
+                new CustomerFilter(null, 10, Gender.FEMALE),
+                new CustomerFilter(90, null, Gender.MALE),
+                new CustomerFilter(50, 40, null),
+                new CustomerFilter("Name ñ 12", null, null, null, Gender.MALE, null),
+                new CustomerFilter(null, "user42@gmail.com", null, null, null, null),
+                new CustomerFilter("Name ñ 9", null, 20, 60, null, CustomerSort.parse("age,desc")));
+        //when
+        //then
+        for (CustomerFilter filter : filters) {
+            assertThat(underTest.select(filter))
+                    .containsExactlyElementsOf(customers.stream()
+                            .filter(filter::matches)
+                            .sorted(filter.sort().comparator())
+                            .toList());
+        }
+        assertThat(underTest.rows()).isEqualTo(10_000);
+        assertThat(underTest.lastId()).isEqualTo(10_000);
+    }
+
+    @Test
+    void updateAndDeleteAreVisibleToScans() {
+        //given
+        underTest.append(new Customer(1, "German", "german@gmail.com", 39, Gender.MALE));
+        underTest.append(new Customer(2, "Mateo", "mateo@gmail.com", 12, Gender.MALE));
+        underTest.append(new Customer(3, "Ana", "ana@gmail.com", 30, Gender.FEMALE));
+        //when
+        boolean updated = underTest.update(new Customer(2, "Mateito", "mateo@gmail.com", 13, Gender.MALE));
+        boolean deleted = underTest.delete(3);
+        boolean missing = underTest.delete(3);
+        //then
+        assertThat(updated).isTrue();
+        assertThat(deleted).isTrue();
+        assertThat(missing).isFalse();
+        assertThat(underTest.select(new CustomerFilter(null, null, null)))
+                .containsExactly(
+                        new Customer(1, "German", "german@gmail.com", 39, Gender.MALE),
+                        new Customer(2, "Mateito", "mateo@gmail.com", 13, Gender.MALE));
+        assertThat(underTest.select(new CustomerFilter(null, null, Gender.FEMALE))).isEmpty();
+        assertThat(underTest.garbageBytes()).isPositive();
+    }
+
+    @Test
+    void appendRejectsIdsOutOfOrder() {
+        //given
+        underTest.append(new Customer(2, "Mateo", "mateo@gmail.com", 12, Gender.MALE));
+        //when
+        //then
+        assertThatThrownBy(() -> underTest.append(
+                new Customer(1, "German", "german@gmail.com", 39, Gender.MALE)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,88 @@
+package com.granados.customer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerHttpMessageConverterTest {
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final CustomerHttpMessageConverter underTest = new CustomerHttpMessageConverter();
+
+    @Test
+    void writesTheSameBytesAsJackson() throws Exception {
+        //given
+        List<Customer> customers = List.of(
+                new Customer(1, "German", "german@gmail.com", 39, Gender.MALE),
+                new Customer(Integer.MAX_VALUE, "Zoë \"Q\" O'Brien\\", "zoe@gmail.com", 0, Gender.FEMALE),
+                new Customer(Integer.MIN_VALUE, "tab\tnew\nline\u0001\u001f\u007f", "a/b@c.d", -7, Gender.MALE),
+                new Customer(10, "日本 😀 \ud800", "emoji@gmail.com", 100, Gender.FEMALE),
+                new Customer(null, null, null, null, null));
+        Type type = new ParameterizedTypeReference<List<Customer>>() {
+        }.getType();
+
+        //when
+        MockHttpOutputMessage list = new MockHttpOutputMessage();
+        underTest.write(customers, type, MediaType.APPLICATION_JSON, list);
+        MockHttpOutputMessage single = new MockHttpOutputMessage();
+        underTest.write(customers.get(1), Customer.class, MediaType.APPLICATION_JSON, single);
+
+        //then
+        assertThat(list.getBodyAsBytes()).isEqualTo(objectMapper.writeValueAsBytes(customers));
+        assertThat(single.getBodyAsBytes()).isEqualTo(objectMapper.writeValueAsBytes(customers.get(1)));
+        assertThat(list.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_JSON);
+    }
+
+    @Test
+    void writesBodiesLargerThanTheBuffer() throws Exception {
+        //given
+        List<Customer> customers = new ArrayList<>();
+        for (int i = 1; i <= 1000; i++) {
+            customers.add(new Customer(i, "Customer ñ " + i, "customer" + i + "@gmail.com", i % 90, Gender.FEMALE));
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        //when
+        CustomerJsonWriter writer = new CustomerJsonWriter(out);
+        writer.writeCustomers(customers);
+        writer.flush();
+
+        //then
+        assertThat(out.size()).isGreaterThan(CustomerJsonWriter.BUFFER_SIZE);
+        assertThat(out.toByteArray()).isEqualTo(objectMapper.writeValueAsBytes(customers));
+    }
+
+    @Test
+    void onlyWritesCustomersAsJson() {
+        //then
+        Type customers = new ParameterizedTypeReference<List<Customer>>() {
+        }.getType();
+        Type customerSet = new ParameterizedTypeReference<Set<Customer>>() {
+        }.getType();
+        Type anything = new ParameterizedTypeReference<List<?>>() {
+        }.getType();
+        Type map = new ParameterizedTypeReference<Map<String, Customer>>() {
+        }.getType();
+
+        assertThat(underTest.canWrite(Customer.class, Customer.class, MediaType.APPLICATION_JSON)).isTrue();
+        assertThat(underTest.canWrite(customers, List.class, MediaType.APPLICATION_JSON)).isTrue();
+        assertThat(underTest.canWrite(customerSet, Set.class, null)).isTrue();
+        assertThat(underTest.canWrite(anything, List.class, MediaType.APPLICATION_JSON)).isFalse();
+        assertThat(underTest.canWrite(map, Map.class, MediaType.APPLICATION_JSON)).isFalse();
+        assertThat(underTest.canWrite(CustomerStats.class, CustomerStats.class, MediaType.APPLICATION_JSON)).isFalse();
+        assertThat(underTest.canWrite(customers, List.class, MediaType.APPLICATION_CBOR)).isFalse();
+        assertThat(underTest.canRead(Customer.class, MediaType.APPLICATION_JSON)).isFalse();
+    }
+}
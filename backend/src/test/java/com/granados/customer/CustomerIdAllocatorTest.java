@@ -0,0 +1,46 @@
+package com.granados.customer;
+
+import com.granados.AbstractTestcontainers;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerIdAllocatorTest extends AbstractTestcontainers {
+
+    private final CustomerIdAllocator underTest = new CustomerIdAllocator(getJdbcTemplate());
+
+    @Test
+    void nextIdsUseTheWholeBlockBeforeTheNextOne() {
+        //when
+        int first = underTest.nextId();
+        int[] rest = underTest.nextIds(CustomerIdAllocator.BLOCK_SIZE - 1);
+        int next = underTest.nextId();
+
+        //then
+        for (int i = 0; i < rest.length; i++) {
+            assertThat(rest[i]).isEqualTo(first + 1 + i);
+        }
+        assertThat(next < first || next >= first + CustomerIdAllocator.BLOCK_SIZE).isTrue();
+    }
+
+    @Test
+    void nextIdsDoNotCollideAcrossAllocators() {
+        //given
+        CustomerIdAllocator other = new CustomerIdAllocator(getJdbcTemplate());
+
+        //when
+        int[] ids = underTest.nextIds(CustomerIdAllocator.BLOCK_SIZE * 2 + 1);
+        int[] otherIds = other.nextIds(CustomerIdAllocator.BLOCK_SIZE + 1);
+        int columnDefault = getJdbcTemplate().queryForObject(
+                "SELECT nextval('customer_id_seq')", Integer.class);
+
+        //then
+        int[] all = new int[ids.length + otherIds.length + 1];
+        System.arraycopy(ids, 0, all, 0, ids.length);
+        System.arraycopy(otherIds, 0, all, ids.length, otherIds.length);
+        all[all.length - 1] = columnDefault;
+        assertThat(Arrays.stream(all).distinct().count()).isEqualTo(all.length);
+    }
+}
@@ -0,0 +1,218 @@
+package com.granados.customer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerInMemoryDataAccessServiceTest {
+
+    private CustomerInMemoryDataAccessService underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CustomerInMemoryDataAccessService();
+    }
+
+    @Test
+    void startsWithSeedCustomers() {
+        //when
+        List<Customer> actual = underTest.selectAllCustomers();
+        //then
+        assertThat(actual).extracting(Customer::getId).containsExactly(1, 2);
+        assertThat(actual).extracting(Customer::getEmail)
+                .containsExactly("german@gmail.com", "mateo@gmail.com");
+    }
+
+    @Test
+    void insertCustomerIfAbsentAssignsIdsAndRejectsTakenEmail() {
+        //given
+        Customer customer = new Customer("Ana", "ana@gmail.com", 30, Gender.FEMALE);
+        //when
+        Optional<Integer> id = underTest.insertCustomerIfAbsent(customer);
+        Optional<Integer> duplicate = underTest.insertCustomerIfAbsent(customer);
+        //then
+        assertThat(id).contains(3);
+        assertThat(duplicate).isEmpty();
+        assertThat(underTest.selectCustomerById(3)).hasValueSatisfying(c -> {
+            assertThat(c.getName()).isEqualTo("Ana");
+            assertThat(c.getEmail()).isEqualTo("ana@gmail.com");
+        });
+        assertThat(underTest.existsPersonWithEmail("ana@gmail.com")).isTrue();
+        assertThat(underTest.existsPersonWithId(3)).isTrue();
+    }
+
+    @Test
+    void insertCustomersIsAllOrNothing() {
+        //given
+        List<Customer> customers = List.of(
+                new Customer("Ana", "ana@gmail.com", 30, Gender.FEMALE),
+                new Customer("German", "german@gmail.com", 39, Gender.MALE));
+        //when
+        //then
+        assertThatThrownBy(() -> underTest.insertCustomers(customers))
+                .isInstanceOf(DuplicateKeyException.class);
+        assertThat(underTest.existsPersonWithEmail("ana@gmail.com")).isFalse();
+        assertThat(underTest.selectAllCustomers()).hasSize(2);
+    }
+
+    @Test
+    void storedCustomersCannotBeMutatedByCallers() {
+        //given
+        Customer customer = underTest.selectCustomerById(1).orElseThrow();
+        //when
+        customer.setEmail("changed@gmail.com");
+        //then
+        assertThat(underTest.selectCustomerById(1))
+                .hasValueSatisfying(c -> assertThat(c.getEmail()).isEqualTo("german@gmail.com"));
+    }
+
+    @Test
+    void selectCustomersAfterSkipsDeletedIds() {
+        //given
+        for (int i = 0; i < 5; i++) {
+            underTest.insertCustomer(new Customer("C" + i, "c" + i + "@gmail.com", 20, Gender.MALE));
+        }
+        underTest.deleteCustomerById(4);
+        //when
+        List<Customer> actual = underTest.selectCustomersAfter(2, 3);
+        //then
+        assertThat(actual).extracting(Customer::getId).containsExactly(3, 5, 6);
+    }
+
+    @Test
+    void updateCustomerMovesEmailIndex() {
+        //when
+        Optional<Customer> updated = underTest.updateCustomer(
+                1, new CustomerUpdateRequest(null, "new@gmail.com", 40));
+        //then
+        assertThat(updated).hasValueSatisfying(c -> {
+            assertThat(c.getName()).isEqualTo("German");
+            assertThat(c.getAge()).isEqualTo(40);
+        });
+        assertThat(underTest.existsPersonWithEmail("german@gmail.com")).isFalse();
+        assertThat(underTest.selectExistingEmails(Set.of("new@gmail.com", "german@gmail.com")))
+                .containsExactly("new@gmail.com");
+        assertThat(underTest.selectAllCustomers()).hasSize(2);
+    }
+
+    @Test
+    void updateCustomerRejectsTakenEmail() {
+        //when
+        //then
+        assertThatThrownBy(() -> underTest.updateCustomer(
+                1, new CustomerUpdateRequest(null, "mateo@gmail.com", null)))
+                .isInstanceOf(DuplicateKeyException.class);
+        assertThat(underTest.selectCustomerById(1))
+                .hasValueSatisfying(c -> assertThat(c.getEmail()).isEqualTo("german@gmail.com"));
+    }
+
+    @Test
+    void deleteCustomerByIdFreesEmail() {
+        //when
+        Optional<Customer> deleted = underTest.deleteCustomerById(2);
+        //then
+        assertThat(deleted).hasValueSatisfying(c -> assertThat(c.getName()).isEqualTo("Mateo"));
+        assertThat(underTest.deleteCustomerById(2)).isEmpty();
+        assertThat(underTest.existsPersonWithEmail("mateo@gmail.com")).isFalse();
+        assertThat(underTest.insertCustomerIfAbsent(
+                new Customer("Mateo", "mateo@gmail.com", 13, Gender.MALE))).isPresent();
+    }
+
+    @Test
+    void staysConsistentUnderConcurrentWrites() throws Exception {
+        //given
+        int threads = 8;
+        int emailsPerThread = 2_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        //when
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < emailsPerThread; i++) {
+                    // every thread competes for the same emails
+                    String email = "user" + random.nextInt(emailsPerThread) + "@gmail.com";
+                    underTest.insertCustomerIfAbsent(new Customer("C", email, 20, Gender.MALE));
+                    int id = random.nextInt(1, emailsPerThread * threads);
+                    switch (random.nextInt(3)) {
+                        case 0 -> underTest.deleteCustomerById(id);
+                        case 1 -> {
+                            try {
+                                underTest.updateCustomer(id, new CustomerUpdateRequest(
+                                        null, "user" + random.nextInt(emailsPerThread) + "@gmail.com", null));
+                            } catch (DuplicateKeyException ignored) {
+                            }
+                        }
+                        default -> underTest.selectCustomerById(id);
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(1, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+        //then
+        List<Customer> customers = underTest.selectAllCustomers();
+        assertThat(customers).extracting(Customer::getEmail).doesNotHaveDuplicates();
+        assertThat(underTest.size()).isEqualTo(customers.size());
+        customers.forEach(c -> assertThat(underTest.existsPersonWithEmail(c.getEmail())).isTrue());
+    }
+
+    @Test
+    void updateCustomerWithExpectedVersion() {
+        //given
+        long before = underTest.selectCustomersVersion();
+        //when
+        Optional<Customer> updated = underTest.updateCustomer(
+                1, new CustomerUpdateRequest(null, null, 40), 0);
+        Optional<Customer> stale = underTest.updateCustomer(
+                1, new CustomerUpdateRequest(null, null, 41), 0);
+        //then
+        assertThat(updated).hasValueSatisfying(c -> assertThat(c.getVersion()).isEqualTo(1));
+        assertThat(stale).isEmpty();
+        assertThat(underTest.deleteCustomerById(1, 0)).isEmpty();
+        assertThat(underTest.deleteCustomerById(1, 1)).isPresent();
+        assertThat(underTest.selectCustomersVersion()).isEqualTo(before + 2);
+        assertThat(underTest.selectFilteredCustomersVersion()).hasValue(before + 2);
+    }
+
+    @Test
+    void selectCustomersUsesNameAndEmailIndexes() {
+        //given
+        underTest.insertCustomer(new Customer("Germana", "germana@gmail.com", 25, Gender.FEMALE));
+        underTest.insertCustomer(new Customer("Gerardo", "gerardo@gmail.com", 50, Gender.MALE));
+        underTest.updateCustomer(2, new CustomerUpdateRequest("Gervasio", null, null));
+        //when
+        List<Customer> byName = underTest.selectCustomers(new CustomerFilter(
+                "Ger", null, null, null, null, CustomerSort.parse("age,desc")));
+        List<Customer> byEmail = underTest.selectCustomers(new CustomerFilter(
+                null, "germana@gmail.com", null, null, null, null));
+        List<Customer> byNameAndGender = underTest.selectCustomers(new CustomerFilter(
+                "Ger", null, null, null, Gender.MALE, CustomerSort.parse("name")));
+        //then
+        assertThat(byName).extracting(Customer::getName)
+                .containsExactly("Gerardo", "German", "Germana", "Gervasio");
+        assertThat(byEmail).extracting(Customer::getName).containsExactly("Germana");
+        assertThat(byNameAndGender).extracting(Customer::getName)
+                .containsExactly("Gerardo", "German", "Gervasio");
+    }
+}
@@ -3,12 +3,21 @@ package com.granados.customer;
 import com.granados.AbstractTestcontainers;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 class CustomerJDBCDataAccessServiceTest extends AbstractTestcontainers {
 
@@ -19,7 +28,8 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestcontainers {
     void setUp() {
         underTest = new CustomerJDBCDataAccessService(
                 getJdbcTemplate(),
-                customerRowMapper
+                customerRowMapper,
+                new CustomerIdAllocator(getJdbcTemplate())
         );
     }
 
@@ -39,6 +49,98 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestcontainers {
         assertThat(actual).isNotEmpty();
     }
 
+    @Test
+    void selectCustomersAfter() {
+        //given
+        for (int i = 0; i < 3; i++) {
+            underTest.insertCustomer(new Customer(
+                    FAKER.name().fullName(),
+                    FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                    20,
+                    Gender.MALE));
+        }
+        List<Integer> ids = underTest.selectAllCustomers()
+                .stream()
+                .map(Customer::getId)
+                .sorted()
+                .toList();
+        Integer afterId = ids.get(0);
+
+        //when
+        List<Customer> actual = underTest.selectCustomersAfter(afterId, 2);
+
+        //then
+        assertThat(actual)
+                .extracting(Customer::getId)
+                .containsExactly(ids.get(1), ids.get(2));
+    }
+
+    @Test
+    void countCustomers() {
+        //given
+        long before = underTest.countCustomers();
+        underTest.insertCustomer(new Customer(
+                FAKER.name().fullName(),
+                FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                20,
+                Gender.MALE));
+
+        //when
+        long actual = underTest.countCustomers();
+
+        //then
+        assertThat(actual).isEqualTo(before + 1);
+    }
+
+    @Test
+    void selectCustomers() {
+        //given
+        String female = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        String male = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        String tooOld = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        underTest.insertCustomer(new Customer(FAKER.name().fullName(), female, 150, Gender.FEMALE));
+        underTest.insertCustomer(new Customer(FAKER.name().fullName(), male, 151, Gender.MALE));
+        underTest.insertCustomer(new Customer(FAKER.name().fullName(), tooOld, 152, Gender.FEMALE));
+
+        //when
+        List<Customer> actual = underTest.selectCustomers(
+                new CustomerFilter(150, 151, Gender.FEMALE));
+
+        //then
+        assertThat(actual)
+                .extracting(Customer::getEmail)
+                .contains(female)
+                .doesNotContain(male, tooOld);
+        assertThat(actual).allSatisfy(c -> {
+            assertThat(c.getAge()).isBetween(150, 151);
+            assertThat(c.getGender()).isEqualTo(Gender.FEMALE);
+        });
+    }
+
+    @Test
+    void forEachCustomer() {
+        //given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        underTest.insertCustomer(new Customer(
+                FAKER.name().fullName(),
+                email,
+                20,
+                Gender.MALE));
+        List<Customer> visited = new ArrayList<>();
+
+        //when
+        underTest.forEachCustomer(visited::add);
+
+        //then
+        assertThat(visited)
+                .hasSameSizeAs(underTest.selectAllCustomers())
+                .extracting(Customer::getEmail)
+                .contains(email);
+        assertThat(visited)
+                .extracting(Customer::getId)
+                .isSorted();
+    }
+
     @Test
     void selectCustomerById() {
         //given
@@ -95,6 +197,134 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestcontainers {
         assertThat(actual).isNotEmpty();
     }
 
+    @Test
+    void insertCustomerIfAbsentReturnsNewId() {
+        //given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Customer customer = new Customer(
+                FAKER.name().fullName(),
+                email,
+                20,
+                Gender.MALE);
+
+        //when
+        Optional<Integer> actual = underTest.insertCustomerIfAbsent(customer);
+
+        //then
+        assertThat(actual).isPresent();
+        assertThat(underTest.selectCustomerById(actual.get()))
+                .isPresent()
+                .hasValueSatisfying(c -> assertThat(c.getEmail()).isEqualTo(email));
+    }
+
+    @Test
+    void insertCustomerIfAbsentReturnsEmptyWhenEmailTaken() {
+        //given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Customer customer = new Customer(
+                FAKER.name().fullName(),
+                email,
+                20,
+                Gender.MALE);
+        underTest.insertCustomer(customer);
+
+        //when
+        Optional<Integer> actual = underTest.insertCustomerIfAbsent(customer);
+
+        //then
+        assertThat(actual).isEmpty();
+    }
+
+    @Test
+    void insertCustomersIfAbsentReturnsAnIdPerNewEmail() {
+        //given
+        Customer taken = new Customer(
+                FAKER.name().fullName(),
+                FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                20,
+                Gender.MALE);
+        underTest.insertCustomer(taken);
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        List<Customer> customers = List.of(
+                new Customer(FAKER.name().fullName(), email, 30, Gender.FEMALE),
+                taken,
+                new Customer(FAKER.name().fullName(), email, 40, Gender.MALE));
+
+        //when
+        List<Optional<Integer>> actual = underTest.insertCustomersIfAbsent(customers);
+
+        //then
+        assertThat(actual).hasSize(3);
+        assertThat(actual.get(0)).isPresent();
+        assertThat(actual.get(1)).isEmpty();
+        assertThat(actual.get(2)).isEmpty();
+        assertThat(underTest.selectCustomerById(actual.get(0).get()))
+                .hasValueSatisfying(c -> assertThat(c.getAge()).isEqualTo(30));
+    }
+
+    @Test
+    void insertCustomers() {
+        //given
+        List<Customer> customers = List.of(
+                new Customer(
+                        FAKER.name().fullName(),
+                        FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                        20,
+                        Gender.MALE),
+                new Customer(
+                        FAKER.name().fullName(),
+                        FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                        30,
+                        Gender.FEMALE));
+        //when
+        underTest.insertCustomers(customers);
+
+        //then
+        assertThat(underTest.selectAllCustomers())
+                .extracting(Customer::getEmail)
+                .contains(customers.get(0).getEmail(), customers.get(1).getEmail());
+    }
+
+    @Test
+    void insertCustomersSetsTheAllocatedIds() {
+        //given
+        List<Customer> customers = new ArrayList<>();
+        for (int i = 0; i < CustomerIdAllocator.BLOCK_SIZE + 1; i++) {
+            customers.add(new Customer(
+                    FAKER.name().fullName(),
+                    FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                    20 + i,
+                    Gender.FEMALE));
+        }
+
+        //when
+        underTest.insertCustomers(customers);
+
+        //then
+        assertThat(customers).extracting(Customer::getId).doesNotContainNull().doesNotHaveDuplicates();
+        Customer last = customers.get(customers.size() - 1);
+        assertThat(underTest.selectCustomerById(last.getId()))
+                .hasValueSatisfying(c -> assertThat(c.getEmail()).isEqualTo(last.getEmail()));
+    }
+
+    @Test
+    void selectExistingEmails() {
+        //given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        String unknownEmail = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        underTest.insertCustomer(new Customer(
+                FAKER.name().fullName(),
+                email,
+                20,
+                Gender.MALE));
+
+        //when
+        Set<String> actual = underTest.selectExistingEmails(List.of(email, unknownEmail));
+
+        //then
+        assertThat(actual).containsExactly(email);
+    }
+
     @Test
     void existsPersonWithEmail() {
         //given
@@ -167,20 +397,27 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestcontainers {
                 email,
                 20,
                 Gender.MALE);
-        underTest.insertCustomer(customer);
-        Integer id = underTest.selectAllCustomers().stream()
-                .filter(c -> c.getEmail().equals(email))
-                .map(Customer::getId)
-                .findFirst()
-                .orElseThrow();
+        Integer id = underTest.insertCustomerIfAbsent(customer).orElseThrow();
         //when
-        underTest.deleteCustomerById(id);
+        Optional<Customer> deleted = underTest.deleteCustomerById(id);
         //then
         Optional<Customer> actual = underTest.selectCustomerById(id);
 
+        assertThat(deleted).hasValueSatisfying(c -> {
+            assertThat(c.getId()).isEqualTo(id);
+            assertThat(c.getEmail()).isEqualTo(email);
+        });
         assertThat(actual).isNotPresent();
     }
 
+    @Test
+    void deleteCustomerByIdReturnsEmptyWhenIdNotPresent() {
+        //when
+        Optional<Customer> actual = underTest.deleteCustomerById(-1);
+        //then
+        assertThat(actual).isEmpty();
+    }
+
     @Test
     void updateCustomer() {
         //given
@@ -191,24 +428,243 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestcontainers {
                 email,
                 20,
                 Gender.MALE);
-        underTest.insertCustomer(customer);
-        Integer id = underTest.selectAllCustomers().stream()
-                .filter(c -> c.getEmail().equals(email))
-                .map(Customer::getId)
-                .findFirst()
-                .orElseThrow();
+        Integer id = underTest.insertCustomerIfAbsent(customer).orElseThrow();
         //when
-        underTest.updateCustomer(new Customer(
-                id,
-                updatedName,
-                email,
-                20,
-                Gender.MALE));
+        Optional<Customer> updated = underTest.updateCustomer(
+                id, new CustomerUpdateRequest(updatedName, null, 21));
         //then
         Optional<Customer> actual = underTest.selectCustomerById(id);
 
+        assertThat(updated).isEqualTo(actual);
         assertThat(actual).isPresent().hasValueSatisfying(c -> {
             assertThat(c.getName()).isEqualTo(updatedName);
+            assertThat(c.getEmail()).isEqualTo(email);
+            assertThat(c.getAge()).isEqualTo(21);
         });
     }
-}
\ No newline at end of file
+
+    @Test
+    void updateCustomerReturnsEmptyWhenIdNotPresent() {
+        //when
+        Optional<Customer> actual = underTest.updateCustomer(
+                -1, new CustomerUpdateRequest(FAKER.name().fullName(), null, null));
+        //then
+        assertThat(actual).isEmpty();
+    }
+
+    @Test
+    void updateCustomerWillThrowWhenEmailTaken() {
+        //given
+        String takenEmail = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        underTest.insertCustomer(new Customer(
+                FAKER.name().fullName(),
+                takenEmail,
+                20,
+                Gender.MALE));
+        Integer id = underTest.insertCustomerIfAbsent(new Customer(
+                FAKER.name().fullName(),
+                FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                20,
+                Gender.MALE)).orElseThrow();
+        //then
+        assertThatThrownBy(() -> underTest.updateCustomer(
+                id, new CustomerUpdateRequest(null, takenEmail, null)))
+                .isInstanceOf(DuplicateKeyException.class);
+    }
+
+    @Test
+    void updateCustomerWithExpectedVersionIncrementsVersion() {
+        //given
+        Integer id = underTest.insertCustomerIfAbsent(new Customer(
+                FAKER.name().fullName(),
+                FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                20,
+                Gender.MALE)).orElseThrow();
+        int version = underTest.selectCustomerById(id).orElseThrow().getVersion();
+        //when
+        Optional<Customer> updated = underTest.updateCustomer(
+                id, new CustomerUpdateRequest(null, null, 21), version);
+        Optional<Customer> stale = underTest.updateCustomer(
+                id, new CustomerUpdateRequest(null, null, 22), version);
+        //then
+        assertThat(updated).hasValueSatisfying(c -> {
+            assertThat(c.getAge()).isEqualTo(21);
+            assertThat(c.getVersion()).isEqualTo(version + 1);
+        });
+        assertThat(stale).isEmpty();
+        assertThat(underTest.selectCustomerById(id)).isEqualTo(updated);
+    }
+
+    @Test
+    void deleteCustomerByIdWithStaleVersionKeepsCustomer() {
+        //given
+        Integer id = underTest.insertCustomerIfAbsent(new Customer(
+                FAKER.name().fullName(),
+                FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                20,
+                Gender.MALE)).orElseThrow();
+        int version = underTest.selectCustomerById(id).orElseThrow().getVersion();
+        //when
+        Optional<Customer> stale = underTest.deleteCustomerById(id, version + 1);
+        Optional<Customer> deleted = underTest.deleteCustomerById(id, version);
+        //then
+        assertThat(stale).isEmpty();
+        assertThat(deleted).hasValueSatisfying(c -> assertThat(c.getId()).isEqualTo(id));
+        assertThat(underTest.existsPersonWithId(id)).isFalse();
+    }
+
+    @Test
+    void selectCustomersVersionChangesOnWrite() {
+        //given
+        long before = underTest.selectCustomersVersion();
+        //when
+        underTest.insertCustomer(new Customer(
+                FAKER.name().fullName(),
+                FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                20,
+                Gender.MALE));
+        //then
+        assertThat(underTest.selectCustomersVersion()).isGreaterThan(before);
+    }
+
+    private static int versionSlot(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT pg_backend_pid() % 64")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private static void insert(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO customer(name, email, age, gender) VALUES (?, ?, ?, ?)")) {
+            statement.setString(1, FAKER.name().fullName());
+            statement.setString(2, FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID());
+            statement.setInt(3, 20);
+            statement.setString(4, Gender.MALE.name());
+            statement.executeUpdate();
+        }
+    }
+
+    @Test
+    void concurrentWritersDoNotWaitOnTheCustomersVersion() throws SQLException {
+        //given
+        List<Connection> connections = new ArrayList<>();
+        try {
+            Connection first = getDataSource().getConnection();
+            connections.add(first);
+            first.setAutoCommit(false);
+            insert(first);
+            long before = underTest.selectCustomersVersion();
+
+            // a writer that bumps another slot, the odds of two backends sharing one are 1 in 64
+            Connection second = getDataSource().getConnection();
+            connections.add(second);
+            while (versionSlot(second) == versionSlot(first) && connections.size() < 5) {
+                second = getDataSource().getConnection();
+                connections.add(second);
+            }
+
+            //when
+            try (Statement statement = second.createStatement()) {
+                statement.execute("SET lock_timeout = '2s'");
+                insert(second);
+                statement.execute("RESET lock_timeout");
+            }
+
+            //then
+            long committed = underTest.selectCustomersVersion();
+            first.commit();
+            first.setAutoCommit(true);
+            assertThat(committed).isEqualTo(before + 1);
+            assertThat(underTest.selectCustomersVersion()).isEqualTo(before + 2);
+        } finally {
+            for (Connection connection : connections) {
+                connection.close();
+            }
+        }
+    }
+
+    @Test
+    void selectCustomersByNamePrefixAndEmailSorted() {
+        //given
+        String prefix = "Prefix_" + UUID.randomUUID() + " ";
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        underTest.insertCustomer(new Customer(prefix + "B", email, 30, Gender.MALE));
+        underTest.insertCustomer(new Customer(prefix + "A",
+                FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(), 40, Gender.MALE));
+        // the underscore must not act as a LIKE wildcard
+        underTest.insertCustomer(new Customer(prefix.replace('_', 'x') + "C",
+                FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(), 50, Gender.MALE));
+
+        //when
+        List<Customer> byName = underTest.selectCustomers(new CustomerFilter(
+                prefix, null, null, null, null, CustomerSort.parse("name,desc")));
+        List<Customer> byEmail = underTest.selectCustomers(new CustomerFilter(
+                null, email, null, null, null, null));
+
+        //then
+        assertThat(byName)
+                .extracting(Customer::getName)
+                .containsExactly(prefix + "B", prefix + "A");
+        assertThat(byEmail)
+                .extracting(Customer::getName)
+                .containsExactly(prefix + "B");
+    }
+
+    @Test
+    void selectCustomersOrdersNamesByCodePointAndCutsAtTheLimit() {
+        //given
+        String prefix = "Collation " + UUID.randomUUID() + " ";
+        for (String name : List.of("b", "B", "a")) {
+            underTest.insertCustomer(new Customer(prefix + name,
+                    FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(), 30, Gender.MALE));
+        }
+        CustomerFilter filter = new CustomerFilter(
+                prefix, null, null, null, null, CustomerSort.parse("name"));
+
+        //when
+        List<Customer> all = underTest.selectCustomers(filter);
+        List<Customer> limited = underTest.selectCustomers(filter.withLimit(2));
+
+        //then
+        assertThat(all)
+                .extracting(Customer::getName)
+                .containsExactly(prefix + "B", prefix + "a", prefix + "b");
+        assertThat(limited)
+                .extracting(Customer::getName)
+                .containsExactly(prefix + "B", prefix + "a");
+    }
+
+    @Test
+    void selectCustomersByIds() {
+        //given
+        Integer id = underTest.insertCustomerIfAbsent(new Customer(
+                FAKER.name().fullName(),
+                FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                20,
+                Gender.MALE)).orElseThrow();
+        //when
+        List<Customer> actual = underTest.selectCustomersByIds(List.of(id, -1));
+        //then
+        assertThat(actual).containsExactly(underTest.selectCustomerById(id).orElseThrow());
+    }
+
+    @Test
+    void selectCustomerStats() {
+        //given
+        CustomerStats before = underTest.selectCustomerStats();
+        underTest.insertCustomer(new Customer(
+                FAKER.name().fullName(),
+                FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                150,
+                Gender.FEMALE));
+        //when
+        CustomerStats actual = underTest.selectCustomerStats();
+        //then
+        assertThat(actual.total()).isEqualTo(before.total() + 1).isEqualTo(underTest.countCustomers());
+        assertThat(actual.genders().get(Gender.FEMALE)).isEqualTo(before.genders().get(Gender.FEMALE) + 1);
+        assertThat(actual.ages().get(CustomerStats.AGE_BUCKETS - 1).customers())
+                .isEqualTo(before.ages().get(CustomerStats.AGE_BUCKETS - 1).customers() + 1);
+    }
+}
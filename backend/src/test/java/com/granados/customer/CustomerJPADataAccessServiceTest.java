@@ -5,8 +5,20 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 class CustomerJPADataAccessServiceTest {
 
@@ -15,11 +27,13 @@ class CustomerJPADataAccessServiceTest {
 
     @Mock
     private CustomerRepository customerRepository;
+    @Mock
+    private CustomerIdAllocator idAllocator;
 
     @BeforeEach
     void setUp() {
         autoCloseable = MockitoAnnotations.openMocks(this);
-        underTest = new CustomerJPADataAccessService(customerRepository);
+        underTest = new CustomerJPADataAccessService(customerRepository, idAllocator);
     }
 
     @AfterEach
@@ -37,6 +51,61 @@ class CustomerJPADataAccessServiceTest {
                 .findAll();
     }
 
+    @Test
+    void selectCustomersAfter() {
+        //given
+        Integer afterId = 10;
+        int limit = 5;
+        //when
+        underTest.selectCustomersAfter(afterId, limit);
+        //then
+        verify(customerRepository)
+                .findByIdGreaterThanOrderByIdAsc(afterId, PageRequest.of(0, limit));
+    }
+
+    @Test
+    void countCustomers() {
+        //when
+        underTest.countCustomers();
+        //then
+        verify(customerRepository).count();
+    }
+
+    @Test
+    void selectCustomers() {
+        //given
+        CustomerFilter filter = new CustomerFilter(18, 40, Gender.FEMALE);
+        //when
+        underTest.selectCustomers(filter);
+        //then
+        verify(customerRepository)
+                .findAll(any(Specification.class), eq(Sort.by("id")));
+    }
+
+    @Test
+    void forEachCustomerWalksTableInPages() {
+        //given
+        Customer german = new Customer(1, "German", "german@gmail.com", 39, Gender.MALE);
+        Customer mateo = new Customer(2, "Mateo", "mateo@gmail.com", 12, Gender.MALE);
+        int pageSize = CustomerJPADataAccessService.STREAM_PAGE_SIZE;
+        List<Customer> firstPage = new ArrayList<>();
+        for (int i = 0; i < pageSize - 1; i++) {
+            firstPage.add(german);
+        }
+        firstPage.add(mateo);
+        when(customerRepository.findByIdGreaterThanOrderByIdAsc(0, PageRequest.of(0, pageSize)))
+                .thenReturn(firstPage);
+        when(customerRepository.findByIdGreaterThanOrderByIdAsc(2, PageRequest.of(0, pageSize)))
+                .thenReturn(List.of());
+        List<Customer> visited = new ArrayList<>();
+        //when
+        underTest.forEachCustomer(visited::add);
+        //then
+        assertThat(visited).hasSize(pageSize);
+        verify(customerRepository)
+                .findByIdGreaterThanOrderByIdAsc(2, PageRequest.of(0, pageSize));
+    }
+
     @Test
     void selectCustomerById() {
         //given
@@ -63,6 +132,50 @@ class CustomerJPADataAccessServiceTest {
         verify(customerRepository).save(customer);
     }
 
+    @Test
+    void insertCustomerIfAbsent() {
+        //given
+        Customer customer = new Customer(
+                "German",
+                "ggranados@gmail.com",
+                39,
+                Gender.MALE);
+        when(idAllocator.nextId()).thenReturn(7);
+        //when
+        underTest.insertCustomerIfAbsent(customer);
+        //then
+        verify(customerRepository).insertIfEmailAbsent(
+                7,
+                customer.getName(),
+                customer.getEmail(),
+                customer.getAge(),
+                customer.getGender().name());
+    }
+
+    @Test
+    void insertCustomers() {
+        //given
+        List<Customer> customers = List.of(new Customer(
+                "German",
+                "ggranados@gmail.com",
+                39,
+                Gender.MALE));
+        //when
+        underTest.insertCustomers(customers);
+        //then
+        verify(customerRepository).saveAllAndFlush(customers);
+    }
+
+    @Test
+    void selectExistingEmails() {
+        //given
+        List<String> emails = List.of("ggranados@gmail.com", "mateo@gmail.com");
+        //when
+        underTest.selectExistingEmails(emails);
+        //then
+        verify(customerRepository).findEmailsIn(emails);
+    }
+
     @Test
     void existsPersonWithEmail() {
         //given
@@ -90,7 +203,7 @@ class CustomerJPADataAccessServiceTest {
         //when
         underTest.deleteCustomerById(id);
         //then
-        verify(customerRepository).deleteById(id);
+        verify(customerRepository).deleteByIdReturning(id);
     }
 
     @Test
@@ -102,9 +215,58 @@ class CustomerJPADataAccessServiceTest {
                 "ggranados@gmail.com",
                 20,
                 Gender.MALE);
+        when(customerRepository.findById(1)).thenReturn(Optional.of(customer));
+        when(customerRepository.saveAndFlush(customer)).thenReturn(customer);
         //when
-        underTest.updateCustomer(customer);
+        Optional<Customer> actual = underTest.updateCustomer(
+                1, new CustomerUpdateRequest("Germani", null, 30));
         //then
-        verify(customerRepository).save(customer);
+        verify(customerRepository).saveAndFlush(customer);
+        assertThat(actual).hasValueSatisfying(c -> {
+            assertThat(c.getName()).isEqualTo("Germani");
+            assertThat(c.getEmail()).isEqualTo("ggranados@gmail.com");
+            assertThat(c.getAge()).isEqualTo(30);
+        });
+    }
+
+    @Test
+    void updateCustomerReturnsEmptyWhenNotFound() {
+        //given
+        when(customerRepository.findById(1)).thenReturn(Optional.empty());
+        //when
+        Optional<Customer> actual = underTest.updateCustomer(
+                1, new CustomerUpdateRequest("Germani", null, null));
+        //then
+        assertThat(actual).isEmpty();
+        verify(customerRepository, never()).saveAndFlush(any());
+    }
+
+    @Test
+    void selectCustomersSortsByRequestedPropertyThenId() {
+        //given
+        CustomerFilter filter = new CustomerFilter(
+                "Ger", null, null, null, null, CustomerSort.parse("age,desc"));
+        //when
+        underTest.selectCustomers(filter);
+        //then
+        verify(customerRepository).findAll(
+                any(Specification.class),
+                eq(Sort.by(Sort.Direction.DESC, "age").and(Sort.by("id"))));
+    }
+
+    @Test
+    void selectCustomerStatsFoldsAgesIntoBuckets() {
+        //given
+        when(customerRepository.countByGenderAndAge()).thenReturn(List.of(
+                new Object[]{Gender.MALE, 12, 2L},
+                new Object[]{Gender.MALE, 19, 1L},
+                new Object[]{Gender.FEMALE, 39, 4L}));
+        //when
+        CustomerStats actual = underTest.selectCustomerStats();
+        //then
+        assertThat(actual.total()).isEqualTo(7);
+        assertThat(actual.genders()).containsEntry(Gender.MALE, 3L).containsEntry(Gender.FEMALE, 4L);
+        assertThat(actual.ages().get(1).customers()).isEqualTo(3);
+        assertThat(actual.ages().get(3).customers()).isEqualTo(4);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,119 @@
+package com.granados.customer;
+
+import com.granados.AbstractTestcontainers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerR2DBCDataAccessServiceTest extends AbstractTestcontainers {
+
+    private CustomerR2DBCDataAccessService underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CustomerR2DBCDataAccessService(getDatabaseClient());
+    }
+
+    @Test
+    void insertAndSelectCustomerById() {
+        //given
+        Customer customer = new Customer(
+                FAKER.name().fullName(),
+                FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                20,
+                Gender.FEMALE);
+        //when
+        Integer id = underTest.insertCustomerIfAbsent(customer).block();
+        //then
+        assertThat(underTest.selectCustomerById(id).block()).satisfies(c -> {
+            assertThat(c.getId()).isEqualTo(id);
+            assertThat(c.getEmail()).isEqualTo(customer.getEmail());
+            assertThat(c.getGender()).isEqualTo(Gender.FEMALE);
+        });
+    }
+
+    @Test
+    void insertCustomerIfAbsentIsEmptyWhenEmailIsTaken() {
+        //given
+        Customer customer = new Customer(
+                FAKER.name().fullName(),
+                FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                20,
+                Gender.MALE);
+        underTest.insertCustomerIfAbsent(customer).block();
+        //when
+        Integer actual = underTest.insertCustomerIfAbsent(customer).block();
+        //then
+        assertThat(actual).isNull();
+    }
+
+    @Test
+    void insertsTakeTheirIdsFromOneBlock() {
+        //given
+        String suffix = UUID.randomUUID().toString();
+        Integer first = underTest.insertCustomerIfAbsent(new Customer(
+                "Ana", "ana-block-" + suffix, 20, Gender.FEMALE)).block();
+        //when
+        Integer second = underTest.insertCustomerIfAbsent(new Customer(
+                "Bob", "bob-block-" + suffix, 21, Gender.MALE)).block();
+        int columnDefault = getJdbcTemplate().queryForObject(
+                "SELECT nextval('customer_id_seq')", Integer.class);
+        //then
+        assertThat(second).isEqualTo(first + 1);
+        // the first insert reserved the block, which nobody else is given
+        assertThat(columnDefault < first || columnDefault >= first + CustomerIdAllocator.BLOCK_SIZE).isTrue();
+    }
+
+    @Test
+    void selectCustomersAfterAndFiltered() {
+        //given
+        String suffix = UUID.randomUUID().toString();
+        Integer first = underTest.insertCustomerIfAbsent(new Customer(
+                "Ana", "ana-" + suffix, 117, Gender.FEMALE)).block();
+        Integer second = underTest.insertCustomerIfAbsent(new Customer(
+                "Bob", "bob-" + suffix, 118, Gender.MALE)).block();
+        //when
+        List<Customer> page = underTest.selectCustomersAfter(first - 1, 2).collectList().block();
+        List<Customer> filtered = underTest.selectCustomers(
+                new CustomerFilter(117, 118, Gender.MALE)).collectList().block();
+        //then
+        assertThat(page).extracting(Customer::getId).containsExactly(first, second);
+        assertThat(filtered).extracting(Customer::getId).contains(second).doesNotContain(first);
+    }
+
+    @Test
+    void updateAndDeleteCustomer() {
+        //given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Integer id = underTest.insertCustomerIfAbsent(new Customer(
+                "Ana", email, 30, Gender.FEMALE)).block();
+        //when
+        Customer updated = underTest.updateCustomer(id, new CustomerUpdateRequest("Ana Maria", null, 31)).block();
+        Customer deleted = underTest.deleteCustomerById(id).block();
+        //then
+        assertThat(updated.getName()).isEqualTo("Ana Maria");
+        assertThat(updated.getAge()).isEqualTo(31);
+        assertThat(updated.getEmail()).isEqualTo(email);
+        assertThat(deleted.getId()).isEqualTo(id);
+        assertThat(underTest.selectCustomerById(id).block()).isNull();
+    }
+
+    @Test
+    void updateCustomerFailsWhenEmailIsTaken() {
+        //given
+        String takenEmail = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        underTest.insertCustomerIfAbsent(new Customer("Ana", takenEmail, 30, Gender.FEMALE)).block();
+        Integer id = underTest.insertCustomerIfAbsent(new Customer(
+                "Bob", FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(), 30, Gender.MALE)).block();
+        //when
+        //then
+        assertThatThrownBy(() -> underTest.updateCustomer(id, new CustomerUpdateRequest(null, takenEmail, null)).block())
+                .isInstanceOf(DataIntegrityViolationException.class);
+    }
+}
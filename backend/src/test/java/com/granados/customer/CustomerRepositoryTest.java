@@ -7,10 +7,15 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.context.ApplicationContext;
+import org.springframework.dao.DataIntegrityViolationException;
 
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 @DataJpaTest
 @AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
@@ -22,6 +27,8 @@ class CustomerRepositoryTest extends AbstractTestcontainers{
     @Autowired
     private ApplicationContext context;
 
+    private final CustomerIdAllocator idAllocator = new CustomerIdAllocator(getJdbcTemplate());
+
     @BeforeEach
     void setUp() {
         System.out.println(context.getBeanDefinitionCount());
@@ -85,4 +92,129 @@ class CustomerRepositoryTest extends AbstractTestcontainers{
         //then
         assertThat(actual).isFalse();
     }
-}
\ No newline at end of file
+
+    @Test
+    void findEmailsIn() {
+        //given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        String unknownEmail = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        underTest.save(new Customer(
+                FAKER.name().fullName(),
+                email,
+                20,
+                Gender.MALE));
+        //when
+        Set<String> actual = underTest.findEmailsIn(List.of(email, unknownEmail));
+        //then
+        assertThat(actual).containsExactly(email);
+    }
+
+    @Test
+    void insertIfEmailAbsent() {
+        //given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        //when
+        Optional<Integer> actual = underTest.insertIfEmailAbsent(
+                idAllocator.nextId(), FAKER.name().fullName(), email, 20, Gender.MALE.name());
+        //then
+        assertThat(actual).isPresent();
+        assertThat(underTest.findById(actual.get()))
+                .hasValueSatisfying(c -> assertThat(c.getEmail()).isEqualTo(email));
+    }
+
+    @Test
+    void insertIfEmailAbsentReturnsEmptyWhenEmailTaken() {
+        //given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        underTest.insertIfEmailAbsent(
+                idAllocator.nextId(), FAKER.name().fullName(), email, 20, Gender.MALE.name());
+        //when
+        Optional<Integer> actual = underTest.insertIfEmailAbsent(
+                idAllocator.nextId(), FAKER.name().fullName(), email, 30, Gender.FEMALE.name());
+        //then
+        assertThat(actual).isEmpty();
+    }
+
+    @Test
+    void deleteByIdReturning() {
+        //given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Integer id = underTest.insertIfEmailAbsent(
+                idAllocator.nextId(), FAKER.name().fullName(), email, 20, Gender.MALE.name()).orElseThrow();
+        //when
+        Optional<Customer> actual = underTest.deleteByIdReturning(id);
+        //then
+        assertThat(actual).hasValueSatisfying(c -> {
+            assertThat(c.getId()).isEqualTo(id);
+            assertThat(c.getEmail()).isEqualTo(email);
+        });
+        assertThat(underTest.existsCustomerById(id)).isFalse();
+    }
+
+    @Test
+    void deleteByIdReturningReturnsEmptyWhenIdNotPresent() {
+        //when
+        Optional<Customer> actual = underTest.deleteByIdReturning(-1);
+        //then
+        assertThat(actual).isEmpty();
+    }
+
+    @Test
+    void countByGenderAndAge() {
+        //given
+        underTest.save(new Customer(
+                FAKER.name().fullName(),
+                FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                160,
+                Gender.FEMALE));
+        //when
+        List<Object[]> actual = underTest.countByGenderAndAge();
+        //then
+        assertThat(actual)
+                .anySatisfy(row -> {
+                    assertThat(row[0]).isEqualTo(Gender.FEMALE);
+                    assertThat(row[1]).isEqualTo(160);
+                    assertThat((Long) row[2]).isPositive();
+                });
+        assertThat(actual.stream().mapToLong(row -> (Long) row[2]).sum()).isEqualTo(underTest.count());
+    }
+
+    @Test
+    void saveAllAndFlushRejectsATakenEmailBeforeTheCommit() {
+        //given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        underTest.saveAndFlush(new Customer(FAKER.name().fullName(), email, 20, Gender.MALE));
+        List<Customer> customers = List.of(
+                new Customer(FAKER.name().fullName(), email, 30, Gender.FEMALE));
+
+        //when
+        //then
+        assertThatThrownBy(() -> underTest.saveAllAndFlush(customers))
+                .isInstanceOf(DataIntegrityViolationException.class);
+    }
+
+    @Test
+    void jpaSelectCustomersOrdersNamesByCodePointAndCutsAtTheLimit() {
+        //given
+        CustomerJPADataAccessService customerDAO = new CustomerJPADataAccessService(underTest, idAllocator);
+        String prefix = "Collation " + UUID.randomUUID() + " ";
+        for (String name : List.of("b", "B", "a")) {
+            underTest.save(new Customer(prefix + name,
+                    FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(), 30, Gender.MALE));
+        }
+        CustomerFilter filter = new CustomerFilter(
+                prefix, null, null, null, null, CustomerSort.parse("name,desc"));
+
+        //when
+        List<Customer> all = customerDAO.selectCustomers(filter);
+        List<Customer> limited = customerDAO.selectCustomers(filter.withLimit(2));
+
+        //then
+        assertThat(all)
+                .extracting(Customer::getName)
+                .containsExactly(prefix + "b", prefix + "a", prefix + "B");
+        assertThat(limited)
+                .extracting(Customer::getName)
+                .containsExactly(prefix + "b", prefix + "a");
+    }
+}
@@ -4,9 +4,15 @@ import org.junit.jupiter.api.Test;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 class CustomerRowMapperTest {
@@ -36,4 +42,80 @@ class CustomerRowMapperTest {
 
         assertThat(actual).isEqualTo(expected);
     }
-}
\ No newline at end of file
+
+    @Test
+    void listExtractorResolvesColumnsOnce() throws SQLException {
+        //given
+        CustomerRowMapper underTest = new CustomerRowMapper();
+        ResultSet resultSet = twoRows();
+
+        //when
+        List<Customer> actual = underTest.listExtractor().extractData(resultSet);
+
+        //then
+        assertThat(actual).containsExactly(
+                new Customer(1, "German", "german@gmail.com", 39, Gender.MALE, 0),
+                new Customer(2, "Ana", "ana@gmail.com", 30, Gender.FEMALE, 3));
+        assertThat(actual).extracting(Customer::getVersion).containsExactly(0, 3);
+        verify(resultSet, times(1)).findColumn("id");
+        verify(resultSet, times(1)).findColumn("gender");
+    }
+
+    @Test
+    void forEachStreamsEveryRow() throws SQLException {
+        //given
+        CustomerRowMapper underTest = new CustomerRowMapper();
+        List<Customer> actual = new ArrayList<>();
+
+        //when
+        underTest.forEach(twoRows(), actual::add);
+
+        //then
+        assertThat(actual).extracting(Customer::getId).containsExactly(1, 2);
+    }
+
+    @Test
+    void singleExtractorReadsTheFirstRowOnly() throws SQLException {
+        //given
+        CustomerRowMapper underTest = new CustomerRowMapper();
+        ResultSet resultSet = twoRows();
+        ResultSet empty = mock(ResultSet.class);
+
+        //when
+        Optional<Customer> actual = underTest.singleExtractor().extractData(resultSet);
+
+        //then
+        assertThat(actual).contains(new Customer(1, "German", "german@gmail.com", 39, Gender.MALE, 0));
+        verify(resultSet, times(1)).next();
+        assertThat(underTest.singleExtractor().extractData(empty)).isEmpty();
+    }
+
+    @Test
+    void genderMatchesValueOf() {
+        //then
+        for (Gender gender : Gender.values()) {
+            assertThat(CustomerRowMapper.gender(gender.name())).isEqualTo(gender);
+        }
+        assertThatThrownBy(() -> CustomerRowMapper.gender("male"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    // columns are deliberately not in select order
+    private static ResultSet twoRows() throws SQLException {
+        ResultSet resultSet = mock(ResultSet.class);
+        when(resultSet.findColumn("id")).thenReturn(6);
+        when(resultSet.findColumn("name")).thenReturn(5);
+        when(resultSet.findColumn("email")).thenReturn(4);
+        when(resultSet.findColumn("age")).thenReturn(3);
+        when(resultSet.findColumn("gender")).thenReturn(2);
+        when(resultSet.findColumn("version")).thenReturn(1);
+        when(resultSet.next()).thenReturn(true, true, false);
+        when(resultSet.getInt(6)).thenReturn(1, 2);
+        when(resultSet.getString(5)).thenReturn("German", "Ana");
+        when(resultSet.getString(4)).thenReturn("german@gmail.com", "ana@gmail.com");
+        when(resultSet.getInt(3)).thenReturn(39, 30);
+        when(resultSet.getString(2)).thenReturn("MALE", "FEMALE");
+        when(resultSet.getInt(1)).thenReturn(0, 3);
+        return resultSet;
+    }
+}
@@ -0,0 +1,122 @@
+package com.granados.customer;
+
+import com.granados.exception.RequestValidationException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerSearchServiceTest {
+
+    private CustomerInMemoryDataAccessService customerDAO;
+    private CustomerSearchService underTest;
+
+    @BeforeEach
+    void setUp() {
+        customerDAO = new CustomerInMemoryDataAccessService();
+        underTest = new CustomerSearchService(customerDAO);
+    }
+
+    @Test
+    void searchFallsBackToNamePrefixUntilBuilt() {
+        //when
+        List<Customer> actual = underTest.search("Mat", null);
+        //then
+        assertThat(underTest.isBuilt()).isFalse();
+        assertThat(actual).extracting(Customer::getName).containsExactly("Mateo");
+    }
+
+    @Test
+    void searchReturnsRankedCustomers() {
+        //given
+        customerDAO.insertCustomer(new Customer("Germana", "germana@gmail.com", 25, Gender.FEMALE));
+        underTest.rebuild();
+        //when
+        List<Customer> actual = underTest.search("germn", null);
+        //then
+        assertThat(actual).extracting(Customer::getName).containsExactly("German", "Germana");
+    }
+
+    @Test
+    void eventsKeepIndexUpToDate() {
+        //given
+        underTest.rebuild();
+        Integer id = customerDAO.insertCustomerIfAbsent(
+                new Customer("Valentina", "valentina@gmail.com", 30, Gender.FEMALE)).orElseThrow();
+        Customer created = customerDAO.selectCustomerById(id).orElseThrow();
+        //when
+        underTest.onCreated(new CustomerCreatedEvent(List.of(created)));
+        List<Customer> afterCreate = underTest.search("valentina", null);
+
+        Customer renamed = customerDAO.updateCustomer(
+                id, new CustomerUpdateRequest("Valeria", null, null)).orElseThrow();
+        underTest.onUpdated(new CustomerUpdatedEvent(created, renamed));
+        List<Customer> afterUpdate = underTest.search("valeria", null);
+
+        customerDAO.deleteCustomerById(id);
+        underTest.onDeleted(new CustomerDeletedEvent(renamed));
+        //then
+        assertThat(afterCreate).extracting(Customer::getId).containsExactly(id);
+        assertThat(afterUpdate).extracting(Customer::getName).containsExactly("Valeria");
+        assertThat(underTest.search("valeria", null)).isEmpty();
+    }
+
+    @Test
+    void failedRebuildKeepsTheIndexAndStopsQueueingWrites() {
+        //given
+        AtomicBoolean failing = new AtomicBoolean(true);
+        underTest = new CustomerSearchService(new CustomerInMemoryDataAccessService() {
+            @Override
+            public void forEachCustomer(Consumer<Customer> action) {
+                if (failing.get()) {
+                    throw new DataAccessResourceFailureException("database is down");
+                }
+                super.forEachCustomer(action);
+            }
+        });
+        failing.set(false);
+        underTest.rebuild();
+        failing.set(true);
+        //when
+        assertThatThrownBy(() -> underTest.rebuild())
+                .isInstanceOf(DataAccessResourceFailureException.class);
+        underTest.onCreated(new CustomerCreatedEvent(List.of(
+                new Customer(99, "Valentina", "valentina@gmail.com", 30, Gender.FEMALE))));
+        //then
+        assertThat(underTest.isQueueingWrites()).isFalse();
+        assertThat(underTest.isBuilt()).isTrue();
+        assertThat(underTest.search("german", null)).extracting(Customer::getName).contains("German");
+    }
+
+    @Test
+    void batchRegistrationsAreReadBackFromTheDAO() {
+        //given
+        underTest.rebuild();
+        List<Customer> batch = List.of(
+                new Customer("Lucia", "lucia@gmail.com", 22, Gender.FEMALE),
+                new Customer("Lucas", "lucas@gmail.com", 23, Gender.MALE));
+        customerDAO.insertCustomers(batch);
+        //when
+        underTest.onCreated(new CustomerCreatedEvent(batch));
+        //then
+        assertThat(underTest.search("luc", null))
+                .extracting(Customer::getName)
+                .containsExactlyInAnyOrder("Lucia", "Lucas");
+    }
+
+    @Test
+    void willThrowWhenQueryIsBlankOrLimitOutOfRange() {
+        //then
+        assertThatThrownBy(() -> underTest.search(" ", null))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("q must not be blank");
+        assertThatThrownBy(() -> underTest.search("german", CustomerSearchService.MAX_LIMIT + 1))
+                .isInstanceOf(RequestValidationException.class);
+    }
+}
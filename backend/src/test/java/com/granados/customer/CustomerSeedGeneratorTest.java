@@ -0,0 +1,63 @@
+package com.granados.customer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerSeedGeneratorTest {
+
+    private final CustomerSeedGenerator underTest = new CustomerSeedGenerator(42);
+
+    @Test
+    void generatesTheSameCustomersForTheSameSeed() {
+        //given
+        CustomerSeedGenerator other = new CustomerSeedGenerator(42);
+
+        //when
+        Customer customer = underTest.customer(1234);
+        Customer again = other.customer(1234);
+
+        //then
+        assertThat(again).usingRecursiveComparison().isEqualTo(customer);
+        assertThat(underTest.email(1234)).isEqualTo(customer.getEmail());
+    }
+
+    @Test
+    void generatesOtherCustomersForAnotherSeed() {
+        //given
+        CustomerSeedGenerator other = new CustomerSeedGenerator(43);
+
+        //when
+        Customer customer = underTest.customer(1234);
+        Customer fromOtherSeed = other.customer(1234);
+
+        //then
+        assertThat(fromOtherSeed.getEmail()).isNotEqualTo(customer.getEmail());
+    }
+
+    @Test
+    void generatesUniqueEmailsAndAgesInRange() {
+        //given
+        Set<String> emails = new HashSet<>();
+        int males = 0;
+        long ageTotal = 0;
+
+        //when
+        for (int index = 0; index < 10_000; index++) {
+            Customer customer = underTest.customer(index);
+            emails.add(customer.getEmail());
+            males += customer.getGender() == Gender.MALE ? 1 : 0;
+            ageTotal += customer.getAge();
+            assertThat(customer.getAge()).isBetween(16, 99);
+            assertThat(customer.getEmail()).matches("[a-z]*\\.[a-z]*\\.\\d+@seed-42\\.granados\\.com");
+        }
+
+        //then
+        assertThat(emails).hasSize(10_000);
+        assertThat(males).isBetween(4_500, 5_500);
+        assertThat(ageTotal / 10_000).isBetween(38L, 42L);
+    }
+}
@@ -0,0 +1,74 @@
+package com.granados.customer;
+
+import com.granados.AbstractTestcontainers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerSeederTest extends AbstractTestcontainers {
+
+    private final JdbcTemplate template = getJdbcTemplate();
+    private long seed;
+
+    @BeforeEach
+    void setUp() {
+        // the emails carry the seed, a fresh one keeps the tests apart in the shared container
+        seed = ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE);
+    }
+
+    private CustomerSeeder seeder(long count) {
+        return new CustomerSeeder(
+                getDataSource(),
+                template,
+                new CustomerIdAllocator(template),
+                count,
+                seed,
+                300,
+                2,
+                Duration.ofSeconds(5));
+    }
+
+    private long countSeeded() {
+        return template.queryForObject(
+                "SELECT count(*) FROM customer WHERE email LIKE ?",
+                Long.class,
+                "%@seed-" + seed + ".granados.com");
+    }
+
+    @Test
+    void seedsTheConfiguredNumberOfCustomers() {
+        //when
+        long inserted = seeder(1000).seed();
+
+        //then
+        assertThat(inserted).isEqualTo(1000);
+        assertThat(countSeeded()).isEqualTo(1000);
+        Customer first = new CustomerSeedGenerator(seed).customer(0);
+        Customer seeded = template.queryForObject(
+                "SELECT id, name, email, age, gender, version FROM customer WHERE email = ?",
+                new CustomerRowMapper(),
+                first.getEmail());
+        assertThat(seeded.getId()).isNotNull();
+        assertThat(seeded).usingRecursiveComparison()
+                .ignoringFields("id", "version")
+                .isEqualTo(first);
+    }
+
+    @Test
+    void seedingAgainOnlyAddsTheMissingChunks() {
+        //given
+        seeder(600).seed();
+
+        //when
+        long inserted = seeder(1000).seed();
+
+        //then
+        assertThat(inserted).isEqualTo(400);
+        assertThat(countSeeded()).isEqualTo(1000);
+    }
+}
@@ -1,16 +1,25 @@
 package com.granados.customer;
 
 import com.granados.exception.DuplicateResourceException;
+import com.granados.exception.PreconditionFailedException;
 import com.granados.exception.RequestValidationException;
 import com.granados.exception.ResourceNotFoundException;
+import com.granados.jdbc.DataSourceRouting;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DuplicateKeyException;
 
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -24,9 +33,15 @@ class CustomerServiceTest {
     @Mock
     private CustomerDAO customerDAO;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Captor
+    private ArgumentCaptor<List<Customer>> customersArgumentCaptor;
+
     @BeforeEach
     void setUp() {
-        underTest = new CustomerService(customerDAO);
+        underTest = new CustomerService(customerDAO, eventPublisher);
     }
 
     @Test
@@ -37,6 +52,101 @@ class CustomerServiceTest {
         verify(customerDAO).selectAllCustomers();
     }
 
+    @Test
+    void canGetFirstPageOfCustomers() {
+        //given
+        Customer german = new Customer(1, "German", "german@gmail.com", 39, Gender.MALE);
+        Customer mateo = new Customer(2, "Mateo", "mateo@gmail.com", 12, Gender.MALE);
+        Customer ana = new Customer(3, "Ana", "ana@gmail.com", 30, Gender.FEMALE);
+        when(customerDAO.selectCustomersAfter(0, 3))
+                .thenReturn(List.of(german, mateo, ana));
+        //when
+        CustomerPage actual = underTest.getCustomers(null, 2);
+        //then
+        assertThat(actual.customers()).containsExactly(german, mateo);
+        assertThat(actual.nextCursor()).isEqualTo(2);
+    }
+
+    @Test
+    void canGetFilteredCustomers() {
+        //given
+        CustomerFilter filter = new CustomerFilter(18, 40, Gender.MALE);
+        Customer german = new Customer(1, "German", "german@gmail.com", 39, Gender.MALE);
+        when(customerDAO.selectCustomers(filter.withLimit(CustomerService.MAX_PAGE_SIZE)))
+                .thenReturn(List.of(german));
+        //when
+        List<Customer> actual = underTest.getCustomers(filter);
+        //then
+        assertThat(actual).containsExactly(german);
+    }
+
+    @Test
+    void filteredCustomersAreCutAtTheRequestedLimit() {
+        //given
+        CustomerFilter filter = new CustomerFilter(18, 40, Gender.MALE).withLimit(1);
+        //when
+        underTest.getCustomers(filter);
+        //then
+        verify(customerDAO).selectCustomers(filter);
+    }
+
+    @Test
+    void willThrowWhenFilteredLimitIsOutOfRange() {
+        //when
+        //then
+        assertThatThrownBy(() -> underTest.getCustomers(new CustomerFilter(18, 40, null)
+                .withLimit(CustomerService.MAX_PAGE_SIZE + 1)))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("limit must be between 1 and %s".formatted(CustomerService.MAX_PAGE_SIZE));
+        verify(customerDAO, never()).selectCustomers(any());
+    }
+
+    @Test
+    void willThrowWhenMinAgeIsGreaterThanMaxAge() {
+        //when
+        //then
+        assertThatThrownBy(() -> underTest.getCustomers(new CustomerFilter(40, 18, null)))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("minAge must not be greater than maxAge");
+        verify(customerDAO, never()).selectCustomers(any());
+    }
+
+    @Test
+    void lastPageOfCustomersHasNoNextCursor() {
+        //given
+        Customer ana = new Customer(3, "Ana", "ana@gmail.com", 30, Gender.FEMALE);
+        when(customerDAO.selectCustomersAfter(2, 3))
+                .thenReturn(List.of(ana));
+        //when
+        CustomerPage actual = underTest.getCustomers(2, 2);
+        //then
+        assertThat(actual.customers()).containsExactly(ana);
+        assertThat(actual.nextCursor()).isNull();
+    }
+
+    @Test
+    void willThrowWhenPageLimitIsOutOfRange() {
+        //then
+        assertThatThrownBy(() -> underTest.getCustomers(null, 0))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("limit must be between 1 and 1000");
+        assertThatThrownBy(() -> underTest.getCustomers(null, 1001))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("limit must be between 1 and 1000");
+
+        verifyNoInteractions(customerDAO);
+    }
+
+    @Test
+    void exportCustomersStreamsFromDAO() {
+        //given
+        Consumer<Customer> consumer = customer -> {};
+        //when
+        underTest.exportCustomers(consumer);
+        //then
+        verify(customerDAO).forEachCustomer(consumer);
+    }
+
     @Test
     void canGetCustomer() {
         //given
@@ -73,7 +183,7 @@ class CustomerServiceTest {
     void canAddCustomer() {
         //given
         String email = "ggranados@gmail.com";
-        when(customerDAO.existsPersonWithEmail(email)).thenReturn(false);
+        when(customerDAO.insertCustomerIfAbsent(any())).thenReturn(Optional.of(7));
 
         CustomerRegistrationRequest request = new CustomerRegistrationRequest(
                 "German",
@@ -82,29 +192,32 @@ class CustomerServiceTest {
                 Gender.MALE
         );
         //when
-        underTest.addCustomer(request);
+        Integer actual = underTest.addCustomer(request);
 
         //then
         ArgumentCaptor<Customer> customerArgumentCaptor = ArgumentCaptor.forClass(
                 Customer.class
         );
-        verify(customerDAO).insertCustomer(customerArgumentCaptor.capture());
+        verify(customerDAO).insertCustomerIfAbsent(customerArgumentCaptor.capture());
 
         Customer capturedCostumer = customerArgumentCaptor.getValue();
 
+        assertThat(actual).isEqualTo(7);
         assertThat(capturedCostumer.getId()).isNull();
         assertThat(capturedCostumer.getName()).isEqualTo(request.name());
         assertThat(capturedCostumer.getEmail()).isEqualTo(request.email());
         assertThat(capturedCostumer.getAge()).isEqualTo(request.age());
         assertThat(capturedCostumer.getGender()).isEqualTo(request.gender());
-
+        verify(customerDAO, never()).existsPersonWithEmail(any());
+        verify(eventPublisher).publishEvent(new CustomerCreatedEvent(List.of(
+                new Customer(7, "German", email, 20, Gender.MALE, 0))));
     }
 
     @Test
     void willThrowWhenEmailExistsWhileAddCustomer() {
         //given
         String email = "ggranados@gmail.com";
-        when(customerDAO.existsPersonWithEmail(email)).thenReturn(true);
+        when(customerDAO.insertCustomerIfAbsent(any())).thenReturn(Optional.empty());
 
         CustomerRegistrationRequest request = new CustomerRegistrationRequest(
                 "German",
@@ -121,28 +234,99 @@ class CustomerServiceTest {
         verify(customerDAO, never()).insertCustomer(any());
     }
 
+    @Test
+    void canAddCustomersInBatch() {
+        //given
+        CustomerRegistrationRequest german = new CustomerRegistrationRequest(
+                "German", "german@gmail.com", 39, Gender.MALE);
+        CustomerRegistrationRequest mateo = new CustomerRegistrationRequest(
+                "Mateo", "mateo@gmail.com", 12, Gender.MALE);
+        CustomerRegistrationRequest mateoAgain = new CustomerRegistrationRequest(
+                "Mateo", "mateo@gmail.com", 13, Gender.MALE);
+        CustomerRegistrationRequest ana = new CustomerRegistrationRequest(
+                "Ana", "ana@gmail.com", 30, Gender.FEMALE);
+        when(customerDAO.selectExistingEmails(List.of(
+                german.email(), mateo.email(), mateoAgain.email(), ana.email())))
+                .thenReturn(Set.of(german.email()));
+
+        //when
+        List<CustomerRegistrationResult> actual = underTest.addCustomers(
+                List.of(german, mateo, mateoAgain, ana));
+
+        //then
+        assertThat(actual).containsExactly(
+                new CustomerRegistrationResult(german.email(), CustomerRegistrationResult.Status.EMAIL_TAKEN),
+                new CustomerRegistrationResult(mateo.email(), CustomerRegistrationResult.Status.CREATED),
+                new CustomerRegistrationResult(mateoAgain.email(), CustomerRegistrationResult.Status.EMAIL_TAKEN),
+                new CustomerRegistrationResult(ana.email(), CustomerRegistrationResult.Status.CREATED));
+
+        verify(customerDAO).insertCustomers(customersArgumentCaptor.capture());
+        assertThat(customersArgumentCaptor.getValue())
+                .extracting(Customer::getEmail)
+                .containsExactly(mateo.email(), ana.email());
+    }
+
+    @Test
+    void willNotInsertWhenEveryEmailInBatchIsTaken() {
+        //given
+        CustomerRegistrationRequest german = new CustomerRegistrationRequest(
+                "German", "german@gmail.com", 39, Gender.MALE);
+        when(customerDAO.selectExistingEmails(List.of(german.email())))
+                .thenReturn(Set.of(german.email()));
+
+        //when
+        List<CustomerRegistrationResult> actual = underTest.addCustomers(List.of(german));
+
+        //then
+        assertThat(actual).containsExactly(
+                new CustomerRegistrationResult(german.email(), CustomerRegistrationResult.Status.EMAIL_TAKEN));
+        verify(customerDAO, never()).insertCustomers(any());
+    }
+
+    @Test
+    void willThrowWhenBatchInsertHitsEmailTakenConcurrently() {
+        //given
+        CustomerRegistrationRequest german = new CustomerRegistrationRequest(
+                "German", "german@gmail.com", 39, Gender.MALE);
+        when(customerDAO.selectExistingEmails(List.of(german.email())))
+                .thenReturn(Set.of());
+        doThrow(new DuplicateKeyException("customer_email_unique"))
+                .when(customerDAO).insertCustomers(any());
+
+        //then
+        assertThatThrownBy(() -> underTest.addCustomers(List.of(german)))
+                .isInstanceOf(DuplicateResourceException.class)
+                .hasMessage("email already taken");
+    }
+
     @Test
     void canDeleteCustomerById() {
         //given
         Integer id = 1;
-        when(customerDAO.existsPersonWithId(id)).thenReturn(true);
+        Customer customer = new Customer(
+                id,
+                "German",
+                "ggranados@gmail.com",
+                20,
+                Gender.MALE);
+        when(customerDAO.deleteCustomerById(id)).thenReturn(Optional.of(customer));
         //when
         underTest.deleteCustomerById(id);
         //then
         verify(customerDAO).deleteCustomerById(id);
+        verify(customerDAO, never()).existsPersonWithId(any());
+        verify(eventPublisher).publishEvent(new CustomerDeletedEvent(customer));
     }
 
     @Test
     void willThrowDeleteCustomerByIdNotExists() {
         //given
         Integer id = 1;
-        when(customerDAO.existsPersonWithId(id)).thenReturn(false);
+        when(customerDAO.deleteCustomerById(id)).thenReturn(Optional.empty());
         //when
         assertThatThrownBy(() -> underTest.deleteCustomerById(id))
                 .isInstanceOf(ResourceNotFoundException.class)
                 .hasMessage("customer with id [%s] not found".formatted(id));
-        //then
-        verify(customerDAO, never()).deleteCustomerById(id);
     }
 
     @Test
@@ -166,24 +350,35 @@ class CustomerServiceTest {
                 newEmail,
                 newAge
         );
-
-        when(customerDAO.existsPersonWithEmail(newEmail)).thenReturn(false);
+        when(customerDAO.updateCustomer(id, request)).thenReturn(Optional.of(
+                new Customer(id, newName, newEmail, newAge, Gender.MALE)));
 
         //when
         underTest.updateCustomer(id, request);
 
         //then
-        ArgumentCaptor<Customer> customerArgumentCaptor =
-                ArgumentCaptor.forClass(Customer.class);
+        verify(customerDAO).updateCustomer(id, request);
+        verify(customerDAO, never()).existsPersonWithEmail(any());
+    }
 
-        verify(customerDAO).updateCustomer(customerArgumentCaptor.capture());
+    @Test
+    void updateReadsTheCurrentCustomerOnThePrimary() {
+        //given
+        Integer id = 1;
+        Customer customer = new Customer(id, "German", "ggranados@gmail.com", 20, Gender.MALE);
+        AtomicBoolean readOnly = new AtomicBoolean(true);
+        when(customerDAO.selectCustomerById(id)).thenAnswer(invocation -> {
+            readOnly.set(DataSourceRouting.isReadOnly());
+            return Optional.of(customer);
+        });
+        CustomerUpdateRequest request = new CustomerUpdateRequest("Germani", null, null);
+        when(customerDAO.updateCustomer(any(), any())).thenReturn(Optional.of(customer));
 
-        Customer capturedCostumer = customerArgumentCaptor.getValue();
+        //when
+        underTest.updateCustomer(id, request);
 
-        assertThat(capturedCostumer.getId()).isEqualTo(id);
-        assertThat(capturedCostumer.getName()).isEqualTo(request.name());
-        assertThat(capturedCostumer.getEmail()).isEqualTo(request.email());
-        assertThat(capturedCostumer.getAge()).isEqualTo(request.age());
+        //then
+        assertThat(readOnly).isFalse();
     }
 
     @Test
@@ -202,25 +397,25 @@ class CustomerServiceTest {
 
         CustomerUpdateRequest request = new CustomerUpdateRequest(
                 newName,
-                null,
+                customer.getEmail(),
                 null
         );
+        when(customerDAO.updateCustomer(any(), any())).thenReturn(Optional.of(customer));
 
         //when
         underTest.updateCustomer(id, request);
 
         //then
-        ArgumentCaptor<Customer> customerArgumentCaptor =
-                ArgumentCaptor.forClass(Customer.class);
+        ArgumentCaptor<CustomerUpdateRequest> changesArgumentCaptor =
+                ArgumentCaptor.forClass(CustomerUpdateRequest.class);
 
-        verify(customerDAO).updateCustomer(customerArgumentCaptor.capture());
+        verify(customerDAO).updateCustomer(eq(id), changesArgumentCaptor.capture());
 
-        Customer capturedCostumer = customerArgumentCaptor.getValue();
+        CustomerUpdateRequest capturedChanges = changesArgumentCaptor.getValue();
 
-        assertThat(capturedCostumer.getId()).isEqualTo(id);
-        assertThat(capturedCostumer.getName()).isEqualTo(request.name());
-        assertThat(capturedCostumer.getEmail()).isEqualTo(customer.getEmail());
-        assertThat(capturedCostumer.getAge()).isEqualTo(customer.getAge());
+        assertThat(capturedChanges.name()).isEqualTo(request.name());
+        assertThat(capturedChanges.email()).isNull();
+        assertThat(capturedChanges.age()).isNull();
     }
 
     @Test
@@ -242,23 +437,22 @@ class CustomerServiceTest {
                 newEmail,
                 null
         );
-        when(customerDAO.existsPersonWithEmail(newEmail)).thenReturn(false);
+        when(customerDAO.updateCustomer(any(), any())).thenReturn(Optional.of(customer));
 
         //when
         underTest.updateCustomer(id, request);
 
         //then
-        ArgumentCaptor<Customer> customerArgumentCaptor =
-                ArgumentCaptor.forClass(Customer.class);
+        ArgumentCaptor<CustomerUpdateRequest> changesArgumentCaptor =
+                ArgumentCaptor.forClass(CustomerUpdateRequest.class);
 
-        verify(customerDAO).updateCustomer(customerArgumentCaptor.capture());
+        verify(customerDAO).updateCustomer(eq(id), changesArgumentCaptor.capture());
 
-        Customer capturedCostumer = customerArgumentCaptor.getValue();
+        CustomerUpdateRequest capturedChanges = changesArgumentCaptor.getValue();
 
-        assertThat(capturedCostumer.getId()).isEqualTo(id);
-        assertThat(capturedCostumer.getName()).isEqualTo(customer.getName());
-        assertThat(capturedCostumer.getEmail()).isEqualTo(request.email());
-        assertThat(capturedCostumer.getAge()).isEqualTo(customer.getAge());
+        assertThat(capturedChanges.name()).isNull();
+        assertThat(capturedChanges.email()).isEqualTo(request.email());
+        assertThat(capturedChanges.age()).isNull();
     }
 
     @Test
@@ -279,22 +473,22 @@ class CustomerServiceTest {
                 null,
                 30
         );
+        when(customerDAO.updateCustomer(any(), any())).thenReturn(Optional.of(customer));
 
         //when
         underTest.updateCustomer(id, request);
 
         //then
-        ArgumentCaptor<Customer> customerArgumentCaptor =
-                ArgumentCaptor.forClass(Customer.class);
+        ArgumentCaptor<CustomerUpdateRequest> changesArgumentCaptor =
+                ArgumentCaptor.forClass(CustomerUpdateRequest.class);
 
-        verify(customerDAO).updateCustomer(customerArgumentCaptor.capture());
+        verify(customerDAO).updateCustomer(eq(id), changesArgumentCaptor.capture());
 
-        Customer capturedCostumer = customerArgumentCaptor.getValue();
+        CustomerUpdateRequest capturedChanges = changesArgumentCaptor.getValue();
 
-        assertThat(capturedCostumer.getId()).isEqualTo(id);
-        assertThat(capturedCostumer.getName()).isEqualTo(customer.getName());
-        assertThat(capturedCostumer.getEmail()).isEqualTo(customer.getEmail());
-        assertThat(capturedCostumer.getAge()).isEqualTo(request.age());
+        assertThat(capturedChanges.name()).isNull();
+        assertThat(capturedChanges.email()).isNull();
+        assertThat(capturedChanges.age()).isEqualTo(request.age());
     }
 
     @Test
@@ -316,14 +510,38 @@ class CustomerServiceTest {
                 newEmail,
                 null
         );
-        when(customerDAO.existsPersonWithEmail(newEmail)).thenReturn(true);
+        when(customerDAO.updateCustomer(any(), any()))
+                .thenThrow(new DuplicateKeyException("customer_email_unique"));
 
         //then
         assertThatThrownBy(() -> underTest.updateCustomer(id, request))
                 .isInstanceOf(DuplicateResourceException.class)
                 .hasMessage("email already taken");
+    }
+
+    @Test
+    void willThrowWhenUpdatedCustomerWasDeletedConcurrently() {
+        //given
+        Integer id = 1;
+        Customer customer = new Customer(
+                id,
+                "German",
+                "ggranados@gmail.com",
+                20,
+                Gender.MALE);
+        when(customerDAO.selectCustomerById(id)).thenReturn(Optional.of(customer));
+        when(customerDAO.updateCustomer(any(), any())).thenReturn(Optional.empty());
+
+        CustomerUpdateRequest request = new CustomerUpdateRequest(
+                "Germani",
+                null,
+                null
+        );
 
-        verify(customerDAO, never()).updateCustomer(any());
+        //then
+        assertThatThrownBy(() -> underTest.updateCustomer(id, request))
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessage("customer with id [%s] not found".formatted(id));
     }
 
     @Test
@@ -349,7 +567,125 @@ class CustomerServiceTest {
                 .isInstanceOf(RequestValidationException.class)
                 .hasMessage("no data changes found");
 
-        verify(customerDAO, never()).updateCustomer(any());
+        verify(customerDAO, never()).updateCustomer(any(), any());
+    }
+
+    @Test
+    void canUpdateCustomerWithExpectedVersion() {
+        //given
+        Integer id = 1;
+        Customer customer = new Customer(
+                id,
+                "German",
+                "ggranados@gmail.com",
+                20,
+                Gender.MALE,
+                3);
+        when(customerDAO.selectCustomerById(id)).thenReturn(Optional.of(customer));
+
+        CustomerUpdateRequest request = new CustomerUpdateRequest("Germani", null, null);
+        CustomerUpdateRequest changes = new CustomerUpdateRequest("Germani", null, null);
+        when(customerDAO.updateCustomer(id, changes, 3)).thenReturn(Optional.of(
+                new Customer(id, "Germani", "ggranados@gmail.com", 20, Gender.MALE, 4)));
+
+        //when
+        Customer actual = underTest.updateCustomer(id, request, 3);
+
+        //then
+        assertThat(actual.getVersion()).isEqualTo(4);
+        verify(customerDAO, never()).updateCustomer(any(), any());
+        verify(eventPublisher).publishEvent(new CustomerUpdatedEvent(customer, actual));
+    }
+
+    @Test
+    void willThrowWhenUpdateCustomerVersionDoesNotMatch() {
+        //given
+        Integer id = 1;
+        Customer customer = new Customer(
+                id,
+                "German",
+                "ggranados@gmail.com",
+                20,
+                Gender.MALE,
+                3);
+        when(customerDAO.selectCustomerById(id)).thenReturn(Optional.of(customer));
+        when(customerDAO.existsPersonWithId(id)).thenReturn(true);
+
+        CustomerUpdateRequest request = new CustomerUpdateRequest("Germani", null, null);
+
+        //when
+        //then
+        assertThatThrownBy(() -> underTest.updateCustomer(id, request, 2))
+                .isInstanceOf(PreconditionFailedException.class)
+                .hasMessage("customer with id [%s] does not match the expected version".formatted(id));
+
+        verifyNoInteractions(eventPublisher);
+        verify(customerDAO, never()).updateCustomer(any(), any(), anyInt());
+    }
+
+    @Test
+    void willThrowWhenCustomerChangesBeforeVersionedUpdate() {
+        //given
+        Integer id = 1;
+        Customer customer = new Customer(
+                id,
+                "German",
+                "ggranados@gmail.com",
+                20,
+                Gender.MALE,
+                3);
+        when(customerDAO.selectCustomerById(id)).thenReturn(Optional.of(customer));
+        when(customerDAO.updateCustomer(eq(id), any(), eq(3))).thenReturn(Optional.empty());
+        when(customerDAO.existsPersonWithId(id)).thenReturn(true);
+
+        CustomerUpdateRequest request = new CustomerUpdateRequest(null, null, 21);
+
+        //when
+        //then
+        assertThatThrownBy(() -> underTest.updateCustomer(id, request, 3))
+                .isInstanceOf(PreconditionFailedException.class);
+    }
+
+    @Test
+    void canDeleteCustomerWithExpectedVersion() {
+        //given
+        Integer id = 1;
+        when(customerDAO.deleteCustomerById(id, 2)).thenReturn(Optional.of(
+                new Customer(id, "German", "ggranados@gmail.com", 20, Gender.MALE, 2)));
+
+        //when
+        underTest.deleteCustomerById(id, 2);
+
+        //then
+        verify(customerDAO).deleteCustomerById(id, 2);
+        verify(customerDAO, never()).deleteCustomerById(id);
+    }
+
+    @Test
+    void willThrowWhenDeleteCustomerVersionDoesNotMatch() {
+        //given
+        Integer id = 1;
+        when(customerDAO.deleteCustomerById(id, 2)).thenReturn(Optional.empty());
+        when(customerDAO.existsPersonWithId(id)).thenReturn(true);
+
+        //when
+        //then
+        assertThatThrownBy(() -> underTest.deleteCustomerById(id, 2))
+                .isInstanceOf(PreconditionFailedException.class);
+    }
+
+    @Test
+    void willThrowNotFoundWhenVersionedDeleteCustomerMissing() {
+        //given
+        Integer id = 1;
+        when(customerDAO.deleteCustomerById(id, 2)).thenReturn(Optional.empty());
+        when(customerDAO.existsPersonWithId(id)).thenReturn(false);
+
+        //when
+        //then
+        assertThatThrownBy(() -> underTest.deleteCustomerById(id, 2))
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessage("customer with id [%s] not found".formatted(id));
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,66 @@
+package com.granados.customer;
+
+import com.granados.exception.RequestValidationException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerSortTest {
+
+    @Test
+    void parse() {
+        //then
+        assertThat(CustomerSort.parse(null)).isEqualTo(CustomerSort.BY_ID);
+        assertThat(CustomerSort.parse("age")).isEqualTo(new CustomerSort(CustomerSort.Property.AGE, false));
+        assertThat(CustomerSort.parse("Name,DESC")).isEqualTo(new CustomerSort(CustomerSort.Property.NAME, true));
+        assertThat(CustomerSort.parse("email,asc")).isEqualTo(new CustomerSort(CustomerSort.Property.EMAIL, false));
+    }
+
+    @Test
+    void parseRejectsUnknownPropertiesAndDirections() {
+        //then
+        assertThatThrownBy(() -> CustomerSort.parse("password"))
+                .isInstanceOf(RequestValidationException.class);
+        assertThatThrownBy(() -> CustomerSort.parse("age,sideways"))
+                .isInstanceOf(RequestValidationException.class);
+        assertThatThrownBy(() -> CustomerSort.parse("age,desc,id"))
+                .isInstanceOf(RequestValidationException.class);
+    }
+
+    @Test
+    void orderByAndComparatorBreakTiesById() {
+        //given
+        CustomerSort sort = CustomerSort.parse("gender,desc");
+        List<Customer> customers = new ArrayList<>(List.of(
+                new Customer(3, "Ana", "ana@gmail.com", 30, Gender.FEMALE),
+                new Customer(2, "Mateo", "mateo@gmail.com", 12, Gender.MALE),
+                new Customer(1, "German", "german@gmail.com", 39, Gender.MALE)));
+        //when
+        customers.sort(sort.comparator());
+        //then
+        assertThat(sort.orderBy()).isEqualTo("ORDER BY gender DESC, id");
+        assertThat(CustomerSort.BY_ID.orderBy()).isEqualTo("ORDER BY id");
+        assertThat(customers).extracting(Customer::getId).containsExactly(1, 2, 3);
+    }
+
+    @Test
+    void freeTextIsOrderedByCodePointInEveryDAO() {
+        //given
+        CustomerSort sort = CustomerSort.parse("name");
+        // U+1F600 is encoded as surrogates, which String.compareTo puts before U+FF21
+        List<Customer> customers = new ArrayList<>(List.of(
+                new Customer(1, "a\uD83D\uDE00", "smile@gmail.com", 30, Gender.FEMALE),
+                new Customer(2, "a\uFF21", "wide@gmail.com", 30, Gender.FEMALE),
+                new Customer(3, "B", "b@gmail.com", 30, Gender.FEMALE),
+                new Customer(4, "a", "a@gmail.com", 30, Gender.FEMALE)));
+        //when
+        customers.sort(sort.comparator());
+        //then
+        assertThat(sort.orderBy()).isEqualTo("ORDER BY name COLLATE \"C\", id");
+        assertThat(customers).extracting(Customer::getId).containsExactly(3, 4, 2, 1);
+    }
+}
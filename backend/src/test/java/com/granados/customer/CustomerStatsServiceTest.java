@@ -0,0 +1,188 @@
+package com.granados.customer;
+
+import com.granados.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerStatsServiceTest {
+
+    private CustomerInMemoryDataAccessService customerDAO;
+    private SimpleMeterRegistry meterRegistry;
+    private CustomerStatsService underTest;
+
+    @BeforeEach
+    void setUp() {
+        customerDAO = new CustomerInMemoryDataAccessService();
+        meterRegistry = new SimpleMeterRegistry();
+        underTest = new CustomerStatsService(customerDAO, meterRegistry);
+    }
+
+    @Test
+    void statsAreUnavailableUntilTheFirstReconcile() {
+        //when
+        //then
+        assertThatThrownBy(() -> underTest.getStats())
+                .isInstanceOf(ServiceUnavailableException.class);
+    }
+
+    @Test
+    void firstReconcileLoadsTheDAOCounts() {
+        //when
+        underTest.reconcile();
+        CustomerStats actual = underTest.getStats();
+        //then
+        assertThat(actual.total()).isEqualTo(2);
+        assertThat(actual.genders()).containsEntry(Gender.MALE, 2L).containsEntry(Gender.FEMALE, 0L);
+        assertThat(actual.ages()).hasSize(CustomerStats.AGE_BUCKETS);
+        assertThat(actual.ages().get(1)).isEqualTo(new CustomerStats.AgeRange(10, 19, 1));
+        assertThat(actual.ages().get(3)).isEqualTo(new CustomerStats.AgeRange(30, 39, 1));
+        assertThat(actual.ages().get(10)).isEqualTo(new CustomerStats.AgeRange(100, null, 0));
+    }
+
+    @Test
+    void eventsMoveTheCounts() {
+        //given
+        underTest.reconcile();
+        Customer ana = new Customer(3, "Ana", "ana@gmail.com", 25, Gender.FEMALE, 0);
+        Customer olderAna = new Customer(3, "Ana", "ana@gmail.com", 105, Gender.FEMALE, 1);
+        //when
+        underTest.onCreated(new CustomerCreatedEvent(List.of(
+                ana,
+                new Customer("Lucas", "lucas@gmail.com", 12, Gender.MALE))));
+        underTest.onUpdated(new CustomerUpdatedEvent(ana, olderAna));
+        underTest.onDeleted(new CustomerDeletedEvent(
+                new Customer(1, "German", "german@gmail.com", 39, Gender.MALE)));
+        CustomerStats actual = underTest.getStats();
+        //then
+        assertThat(actual.total()).isEqualTo(3);
+        assertThat(actual.genders()).containsEntry(Gender.MALE, 2L).containsEntry(Gender.FEMALE, 1L);
+        assertThat(actual.ages()).extracting(CustomerStats.AgeRange::customers)
+                .containsExactly(0L, 2L, 0L, 0L, 0L, 0L, 0L, 0L, 0L, 0L, 1L);
+    }
+
+    @Test
+    void reconcileCorrectsDriftAndUnchangedStatsAreReused() {
+        //given
+        underTest.reconcile();
+        CustomerStats before = underTest.getStats();
+        // written behind the service's back, no event
+        customerDAO.insertCustomer(new Customer("Ana", "ana@gmail.com", 25, Gender.FEMALE));
+        //when
+        CustomerStats stale = underTest.getStats();
+        underTest.reconcile();
+        CustomerStats reconciled = underTest.getStats();
+        //then
+        assertThat(stale).isSameAs(before);
+        assertThat(reconciled.total()).isEqualTo(3);
+        assertThat(reconciled.genders()).containsEntry(Gender.FEMALE, 1L);
+        assertThat(underTest.getStats()).isSameAs(reconciled);
+        assertThat(meterRegistry.get("customer.stats.drift").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void reconcileReadsAgainWhenAnEventArrivesDuringTheRead() {
+        //given
+        AtomicInteger reads = new AtomicInteger();
+        customerDAO = new CustomerInMemoryDataAccessService() {
+            @Override
+            public CustomerStats selectCustomerStats() {
+                if (reads.incrementAndGet() == 1) {
+                    // committed and counted while the first read runs, which sees it
+                    Customer ana = new Customer("Ana", "ana@gmail.com", 25, Gender.FEMALE);
+                    insertCustomer(ana);
+                    underTest.onCreated(new CustomerCreatedEvent(List.of(ana)));
+                }
+                return super.selectCustomerStats();
+            }
+        };
+        underTest = new CustomerStatsService(customerDAO, meterRegistry);
+        //when
+        underTest.reconcile();
+        CustomerStats actual = underTest.getStats();
+        //then
+        assertThat(reads).hasValue(2);
+        assertThat(actual.total()).isEqualTo(3);
+        assertThat(actual.genders()).containsEntry(Gender.MALE, 2L).containsEntry(Gender.FEMALE, 1L);
+    }
+
+    @Test
+    void reconcileSkipsTheCorrectionWhileEventsKeepArriving() {
+        //given
+        AtomicBoolean racing = new AtomicBoolean();
+        AtomicInteger reads = new AtomicInteger();
+        customerDAO = new CustomerInMemoryDataAccessService() {
+            @Override
+            public CustomerStats selectCustomerStats() {
+                if (racing.get()) {
+                    reads.incrementAndGet();
+                    underTest.onCreated(new CustomerCreatedEvent(List.of(
+                            new Customer("Ana", "ana@gmail.com", 25, Gender.FEMALE))));
+                }
+                return super.selectCustomerStats();
+            }
+        };
+        underTest = new CustomerStatsService(customerDAO, meterRegistry);
+        underTest.reconcile();
+        racing.set(true);
+        //when
+        underTest.reconcile();
+        CustomerStats actual = underTest.getStats();
+        //then
+        // the events are counted, the database never had them but is not trusted either
+        assertThat(reads.get()).isGreaterThan(1);
+        assertThat(actual.total()).isEqualTo(2 + reads.get());
+        assertThat(meterRegistry.get("customer.stats.drift").counter().count()).isZero();
+    }
+
+    @Test
+    void readsNeverQueryTheDatabase() {
+        //given
+        AtomicInteger reads = new AtomicInteger();
+        customerDAO = new CustomerInMemoryDataAccessService() {
+            @Override
+            public CustomerStats selectCustomerStats() {
+                reads.incrementAndGet();
+                return super.selectCustomerStats();
+            }
+        };
+        underTest = new CustomerStatsService(customerDAO, meterRegistry);
+        underTest.reconcile();
+        //when
+        for (int i = 0; i < 10; i++) {
+            underTest.onCreated(new CustomerCreatedEvent(List.of(
+                    new Customer("Ana", "ana@gmail.com", 25, Gender.FEMALE))));
+            underTest.getStats();
+        }
+        underTest.reconcileUntilReady();
+        //then
+        assertThat(reads).hasValue(1);
+    }
+
+    @Test
+    void firstReconcileTakesItsLastReadEvenIfEventsKeepArriving() {
+        //given
+        customerDAO = new CustomerInMemoryDataAccessService() {
+            @Override
+            public CustomerStats selectCustomerStats() {
+                underTest.onDeleted(new CustomerDeletedEvent(
+                        new Customer(1, "German", "german@gmail.com", 39, Gender.MALE)));
+                return super.selectCustomerStats();
+            }
+        };
+        underTest = new CustomerStatsService(customerDAO, meterRegistry);
+        //when
+        underTest.reconcile();
+        //then
+        // the read raced an event that never reached the database, the next reconcile
+        // would correct the count
+        assertThat(underTest.getStats().total()).isEqualTo(1);
+    }
+}
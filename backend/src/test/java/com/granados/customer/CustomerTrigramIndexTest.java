@@ -0,0 +1,114 @@
+package com.granados.customer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerTrigramIndexTest {
+
+    private final CustomerTrigramIndex underTest = new CustomerTrigramIndex();
+
+    @Test
+    void trigramsAreCaseAndAccentInsensitive() {
+        //then
+        assertThat(CustomerTrigramIndex.trigrams("Germán"))
+                .hasSize(7)
+                .containsExactly(CustomerTrigramIndex.trigrams("german"));
+        assertThat(CustomerTrigramIndex.trigrams("ger ger")).hasSize(4);
+        assertThat(CustomerTrigramIndex.trigrams(" .@ ")).isEmpty();
+    }
+
+    @Test
+    void searchToleratesTyposAndRanksBestMatchFirst() {
+        //given
+        underTest.add(new Customer(1, "German Granados", "ggranados@gmail.com", 39, Gender.MALE));
+        underTest.add(new Customer(2, "Germana Lopez", "glopez@gmail.com", 25, Gender.FEMALE));
+        underTest.add(new Customer(3, "Mateo Granados", "mateo@gmail.com", 12, Gender.MALE));
+        underTest.add(new Customer(4, "Ana Ruiz", "ana@gmail.com", 30, Gender.FEMALE));
+        //when
+        int[] misspelled = underTest.search("granadso", 10);
+        int[] partial = underTest.search("germ", 10);
+        int[] byEmail = underTest.search("glopez", 10);
+        int[] fullName = underTest.search("german granados", 10);
+        int[] limited = underTest.search("granados", 1);
+        //then
+        assertThat(misspelled).containsExactlyInAnyOrder(1, 3);
+        assertThat(fullName).startsWith(1, 3);
+        assertThat(partial).containsExactlyInAnyOrder(1, 2);
+        assertThat(byEmail).startsWith(2);
+        assertThat(limited).hasSize(1);
+        assertThat(underTest.search("zzzz", 10)).isEmpty();
+    }
+
+    @Test
+    void removeAndReAddFollowRenames() {
+        //given
+        Customer german = new Customer(1, "German", "german@gmail.com", 39, Gender.MALE);
+        Customer renamed = new Customer(1, "Gervasio", "german@gmail.com", 39, Gender.MALE);
+        underTest.add(german);
+        underTest.add(new Customer(2, "Mateo", "mateo@gmail.com", 12, Gender.MALE));
+        //when
+        underTest.remove(german);
+        underTest.add(renamed);
+        //then
+        assertThat(underTest.search("gervasio", 10)).containsExactly(1);
+        assertThat(underTest.search("mateo", 10)).containsExactly(2);
+        assertThat(underTest.size()).isEqualTo(2);
+        assertThat(underTest.lastId()).isEqualTo(2);
+
+        underTest.remove(renamed);
+        assertThat(underTest.search("gervasio", 10)).isEmpty();
+        assertThat(underTest.size()).isEqualTo(1);
+        assertThat(underTest.sizeBytes()).isPositive();
+    }
+
+    @Test
+    void searchMatchesBruteForceRanking() {
+        //given
+        Random random = new Random(11);
+        String[] words = {"ana", "german", "granados", "lopez", "mateo", "maria", "jose", "garcia", "gomez", "luis"};
+        List<Customer> customers = new ArrayList<>();
+        for (int id = 1; id <= 2_000; id++) {
+            Customer customer = new Customer(
+                    id,
+                    words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)],
+                    words[random.nextInt(words.length)] + id + "@gmail.com",
+                    20,
+                    Gender.MALE);
+            customers.add(customer);
+            underTest.add(customer);
+        }
+        //when
+        //then
+        for (String query : List.of("germna", "gar", "maria lopes", "jose gomez granados", "ana")) {
+            int[] queryTrigrams = CustomerTrigramIndex.trigrams(query);
+            int minShared = Math.max(1, (queryTrigrams.length + 1) / 2);
+            Comparator<int[]> ranking = Comparator
+                    .<int[]>comparingInt(hit -> -hit[1])
+                    .thenComparingDouble(hit -> -2f * hit[1] / (queryTrigrams.length + hit[2]))
+                    .thenComparingInt(hit -> hit[0]);
+            List<Integer> expected = customers.stream()
+                    .map(c -> {
+                        int[] trigrams = CustomerTrigramIndex.trigrams(c.getName() + " " + c.getEmail());
+                        int shared = (int) Arrays.stream(queryTrigrams)
+                                .filter(t -> Arrays.binarySearch(trigrams, t) >= 0)
+                                .count();
+                        return new int[]{c.getId(), shared, trigrams.length};
+                    })
+                    .filter(hit -> hit[1] >= minShared)
+                    .sorted(ranking)
+                    .limit(20)
+                    .map(hit -> hit[0])
+                    .toList();
+            assertThat(Arrays.stream(underTest.search(query, 20)).boxed().toList())
+                    .as(query)
+                    .containsExactlyElementsOf(expected);
+        }
+    }
+}
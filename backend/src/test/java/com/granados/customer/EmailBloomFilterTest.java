@@ -0,0 +1,41 @@
+package com.granados.customer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EmailBloomFilterTest {
+
+    @Test
+    void hasNoFalseNegativesAndKeepsFalsePositiveRate() {
+        //given
+        int insertions = 100_000;
+        double falsePositiveRate = 0.01;
+        EmailBloomFilter underTest = new EmailBloomFilter(insertions, falsePositiveRate);
+        for (int i = 0; i < insertions; i++) {
+            underTest.add("customer" + i + "@gmail.com");
+        }
+        //when
+        int falsePositives = 0;
+        for (int i = insertions; i < insertions * 2; i++) {
+            if (underTest.mightContain("customer" + i + "@gmail.com")) {
+                falsePositives++;
+            }
+        }
+        //then
+        for (int i = 0; i < insertions; i++) {
+            assertThat(underTest.mightContain("customer" + i + "@gmail.com")).isTrue();
+        }
+        assertThat((double) falsePositives / insertions).isLessThan(falsePositiveRate * 1.5);
+        assertThat(underTest.hashCount()).isEqualTo(7);
+    }
+
+    @Test
+    void rejectsInvalidFalsePositiveRate() {
+        //when
+        //then
+        assertThatThrownBy(() -> new EmailBloomFilter(100, 1.0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,134 @@
+package com.granados.customer;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class GroupCommitCustomerDAOTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private GroupCommitCustomerDAO underTest;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        executor.shutdownNow();
+        underTest.close();
+    }
+
+    private DistributionSummary batchSizes() {
+        return meterRegistry.get("customer.group-commit.batch.size").summary();
+    }
+
+    @Test
+    void coalescesConcurrentInsertsIntoOneCommit() throws Exception {
+        //given
+        CustomerInMemoryDataAccessService delegate = new CustomerInMemoryDataAccessService();
+        // a full batch is written at once, the long delay only makes sure it fills up
+        underTest = new GroupCommitCustomerDAO(delegate, 10, Duration.ofSeconds(10), 100, meterRegistry);
+        List<Future<Optional<Integer>>> results = new ArrayList<>();
+
+        //when
+        for (int i = 0; i < 10; i++) {
+            // german@gmail.com is taken by the seed data, the last one repeats the 9th email
+            String email = i == 0 ? "german@gmail.com" : "customer" + Math.min(i, 8) + "@gmail.com";
+            Customer customer = new Customer("Customer " + i, email, 20 + i, Gender.FEMALE);
+            results.add(executor.submit(() -> underTest.insertCustomerIfAbsent(customer)));
+        }
+
+        //then
+        List<Optional<Integer>> ids = new ArrayList<>();
+        for (Future<Optional<Integer>> result : results) {
+            ids.add(result.get());
+        }
+        assertThat(ids).filteredOn(Optional::isPresent).hasSize(8);
+        assertThat(ids.get(0)).isEmpty();
+        assertThat(batchSizes().count()).isEqualTo(1);
+        assertThat(batchSizes().max()).isEqualTo(10);
+        assertThat(delegate.size()).isEqualTo(2 + 8);
+    }
+
+    @Test
+    void writesAPartialBatchAfterTheDelay() {
+        //given
+        CustomerInMemoryDataAccessService delegate = new CustomerInMemoryDataAccessService();
+        underTest = new GroupCommitCustomerDAO(delegate, 100, Duration.ofMillis(1), 100, meterRegistry);
+
+        //when
+        Optional<Integer> actual = underTest.insertCustomerIfAbsent(
+                new Customer("Ana", "ana@gmail.com", 30, Gender.FEMALE));
+
+        //then
+        assertThat(actual).isPresent();
+        assertThat(delegate.selectCustomerById(actual.get())).isPresent();
+        assertThat(batchSizes().count()).isEqualTo(1);
+    }
+
+    @Test
+    void insertCustomerThrowsWhenEmailTaken() {
+        //given
+        underTest = new GroupCommitCustomerDAO(
+                new CustomerInMemoryDataAccessService(), 100, Duration.ZERO, 100, meterRegistry);
+
+        //then
+        assertThatThrownBy(() -> underTest.insertCustomer(
+                new Customer("German", "german@gmail.com", 39, Gender.MALE)))
+                .isInstanceOf(DuplicateKeyException.class);
+    }
+
+    @Test
+    void failedBatchIsRetriedOneByOne() {
+        //given
+        CustomerDAO delegate = mock(CustomerDAO.class);
+        Customer valid = new Customer("Ana", "ana@gmail.com", 30, Gender.FEMALE);
+        Customer invalid = new Customer("Mateo", "mateo@gmail.com", -1, Gender.MALE);
+        when(delegate.insertCustomersIfAbsent(anyList()))
+                .thenThrow(new DataIntegrityViolationException("age"));
+        when(delegate.insertCustomerIfAbsent(valid)).thenReturn(Optional.of(1));
+        when(delegate.insertCustomerIfAbsent(invalid))
+                .thenThrow(new DataIntegrityViolationException("age"));
+        underTest = new GroupCommitCustomerDAO(delegate, 100, Duration.ZERO, 100, meterRegistry);
+
+        //then
+        assertThat(underTest.insertCustomerIfAbsent(valid)).contains(1);
+        assertThatThrownBy(() -> underTest.insertCustomerIfAbsent(invalid))
+                .isInstanceOf(DataIntegrityViolationException.class);
+    }
+
+    @Test
+    void insertsDirectlyOnceClosed() throws InterruptedException {
+        //given
+        CustomerDAO delegate = mock(CustomerDAO.class);
+        Customer customer = new Customer("Ana", "ana@gmail.com", 30, Gender.FEMALE);
+        when(delegate.insertCustomerIfAbsent(customer)).thenReturn(Optional.of(1));
+        underTest = new GroupCommitCustomerDAO(delegate, 100, Duration.ZERO, 100, meterRegistry);
+        underTest.close();
+
+        //when
+        Optional<Integer> actual = underTest.insertCustomerIfAbsent(customer);
+
+        //then
+        assertThat(actual).contains(1);
+        verify(delegate, never()).insertCustomersIfAbsent(anyList());
+        assertThat(meterRegistry.get("customer.group-commit.direct").counter().count()).isEqualTo(1);
+    }
+}
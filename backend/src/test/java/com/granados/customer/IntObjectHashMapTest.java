@@ -0,0 +1,63 @@
+package com.granados.customer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IntObjectHashMapTest {
+
+    private final IntObjectHashMap<String> underTest = new IntObjectHashMap<>();
+
+    @Test
+    void putGetAndRemove() {
+        //when
+        String previous = underTest.put(1, "one");
+        underTest.put(0, "zero");
+        underTest.put(-7, "minus seven");
+        String replaced = underTest.put(1, "uno");
+        //then
+        assertThat(previous).isNull();
+        assertThat(replaced).isEqualTo("one");
+        assertThat(underTest.get(1)).isEqualTo("uno");
+        assertThat(underTest.get(0)).isEqualTo("zero");
+        assertThat(underTest.get(-7)).isEqualTo("minus seven");
+        assertThat(underTest.get(2)).isNull();
+        assertThat(underTest.size()).isEqualTo(3);
+
+        assertThat(underTest.remove(0)).isEqualTo("zero");
+        assertThat(underTest.remove(1)).isEqualTo("uno");
+        assertThat(underTest.remove(1)).isNull();
+        assertThat(underTest.containsKey(1)).isFalse();
+        assertThat(underTest.size()).isEqualTo(1);
+    }
+
+    @Test
+    void behavesLikeHashMapUnderRandomOperations() {
+        //given
+        Map<Integer, String> expected = new HashMap<>();
+        Random random = new Random(42);
+        //when
+        for (int i = 0; i < 200_000; i++) {
+            // a small key range forces lots of collisions and backward shifts
+            int key = random.nextInt(5_000) - 100;
+            if (random.nextInt(3) == 0) {
+                assertThat(underTest.remove(key)).isEqualTo(expected.remove(key));
+            } else {
+                String value = "v" + i;
+                assertThat(underTest.put(key, value)).isEqualTo(expected.put(key, value));
+            }
+        }
+        //then
+        assertThat(underTest.size()).isEqualTo(expected.size());
+        expected.forEach((key, value) -> assertThat(underTest.get(key)).isEqualTo(value));
+        List<String> values = new ArrayList<>();
+        underTest.forEachValue(values::add);
+        assertThat(values).containsExactlyInAnyOrderElementsOf(expected.values());
+    }
+}
@@ -0,0 +1,85 @@
+package com.granados.customer;
+
+import com.granados.jdbc.SqlProfile;
+import com.granados.jdbc.SqlProfiler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ProfilingCustomerDAOTest {
+
+    private SqlProfiler profiler;
+    private CustomerInMemoryDataAccessService customerDAO;
+    private ProfilingCustomerDAO underTest;
+
+    @BeforeEach
+    void setUp() {
+        profiler = new SqlProfiler(Duration.ofMillis(200));
+        customerDAO = new CustomerInMemoryDataAccessService();
+        underTest = new ProfilingCustomerDAO(customerDAO, profiler);
+    }
+
+    private SqlProfile profileOf(String method) {
+        return profiler.profiles().stream()
+                .filter(profile -> profile.sql().equals(method))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    @Test
+    void recordsCallsUnderTheImplementationAndMethod() {
+        //given
+        int missingId = 100;
+        //when
+        underTest.selectCustomerById(1);
+        underTest.selectCustomerById(missingId);
+        //then
+        SqlProfile profile = profileOf("CustomerInMemoryDataAccessService.selectCustomerById");
+        assertThat(profile.operation()).isEqualTo("CustomerInMemoryDataAccessService.selectCustomerById");
+        assertThat(profile.calls()).isEqualTo(2);
+        assertThat(profile.rows()).isEqualTo(1);
+        assertThat(profile.errors()).isZero();
+    }
+
+    @Test
+    void countsTheRowsOfACursor() {
+        //given
+        customerDAO.insertCustomer(new Customer("Alex", "alex@gmail.com", 21, Gender.MALE));
+        long customers = customerDAO.countCustomers();
+        //when
+        underTest.forEachCustomer(customer -> {
+        });
+        //then
+        SqlProfile profile = profileOf("CustomerInMemoryDataAccessService.forEachCustomer");
+        assertThat(profile.calls()).isEqualTo(1);
+        assertThat(profile.rows()).isEqualTo(customers);
+    }
+
+    @Test
+    void recordsFailedCalls() {
+        //given
+        underTest = new ProfilingCustomerDAO(new CustomerInMemoryDataAccessService() {
+            @Override
+            public void forEachCustomer(Consumer<Customer> action) {
+                throw new DataAccessResourceFailureException("connection lost");
+            }
+        }, profiler);
+        //when
+        assertThatThrownBy(() -> underTest.forEachCustomer(customer -> {
+        })).isInstanceOf(DataAccessResourceFailureException.class);
+        //then
+        List<SqlProfile> profiles = profiler.profiles();
+        assertThat(profiles).singleElement()
+                .satisfies(profile -> {
+                    assertThat(profile.calls()).isEqualTo(1);
+                    assertThat(profile.errors()).isEqualTo(1);
+                });
+    }
+}
@@ -0,0 +1,140 @@
+package com.granados.customer;
+
+import com.granados.exception.DuplicateResourceException;
+import com.granados.exception.RequestValidationException;
+import com.granados.exception.ResourceNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReactiveCustomerServiceTest {
+
+    private ReactiveCustomerService underTest;
+
+    @Mock
+    private ReactiveCustomerDAO customerDAO;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new ReactiveCustomerService(customerDAO);
+    }
+
+    @Test
+    void canGetFirstPageOfCustomers() {
+        //given
+        Customer german = new Customer(1, "German", "german@gmail.com", 39, Gender.MALE);
+        Customer mateo = new Customer(2, "Mateo", "mateo@gmail.com", 12, Gender.MALE);
+        Customer ana = new Customer(3, "Ana", "ana@gmail.com", 30, Gender.FEMALE);
+        when(customerDAO.selectCustomersAfter(0, 3)).thenReturn(Flux.just(german, mateo, ana));
+        //when
+        CustomerPage actual = underTest.getCustomers(null, 2).block();
+        //then
+        assertThat(actual.customers()).containsExactly(german, mateo);
+        assertThat(actual.nextCursor()).isEqualTo(2);
+    }
+
+    @Test
+    void willThrowWhenLimitIsOutOfRange() {
+        //when
+        //then
+        assertThatThrownBy(() -> underTest.getCustomers(null, 0).block())
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("limit must be between 1 and %s".formatted(CustomerService.MAX_PAGE_SIZE));
+        verifyNoInteractions(customerDAO);
+    }
+
+    @Test
+    void willThrowWhenMinAgeIsGreaterThanMaxAge() {
+        //when
+        //then
+        assertThatThrownBy(() -> underTest.getCustomers(new CustomerFilter(40, 18, null)).blockLast())
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("minAge must not be greater than maxAge");
+        verifyNoInteractions(customerDAO);
+    }
+
+    @Test
+    void willThrowWhenCustomerIsNotFound() {
+        //given
+        when(customerDAO.selectCustomerById(10)).thenReturn(Mono.empty());
+        //when
+        //then
+        assertThatThrownBy(() -> underTest.getCustomer(10).block())
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessage("customer with id [10] not found");
+    }
+
+    @Test
+    void willThrowWhenEmailIsTakenOnAdd() {
+        //given
+        when(customerDAO.insertCustomerIfAbsent(any())).thenReturn(Mono.empty());
+        //when
+        //then
+        assertThatThrownBy(() -> underTest.addCustomer(
+                new CustomerRegistrationRequest("Ana", "ana@gmail.com", 30, Gender.FEMALE)).block())
+                .isInstanceOf(DuplicateResourceException.class)
+                .hasMessage("email already taken");
+    }
+
+    @Test
+    void canUpdateOnlyChangedFields() {
+        //given
+        Customer ana = new Customer(1, "Ana", "ana@gmail.com", 30, Gender.FEMALE);
+        when(customerDAO.selectCustomerById(1)).thenReturn(Mono.just(ana));
+        when(customerDAO.updateCustomer(1, new CustomerUpdateRequest(null, null, 31)))
+                .thenReturn(Mono.just(new Customer(1, "Ana", "ana@gmail.com", 31, Gender.FEMALE)));
+        //when
+        underTest.updateCustomer(1, new CustomerUpdateRequest("Ana", "ana@gmail.com", 31)).block();
+        //then
+        verify(customerDAO).updateCustomer(1, new CustomerUpdateRequest(null, null, 31));
+    }
+
+    @Test
+    void willThrowWhenNoChangesOnUpdate() {
+        //given
+        Customer ana = new Customer(1, "Ana", "ana@gmail.com", 30, Gender.FEMALE);
+        when(customerDAO.selectCustomerById(1)).thenReturn(Mono.just(ana));
+        //when
+        //then
+        assertThatThrownBy(() -> underTest.updateCustomer(
+                1, new CustomerUpdateRequest("Ana", "ana@gmail.com", 30)).block())
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("no data changes found");
+        verify(customerDAO, never()).updateCustomer(any(), any());
+    }
+
+    @Test
+    void willThrowWhenUpdatedEmailIsTaken() {
+        //given
+        Customer ana = new Customer(1, "Ana", "ana@gmail.com", 30, Gender.FEMALE);
+        when(customerDAO.selectCustomerById(1)).thenReturn(Mono.just(ana));
+        when(customerDAO.updateCustomer(eq(1), any()))
+                .thenReturn(Mono.error(new DuplicateKeyException("duplicate")));
+        //when
+        //then
+        assertThatThrownBy(() -> underTest.updateCustomer(
+                1, new CustomerUpdateRequest(null, "german@gmail.com", null)).block())
+                .isInstanceOf(DuplicateResourceException.class)
+                .hasMessage("email already taken");
+    }
+
+    @Test
+    void willThrowWhenDeletingMissingCustomer() {
+        //given
+        when(customerDAO.deleteCustomerById(10)).thenReturn(Mono.empty());
+        //when
+        //then
+        assertThatThrownBy(() -> underTest.deleteCustomerById(10).block())
+                .isInstanceOf(ResourceNotFoundException.class);
+    }
+}
@@ -0,0 +1,70 @@
+package com.granados.jdbc;
+
+import com.granados.AbstractTestcontainers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessException;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ProfilingJdbcTemplateTest extends AbstractTestcontainers {
+
+    private SqlProfiler profiler;
+    private ProfilingJdbcTemplate underTest;
+
+    @BeforeEach
+    void setUp() {
+        profiler = new SqlProfiler(Duration.ofMillis(200));
+        underTest = new ProfilingJdbcTemplate(new ProfilingDataSource(getDataSource()), profiler);
+    }
+
+    @Test
+    void recordsQueriesWithRowCounts() {
+        //given
+        String sql = "SELECT generate_series(1, ?)";
+        //when
+        List<Integer> rows = underTest.queryForList(sql, Integer.class, 5);
+        //then
+        assertThat(rows).hasSize(5);
+        assertThat(profiler.profiles()).singleElement().satisfies(profile -> {
+            assertThat(profile.sql()).isEqualTo(sql);
+            assertThat(profile.calls()).isEqualTo(1);
+            assertThat(profile.rows()).isEqualTo(5);
+            assertThat(profile.errors()).isZero();
+            assertThat(profile.operation()).isEqualTo("ProfilingJdbcTemplateTest.recordsQueriesWithRowCounts");
+        });
+    }
+
+    @Test
+    void recordsUpdatesAndBatches() {
+        //given
+        underTest.execute("CREATE TEMP TABLE IF NOT EXISTS profiled (id INT)");
+        profiler.reset();
+        //when
+        underTest.update("INSERT INTO profiled VALUES (?)", 1);
+        underTest.batchUpdate("INSERT INTO profiled VALUES (?)", List.of(new Object[]{2}, new Object[]{3}));
+        //then
+        assertThat(profiler.profiles()).singleElement().satisfies(profile -> {
+            assertThat(profile.calls()).isEqualTo(2);
+            assertThat(profile.rows()).isEqualTo(3);
+        });
+    }
+
+    @Test
+    void recordsFailedStatements() {
+        //given
+        String sql = "SELECT * FROM missing_table WHERE id = ?";
+        //when
+        assertThatThrownBy(() -> underTest.queryForList(sql, 1))
+                .isInstanceOf(DataAccessException.class);
+        //then
+        assertThat(profiler.profiles()).singleElement().satisfies(profile -> {
+            assertThat(profile.calls()).isEqualTo(1);
+            assertThat(profile.errors()).isEqualTo(1);
+        });
+    }
+}
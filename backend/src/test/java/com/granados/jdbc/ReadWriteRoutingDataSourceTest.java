@@ -0,0 +1,143 @@
+package com.granados.jdbc;
+
+import com.granados.AbstractTestcontainers;
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Two independent databases stand in for the primary and its replica, a row written
+ * through the routing DataSource is only on the primary, which tells the two apart.
+ */
+class ReadWriteRoutingDataSourceTest extends AbstractTestcontainers {
+
+    @Container
+    private static final PostgreSQLContainer<?> replicaContainer =
+            new PostgreSQLContainer("postgres:latest")
+                    .withDatabaseName("granados-dao-unit-test-replica")
+                    .withUsername("granados")
+                    .withPassword("password");
+
+    private HikariDataSource replica;
+    private String email;
+
+    @BeforeAll
+    static void migrateReplica() {
+        Flyway.configure().dataSource(
+                replicaContainer.getJdbcUrl(),
+                replicaContainer.getUsername(),
+                replicaContainer.getPassword()
+        ).load().migrate();
+    }
+
+    @BeforeEach
+    void setUp() {
+        replica = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .url(replicaContainer.getJdbcUrl())
+                .username(replicaContainer.getUsername())
+                .password(replicaContainer.getPassword())
+                .build();
+        email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+    }
+
+    @AfterEach
+    void tearDown() {
+        replica.close();
+    }
+
+    private JdbcTemplate routedTemplate(ReadWriteRoutingDataSource dataSource) {
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+        template.update("""
+                INSERT INTO customer(name, email, age, gender)
+                VALUES (?, ?, ?, ?)
+                """, "Ana", email, 30, "FEMALE");
+        return template;
+    }
+
+    private static int countByEmail(JdbcTemplate template, String email) {
+        return template.queryForObject(
+                "SELECT count(*) FROM customer WHERE email = ?", Integer.class, email);
+    }
+
+    @Test
+    void routesReadOnlyWorkToTheReplica() {
+        //given
+        ReadWriteRoutingDataSource underTest =
+                new ReadWriteRoutingDataSource(getDataSource(), replica, Duration.ofSeconds(1));
+        JdbcTemplate template = routedTemplate(underTest);
+
+        //when
+        underTest.checkReplica();
+
+        //then
+        assertThat(underTest.isReplicaAvailable()).isTrue();
+        assertThat(DataSourceRouting.readOnly(() -> countByEmail(template, email))).isZero();
+        assertThat(countByEmail(template, email)).isOne();
+        assertThat(DataSourceRouting.onPrimary(
+                () -> DataSourceRouting.readOnly(() -> countByEmail(template, email)))).isOne();
+    }
+
+    @Test
+    void fallsBackToThePrimaryWhenTheReplicaGoesDown() {
+        //given
+        ReadWriteRoutingDataSource underTest =
+                new ReadWriteRoutingDataSource(getDataSource(), replica, Duration.ofSeconds(1));
+        JdbcTemplate template = routedTemplate(underTest);
+        underTest.checkReplica();
+
+        //when
+        replica.close();
+
+        //then
+        assertThat(DataSourceRouting.readOnly(() -> countByEmail(template, email))).isOne();
+        assertThat(underTest.isReplicaAvailable()).isFalse();
+        underTest.checkReplica();
+        assertThat(underTest.isReplicaAvailable()).isFalse();
+    }
+
+    @Test
+    void doesNotRouteToAReplicaBehindMaxLag() {
+        //given
+        // a standalone database is never behind, only a negative bound rejects it
+        ReadWriteRoutingDataSource underTest =
+                new ReadWriteRoutingDataSource(getDataSource(), replica, Duration.ofMillis(-1));
+        JdbcTemplate template = routedTemplate(underTest);
+
+        //when
+        underTest.checkReplica();
+
+        //then
+        assertThat(underTest.isReplicaAvailable()).isFalse();
+        assertThat(DataSourceRouting.readOnly(() -> countByEmail(template, email))).isOne();
+    }
+
+    @Test
+    void closeClosesTheReplicaButNotThePrimary() throws Exception {
+        //given
+        ReadWriteRoutingDataSource underTest =
+                new ReadWriteRoutingDataSource(getDataSource(), replica, Duration.ofSeconds(1));
+        JdbcTemplate template = routedTemplate(underTest);
+        underTest.checkReplica();
+
+        //when
+        underTest.close();
+
+        //then
+        assertThat(replica.isClosed()).isTrue();
+        assertThat(underTest.isReplicaAvailable()).isFalse();
+        assertThat(DataSourceRouting.readOnly(() -> countByEmail(template, email))).isOne();
+    }
+}
@@ -0,0 +1,95 @@
+package com.granados.jdbc;
+
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReadYourWritesFilterTest {
+
+    private static final Instant NOW = Instant.parse("2023-05-01T10:00:00Z");
+
+    private final ReadYourWritesFilter underTest =
+            new ReadYourWritesFilter(Duration.ofSeconds(5), Clock.fixed(NOW, ZoneOffset.UTC));
+
+    private boolean pinnedWhileServing(MockHttpServletRequest request,
+                                       MockHttpServletResponse response) throws Exception {
+        AtomicBoolean pinned = new AtomicBoolean();
+        underTest.doFilter(request, response,
+                (req, res) -> pinned.set(DataSourceRouting.isPinnedToPrimary()));
+        assertThat(DataSourceRouting.isPinnedToPrimary()).isFalse();
+        return pinned.get();
+    }
+
+    @Test
+    void writePinsTheRequestAndSetsTheCookie() throws Exception {
+        //given
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/v1/customers");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        //when
+        boolean pinned = pinnedWhileServing(request, response);
+
+        //then
+        assertThat(pinned).isTrue();
+        Cookie cookie = response.getCookie(ReadYourWritesFilter.COOKIE_NAME);
+        assertThat(cookie).isNotNull();
+        assertThat(cookie.getValue()).isEqualTo(Long.toString(NOW.plusSeconds(5).toEpochMilli()));
+        assertThat(cookie.getMaxAge()).isEqualTo(5);
+        assertThat(response.getHeader(ReadYourWritesFilter.HEADER_NAME))
+                .isEqualTo(Long.toString(NOW.plusSeconds(5).toEpochMilli()));
+    }
+
+    @Test
+    void readCarryingTheHeaderWithinTheWindowIsPinned() throws Exception {
+        //given
+        // cross-origin clients send the window back as a header, they get no cookies
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/customers/1");
+        request.addHeader(ReadYourWritesFilter.HEADER_NAME,
+                Long.toString(NOW.plusSeconds(1).toEpochMilli()));
+
+        //when
+        boolean pinned = pinnedWhileServing(request, new MockHttpServletResponse());
+
+        //then
+        assertThat(pinned).isTrue();
+    }
+
+    @Test
+    void readWithinTheWindowIsPinned() throws Exception {
+        //given
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/customers/1");
+        request.setCookies(new Cookie(ReadYourWritesFilter.COOKIE_NAME,
+                Long.toString(NOW.plusSeconds(1).toEpochMilli())));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        //when
+        boolean pinned = pinnedWhileServing(request, response);
+
+        //then
+        assertThat(pinned).isTrue();
+        assertThat(response.getCookie(ReadYourWritesFilter.COOKIE_NAME)).isNull();
+    }
+
+    @Test
+    void readAfterTheWindowIsNotPinned() throws Exception {
+        //given
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/customers/1");
+        request.setCookies(new Cookie(ReadYourWritesFilter.COOKIE_NAME,
+                Long.toString(NOW.minusMillis(1).toEpochMilli())));
+
+        //when
+        boolean pinned = pinnedWhileServing(request, new MockHttpServletResponse());
+
+        //then
+        assertThat(pinned).isFalse();
+    }
+}
@@ -0,0 +1,101 @@
+package com.granados.jdbc;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SqlProfilerTest {
+
+    private SqlProfiler underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new SqlProfiler(Duration.ofMillis(200));
+    }
+
+    @Test
+    void aggregatesCallsPerStatement() {
+        //given
+        String sql = "SELECT id FROM customer WHERE id = ?";
+        //when
+        underTest.record(sql, new Object[]{1}, 1_000_000, 50_000, 1, false);
+        underTest.record(sql, new Object[]{2}, 3_000_000, 150_000, 0, false);
+        underTest.record(sql, new Object[]{3}, 2_000_000, 100_000, 0, true);
+        //then
+        List<SqlProfile> profiles = underTest.profiles();
+        assertThat(profiles).hasSize(1);
+        SqlProfile profile = profiles.get(0);
+        assertThat(profile.sql()).isEqualTo(sql);
+        assertThat(profile.operation()).isEqualTo("SqlProfilerTest.aggregatesCallsPerStatement");
+        assertThat(profile.calls()).isEqualTo(3);
+        assertThat(profile.errors()).isEqualTo(1);
+        assertThat(profile.rows()).isEqualTo(1);
+        assertThat(profile.totalExecutionMillis()).isEqualTo(6.0);
+        assertThat(profile.meanExecutionMicros()).isEqualTo(2000.0);
+        assertThat(profile.maxExecutionMicros()).isEqualTo(3000.0);
+        assertThat(profile.meanConnectionWaitMicros()).isEqualTo(100.0);
+        assertThat(profile.p50ExecutionMicros()).isEqualTo(2048);
+        assertThat(profile.p99ExecutionMicros()).isEqualTo(4096);
+    }
+
+    @Test
+    void sortsStatementsByTotalTime() {
+        //given
+        underTest.record("SELECT 1", null, 1_000, 0, 1, false);
+        underTest.record("SELECT 2", null, 5_000, 0, 1, false);
+        //when
+        List<SqlProfile> profiles = underTest.profiles();
+        //then
+        assertThat(profiles).extracting(SqlProfile::sql)
+                .containsExactly("SELECT 2", "SELECT 1");
+    }
+
+    @Test
+    void foldsStatementsBeyondLimitIntoOther() {
+        //given
+        for (int i = 0; i < SqlProfiler.MAX_STATEMENTS + 10; i++) {
+            underTest.record("SELECT " + i, null, 1_000, 0, 1, false);
+        }
+        //when
+        List<SqlProfile> profiles = underTest.profiles();
+        //then
+        assertThat(profiles).hasSize(SqlProfiler.MAX_STATEMENTS + 1);
+        assertThat(profiles).filteredOn(p -> p.sql().equals(SqlProfiler.OTHER_STATEMENTS))
+                .singleElement()
+                .extracting(SqlProfile::calls)
+                .isEqualTo(10L);
+    }
+
+    @Test
+    void resetDropsStatements() {
+        //given
+        underTest.record("SELECT 1", null, 1_000, 0, 1, false);
+        //when
+        underTest.reset();
+        //then
+        assertThat(underTest.profiles()).isEmpty();
+    }
+
+    @Test
+    void describesParameterShapesWithoutValues() {
+        //given
+        Object[] args = {"alex@gmail.com", null, 42, List.of(1, 2), new int[3]};
+        //when
+        String shape = SqlProfiler.shapeOf(args);
+        //then
+        assertThat(shape).isEqualTo("[String(14), null, Integer, Collection(2), int[3]]");
+        assertThat(shape).doesNotContain("alex");
+    }
+
+    @Test
+    void bucketsLatenciesByPowersOfTwoMicroseconds() {
+        assertThat(SqlStatementStats.bucket(500)).isEqualTo(0);
+        assertThat(SqlStatementStats.bucket(1_000)).isEqualTo(1);
+        assertThat(SqlStatementStats.bucket(3_000)).isEqualTo(2);
+        assertThat(SqlStatementStats.bucket(Long.MAX_VALUE)).isEqualTo(SqlStatementStats.BUCKETS - 1);
+    }
+}
@@ -0,0 +1,103 @@
+package com.granados.journey;
+
+import com.granados.customer.CustomerRegistrationRequest;
+import com.granados.customer.Gender;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+@SpringBootTest(webEnvironment = RANDOM_PORT, properties = {
+        "customer.events.subscriber-queue-size=4",
+        "customer.events.writer-threads=1"
+})
+public class CustomerEventStreamIntegrationTest {
+
+    private static final String CUSTOMER_URI = "/api/v1/customers";
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @LocalServerPort
+    private int port;
+
+    private double subscribers() {
+        return meterRegistry.get("customer.events.subscribers").gauge().value();
+    }
+
+    private void registerCustomers(int count) {
+        List<CustomerRegistrationRequest> requests = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            requests.add(new CustomerRegistrationRequest(
+                    "Slow Subscriber " + "x".repeat(200),
+                    "slow-" + UUID.randomUUID() + "@granados.com",
+                    30,
+                    Gender.MALE));
+        }
+        webTestClient.post()
+                .uri(CUSTOMER_URI + "/batch")
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(requests), List.class)
+                .exchange()
+                .expectStatus()
+                .isOk();
+    }
+
+    @Test
+    void dropsASubscriberThatStopsReading() throws Exception {
+        double before = subscribers();
+
+        // subscribe and never read, until the socket buffers fill the writes block
+        try (Socket socket = new Socket()) {
+            socket.setReceiveBufferSize(4096);
+            socket.connect(new InetSocketAddress("localhost", port));
+            OutputStream out = socket.getOutputStream();
+            out.write(("GET " + CUSTOMER_URI + "/events HTTP/1.1\r\n"
+                    + "Host: localhost\r\n"
+                    + "Accept: text/event-stream\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            for (int i = 0; i < 100 && subscribers() == before; i++) {
+                Thread.sleep(50);
+            }
+            assertThat(subscribers()).isEqualTo(before + 1);
+
+            // keep writing, the registrations must not wait for the subscriber
+            for (int batch = 0; batch < 200 && subscribers() > before; batch++) {
+                registerCustomers(100);
+            }
+
+            // make sure that it was dropped once its queue filled up
+            assertThat(subscribers()).isEqualTo(before);
+        }
+
+        // make sure that the stream still works for clients that read
+        assertThat(webTestClient.get()
+                .uri(CUSTOMER_URI + "/events")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .returnResult(String.class)
+                .getResponseBody()
+                .blockFirst()).isNotNull();
+    }
+}
@@ -1,22 +1,36 @@
 package com.granados.journey;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
 import com.github.javafaker.Faker;
 import com.github.javafaker.Name;
 import com.granados.customer.Customer;
 import com.granados.customer.CustomerRegistrationRequest;
+import com.granados.customer.CustomerStats;
 import com.granados.customer.CustomerUpdateRequest;
 import com.granados.customer.Gender;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
 import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.test.web.reactive.server.EntityExchangeResult;
+import org.springframework.test.web.reactive.server.FluxExchangeResult;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
@@ -29,6 +43,7 @@ public class CustomerIntegrationTest {
 
     private static final Random RANDOM = new Random();
     private static final String CUSTOMER_URI = "/api/v1/customers";
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
     @Test
     void canRegisterACustomer() {
@@ -241,4 +256,340 @@ public class CustomerIntegrationTest {
         assertThat(updatedCustomer).isEqualTo(expected);
     }
 
+    @Test
+    void canUpdateCustomerConditionally() {
+        // create registration request
+        Faker faker = new Faker();
+        Name fakerName = faker.name();
+        String email = fakerName.lastName() + "-" + UUID.randomUUID() + "@granados.com";
+
+        CustomerRegistrationRequest request = new CustomerRegistrationRequest(
+                fakerName.fullName(),
+                email,
+                RANDOM.nextInt(1, 100),
+                Gender.FEMALE
+        );
+        webTestClient.post()
+                .uri(CUSTOMER_URI)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(request), CustomerRegistrationRequest.class)
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        Integer id = webTestClient.get()
+                .uri(CUSTOMER_URI)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(new ParameterizedTypeReference<Customer>() {
+                })
+                .returnResult()
+                .getResponseBody()
+                .stream()
+                .filter(c -> c.getEmail().equals(email))
+                .map(Customer::getId)
+                .findFirst()
+                .orElseThrow();
+
+        // read the customer and its ETag
+        String eTag = webTestClient.get()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .returnResult(Customer.class)
+                .getResponseHeaders()
+                .getETag();
+        assertThat(eTag).isNotNull();
+
+        // an unchanged customer is not sent again
+        webTestClient.get()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .header(HttpHeaders.IF_NONE_MATCH, eTag)
+                .exchange()
+                .expectStatus()
+                .isNotModified();
+
+        // the update succeeds with the current ETag
+        String updatedETag = webTestClient.put()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .header(HttpHeaders.IF_MATCH, eTag)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new CustomerUpdateRequest("Updated", null, null)), CustomerUpdateRequest.class)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .returnResult(Void.class)
+                .getResponseHeaders()
+                .getETag();
+        assertThat(updatedETag).isNotEqualTo(eTag);
+
+        // and is rejected once the ETag is stale
+        webTestClient.put()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .header(HttpHeaders.IF_MATCH, eTag)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new CustomerUpdateRequest("Stale", null, null)), CustomerUpdateRequest.class)
+                .exchange()
+                .expectStatus()
+                .isEqualTo(412);
+
+        webTestClient.delete()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .header(HttpHeaders.IF_MATCH, eTag)
+                .exchange()
+                .expectStatus()
+                .isEqualTo(412);
+
+        webTestClient.delete()
+                .uri(CUSTOMER_URI + "/{id}", id)
+                .header(HttpHeaders.IF_MATCH, updatedETag)
+                .exchange()
+                .expectStatus()
+                .isOk();
+    }
+
+    @Test
+    void canSearchCustomers() {
+        // create registration request
+        String name = "Searchable " + UUID.randomUUID();
+        String email = "searchable-" + UUID.randomUUID() + "@granados.com";
+        CustomerRegistrationRequest request = new CustomerRegistrationRequest(
+                name,
+                email,
+                RANDOM.nextInt(1, 100),
+                Gender.FEMALE
+        );
+        webTestClient.post()
+                .uri(CUSTOMER_URI)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(request), CustomerRegistrationRequest.class)
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        // search by name
+        List<Customer> found = webTestClient.get()
+                .uri(uriBuilder -> uriBuilder.path(CUSTOMER_URI + "/search")
+                        .queryParam("q", name)
+                        .build())
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(new ParameterizedTypeReference<Customer>() {
+                })
+                .returnResult()
+                .getResponseBody();
+
+        assertThat(found).extracting(Customer::getEmail).startsWith(email);
+
+        webTestClient.get()
+                .uri(CUSTOMER_URI + "/search?q=")
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
+    @Test
+    void canGetCustomerStats() throws InterruptedException {
+        // the first reconcile runs on the scheduler, until then the stats are unavailable
+        for (int i = 0; i < 100 && statsStatus() == HttpStatus.SERVICE_UNAVAILABLE; i++) {
+            Thread.sleep(50);
+        }
+
+        CustomerStats stats = webTestClient.get()
+                .uri(CUSTOMER_URI + "/stats")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(CustomerStats.class)
+                .returnResult()
+                .getResponseBody();
+
+        assertThat(stats).isNotNull();
+        assertThat(stats.genders().values().stream().mapToLong(Long::longValue).sum())
+                .isEqualTo(stats.total());
+        assertThat(stats.ages().stream().mapToLong(CustomerStats.AgeRange::customers).sum())
+                .isEqualTo(stats.total());
+    }
+
+    private HttpStatusCode statsStatus() {
+        return webTestClient.get()
+                .uri(CUSTOMER_URI + "/stats")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .returnResult(Void.class)
+                .getStatus();
+    }
+
+    @Test
+    void canGetCustomersAsCbor() throws Exception {
+        // create registration request
+        String email = "cbor-" + UUID.randomUUID() + "@granados.com";
+        CustomerRegistrationRequest request = new CustomerRegistrationRequest(
+                "Cbor Customer",
+                email,
+                RANDOM.nextInt(1, 100),
+                Gender.MALE
+        );
+        webTestClient.post()
+                .uri(CUSTOMER_URI)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(request), CustomerRegistrationRequest.class)
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        // get customers as cbor
+        EntityExchangeResult<byte[]> cbor = webTestClient.get()
+                .uri(uriBuilder -> uriBuilder.path(CUSTOMER_URI)
+                        .queryParam("email", email)
+                        .build())
+                .accept(MediaType.APPLICATION_CBOR)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .contentType(MediaType.APPLICATION_CBOR)
+                .expectBody(byte[].class)
+                .returnResult();
+
+        List<Customer> customers = new CBORMapper().readValue(cbor.getResponseBody(), new TypeReference<>() {
+        });
+        assertThat(customers).extracting(Customer::getEmail).containsExactly(email);
+        assertThat(cbor.getResponseHeaders().getVary()).anyMatch(HttpHeaders.ACCEPT::equalsIgnoreCase);
+
+        // the json representation of the same list has a tag of its own
+        HttpHeaders json = webTestClient.get()
+                .uri(uriBuilder -> uriBuilder.path(CUSTOMER_URI)
+                        .queryParam("email", email)
+                        .build())
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .returnResult()
+                .getResponseHeaders();
+        assertThat(json.getVary()).anyMatch(HttpHeaders.ACCEPT::equalsIgnoreCase);
+        String jsonETag = json.getETag();
+        String cborETag = cbor.getResponseHeaders().getETag();
+        assertThat(cborETag).isNotNull();
+        assertThat(jsonETag).isNotNull().isNotEqualTo(cborETag);
+
+        // and a cbor tag does not revalidate a json request
+        webTestClient.get()
+                .uri(uriBuilder -> uriBuilder.path(CUSTOMER_URI)
+                        .queryParam("email", email)
+                        .build())
+                .accept(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.IF_NONE_MATCH, cborETag)
+                .exchange()
+                .expectStatus()
+                .isOk();
+        HttpHeaders notModified = webTestClient.get()
+                .uri(uriBuilder -> uriBuilder.path(CUSTOMER_URI)
+                        .queryParam("email", email)
+                        .build())
+                .accept(MediaType.APPLICATION_CBOR)
+                .header(HttpHeaders.IF_NONE_MATCH, cborETag)
+                .exchange()
+                .expectStatus()
+                .isNotModified()
+                .expectBody()
+                .returnResult()
+                .getResponseHeaders();
+        assertThat(notModified.getVary()).anyMatch(HttpHeaders.ACCEPT::equalsIgnoreCase);
+    }
+
+    @Test
+    void canStreamCustomerChanges() throws Exception {
+        // subscribe to customer changes
+        FluxExchangeResult<ServerSentEvent<String>> result = webTestClient.get()
+                .uri(CUSTOMER_URI + "/events")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .returnResult(new ParameterizedTypeReference<>() {
+                });
+
+        String email = "events-" + UUID.randomUUID() + "@granados.com";
+        String readyId;
+        try (Stream<ServerSentEvent<String>> events = result.getResponseBody().toStream()) {
+            Iterator<ServerSentEvent<String>> iterator = events.iterator();
+
+            // the first event tells where the stream starts
+            ServerSentEvent<String> ready = iterator.next();
+            assertThat(ready.event()).isEqualTo("ready");
+            readyId = ready.id();
+
+            // register a customer
+            webTestClient.post()
+                    .uri(CUSTOMER_URI)
+                    .accept(MediaType.APPLICATION_JSON)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(Mono.just(new CustomerRegistrationRequest(
+                            "Events Customer", email, RANDOM.nextInt(1, 100), Gender.FEMALE)),
+                            CustomerRegistrationRequest.class)
+                    .exchange()
+                    .expectStatus()
+                    .isOk();
+
+            // make sure that the creation is pushed
+            ServerSentEvent<String> created = iterator.next();
+            // heartbeats carry no data
+            while (created.data() == null || !created.data().contains(email)) {
+                created = iterator.next();
+            }
+            assertThat(created.event()).isEqualTo("created");
+            int id = OBJECT_MAPPER.readTree(created.data()).get(0).get("id").asInt();
+
+            // update the customer
+            webTestClient.put()
+                    .uri(CUSTOMER_URI + "/{id}", id)
+                    .accept(MediaType.APPLICATION_JSON)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(Mono.just(new CustomerUpdateRequest("Events Customer Updated", null, null)),
+                            CustomerUpdateRequest.class)
+                    .exchange()
+                    .expectStatus()
+                    .isOk();
+
+            // make sure that the update is pushed with its version, so clients can tell it
+            // from a late one
+            ServerSentEvent<String> updated = iterator.next();
+            while (updated.data() == null || !updated.data().contains("Events Customer Updated")) {
+                updated = iterator.next();
+            }
+            assertThat(updated.event()).isEqualTo("updated");
+            JsonNode customer = OBJECT_MAPPER.readTree(updated.data());
+            assertThat(customer.get("id").asInt()).isEqualTo(id);
+            assertThat(customer.get("version").asInt()).isEqualTo(1);
+        }
+
+        // resume from the first event and make sure the creation is replayed
+        ServerSentEvent<String> replayed = webTestClient.get()
+                .uri(CUSTOMER_URI + "/events")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .header("Last-Event-ID", readyId)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .returnResult(new ParameterizedTypeReference<ServerSentEvent<String>>() {
+                })
+                .getResponseBody()
+                .filter(event -> event.data() != null && event.data().contains(email))
+                .blockFirst(Duration.ofSeconds(10));
+        assertThat(replayed).isNotNull();
+        assertThat(replayed.event()).isEqualTo("created");
+    }
 }
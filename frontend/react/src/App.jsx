@@ -1,21 +1,57 @@
 import { Wrap, WrapItem, Spinner, Text } from "@chakra-ui/react";
 import SidebarWithHeader from "./components/shared/SideBar";
-import { useEffect, useState } from "react";
-import { getCustomers } from "./services/client";
+import { useEffect, useRef, useState } from "react";
+import { getCustomerEvents, getCustomers } from "./services/client";
 import CardWithImage from "./components/Card";
 import DrawerForm from "./components/CreateCustomerDrawer";
 import { errorNotification } from "./services/notification";
 
+const CHANGE_TYPES = ["created", "updated", "deleted"];
+
+// customers loaded with the list have no version, so any change is newer
+const isOlder = (change, customer) =>
+  change.version != null && customer.version != null && change.version <= customer.version;
+
+const applyChange = (customers, type, data) => {
+  switch (type) {
+    case "created": {
+      // a customer held already was loaded or updated after it was created
+      const ids = new Set(customers.map((customer) => customer.id));
+      return [...customers, ...data.filter((customer) => !ids.has(customer.id))];
+    }
+    case "updated":
+      // changes can arrive out of order: an update for a customer that is not held may
+      // come after its delete, and one older than the customer held is already applied
+      return customers.map((customer) =>
+        customer.id === data.id && !isOlder(data, customer) ? data : customer
+      );
+    case "deleted":
+      return customers.filter((customer) => customer.id !== data.id);
+    default:
+      return customers;
+  }
+};
+
 const App = () => {
   const [customers, setCustomers] = useState([]);
-  const [loading, setLoading] = useState(false);
+  const [loading, setLoading] = useState(true);
   const [err, setError] = useState("");
+  const [live, setLive] = useState(false);
+  // changes pushed while the list loads, they are applied on top of it
+  const pendingChanges = useRef(null);
 
   const fetchCustomers = () => {
+    const changes = [];
+    pendingChanges.current = changes;
     setLoading(true);
     getCustomers()
       .then((res) => {
-        setCustomers(res.data);
+        if (pendingChanges.current !== changes) {
+          return;
+        }
+        setCustomers(
+          changes.reduce((list, [type, data]) => applyChange(list, type, data), res.data)
+        );
         console.log(res);
       })
       .catch((err) => {
@@ -28,12 +64,48 @@ const App = () => {
         );
       })
       .finally(() => {
-        setLoading(false);
+        if (pendingChanges.current === changes) {
+          pendingChanges.current = null;
+          setLoading(false);
+        }
       });
   };
 
+  const onChange = (type) => (event) => {
+    const data = JSON.parse(event.data);
+    if (pendingChanges.current) {
+      pendingChanges.current.push([type, data]);
+      return;
+    }
+    setCustomers((list) => applyChange(list, type, data));
+  };
+
+  // without the change stream the list is only current if it is loaded again after a write
+  const refreshCustomers = () => {
+    if (!live) {
+      fetchCustomers();
+    }
+  };
+
   useEffect(() => {
-    fetchCustomers();
+    if (typeof EventSource === "undefined") {
+      fetchCustomers();
+      return;
+    }
+    const events = getCustomerEvents();
+    // a new stream, or one that resumed after too many changes, starts from the whole list
+    events.addEventListener("ready", fetchCustomers);
+    events.addEventListener("reset", fetchCustomers);
+    CHANGE_TYPES.forEach((type) => events.addEventListener(type, onChange(type)));
+    events.onopen = () => setLive(true);
+    events.onerror = () => {
+      // while reconnecting the changes are replayed, a closed stream is given up on
+      if (events.readyState === EventSource.CLOSED) {
+        setLive(false);
+        fetchCustomers();
+      }
+    };
+    return () => events.close();
   }, []);
 
   if (loading) {
@@ -53,7 +125,7 @@ const App = () => {
   if(err){
     return (
       <SidebarWithHeader>
-        <DrawerForm fetchCustomers={fetchCustomers} />
+        <DrawerForm fetchCustomers={refreshCustomers} />
         <Text mt={5}>Ooops there was an error</Text>
       </SidebarWithHeader>
     );
@@ -62,7 +134,7 @@ const App = () => {
   if (customers.length <= 0) {
     return (
       <SidebarWithHeader>
-        <DrawerForm fetchCustomers={fetchCustomers} />
+        <DrawerForm fetchCustomers={refreshCustomers} />
         <Text mt={5}>No customers available</Text>
       </SidebarWithHeader>
     );
@@ -70,11 +142,11 @@ const App = () => {
 
   return (
     <SidebarWithHeader>
-      <DrawerForm fetchCustomers={fetchCustomers} />
+      <DrawerForm fetchCustomers={refreshCustomers} />
       <Wrap justify={"center"} spacing={"30px"}>
         {customers.map((customer, index) => (
           <WrapItem key={index}>
-            <CardWithImage {...customer} imageNumber={index} fetchCustomers={fetchCustomers} />
+            <CardWithImage {...customer} imageNumber={index} fetchCustomers={refreshCustomers} />
           </WrapItem>
         ))}
       </Wrap>
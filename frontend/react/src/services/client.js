@@ -1,5 +1,27 @@
 import axios from 'axios'
 
+// writes answer with the end of a window in which reads must go to the primary database,
+// sending it back lets us read our own writes while a replica catches up; the API is on
+// another origin and gets no cookies from us. The server compares it with its own clock,
+// so it is sent as it came
+const PRIMARY_UNTIL = 'X-Primary-Until'
+let primaryUntil = 0
+
+axios.interceptors.response.use(response => {
+    const until = Number(response.headers[PRIMARY_UNTIL.toLowerCase()])
+    if (until > primaryUntil) {
+        primaryUntil = until
+    }
+    return response
+})
+
+axios.interceptors.request.use(config => {
+    if (primaryUntil) {
+        config.headers[PRIMARY_UNTIL] = primaryUntil
+    }
+    return config
+})
+
 export const getCustomers = async () => {
     try {
         return await axios.get(`${import.meta.env.VITE_API_BASE_URL}/api/v1/customers`);
@@ -41,4 +63,8 @@ export const updateCustomer = async (customerId, update) => {
         console.log(e)
         throw e;
     }
-}
\ No newline at end of file
+}
+
+// the browser reconnects by itself and sends Last-Event-ID, so missed changes are replayed
+export const getCustomerEvents = () =>
+    new EventSource(`${import.meta.env.VITE_API_BASE_URL}/api/v1/customers/events`)